@@ -17,6 +17,7 @@ import com.facebook.presto.spi.Connector;
 import com.facebook.presto.spi.ConnectorHandleResolver;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputHandleResolver;
+import com.facebook.presto.spi.ConnectorPageSourceProvider;
 import com.facebook.presto.spi.ConnectorRecordSetProvider;
 import com.facebook.presto.spi.ConnectorRecordSinkProvider;
 import com.facebook.presto.spi.ConnectorSplitManager;
@@ -72,6 +73,12 @@ public class CassandraConnector
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public ConnectorPageSourceProvider getPageSourceProvider()
+    {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public ConnectorOutputHandleResolver getOutputHandleResolver()
     {
@@ -16,13 +16,15 @@ package com.facebook.presto.cassandra;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 import com.facebook.presto.spi.ColumnType;
-import com.facebook.presto.spi.RecordCursor;
+import com.facebook.presto.spi.StringRecordCursor;
+import com.facebook.presto.spi.StringSink;
 import com.google.common.base.Charsets;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public class CassandraRecordCursor
-        implements RecordCursor
+        implements StringRecordCursor
 {
     private final List<FullCassandraType> fullCassandraTypes;
     private final ResultSet rs;
@@ -111,6 +113,25 @@ public class CassandraRecordCursor
         return str.getBytes(Charsets.UTF_8);
     }
 
+    @Override
+    public void appendString(int i, StringSink sink)
+    {
+        switch (getCassandraType(i)) {
+            case ASCII:
+            case TEXT:
+            case VARCHAR:
+                // text values are serialized as UTF-8, so the raw bytes can be used directly
+                ByteBuffer buffer = currentRow.getBytesUnsafe(i);
+                if (buffer.hasArray()) {
+                    sink.appendString(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    return;
+                }
+                break;
+        }
+        byte[] bytes = getString(i);
+        sink.appendString(bytes, 0, bytes.length);
+    }
+
     @Override
     public long getTotalBytes()
     {
@@ -15,7 +15,8 @@ package com.facebook.presto.hive;
 
 import com.facebook.presto.hive.util.SerDeUtils;
 import com.facebook.presto.spi.ColumnType;
-import com.facebook.presto.spi.RecordCursor;
+import com.facebook.presto.spi.StringRecordCursor;
+import com.facebook.presto.spi.StringSink;
 import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
 import org.apache.hadoop.hive.metastore.api.MetaException;
@@ -54,7 +55,7 @@ import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 class ColumnarBinaryHiveRecordCursor<K>
-        implements RecordCursor
+        implements StringRecordCursor
 {
     private final RecordReader<K, BytesRefArrayWritable> recordReader;
     private final K key;
@@ -76,6 +77,10 @@ class ColumnarBinaryHiveRecordCursor<K>
     private final long[] longs;
     private final double[] doubles;
     private final byte[][] strings;
+    // string values are referenced in place, and only copied into strings when requested
+    private final byte[][] stringData;
+    private final int[] stringOffsets;
+    private final int[] stringLengths;
     private final boolean[] nulls;
 
     private final long totalBytes;
@@ -148,6 +153,9 @@ class ColumnarBinaryHiveRecordCursor<K>
         this.longs = new long[size];
         this.doubles = new double[size];
         this.strings = new byte[size][];
+        this.stringData = new byte[size][];
+        this.stringOffsets = new int[size];
+        this.stringLengths = new int[size];
         this.nulls = new boolean[size];
 
         // initialize data columns
@@ -209,7 +217,7 @@ class ColumnarBinaryHiveRecordCursor<K>
                         doubles[columnIndex] = parseDouble(bytes, 0, bytes.length);
                         break;
                     case STRING:
-                        strings[columnIndex] = Arrays.copyOf(bytes, bytes.length);
+                        setString(columnIndex, Arrays.copyOf(bytes, bytes.length));
                         break;
                     default:
                         throw new UnsupportedOperationException("Unsupported column type: " + types[columnIndex]);
@@ -498,9 +506,39 @@ class ColumnarBinaryHiveRecordCursor<K>
         if (!loaded[fieldId]) {
             parseStringColumn(fieldId);
         }
+        if (strings[fieldId] == null && stringData[fieldId] != null) {
+            int offset = stringOffsets[fieldId];
+            strings[fieldId] = Arrays.copyOfRange(stringData[fieldId], offset, offset + stringLengths[fieldId]);
+        }
         return strings[fieldId];
     }
 
+    @Override
+    public void appendString(int fieldId, StringSink sink)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.STRING);
+        if (!loaded[fieldId]) {
+            parseStringColumn(fieldId);
+        }
+        sink.appendString(stringData[fieldId], stringOffsets[fieldId], stringLengths[fieldId]);
+    }
+
+    private void setString(int column, byte[] bytes)
+    {
+        setStringReference(column, bytes, 0, bytes.length);
+        strings[column] = bytes;
+    }
+
+    private void setStringReference(int column, byte[] bytes, int offset, int length)
+    {
+        stringData[column] = bytes;
+        stringOffsets[column] = offset;
+        stringLengths[column] = length;
+        strings[column] = null;
+    }
+
     private void parseStringColumn(int column)
     {
         // don't include column number in message because it causes boxing which is expensive here
@@ -546,15 +584,15 @@ class ColumnarBinaryHiveRecordCursor<K>
                 ByteArrayRef byteArrayRef = new ByteArrayRef();
                 byteArrayRef.setData(bytes);
                 lazyObject.init(byteArrayRef, start, length);
-                strings[column] = SerDeUtils.getJsonBytes(lazyObject.getObject(), fieldInspectors[column]);
+                setString(column, SerDeUtils.getJsonBytes(lazyObject.getObject(), fieldInspectors[column]));
             }
             else {
                 // TODO: zero length BINARY is not supported. See https://issues.apache.org/jira/browse/HIVE-2483
                 if (hiveTypes[column] == HiveType.STRING && (length == 1) && bytes[start] == HIVE_EMPTY_STRING_BYTE) {
-                    strings[column] = EMPTY_STRING;
+                    setString(column, EMPTY_STRING);
                 }
                 else {
-                    strings[column] = Arrays.copyOfRange(bytes, start, start + length);
+                    setStringReference(column, bytes, start, length);
                 }
             }
         }
@@ -16,6 +16,8 @@ package com.facebook.presto.hive;
 import com.facebook.presto.spi.RecordCursor;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.metastore.api.MetaException;
 import org.apache.hadoop.hive.serde2.columnar.BytesRefArrayWritable;
 import org.apache.hadoop.hive.serde2.columnar.LazyBinaryColumnarSerDe;
@@ -23,17 +25,18 @@ import org.apache.hadoop.mapred.RecordReader;
 
 import java.util.List;
 
+import static com.facebook.presto.hive.HiveUtil.createRecordReader;
 import static org.apache.hadoop.hive.metastore.MetaStoreUtils.getDeserializer;
 
 public class ColumnarBinaryHiveRecordCursorProvider
         implements HiveRecordCursorProvider
 {
     @Override
-    public Optional<RecordCursor> createHiveRecordCursor(HiveSplit split, RecordReader<?, ?> recordReader, List<HiveColumnHandle> columns)
+    public Optional<RecordCursor> createHiveRecordCursor(HiveSplit split, Configuration configuration, Path path, List<HiveColumnHandle> columns)
     {
         if (usesColumnarBinarySerDe(split)) {
             return Optional.<RecordCursor>of(new ColumnarBinaryHiveRecordCursor<>(
-                    bytesRecordReader(recordReader),
+                    bytesRecordReader(createRecordReader(split, configuration, path)),
                     split.getLength(),
                     split.getSchema(),
                     split.getPartitionKeys(),
@@ -16,7 +16,8 @@ package com.facebook.presto.hive;
 import com.facebook.presto.hive.shaded.org.apache.commons.codec.binary.Base64;
 import com.facebook.presto.hive.util.SerDeUtils;
 import com.facebook.presto.spi.ColumnType;
-import com.facebook.presto.spi.RecordCursor;
+import com.facebook.presto.spi.StringRecordCursor;
+import com.facebook.presto.spi.StringSink;
 import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
 import org.apache.hadoop.hive.metastore.api.MetaException;
@@ -50,7 +51,7 @@ import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 class ColumnarTextHiveRecordCursor<K>
-        implements RecordCursor
+        implements StringRecordCursor
 {
     private final RecordReader<K, BytesRefArrayWritable> recordReader;
     private final K key;
@@ -72,6 +73,10 @@ class ColumnarTextHiveRecordCursor<K>
     private final long[] longs;
     private final double[] doubles;
     private final byte[][] strings;
+    // string values are referenced in place, and only copied into strings when requested
+    private final byte[][] stringData;
+    private final int[] stringOffsets;
+    private final int[] stringLengths;
     private final boolean[] nulls;
 
     private final long totalBytes;
@@ -113,6 +118,9 @@ class ColumnarTextHiveRecordCursor<K>
         this.longs = new long[size];
         this.doubles = new double[size];
         this.strings = new byte[size][];
+        this.stringData = new byte[size][];
+        this.stringOffsets = new int[size];
+        this.stringLengths = new int[size];
         this.nulls = new boolean[size];
 
         // initialize data columns
@@ -174,7 +182,7 @@ class ColumnarTextHiveRecordCursor<K>
                         doubles[columnIndex] = parseDouble(bytes, 0, bytes.length);
                         break;
                     case STRING:
-                        strings[columnIndex] = Arrays.copyOf(bytes, bytes.length);
+                        setString(columnIndex, Arrays.copyOf(bytes, bytes.length));
                         break;
                     default:
                         throw new UnsupportedOperationException("Unsupported column type: " + types[columnIndex]);
@@ -422,9 +430,39 @@ class ColumnarTextHiveRecordCursor<K>
         if (!loaded[fieldId]) {
             parseStringColumn(fieldId);
         }
+        if (strings[fieldId] == null && stringData[fieldId] != null) {
+            int offset = stringOffsets[fieldId];
+            strings[fieldId] = Arrays.copyOfRange(stringData[fieldId], offset, offset + stringLengths[fieldId]);
+        }
         return strings[fieldId];
     }
 
+    @Override
+    public void appendString(int fieldId, StringSink sink)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.STRING);
+        if (!loaded[fieldId]) {
+            parseStringColumn(fieldId);
+        }
+        sink.appendString(stringData[fieldId], stringOffsets[fieldId], stringLengths[fieldId]);
+    }
+
+    private void setString(int column, byte[] bytes)
+    {
+        setStringReference(column, bytes, 0, bytes.length);
+        strings[column] = bytes;
+    }
+
+    private void setStringReference(int column, byte[] bytes, int offset, int length)
+    {
+        stringData[column] = bytes;
+        stringOffsets[column] = offset;
+        stringLengths[column] = length;
+        strings[column] = null;
+    }
+
     private void parseStringColumn(int column)
     {
         // don't include column number in message because it causes boxing which is expensive here
@@ -468,16 +506,17 @@ class ColumnarTextHiveRecordCursor<K>
             ByteArrayRef byteArrayRef = new ByteArrayRef();
             byteArrayRef.setData(bytes);
             lazyObject.init(byteArrayRef, start, length);
-            strings[column] = SerDeUtils.getJsonBytes(lazyObject.getObject(), fieldInspectors[column]);
+            setString(column, SerDeUtils.getJsonBytes(lazyObject.getObject(), fieldInspectors[column]));
             wasNull = false;
         }
         else {
-            strings[column] = Arrays.copyOfRange(bytes, start, start + length);
-
             // this is unbelievably stupid but Hive base64 encodes binary data in a binary file format
             if (hiveTypes[column] == HiveType.BINARY) {
                 // and yes we end up with an extra copy here because the Base64 only handles whole arrays
-                strings[column] = Base64.decodeBase64(strings[column]);
+                setString(column, Base64.decodeBase64(Arrays.copyOfRange(bytes, start, start + length)));
+            }
+            else {
+                setStringReference(column, bytes, start, length);
             }
             wasNull = false;
         }
@@ -16,7 +16,8 @@ package com.facebook.presto.hive;
 import com.facebook.presto.hive.util.SerDeUtils;
 import com.facebook.presto.spi.ColumnType;
 import com.facebook.presto.spi.PrestoException;
-import com.facebook.presto.spi.RecordCursor;
+import com.facebook.presto.spi.StringRecordCursor;
+import com.facebook.presto.spi.StringSink;
 import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
 import org.apache.hadoop.hive.metastore.MetaStoreUtils;
@@ -27,6 +28,8 @@ import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.RecordReader;
 
@@ -50,7 +53,7 @@ import static java.lang.Math.min;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 class GenericHiveRecordCursor<K, V extends Writable>
-        implements RecordCursor
+        implements StringRecordCursor
 {
     private final RecordReader<K, V> recordReader;
     private final K key;
@@ -73,6 +76,10 @@ class GenericHiveRecordCursor<K, V extends Writable>
     private final long[] longs;
     private final double[] doubles;
     private final byte[][] strings;
+    // string values are referenced in place, and only copied into strings when requested
+    private final byte[][] stringData;
+    private final int[] stringOffsets;
+    private final int[] stringLengths;
     private final boolean[] nulls;
 
     private final long totalBytes;
@@ -118,6 +125,9 @@ class GenericHiveRecordCursor<K, V extends Writable>
         this.longs = new long[size];
         this.doubles = new double[size];
         this.strings = new byte[size][];
+        this.stringData = new byte[size][];
+        this.stringOffsets = new int[size];
+        this.stringLengths = new int[size];
         this.nulls = new boolean[size];
 
         // initialize data columns
@@ -173,7 +183,7 @@ class GenericHiveRecordCursor<K, V extends Writable>
                         doubles[columnIndex] = parseDouble(bytes, 0, bytes.length);
                         break;
                     case STRING:
-                        strings[columnIndex] = Arrays.copyOf(bytes, bytes.length);
+                        setString(columnIndex, Arrays.copyOf(bytes, bytes.length));
                         break;
                     default:
                         throw new UnsupportedOperationException("Unsupported column type: " + types[columnIndex]);
@@ -350,9 +360,39 @@ class GenericHiveRecordCursor<K, V extends Writable>
         if (!loaded[fieldId]) {
             parseStringColumn(fieldId);
         }
+        if (strings[fieldId] == null && stringData[fieldId] != null) {
+            int offset = stringOffsets[fieldId];
+            strings[fieldId] = Arrays.copyOfRange(stringData[fieldId], offset, offset + stringLengths[fieldId]);
+        }
         return strings[fieldId];
     }
 
+    @Override
+    public void appendString(int fieldId, StringSink sink)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.STRING);
+        if (!loaded[fieldId]) {
+            parseStringColumn(fieldId);
+        }
+        sink.appendString(stringData[fieldId], stringOffsets[fieldId], stringLengths[fieldId]);
+    }
+
+    private void setString(int column, byte[] bytes)
+    {
+        setStringReference(column, bytes, 0, bytes.length);
+        strings[column] = bytes;
+    }
+
+    private void setStringReference(int column, byte[] bytes, int offset, int length)
+    {
+        stringData[column] = bytes;
+        stringOffsets[column] = offset;
+        stringLengths[column] = length;
+        strings[column] = null;
+    }
+
     private void parseStringColumn(int column)
     {
         // don't include column number in message because it causes boxing which is expensive here
@@ -367,20 +407,33 @@ class GenericHiveRecordCursor<K, V extends Writable>
         }
         else if (hiveTypes[column] == HiveType.MAP || hiveTypes[column] == HiveType.LIST || hiveTypes[column] == HiveType.STRUCT) {
             // temporarily special case MAP, LIST, and STRUCT types as strings
-            strings[column] = SerDeUtils.getJsonBytes(fieldData, fieldInspectors[column]);
+            setString(column, SerDeUtils.getJsonBytes(fieldData, fieldInspectors[column]));
             nulls[column] = false;
         }
         else {
-            Object fieldValue = ((PrimitiveObjectInspector) fieldInspectors[column]).getPrimitiveJavaObject(fieldData);
+            // use the writable form when possible, which references the bytes of the
+            // value instead of decoding them to a string and encoding them again
+            Object fieldValue = ((PrimitiveObjectInspector) fieldInspectors[column]).getPrimitiveWritableObject(fieldData);
             checkState(fieldValue != null, "fieldValue should not be null");
-            if (fieldValue instanceof String) {
-                strings[column] = ((String) fieldValue).getBytes(Charsets.UTF_8);
+            if (fieldValue instanceof Text) {
+                Text text = (Text) fieldValue;
+                setStringReference(column, text.getBytes(), 0, text.getLength());
             }
-            else if (fieldValue instanceof byte[]) {
-                strings[column] = (byte[]) fieldValue;
+            else if (fieldValue instanceof BytesWritable) {
+                BytesWritable bytesWritable = (BytesWritable) fieldValue;
+                setStringReference(column, bytesWritable.getBytes(), 0, bytesWritable.getLength());
             }
             else {
-                throw new IllegalStateException("unsupported string field type: " + fieldValue.getClass().getName());
+                fieldValue = ((PrimitiveObjectInspector) fieldInspectors[column]).getPrimitiveJavaObject(fieldData);
+                if (fieldValue instanceof String) {
+                    setString(column, ((String) fieldValue).getBytes(Charsets.UTF_8));
+                }
+                else if (fieldValue instanceof byte[]) {
+                    setString(column, (byte[]) fieldValue);
+                }
+                else {
+                    throw new IllegalStateException("unsupported string field type: " + fieldValue.getClass().getName());
+                }
             }
             nulls[column] = false;
         }
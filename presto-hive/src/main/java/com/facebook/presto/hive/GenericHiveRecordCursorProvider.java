@@ -15,19 +15,23 @@ package com.facebook.presto.hive;
 
 import com.facebook.presto.spi.RecordCursor;
 import com.google.common.base.Optional;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.RecordReader;
 
 import java.util.List;
 
+import static com.facebook.presto.hive.HiveUtil.createRecordReader;
+
 public class GenericHiveRecordCursorProvider
         implements HiveRecordCursorProvider
 {
     @Override
-    public Optional<RecordCursor> createHiveRecordCursor(HiveSplit split, RecordReader<?, ?> recordReader, List<HiveColumnHandle> columns)
+    public Optional<RecordCursor> createHiveRecordCursor(HiveSplit split, Configuration configuration, Path path, List<HiveColumnHandle> columns)
     {
         return Optional.<RecordCursor>of(new GenericHiveRecordCursor<>(
-                genericRecordReader(recordReader),
+                genericRecordReader(createRecordReader(split, configuration, path)),
                 split.getLength(),
                 split.getSchema(),
                 split.getPartitionKeys(),
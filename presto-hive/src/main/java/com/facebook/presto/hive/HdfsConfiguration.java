@@ -16,6 +16,7 @@ package com.facebook.presto.hive;
 import com.google.common.collect.ImmutableList;
 import com.google.common.net.HostAndPort;
 import com.google.common.primitives.Ints;
+import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
@@ -46,6 +47,9 @@ public class HdfsConfiguration
     private final int s3MaxErrorRetries;
     private final Duration s3ConnectTimeout;
     private final File s3StagingDirectory;
+    private final DataSize s3ReadAheadPartSize;
+    private final DataSize s3ReadAheadWindow;
+    private final DataSize s3ReadAheadMaxMemory;
     private final List<String> resourcePaths;
 
     @SuppressWarnings("ThreadLocalNotStaticFinal")
@@ -76,6 +80,9 @@ public class HdfsConfiguration
         this.s3MaxErrorRetries = hiveClientConfig.getS3MaxErrorRetries();
         this.s3ConnectTimeout = hiveClientConfig.getS3ConnectTimeout();
         this.s3StagingDirectory = hiveClientConfig.getS3StagingDirectory();
+        this.s3ReadAheadPartSize = hiveClientConfig.getS3ReadAheadPartSize();
+        this.s3ReadAheadWindow = hiveClientConfig.getS3ReadAheadWindow();
+        this.s3ReadAheadMaxMemory = hiveClientConfig.getS3ReadAheadMaxMemory();
         this.resourcePaths = hiveClientConfig.getResourceConfigFiles();
     }
 
@@ -139,6 +146,9 @@ public class HdfsConfiguration
         config.setInt(PrestoS3FileSystem.S3_MAX_ERROR_RETRIES, s3MaxErrorRetries);
         config.set(PrestoS3FileSystem.S3_CONNECT_TIMEOUT, s3ConnectTimeout.toString());
         config.set(PrestoS3FileSystem.S3_STAGING_DIRECTORY, s3StagingDirectory.toString());
+        config.set(PrestoS3FileSystem.S3_READ_AHEAD_PART_SIZE, s3ReadAheadPartSize.toString());
+        config.set(PrestoS3FileSystem.S3_READ_AHEAD_WINDOW, s3ReadAheadWindow.toString());
+        config.set(PrestoS3FileSystem.S3_READ_AHEAD_MAX_MEMORY, s3ReadAheadMaxMemory.toString());
 
         updateConfiguration(config);
 
@@ -13,22 +13,50 @@
  */
 package com.facebook.presto.hive;
 
+import com.facebook.presto.hive.cache.CachingPath;
+import com.facebook.presto.hive.cache.FileRangeCache;
+import com.facebook.presto.hive.cache.FileRangeCacheStats;
+import com.google.common.base.Throwables;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 
 import javax.inject.Inject;
 
+import java.io.IOException;
+
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class HdfsEnvironment
 {
     private final HdfsConfiguration hdfsConfiguration;
+    private final FileRangeCache cache;
 
-    @Inject
     public HdfsEnvironment(HdfsConfiguration hdfsConfiguration)
     {
         this.hdfsConfiguration = checkNotNull(hdfsConfiguration, "hdfsConfiguration is null");
+        this.cache = null;
+    }
+
+    @Inject
+    public HdfsEnvironment(HdfsConfiguration hdfsConfiguration, HiveClientConfig hiveClientConfig, FileRangeCacheStats cacheStats)
+    {
+        this.hdfsConfiguration = checkNotNull(hdfsConfiguration, "hdfsConfiguration is null");
+        checkNotNull(hiveClientConfig, "hiveClientConfig is null");
+        checkNotNull(cacheStats, "cacheStats is null");
+
+        if (hiveClientConfig.isLocalCacheEnabled()) {
+            checkArgument(hiveClientConfig.getLocalCacheDirectory() != null, "hive.local-cache.directory must be set when the local cache is enabled");
+            try {
+                cache = new FileRangeCache(hiveClientConfig.getLocalCacheDirectory(), hiveClientConfig.getLocalCacheMaxSize(), hiveClientConfig.getLocalCacheRangeSize(), cacheStats);
+            }
+            catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+        else {
+            cache = null;
+        }
     }
 
     public Configuration getConfiguration(Path path)
@@ -38,8 +66,17 @@ public class HdfsEnvironment
         return hdfsConfiguration.getConfiguration(host);
     }
 
-    public Path wrapInputPath(Path path)
+    /**
+     * Wraps the path of a split file so its reads go through the local cache.  The size
+     * and modification time come from the split, so opening the file does not need to
+     * ask the file system for its status.
+     */
+    public Path wrapInputPath(Path path, long fileSize, long fileModifiedTime)
     {
-        return path;
+        // local files gain nothing from the cache
+        if ((cache == null) || "file".equals(path.toUri().getScheme())) {
+            return path;
+        }
+        return new CachingPath(path, fileSize, fileModifiedTime, cache);
     }
 }
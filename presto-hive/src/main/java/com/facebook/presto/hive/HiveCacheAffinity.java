@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.spi.HostAddress;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import io.airlift.discovery.client.ServiceDescriptor;
+import io.airlift.discovery.client.ServiceSelector;
+import io.airlift.discovery.client.ServiceState;
+import io.airlift.discovery.client.ServiceType;
+
+import javax.inject.Inject;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Chooses a preferred worker for each split, so the file ranges of a split are
+ * read by the same worker in every query and are served from its local cache.
+ * Workers are chosen with rendezvous hashing, so only the splits of a worker
+ * that leaves, and a fair share of splits for a worker that joins, move.
+ */
+public class HiveCacheAffinity
+{
+    private static final Splitter DATASOURCES_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private final String connectorId;
+    private final ServiceSelector selector;
+
+    @Inject
+    public HiveCacheAffinity(HiveConnectorId connectorId, @ServiceType("presto") ServiceSelector selector)
+    {
+        this.connectorId = checkNotNull(connectorId, "connectorId is null").toString();
+        this.selector = checkNotNull(selector, "selector is null");
+    }
+
+    /**
+     * Returns the addresses of the split with the preferred worker first.
+     */
+    public List<HostAddress> getAddresses(String path, long start, List<HostAddress> addresses)
+    {
+        HostAddress preferred = selectNode(getNodes(), path, start);
+        if (preferred == null) {
+            return addresses;
+        }
+
+        ImmutableList.Builder<HostAddress> builder = ImmutableList.builder();
+        builder.add(preferred);
+        for (HostAddress address : addresses) {
+            if (!address.equals(preferred)) {
+                builder.add(address);
+            }
+        }
+        return builder.build();
+    }
+
+    private List<HostAddress> getNodes()
+    {
+        ImmutableList.Builder<HostAddress> nodes = ImmutableList.builder();
+        for (ServiceDescriptor descriptor : selector.selectAllServices()) {
+            if (descriptor.getState() == ServiceState.STOPPED) {
+                continue;
+            }
+
+            Map<String, String> properties = descriptor.getProperties();
+            String datasources = properties.get("datasources");
+            if ((datasources != null) && !DATASOURCES_SPLITTER.splitToList(datasources.toLowerCase()).contains(connectorId.toLowerCase())) {
+                continue;
+            }
+
+            String uri = properties.get("https");
+            if (uri == null) {
+                uri = properties.get("http");
+            }
+            if (uri != null) {
+                try {
+                    nodes.add(HostAddress.fromUri(URI.create(uri)));
+                }
+                catch (IllegalArgumentException ignored) {
+                    // Ignore entries with parse issues
+                }
+            }
+        }
+        return nodes.build();
+    }
+
+    /**
+     * Returns the node with the highest hash of the node and split, or null if there are no nodes.
+     */
+    @VisibleForTesting
+    static HostAddress selectNode(Collection<HostAddress> nodes, String path, long start)
+    {
+        HostAddress selected = null;
+        long maxScore = Long.MIN_VALUE;
+        for (HostAddress node : nodes) {
+            long score = Hashing.murmur3_128().newHasher()
+                    .putString(node.toString(), Charsets.UTF_8)
+                    .putString(path, Charsets.UTF_8)
+                    .putLong(start)
+                    .hash()
+                    .asLong();
+            if ((selected == null) || (score > maxScore)) {
+                selected = node;
+                maxScore = score;
+            }
+        }
+        return selected;
+    }
+}
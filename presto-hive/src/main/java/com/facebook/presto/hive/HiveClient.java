@@ -23,6 +23,8 @@ import com.facebook.presto.spi.ColumnType;
 import com.facebook.presto.spi.ConnectorHandleResolver;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputHandleResolver;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.spi.ConnectorPageSourceProvider;
 import com.facebook.presto.spi.ConnectorRecordSetProvider;
 import com.facebook.presto.spi.ConnectorRecordSinkProvider;
 import com.facebook.presto.spi.ConnectorSplitManager;
@@ -120,10 +122,11 @@ import static java.lang.String.format;
 import static java.util.UUID.randomUUID;
 import static org.apache.hadoop.hive.metastore.ProtectMode.getProtectModeFromString;
 import static org.apache.hadoop.hive.metastore.Warehouse.makePartName;
+import static org.apache.hadoop.hive.serde.serdeConstants.SERIALIZATION_NULL_FORMAT;
 
 @SuppressWarnings("deprecation")
 public class HiveClient
-        implements ConnectorMetadata, ConnectorSplitManager, ConnectorRecordSetProvider, ConnectorRecordSinkProvider, ConnectorHandleResolver, ConnectorOutputHandleResolver
+        implements ConnectorMetadata, ConnectorSplitManager, ConnectorRecordSetProvider, ConnectorPageSourceProvider, ConnectorRecordSinkProvider, ConnectorHandleResolver, ConnectorOutputHandleResolver
 {
     static {
         HadoopNative.requireHadoopNative();
@@ -142,6 +145,9 @@ public class HiveClient
     private final HdfsEnvironment hdfsEnvironment;
     private final Executor executor;
     private final DataSize maxSplitSize;
+    private final boolean optimizedReaderEnabled;
+    private final List<HiveRecordCursorProvider> recordCursorProviders;
+    private final Optional<HiveCacheAffinity> cacheAffinity;
 
     @Inject
     public HiveClient(HiveConnectorId connectorId,
@@ -149,6 +155,7 @@ public class HiveClient
             CachingHiveMetastore metastore,
             HadoopApiStats hadoopApiStats,
             HdfsEnvironment hdfsEnvironment,
+            HiveCacheAffinity cacheAffinity,
             @ForHiveClient ExecutorService executorService)
     {
         this(connectorId,
@@ -160,7 +167,9 @@ public class HiveClient
                 hiveClientConfig.getMaxOutstandingSplits(),
                 hiveClientConfig.getMaxSplitIteratorThreads(),
                 hiveClientConfig.getMinPartitionBatchSize(),
-                hiveClientConfig.getMaxPartitionBatchSize());
+                hiveClientConfig.getMaxPartitionBatchSize(),
+                hiveClientConfig.isOptimizedReaderEnabled(),
+                hiveClientConfig.isLocalCacheEnabled() && hiveClientConfig.isLocalCacheAffinityEnabled() ? Optional.of(cacheAffinity) : Optional.<HiveCacheAffinity>absent());
     }
 
     public HiveClient(HiveConnectorId connectorId,
@@ -172,7 +181,9 @@ public class HiveClient
             int maxOutstandingSplits,
             int maxSplitIteratorThreads,
             int minPartitionBatchSize,
-            int maxPartitionBatchSize)
+            int maxPartitionBatchSize,
+            boolean optimizedReaderEnabled,
+            Optional<HiveCacheAffinity> cacheAffinity)
     {
         this.connectorId = checkNotNull(connectorId, "connectorId is null").toString();
 
@@ -188,6 +199,10 @@ public class HiveClient
         this.hadoopApiStats = checkNotNull(hadoopApiStats, "hadoopApiStats is null");
 
         this.executor = checkNotNull(executor, "executor is null");
+        this.cacheAffinity = checkNotNull(cacheAffinity, "cacheAffinity is null");
+
+        this.optimizedReaderEnabled = optimizedReaderEnabled;
+        this.recordCursorProviders = HiveRecordCursorProviders.getDefaultProviders(optimizedReaderEnabled);
     }
 
     public CachingHiveMetastore getMetastore()
@@ -741,7 +756,8 @@ public class HiveClient
                 hdfsEnvironment,
                 hadoopApiStats,
                 executor,
-                maxPartitionBatchSize).get();
+                maxPartitionBatchSize,
+                cacheAffinity).get();
     }
 
     private Iterable<org.apache.hadoop.hive.metastore.api.Partition> getPartitions(final Table table, final SchemaTableName tableName, List<String> partitionNames)
@@ -803,7 +819,34 @@ public class HiveClient
         checkArgument(split instanceof HiveSplit, "expected instance of %s: %s", HiveSplit.class, split.getClass());
 
         List<HiveColumnHandle> hiveColumns = ImmutableList.copyOf(transform(columns, hiveColumnHandle()));
-        return new HiveRecordSet(hdfsEnvironment, (HiveSplit) split, hiveColumns, HiveRecordCursorProviders.getDefaultProviders());
+        return new HiveRecordSet(hdfsEnvironment, (HiveSplit) split, hiveColumns, recordCursorProviders);
+    }
+
+    @Override
+    public ConnectorPageSource createPageSource(Split split, List<? extends ColumnHandle> columns)
+    {
+        checkNotNull(split, "split is null");
+        checkNotNull(columns, "columns is null");
+        checkArgument(split instanceof HiveSplit, "expected instance of %s: %s", HiveSplit.class, split.getClass());
+
+        // only RCFiles are read as pages, other splits are read through the record set
+        HiveSplit hiveSplit = (HiveSplit) split;
+        String nullSequence = hiveSplit.getSchema().getProperty(SERIALIZATION_NULL_FORMAT);
+        if (!optimizedReaderEnabled || (nullSequence != null && !nullSequence.equals("\\N"))) {
+            return null;
+        }
+
+        List<HiveColumnHandle> hiveColumns = ImmutableList.copyOf(transform(columns, hiveColumnHandle()));
+        Path path = new Path(hiveSplit.getPath());
+        Optional<RcFileHiveRecordCursor> cursor = new RcFileHiveRecordCursorProvider().createRcFileHiveRecordCursor(
+                hiveSplit,
+                hdfsEnvironment.getConfiguration(path),
+                hdfsEnvironment.wrapInputPath(path, hiveSplit.getFileSize(), hiveSplit.getFileModifiedTime()),
+                hiveColumns);
+        if (!cursor.isPresent()) {
+            return null;
+        }
+        return new RcFileHivePageSource(cursor.get(), hiveColumns);
     }
 
     @Override
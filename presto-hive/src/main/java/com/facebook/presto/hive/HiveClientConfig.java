@@ -41,6 +41,7 @@ public class HiveClientConfig
     private int maxSplitIteratorThreads = 50;
     private int minPartitionBatchSize = 10;
     private int maxPartitionBatchSize = 100;
+    private boolean optimizedReaderEnabled = true;
     private Duration metastoreCacheTtl = new Duration(1, TimeUnit.HOURS);
     private Duration metastoreRefreshInterval = new Duration(2, TimeUnit.MINUTES);
     private int maxMetastoreRefreshThreads = 100;
@@ -61,6 +62,15 @@ public class HiveClientConfig
     private int s3MaxErrorRetries = 10;
     private Duration s3ConnectTimeout = new Duration(5, TimeUnit.SECONDS);
     private File s3StagingDirectory = new File(StandardSystemProperty.JAVA_IO_TMPDIR.value());
+    private DataSize s3ReadAheadPartSize = new DataSize(8, Unit.MEGABYTE);
+    private DataSize s3ReadAheadWindow = new DataSize(32, Unit.MEGABYTE);
+    private DataSize s3ReadAheadMaxMemory = new DataSize(512, Unit.MEGABYTE);
+
+    private boolean localCacheEnabled;
+    private File localCacheDirectory;
+    private DataSize localCacheMaxSize = new DataSize(10, Unit.GIGABYTE);
+    private DataSize localCacheRangeSize = new DataSize(1, Unit.MEGABYTE);
+    private boolean localCacheAffinityEnabled = true;
 
     private List<String> resourceConfigFiles;
 
@@ -116,6 +126,19 @@ public class HiveClientConfig
         return this;
     }
 
+    public boolean isOptimizedReaderEnabled()
+    {
+        return optimizedReaderEnabled;
+    }
+
+    @Config("hive.optimized-reader.enabled")
+    @ConfigDescription("Read RCFiles with primitive columns without the Hadoop record reader")
+    public HiveClientConfig setOptimizedReaderEnabled(boolean optimizedReaderEnabled)
+    {
+        this.optimizedReaderEnabled = optimizedReaderEnabled;
+        return this;
+    }
+
     @NotNull
     public Duration getMetastoreCacheTtl()
     {
@@ -379,4 +402,112 @@ public class HiveClientConfig
         this.s3StagingDirectory = s3StagingDirectory;
         return this;
     }
+
+    @NotNull
+    public DataSize getS3ReadAheadPartSize()
+    {
+        return s3ReadAheadPartSize;
+    }
+
+    @Config("hive.s3.read-ahead.part-size")
+    @ConfigDescription("Size of the ranged GET requests used to read S3 objects")
+    public HiveClientConfig setS3ReadAheadPartSize(DataSize s3ReadAheadPartSize)
+    {
+        this.s3ReadAheadPartSize = s3ReadAheadPartSize;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getS3ReadAheadWindow()
+    {
+        return s3ReadAheadWindow;
+    }
+
+    @Config("hive.s3.read-ahead.window")
+    @ConfigDescription("Amount of data read concurrently ahead of the read position of an S3 stream")
+    public HiveClientConfig setS3ReadAheadWindow(DataSize s3ReadAheadWindow)
+    {
+        this.s3ReadAheadWindow = s3ReadAheadWindow;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getS3ReadAheadMaxMemory()
+    {
+        return s3ReadAheadMaxMemory;
+    }
+
+    @Config("hive.s3.read-ahead.max-memory")
+    @ConfigDescription("Maximum memory of the read-ahead buffers shared by the S3 streams of a bucket")
+    public HiveClientConfig setS3ReadAheadMaxMemory(DataSize s3ReadAheadMaxMemory)
+    {
+        this.s3ReadAheadMaxMemory = s3ReadAheadMaxMemory;
+        return this;
+    }
+
+    public boolean isLocalCacheEnabled()
+    {
+        return localCacheEnabled;
+    }
+
+    @Config("hive.local-cache.enabled")
+    @ConfigDescription("Cache ranges of the files read by this node on local disk")
+    public HiveClientConfig setLocalCacheEnabled(boolean localCacheEnabled)
+    {
+        this.localCacheEnabled = localCacheEnabled;
+        return this;
+    }
+
+    public File getLocalCacheDirectory()
+    {
+        return localCacheDirectory;
+    }
+
+    @Config("hive.local-cache.directory")
+    @ConfigDescription("Local directory of the file range cache, which is cleared on startup and must not be shared with other catalogs")
+    public HiveClientConfig setLocalCacheDirectory(File localCacheDirectory)
+    {
+        this.localCacheDirectory = localCacheDirectory;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getLocalCacheMaxSize()
+    {
+        return localCacheMaxSize;
+    }
+
+    @Config("hive.local-cache.max-size")
+    public HiveClientConfig setLocalCacheMaxSize(DataSize localCacheMaxSize)
+    {
+        this.localCacheMaxSize = localCacheMaxSize;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getLocalCacheRangeSize()
+    {
+        return localCacheRangeSize;
+    }
+
+    @Config("hive.local-cache.range-size")
+    @ConfigDescription("Size of the file ranges stored in the local cache")
+    public HiveClientConfig setLocalCacheRangeSize(DataSize localCacheRangeSize)
+    {
+        this.localCacheRangeSize = localCacheRangeSize;
+        return this;
+    }
+
+    public boolean isLocalCacheAffinityEnabled()
+    {
+        return localCacheAffinityEnabled;
+    }
+
+    @Config("hive.local-cache.affinity-enabled")
+    @ConfigDescription("Prefer scheduling splits of a file range on the same node, so the range is read from its local cache")
+    public HiveClientConfig setLocalCacheAffinityEnabled(boolean localCacheAffinityEnabled)
+    {
+        this.localCacheAffinityEnabled = localCacheAffinityEnabled;
+        return this;
+    }
 }
@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.hive;
 
+import com.facebook.presto.hive.cache.FileRangeCacheStats;
 import com.facebook.presto.hive.util.HadoopApiStats;
 import com.google.common.net.HostAndPort;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -62,10 +63,15 @@ public class HiveClientModule
                 .as(generatedNameOf(CachingHiveMetastore.class, connectorId));
         binder.bind(HadoopApiStats.class).in(Scopes.SINGLETON);
         newExporter(binder).export(HadoopApiStats.class).as(generatedNameOf(HadoopApiStats.class));
+        binder.bind(FileRangeCacheStats.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(FileRangeCacheStats.class).as(generatedNameOf(FileRangeCacheStats.class, connectorId));
 
         binder.bind(DiscoveryLocatedHiveCluster.class).in(Scopes.SINGLETON);
         binder.bind(HiveMetastoreClientFactory.class).in(Scopes.SINGLETON);
         discoveryBinder(binder).bindSelector("hive-metastore");
+
+        binder.bind(HiveCacheAffinity.class).in(Scopes.SINGLETON);
+        discoveryBinder(binder).bindSelector("presto");
     }
 
     @ForHiveClient
@@ -18,6 +18,7 @@ import com.facebook.presto.spi.ConnectorFactory;
 import com.facebook.presto.spi.classloader.ClassLoaderSafeConnectorHandleResolver;
 import com.facebook.presto.spi.classloader.ClassLoaderSafeConnectorMetadata;
 import com.facebook.presto.spi.classloader.ClassLoaderSafeConnectorOutputHandleResolver;
+import com.facebook.presto.spi.classloader.ClassLoaderSafeConnectorPageSourceProvider;
 import com.facebook.presto.spi.classloader.ClassLoaderSafeConnectorRecordSetProvider;
 import com.facebook.presto.spi.classloader.ClassLoaderSafeConnectorRecordSinkProvider;
 import com.facebook.presto.spi.classloader.ClassLoaderSafeConnectorSplitManager;
@@ -98,6 +99,7 @@ public class HiveConnectorFactory
                     new ClassLoaderSafeConnectorMetadata(hiveClient, classLoader),
                     new ClassLoaderSafeConnectorSplitManager(hiveClient, classLoader),
                     new ClassLoaderSafeConnectorRecordSetProvider(hiveClient, classLoader),
+                    new ClassLoaderSafeConnectorPageSourceProvider(hiveClient, classLoader),
                     new ClassLoaderSafeConnectorRecordSinkProvider(hiveClient, classLoader),
                     new ClassLoaderSafeConnectorHandleResolver(hiveClient, classLoader),
                     new ClassLoaderSafeConnectorOutputHandleResolver(hiveClient, classLoader));
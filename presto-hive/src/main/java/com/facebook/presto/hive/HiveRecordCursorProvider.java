@@ -15,11 +15,12 @@ package com.facebook.presto.hive;
 
 import com.facebook.presto.spi.RecordCursor;
 import com.google.common.base.Optional;
-import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 
 import java.util.List;
 
 public interface HiveRecordCursorProvider
 {
-    public Optional<RecordCursor> createHiveRecordCursor(HiveSplit split, RecordReader<?, ?> recordReader, List<HiveColumnHandle> columns);
+    public Optional<RecordCursor> createHiveRecordCursor(HiveSplit split, Configuration configuration, Path path, List<HiveColumnHandle> columns);
 }
@@ -21,11 +21,15 @@ public final class HiveRecordCursorProviders
 {
     private HiveRecordCursorProviders() {}
 
-    public static List<HiveRecordCursorProvider> getDefaultProviders()
+    public static List<HiveRecordCursorProvider> getDefaultProviders(boolean optimizedReaderEnabled)
     {
-        return ImmutableList.of(
-                new ColumnarTextHiveRecordCursorProvider(),
-                new ColumnarBinaryHiveRecordCursorProvider(),
-                new GenericHiveRecordCursorProvider());
+        ImmutableList.Builder<HiveRecordCursorProvider> providers = ImmutableList.builder();
+        if (optimizedReaderEnabled) {
+            providers.add(new RcFileHiveRecordCursorProvider());
+        }
+        providers.add(new ColumnarTextHiveRecordCursorProvider());
+        providers.add(new ColumnarBinaryHiveRecordCursorProvider());
+        providers.add(new GenericHiveRecordCursorProvider());
+        return providers.build();
     }
 }
@@ -30,25 +30,15 @@ import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
-import org.apache.hadoop.mapred.FileSplit;
-import org.apache.hadoop.mapred.InputFormat;
-import org.apache.hadoop.mapred.JobConf;
-import org.apache.hadoop.mapred.RecordReader;
-import org.apache.hadoop.mapred.Reporter;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
-import java.util.concurrent.Callable;
 
 import static com.facebook.presto.hive.HiveColumnHandle.hiveColumnIndexGetter;
 import static com.facebook.presto.hive.HiveColumnHandle.isPartitionKeyPredicate;
 import static com.facebook.presto.hive.HiveColumnHandle.nativeTypeGetter;
-import static com.facebook.presto.hive.HiveUtil.getInputFormat;
-import static com.facebook.presto.hive.HiveUtil.getInputFormatName;
 import static com.facebook.presto.hive.HiveUtil.getTableObjectInspector;
-import static com.facebook.presto.hive.RetryDriver.retry;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Predicates.not;
@@ -91,7 +81,7 @@ public class HiveRecordSet
 
         Path path = new Path(split.getPath());
         this.configuration = hdfsEnvironment.getConfiguration(path);
-        this.wrappedPath = hdfsEnvironment.wrapInputPath(path);
+        this.wrappedPath = hdfsEnvironment.wrapInputPath(path, split.getFileSize(), split.getFileModifiedTime());
 
         String nullSequence = split.getSchema().getProperty(SERIALIZATION_NULL_FORMAT);
         checkState(nullSequence == null || nullSequence.equals("\\N"), "Only '\\N' supported as null specifier, was '%s'", nullSequence);
@@ -109,10 +99,8 @@ public class HiveRecordSet
         // Tell hive the columns we would like to read, this lets hive optimize reading column oriented files
         ColumnProjectionUtils.setReadColumnIDs(configuration, readHiveColumnIndexes);
 
-        RecordReader<?, ?> recordReader = createRecordReader(split, configuration, wrappedPath);
-
         for (HiveRecordCursorProvider provider : cursorProviders) {
-            Optional<RecordCursor> cursor = provider.createHiveRecordCursor(split, recordReader, columns);
+            Optional<RecordCursor> cursor = provider.createHiveRecordCursor(split, configuration, wrappedPath, columns);
             if (cursor.isPresent()) {
                 return cursor.get();
             }
@@ -140,52 +128,4 @@ public class HiveRecordSet
 
         throw new IllegalStateException("Table doesn't have any PRIMITIVE columns");
     }
-
-    private static RecordReader<?, ?> createRecordReader(HiveSplit split, Configuration configuration, Path wrappedPath)
-    {
-        final InputFormat<?, ?> inputFormat = getInputFormat(configuration, split.getSchema(), true);
-        final JobConf jobConf = new JobConf(configuration);
-        final FileSplit fileSplit = createFileSplit(wrappedPath, split.getStart(), split.getLength());
-
-        // propagate serialization configuration to getRecordReader
-        for (String name : split.getSchema().stringPropertyNames()) {
-            if (name.startsWith("serialization.")) {
-                jobConf.set(name, split.getSchema().getProperty(name));
-            }
-        }
-
-        try {
-            return retry().stopOnIllegalExceptions().run("createRecordReader", new Callable<RecordReader<?, ?>>()
-            {
-                @Override
-                public RecordReader<?, ?> call()
-                        throws IOException
-                {
-                    return inputFormat.getRecordReader(fileSplit, jobConf, Reporter.NULL);
-                }
-            });
-        }
-        catch (Exception e) {
-            throw new RuntimeException(String.format("Error opening Hive split %s (offset=%s, length=%s) using %s: %s",
-                    split.getPath(),
-                    split.getStart(),
-                    split.getLength(),
-                    getInputFormatName(split.getSchema()),
-                    e.getMessage()),
-                    e);
-        }
-    }
-
-    private static FileSplit createFileSplit(final Path path, long start, long length)
-    {
-        return new FileSplit(path, start, length, (String[]) null)
-        {
-            @Override
-            public Path getPath()
-            {
-                // make sure our original path object is returned
-                return path;
-            }
-        };
-    }
 }
@@ -34,6 +34,8 @@ public class HiveSplit
     private final String path;
     private final long start;
     private final long length;
+    private final long fileSize;
+    private final long fileModifiedTime;
     private final Properties schema;
     private final List<HivePartitionKey> partitionKeys;
     private final List<HostAddress> addresses;
@@ -50,6 +52,8 @@ public class HiveSplit
             @JsonProperty("path") String path,
             @JsonProperty("start") long start,
             @JsonProperty("length") long length,
+            @JsonProperty("fileSize") long fileSize,
+            @JsonProperty("fileModifiedTime") long fileModifiedTime,
             @JsonProperty("schema") Properties schema,
             @JsonProperty("partitionKeys") List<HivePartitionKey> partitionKeys,
             @JsonProperty("addresses") List<HostAddress> addresses)
@@ -57,6 +61,7 @@ public class HiveSplit
         checkNotNull(clientId, "clientId is null");
         checkArgument(start >= 0, "start must be positive");
         checkArgument(length >= 0, "length must be positive");
+        checkArgument(fileSize >= 0, "fileSize must be positive");
         checkNotNull(database, "database is null");
         checkNotNull(table, "table is null");
         checkNotNull(partitionName, "partitionName is null");
@@ -72,6 +77,8 @@ public class HiveSplit
         this.path = path;
         this.start = start;
         this.length = length;
+        this.fileSize = fileSize;
+        this.fileModifiedTime = fileModifiedTime;
         this.schema = schema;
         this.partitionKeys = ImmutableList.copyOf(partitionKeys);
         this.addresses = ImmutableList.copyOf(addresses);
@@ -119,6 +126,18 @@ public class HiveSplit
         return length;
     }
 
+    @JsonProperty
+    public long getFileSize()
+    {
+        return fileSize;
+    }
+
+    @JsonProperty
+    public long getFileModifiedTime()
+    {
+        return fileModifiedTime;
+    }
+
     @JsonProperty
     public Properties getSchema()
     {
@@ -108,6 +108,7 @@ class HiveSplitSourceProvider
     private final ClassLoader classLoader;
     private final DataSize maxSplitSize;
     private final int maxPartitionBatchSize;
+    private final Optional<HiveCacheAffinity> cacheAffinity;
 
     HiveSplitSourceProvider(String connectorId,
             Table table,
@@ -120,7 +121,8 @@ class HiveSplitSourceProvider
             HdfsEnvironment hdfsEnvironment,
             HadoopApiStats hadoopApiStats,
             Executor executor,
-            int maxPartitionBatchSize)
+            int maxPartitionBatchSize,
+            Optional<HiveCacheAffinity> cacheAffinity)
     {
         this.connectorId = connectorId;
         this.table = table;
@@ -134,6 +136,7 @@ class HiveSplitSourceProvider
         this.hdfsEnvironment = hdfsEnvironment;
         this.hadoopApiStats = hadoopApiStats;
         this.executor = executor;
+        this.cacheAffinity = cacheAffinity;
         this.classLoader = Thread.currentThread().getContextClassLoader();
     }
 
@@ -346,9 +349,11 @@ class HiveSplitSourceProvider
                             file.getPath().toString(),
                             blockLocation.getOffset() + chunkOffset,
                             chunkLength,
+                            file.getLen(),
+                            file.getModificationTime(),
                             schema,
                             partitionKeys,
-                            addresses));
+                            withCacheAffinity(file, blockLocation.getOffset() + chunkOffset, addresses)));
 
                     chunkOffset += chunkLength;
                 }
@@ -369,13 +374,23 @@ class HiveSplitSourceProvider
                     file.getPath().toString(),
                     start,
                     length,
+                    file.getLen(),
+                    file.getModificationTime(),
                     schema,
                     partitionKeys,
-                    addresses));
+                    withCacheAffinity(file, start, addresses)));
         }
         return builder.build();
     }
 
+    private List<HostAddress> withCacheAffinity(FileStatus file, long start, List<HostAddress> addresses)
+    {
+        if (!cacheAffinity.isPresent()) {
+            return addresses;
+        }
+        return cacheAffinity.get().getAddresses(file.getPath().toString(), start, addresses);
+    }
+
     private static List<HostAddress> toHostAddress(String[] hosts)
     {
         ImmutableList.Builder<HostAddress> builder = ImmutableList.builder();
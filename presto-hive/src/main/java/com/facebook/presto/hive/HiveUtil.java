@@ -28,19 +28,25 @@ import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.InputFormat;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapred.TextInputFormat;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.DateTimeFormatterBuilder;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 
+import static com.facebook.presto.hive.RetryDriver.retry;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.apache.hadoop.hive.metastore.MetaStoreUtils.getDeserializer;
@@ -155,4 +161,52 @@ final class HiveUtil
     {
         return getTableObjectInspector(getTableMetadata(table)).getAllStructFieldRefs();
     }
+
+    static RecordReader<?, ?> createRecordReader(HiveSplit split, Configuration configuration, Path path)
+    {
+        final InputFormat<?, ?> inputFormat = getInputFormat(configuration, split.getSchema(), true);
+        final JobConf jobConf = new JobConf(configuration);
+        final FileSplit fileSplit = createFileSplit(path, split.getStart(), split.getLength());
+
+        // propagate serialization configuration to getRecordReader
+        for (String name : split.getSchema().stringPropertyNames()) {
+            if (name.startsWith("serialization.")) {
+                jobConf.set(name, split.getSchema().getProperty(name));
+            }
+        }
+
+        try {
+            return retry().stopOnIllegalExceptions().run("createRecordReader", new Callable<RecordReader<?, ?>>()
+            {
+                @Override
+                public RecordReader<?, ?> call()
+                        throws IOException
+                {
+                    return inputFormat.getRecordReader(fileSplit, jobConf, Reporter.NULL);
+                }
+            });
+        }
+        catch (Exception e) {
+            throw new RuntimeException(String.format("Error opening Hive split %s (offset=%s, length=%s) using %s: %s",
+                    split.getPath(),
+                    split.getStart(),
+                    split.getLength(),
+                    getInputFormatName(split.getSchema()),
+                    e.getMessage()),
+                    e);
+        }
+    }
+
+    private static FileSplit createFileSplit(final Path path, long start, long length)
+    {
+        return new FileSplit(path, start, length, (String[]) null)
+        {
+            @Override
+            public Path getPath()
+            {
+                // make sure our original path object is returned
+                return path;
+            }
+        };
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Bounded pool of the read-ahead buffers shared by the input streams of a
+ * {@link PrestoS3FileSystem}.
+ */
+@ThreadSafe
+class PrestoS3BufferPool
+{
+    private final int bufferSize;
+    private final int maxBuffers;
+
+    @GuardedBy("this")
+    private final Queue<byte[]> freeBuffers = new ArrayDeque<>();
+    @GuardedBy("this")
+    private int allocatedBuffers;
+
+    public PrestoS3BufferPool(int bufferSize, int maxBuffers)
+    {
+        checkArgument(bufferSize > 0, "bufferSize must be positive");
+        checkArgument(maxBuffers >= 0, "maxBuffers is negative");
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+    }
+
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    /**
+     * Returns a buffer, or null if all buffers of the pool are in use.
+     */
+    public synchronized byte[] tryAllocate()
+    {
+        byte[] buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocatedBuffers < maxBuffers) {
+            allocatedBuffers++;
+            return new byte[bufferSize];
+        }
+        return null;
+    }
+
+    public synchronized void release(byte[] buffer)
+    {
+        checkArgument(buffer.length == bufferSize, "buffer was not allocated by this pool");
+        checkState(freeBuffers.size() < allocatedBuffers, "more buffers released than allocated");
+        freeBuffers.add(buffer);
+    }
+
+    public synchronized int getBuffersInUse()
+    {
+        return allocatedBuffers - freeBuffers.size();
+    }
+}
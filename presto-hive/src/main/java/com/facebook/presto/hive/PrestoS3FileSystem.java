@@ -28,10 +28,13 @@ import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.facebook.presto.hive.PrestoS3PrefetchingInputStream.ObjectRange;
 import com.google.common.base.Function;
 import com.google.common.collect.AbstractSequentialIterator;
 import com.google.common.collect.Iterators;
+import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.airlift.log.Logger;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
@@ -40,7 +43,6 @@ import org.apache.hadoop.fs.BlockLocation;
 import org.apache.hadoop.fs.BufferedFSInputStream;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
-import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocatedFileStatus;
@@ -51,25 +53,30 @@ import org.apache.hadoop.fs.s3.S3Credentials;
 import org.apache.hadoop.util.Progressable;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.base.Throwables.propagate;
 import static com.google.common.collect.Iterables.toArray;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.nio.file.Files.createDirectories;
 import static java.nio.file.Files.createTempFile;
 
@@ -81,17 +88,24 @@ public class PrestoS3FileSystem
     public static final String S3_MAX_CLIENT_RETRIES = "presto.s3.max-client-retries";
     public static final String S3_CONNECT_TIMEOUT = "presto.s3.connect-timeout";
     public static final String S3_STAGING_DIRECTORY = "presto.s3.staging-directory";
+    public static final String S3_READ_AHEAD_PART_SIZE = "presto.s3.read-ahead.part-size";
+    public static final String S3_READ_AHEAD_WINDOW = "presto.s3.read-ahead.window";
+    public static final String S3_READ_AHEAD_MAX_MEMORY = "presto.s3.read-ahead.max-memory";
 
     private static final Logger log = Logger.get(PrestoS3FileSystem.class);
 
     private static final DataSize BLOCK_SIZE = new DataSize(32, MEGABYTE);
-    private static final DataSize MAX_SKIP_SIZE = new DataSize(1, MEGABYTE);
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final String CONTENT_RANGE = "Content-Range";
 
     private URI uri;
     private Path workingDirectory;
     private AmazonS3 s3;
     private File stagingDirectory;
     private int maxClientRetries;
+    private PrestoS3BufferPool readAheadBufferPool;
+    private int readAheadWindowParts;
+    private ExecutorService readAheadExecutor;
 
     @Override
     public void initialize(URI uri, Configuration conf)
@@ -109,6 +123,18 @@ public class PrestoS3FileSystem
         int maxErrorRetries = conf.getInt(S3_MAX_ERROR_RETRIES, defaults.getS3MaxErrorRetries());
         boolean sslEnabled = conf.getBoolean(S3_SSL_ENABLED, defaults.isS3SslEnabled());
         Duration connectTimeout = Duration.valueOf(conf.get(S3_CONNECT_TIMEOUT, defaults.getS3ConnectTimeout().toString()));
+        DataSize readAheadPartSize = DataSize.valueOf(conf.get(S3_READ_AHEAD_PART_SIZE, defaults.getS3ReadAheadPartSize().toString()));
+        DataSize readAheadWindow = DataSize.valueOf(conf.get(S3_READ_AHEAD_WINDOW, defaults.getS3ReadAheadWindow().toString()));
+        DataSize readAheadMaxMemory = DataSize.valueOf(conf.get(S3_READ_AHEAD_MAX_MEMORY, defaults.getS3ReadAheadMaxMemory().toString()));
+
+        int partSize = Ints.checkedCast(readAheadPartSize.toBytes());
+        checkArgument(partSize > 0, "%s must be positive", S3_READ_AHEAD_PART_SIZE);
+        this.readAheadWindowParts = Ints.checkedCast(max(1, readAheadWindow.toBytes() / partSize));
+        this.readAheadBufferPool = new PrestoS3BufferPool(partSize, Ints.checkedCast(readAheadMaxMemory.toBytes() / partSize));
+        this.readAheadExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("presto-s3-read-ahead-" + uri.getAuthority() + "-%d")
+                .build());
 
         ClientConfiguration configuration = new ClientConfiguration();
         configuration.setMaxErrorRetry(maxErrorRetries);
@@ -118,6 +144,20 @@ public class PrestoS3FileSystem
         this.s3 = new AmazonS3Client(getAwsCredentials(uri, conf), configuration);
     }
 
+    @Override
+    public void close()
+            throws IOException
+    {
+        try {
+            super.close();
+        }
+        finally {
+            if (readAheadExecutor != null) {
+                readAheadExecutor.shutdownNow();
+            }
+        }
+    }
+
     @Override
     public URI getUri()
     {
@@ -218,9 +258,15 @@ public class PrestoS3FileSystem
     public FSDataInputStream open(Path path, int bufferSize)
             throws IOException
     {
+        // the object is not requested until the first read, which also returns its length
         return new FSDataInputStream(
                 new BufferedFSInputStream(
-                        new PrestoS3InputStream(s3, uri.getHost(), path, maxClientRetries),
+                        new PrestoS3PrefetchingInputStream(
+                                new S3RangeSource(qualifiedPath(path)),
+                                maxClientRetries,
+                                readAheadBufferPool,
+                                readAheadWindowParts,
+                                readAheadExecutor),
                         bufferSize));
     }
 
@@ -399,156 +445,127 @@ public class PrestoS3FileSystem
         return new BasicAWSCredentials(credentials.getAccessKey(), credentials.getSecretAccessKey());
     }
 
-    private static class PrestoS3InputStream
-            extends FSInputStream
+    private class S3RangeSource
+            implements PrestoS3PrefetchingInputStream.RangeSource
     {
-        private final AmazonS3 s3;
-        private final String host;
         private final Path path;
-        private final int maxClientRetry;
-
-        private boolean closed;
-        private S3ObjectInputStream in;
-        private long position;
+        private final String key;
 
-        public PrestoS3InputStream(AmazonS3 s3, String host, Path path, int maxClientRetry)
+        public S3RangeSource(Path path)
         {
-            this.s3 = checkNotNull(s3, "s3 is null");
-            this.host = checkNotNull(host, "host is null");
             this.path = checkNotNull(path, "path is null");
-
-            checkArgument(maxClientRetry >= 0, "maxClientRetries cannot be negative");
-            this.maxClientRetry = maxClientRetry;
-        }
-
-        @Override
-        public void close()
-                throws IOException
-        {
-            closed = true;
-            closeStream();
+            this.key = keyFromPath(path);
         }
 
         @Override
-        public void seek(long pos)
+        public ObjectRange openRange(long start, long end)
                 throws IOException
         {
-            checkState(!closed, "already closed");
-            checkArgument(pos >= 0, "position is negative: %s", pos);
-
-            if ((in != null) && (pos == position)) {
-                // already at specified position
-                return;
+            S3Object object;
+            try {
+                object = s3.getObject(new GetObjectRequest(uri.getHost(), key).withRange(start, end - 1));
             }
-
-            if ((in != null) && (pos > position)) {
-                // seeking forwards
-                long skip = pos - position;
-                if (skip <= max(in.available(), MAX_SKIP_SIZE.toBytes())) {
-                    // already buffered or seek is small enough
-                    if (in.skip(skip) == skip) {
-                        position = pos;
-                        return;
+            catch (AmazonS3Exception e) {
+                if (e.getStatusCode() == HTTP_RANGE_NOT_SATISFIABLE) {
+                    // the range starts after the end of the object, which has to be requested for its length
+                    ObjectMetadata metadata = getS3ObjectMetadata(path);
+                    if (metadata == null) {
+                        throw new FileNotFoundException("File does not exist: " + path);
                     }
+                    return new ObjectRange(new ByteArrayInputStream(new byte[0]), metadata.getContentLength());
                 }
+                if (e.getStatusCode() == 404) {
+                    throw new FileNotFoundException("File does not exist: " + path);
+                }
+                throw new IOException(e);
+            }
+            catch (AmazonClientException e) {
+                throw new IOException(e);
             }
 
-            // close the stream and open at desired position
-            position = pos;
-            closeStream();
-            openStream();
+            S3ObjectInputStream content = object.getObjectContent();
+            try {
+                ObjectMetadata metadata = object.getObjectMetadata();
+                Object contentRange = metadata.getRawMetadata().get(CONTENT_RANGE);
+                long objectLength;
+                if (contentRange != null) {
+                    objectLength = parseObjectLength(contentRange.toString());
+                }
+                else {
+                    // the range was ignored and the response contains the whole object
+                    objectLength = metadata.getContentLength();
+                    ByteStreams.skipFully(content, min(start, objectLength));
+                }
+                long rangeLength = max(0, min(end, objectLength) - start);
+                return new ObjectRange(new S3RangeInputStream(content, rangeLength), objectLength);
+            }
+            catch (IOException | RuntimeException e) {
+                content.abort();
+                throw e;
+            }
         }
+    }
 
-        @Override
-        public long getPos()
-                throws IOException
+    /**
+     * Returns the length of the whole object from a Content-Range header, such as "bytes 0-99/1234".
+     */
+    private static long parseObjectLength(String contentRange)
+            throws IOException
+    {
+        int slash = contentRange.lastIndexOf('/');
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Invalid Content-Range header: " + contentRange, e);
+        }
+    }
+
+    private static class S3RangeInputStream
+            extends FilterInputStream
+    {
+        private final S3ObjectInputStream in;
+        private long remaining;
+
+        public S3RangeInputStream(S3ObjectInputStream in, long length)
         {
-            return position;
+            super(checkNotNull(in, "in is null"));
+            this.in = in;
+            this.remaining = length;
         }
 
         @Override
         public int read()
                 throws IOException
         {
-            IOException exception = null;
-            for (int i = 0; i <= maxClientRetry; i++) {
-                try {
-                    openStream();
-                    int b = in.read();
-                    if (b != -1) {
-                        position++;
-                    }
-                    return b;
-                }
-                catch (IOException e) {
-                    log.debug("Failed reading from S3 on attempt %s: %s", i + 1, e.getMessage());
-                    exception = e;
-                    closeStream();
-                }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
             }
-            throw exception;
+            return b;
         }
 
         @Override
         public int read(byte[] b, int off, int len)
                 throws IOException
         {
-            IOException exception = null;
-            for (int i = 0; i <= maxClientRetry; i++) {
-                try {
-                    openStream();
-                    int n = in.read(b, off, len);
-                    if (n != -1) {
-                        position += n;
-                    }
-                    return n;
-                }
-                catch (IOException e) {
-                    log.debug("Failed reading from S3 on attempt %s: %s", i + 1, e.getMessage());
-                    exception = e;
-                    closeStream();
-                }
+            int n = super.read(b, off, len);
+            if (n != -1) {
+                remaining -= n;
             }
-            throw exception;
+            return n;
         }
 
         @Override
-        public boolean seekToNewSource(long targetPos)
-                throws IOException
-        {
-            return false;
-        }
-
-        private S3Object getS3Object(Path path, long start)
-                throws IOException
-        {
-            try {
-                return s3.getObject(new GetObjectRequest(host, keyFromPath(path))
-                        .withRange(start, Long.MAX_VALUE));
-            }
-            catch (AmazonClientException e) {
-                throw new IOException(e);
-            }
-        }
-
-        private void openStream()
+        public void close()
                 throws IOException
         {
-            if (in == null) {
-                in = getS3Object(path, position).getObjectContent();
+            if (remaining > 0) {
+                // reading the rest of the response would be slower than opening a new connection
+                in.abort();
             }
-        }
-
-        private void closeStream()
-                throws IOException
-        {
-            if (in != null) {
-                try {
-                    in.abort();
-                }
-                catch (IOException ignored) {
-                }
-                in = null;
+            else {
+                in.close();
             }
         }
     }
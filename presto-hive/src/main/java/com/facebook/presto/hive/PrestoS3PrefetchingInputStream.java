@@ -0,0 +1,514 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.log.Logger;
+import org.apache.hadoop.fs.FSInputStream;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Input stream that reads an S3 object with several concurrent ranged GET requests
+ * ahead of the read position.  The read-ahead parts use buffers from a bounded pool
+ * shared by the file system; the part at the read position is always read, even if
+ * the pool is exhausted.
+ * <p/>
+ * Repeated seeks outside of the read-ahead window switch the stream to reading
+ * the requested ranges, and a long enough sequential run switches it back.  In
+ * that mode a small read fetches a few more bytes than requested, so nearby small
+ * reads are served by the same request.
+ * <p/>
+ * The length of the object is taken from the first response instead of being
+ * requested when the stream is opened.
+ */
+@NotThreadSafe
+class PrestoS3PrefetchingInputStream
+        extends FSInputStream
+{
+    private static final Logger log = Logger.get(PrestoS3PrefetchingInputStream.class);
+
+    // consecutive seeks outside of the read-ahead window that switch to random access
+    private static final int RANDOM_ACCESS_SEEKS = 2;
+
+    // minimum size of a request in random access mode
+    private static final int RANDOM_ACCESS_READ_SIZE = 64 * 1024;
+
+    private static final long UNKNOWN_LENGTH = -1;
+
+    interface RangeSource
+    {
+        /**
+         * Opens the bytes from {@code start} (inclusive) to {@code end} (exclusive).  The range
+         * ends early at the end of the object, and is empty if it starts after the end.
+         */
+        ObjectRange openRange(long start, long end)
+                throws IOException;
+    }
+
+    static class ObjectRange
+            implements Closeable
+    {
+        private final InputStream input;
+        private final long objectLength;
+
+        /**
+         * @param input the bytes of the range; closing it before all bytes have been read aborts the request
+         * @param objectLength the length of the whole object
+         */
+        public ObjectRange(InputStream input, long objectLength)
+        {
+            this.input = checkNotNull(input, "input is null");
+            checkArgument(objectLength >= 0, "objectLength is negative");
+            this.objectLength = objectLength;
+        }
+
+        public InputStream getInput()
+        {
+            return input;
+        }
+
+        public long getObjectLength()
+        {
+            return objectLength;
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            input.close();
+        }
+    }
+
+    private final RangeSource source;
+    private final int maxClientRetries;
+    private final PrestoS3BufferPool bufferPool;
+    private final int partSize;
+    private final int windowParts;
+    private final Executor executor;
+
+    // set by the first response, which may be read by a read-ahead thread
+    private volatile long length = UNKNOWN_LENGTH;
+
+    // contiguous parts of the read-ahead window, the first part contains the position
+    private final Deque<Part> parts = new ArrayDeque<>();
+    private final byte[] singleByte = new byte[1];
+    private byte[] privateBuffer;
+
+    // bytes of the last request in random access mode
+    private final int randomAccessReadSize;
+    private byte[] randomAccessBuffer;
+    private long randomAccessBufferStart;
+    private int randomAccessBufferLength;
+
+    private long position;
+    private boolean readStarted;
+    private boolean randomAccess;
+    private int randomSeeks;
+    private long sequentialBytes;
+    private boolean closed;
+
+    public PrestoS3PrefetchingInputStream(RangeSource source, int maxClientRetries, PrestoS3BufferPool bufferPool, int windowParts, Executor executor)
+    {
+        this.source = checkNotNull(source, "source is null");
+        checkArgument(maxClientRetries >= 0, "maxClientRetries cannot be negative");
+        this.maxClientRetries = maxClientRetries;
+        this.bufferPool = checkNotNull(bufferPool, "bufferPool is null");
+        this.partSize = bufferPool.getBufferSize();
+        checkArgument(windowParts >= 1, "windowParts must be at least 1");
+        this.windowParts = windowParts;
+        this.executor = checkNotNull(executor, "executor is null");
+        this.randomAccessReadSize = min(partSize, RANDOM_ACCESS_READ_SIZE);
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        releaseParts();
+    }
+
+    @Override
+    public void seek(long pos)
+            throws IOException
+    {
+        checkState(!closed, "already closed");
+        checkArgument(pos >= 0, "position is negative: %s", pos);
+
+        if (pos == position) {
+            return;
+        }
+        position = pos;
+
+        if (randomAccess) {
+            sequentialBytes = 0;
+            return;
+        }
+
+        if (parts.isEmpty()) {
+            if (!readStarted) {
+                // initial seek to the start of the split
+                return;
+            }
+        }
+        else if ((pos >= parts.peekFirst().getStart()) && (pos < parts.peekLast().getEnd())) {
+            // the position is already read or being read
+            randomSeeks = 0;
+            return;
+        }
+
+        // the read-ahead data is useless after leaving the window
+        releaseParts();
+        randomSeeks++;
+        if (randomSeeks >= RANDOM_ACCESS_SEEKS) {
+            log.debug("Switching to random access after %s seeks", randomSeeks);
+            randomAccess = true;
+            sequentialBytes = 0;
+        }
+    }
+
+    @Override
+    public long getPos()
+    {
+        return position;
+    }
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        int n = read(singleByte, 0, 1);
+        if (n == -1) {
+            return -1;
+        }
+        return singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+            throws IOException
+    {
+        checkState(!closed, "already closed");
+        checkPositionIndexes(offset, offset + length, buffer.length);
+
+        if (length == 0) {
+            return 0;
+        }
+        if ((this.length != UNKNOWN_LENGTH) && (position >= this.length)) {
+            return -1;
+        }
+        readStarted = true;
+
+        int n;
+        if (randomAccess) {
+            n = readRandomAccess(buffer, offset, length);
+        }
+        else {
+            Part part = currentPart();
+            int partOffset = (int) (position - part.getStart());
+            n = min(length, part.getLength() - partOffset);
+            System.arraycopy(part.getBuffer(), partOffset, buffer, offset, n);
+        }
+        if (n <= 0) {
+            // the position is at or after the end of the object
+            return -1;
+        }
+
+        if (randomAccess) {
+            sequentialBytes += n;
+            if (sequentialBytes >= partSize) {
+                log.debug("Switching to read-ahead after %s sequential bytes", sequentialBytes);
+                randomAccess = false;
+                randomSeeks = 0;
+            }
+        }
+
+        position += n;
+        return n;
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos)
+    {
+        return false;
+    }
+
+    private int readRandomAccess(byte[] buffer, int offset, int length)
+            throws IOException
+    {
+        long bufferEnd = randomAccessBufferStart + randomAccessBufferLength;
+        if ((position < randomAccessBufferStart) || (position >= bufferEnd)) {
+            if (length >= randomAccessReadSize) {
+                return readRange(position, buffer, offset, length, null);
+            }
+
+            // read more than requested, so the following nearby reads do not need a request
+            if (randomAccessBuffer == null) {
+                randomAccessBuffer = new byte[randomAccessReadSize];
+            }
+            randomAccessBufferLength = 0;
+            randomAccessBufferStart = position;
+            randomAccessBufferLength = readRange(position, randomAccessBuffer, 0, randomAccessReadSize, null);
+        }
+
+        int bufferOffset = (int) (position - randomAccessBufferStart);
+        int n = min(length, randomAccessBufferLength - bufferOffset);
+        System.arraycopy(randomAccessBuffer, bufferOffset, buffer, offset, n);
+        return n;
+    }
+
+    /**
+     * Returns the part containing the position, after starting the requests for
+     * the rest of the window.
+     */
+    private Part currentPart()
+            throws IOException
+    {
+        while (!parts.isEmpty() && parts.peekFirst().getEnd() <= position) {
+            release(parts.removeFirst());
+        }
+        if (!parts.isEmpty() && parts.peekFirst().getStart() > position) {
+            releaseParts();
+        }
+
+        if (parts.isEmpty()) {
+            parts.addLast(startPart(position, true));
+        }
+        if (length == UNKNOWN_LENGTH) {
+            // the length of the object is known after the first response, and bounds the read-ahead
+            awaitData(parts.peekFirst());
+        }
+        while (parts.size() < windowParts && parts.peekLast().getEnd() < length) {
+            Part part = startPart(parts.peekLast().getEnd(), false);
+            if (part == null) {
+                // no buffers available, read ahead again on the next read
+                break;
+            }
+            parts.addLast(part);
+        }
+
+        Part part = parts.peekFirst();
+        awaitData(part);
+        return part;
+    }
+
+    private void awaitData(Part part)
+            throws IOException
+    {
+        try {
+            part.awaitData();
+        }
+        catch (IOException e) {
+            releaseParts();
+            throw e;
+        }
+    }
+
+    private Part startPart(long start, boolean required)
+    {
+        byte[] buffer = bufferPool.tryAllocate();
+        boolean pooled = (buffer != null);
+        if (buffer == null) {
+            if (!required) {
+                return null;
+            }
+            buffer = (privateBuffer != null) ? privateBuffer : new byte[partSize];
+            privateBuffer = null;
+        }
+
+        int partLength = (length == UNKNOWN_LENGTH) ? partSize : (int) min(partSize, length - start);
+        Part part = new Part(start, partLength, buffer, pooled);
+        executor.execute(part);
+        return part;
+    }
+
+    private void releaseParts()
+    {
+        while (!parts.isEmpty()) {
+            release(parts.removeFirst());
+        }
+    }
+
+    private void release(Part part)
+    {
+        // the buffer of a part that is still being read is released when the read stops
+        if (part.abandon()) {
+            if (part.isPooled()) {
+                bufferPool.release(part.getBuffer());
+            }
+            else {
+                privateBuffer = part.getBuffer();
+            }
+        }
+    }
+
+    /**
+     * Reads the bytes of a range, which ends early at the end of the object.
+     *
+     * @return the number of bytes read
+     */
+    private int readRange(long start, byte[] buffer, int offset, int length, @Nullable Part part)
+            throws IOException
+    {
+        if (this.length != UNKNOWN_LENGTH) {
+            length = (int) min(length, max(0, this.length - start));
+        }
+
+        int read = 0;
+        int attempt = 0;
+        while (read < length) {
+            try (ObjectRange range = source.openRange(start + read, start + length)) {
+                if (this.length == UNKNOWN_LENGTH) {
+                    this.length = range.getObjectLength();
+                    length = (int) min(length, max(0, this.length - start));
+                }
+
+                InputStream in = range.getInput();
+                while (read < length) {
+                    if ((part != null) && part.isAbandoned()) {
+                        return read;
+                    }
+                    int n = in.read(buffer, offset + read, length - read);
+                    if (n == -1) {
+                        throw new EOFException(String.format("Unexpected end of S3 object at position %s", start + read));
+                    }
+                    read += n;
+                }
+            }
+            catch (FileNotFoundException e) {
+                throw e;
+            }
+            catch (IOException e) {
+                attempt++;
+                if (attempt > maxClientRetries) {
+                    throw e;
+                }
+                log.debug("Failed reading from S3 on attempt %s: %s", attempt, e.getMessage());
+            }
+        }
+        return read;
+    }
+
+    private class Part
+            implements Runnable
+    {
+        private final long start;
+        private final byte[] buffer;
+        private final boolean pooled;
+        private final SettableFuture<?> done = SettableFuture.create();
+
+        // only shortened when the part ends at the end of the object, before the data is available
+        private volatile int length;
+
+        @GuardedBy("this")
+        private boolean finished;
+        @GuardedBy("this")
+        private boolean abandoned;
+
+        private Part(long start, int length, byte[] buffer, boolean pooled)
+        {
+            this.start = start;
+            this.length = length;
+            this.buffer = buffer;
+            this.pooled = pooled;
+        }
+
+        public long getStart()
+        {
+            return start;
+        }
+
+        public long getEnd()
+        {
+            return start + length;
+        }
+
+        public int getLength()
+        {
+            return length;
+        }
+
+        public byte[] getBuffer()
+        {
+            return buffer;
+        }
+
+        public boolean isPooled()
+        {
+            return pooled;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                length = readRange(start, buffer, 0, length, this);
+                done.set(null);
+            }
+            catch (Throwable e) {
+                done.setException(e);
+            }
+            finally {
+                synchronized (this) {
+                    finished = true;
+                    if (abandoned && pooled) {
+                        bufferPool.release(buffer);
+                    }
+                }
+            }
+        }
+
+        public void awaitData()
+                throws IOException
+        {
+            Futures.get(done, IOException.class);
+        }
+
+        public synchronized boolean isAbandoned()
+        {
+            return abandoned;
+        }
+
+        /**
+         * Stops the read of this part.
+         *
+         * @return true if the buffer is no longer used by the read
+         */
+        public synchronized boolean abandon()
+        {
+            abandoned = true;
+            return finished;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.spi.ColumnType;
+import com.facebook.presto.spi.ColumnVector;
+import com.facebook.presto.spi.ColumnarPage;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static com.facebook.presto.hive.HiveColumnHandle.nativeTypeGetter;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Iterables.transform;
+
+/**
+ * Returns every row group of an RCFile split as one page, so the values of a
+ * column are handed to the engine as a whole instead of a row at a time.
+ */
+class RcFileHivePageSource
+        implements ConnectorPageSource
+{
+    private final RcFileHiveRecordCursor cursor;
+    private final List<ColumnType> columnTypes;
+    private boolean finished;
+
+    public RcFileHivePageSource(RcFileHiveRecordCursor cursor, List<HiveColumnHandle> columns)
+    {
+        this.cursor = checkNotNull(cursor, "cursor is null");
+        this.columnTypes = ImmutableList.copyOf(transform(checkNotNull(columns, "columns is null"), nativeTypeGetter()));
+    }
+
+    @Override
+    public List<ColumnType> getColumnTypes()
+    {
+        return columnTypes;
+    }
+
+    @Override
+    public long getTotalBytes()
+    {
+        return cursor.getTotalBytes();
+    }
+
+    @Override
+    public long getCompletedBytes()
+    {
+        return cursor.getCompletedBytes();
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return finished;
+    }
+
+    @Override
+    public ColumnarPage getNextPage()
+    {
+        if (finished) {
+            return null;
+        }
+        if (!cursor.advanceRowGroup()) {
+            finished = true;
+            return null;
+        }
+
+        ImmutableList.Builder<ColumnVector> columns = ImmutableList.builder();
+        for (int field = 0; field < columnTypes.size(); field++) {
+            columns.add(cursor.getRowGroupColumn(field));
+        }
+        return new ColumnarPage(cursor.getRowGroupRowCount(), columns.build());
+    }
+
+    @Override
+    public void close()
+    {
+        finished = true;
+        cursor.close();
+    }
+}
@@ -0,0 +1,681 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.hive.rcfile.RcFileReader;
+import com.facebook.presto.spi.ColumnType;
+import com.facebook.presto.spi.ColumnVector;
+import com.facebook.presto.spi.StringRecordCursor;
+import com.facebook.presto.spi.StringSink;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.facebook.presto.hive.shaded.org.apache.commons.codec.binary.Base64;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.hive.HiveBooleanParser.isFalse;
+import static com.facebook.presto.hive.HiveBooleanParser.isTrue;
+import static com.facebook.presto.hive.HiveUtil.parseHiveTimestamp;
+import static com.facebook.presto.hive.NumberParser.parseDouble;
+import static com.facebook.presto.hive.NumberParser.parseLong;
+import static com.facebook.presto.spi.ColumnVector.booleanVector;
+import static com.facebook.presto.spi.ColumnVector.doubleVector;
+import static com.facebook.presto.spi.ColumnVector.longVector;
+import static com.facebook.presto.spi.ColumnVector.stringVector;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Maps.uniqueIndex;
+
+/**
+ * Record cursor over an {@link RcFileReader}.  The cells of a column are decoded
+ * into primitive arrays for the whole row group the first time the column is
+ * accessed, and string values reference the uncompressed column data in place.
+ * Supports the primitive types of the columnar text and binary SerDes.
+ * <p/>
+ * {@link RcFileHivePageSource} reads whole row groups through
+ * {@link #advanceRowGroup()} and {@link #getRowGroupColumn(int)} instead of
+ * advancing positions.
+ */
+class RcFileHiveRecordCursor
+        implements StringRecordCursor
+{
+    private static final byte HIVE_EMPTY_STRING_BYTE = (byte) 0xbf;
+
+    private final RcFileReader reader;
+    private final boolean binarySerDe;
+
+    @SuppressWarnings("FieldCanBeLocal") // include names for debugging
+    private final String[] names;
+    private final ColumnType[] types;
+    private final HiveType[] hiveTypes;
+    private final int[] hiveColumnIndexes;
+    private final boolean[] isPartitionColumn;
+
+    // partition key values
+    private final boolean[] partitionBooleans;
+    private final long[] partitionLongs;
+    private final double[] partitionDoubles;
+    private final byte[][] partitionStrings;
+
+    // decoded values of the current row group
+    private final boolean[] loaded;
+    private final boolean[][] booleans;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final byte[][] stringData;
+    private final int[][] stringOffsets;
+    private final int[][] stringLengths;
+    private final boolean[][] nulls;
+
+    private final long totalBytes;
+    private int rowCount;
+    private int position = -1;
+    private boolean closed;
+
+    public RcFileHiveRecordCursor(RcFileReader reader, boolean binarySerDe, long totalBytes, List<HivePartitionKey> partitionKeys, List<HiveColumnHandle> columns)
+    {
+        checkNotNull(reader, "reader is null");
+        checkArgument(totalBytes >= 0, "totalBytes is negative");
+        checkNotNull(partitionKeys, "partitionKeys is null");
+        checkNotNull(columns, "columns is null");
+
+        this.reader = reader;
+        this.binarySerDe = binarySerDe;
+        this.totalBytes = totalBytes;
+
+        int size = columns.size();
+
+        this.names = new String[size];
+        this.types = new ColumnType[size];
+        this.hiveTypes = new HiveType[size];
+        this.hiveColumnIndexes = new int[size];
+        this.isPartitionColumn = new boolean[size];
+
+        this.partitionBooleans = new boolean[size];
+        this.partitionLongs = new long[size];
+        this.partitionDoubles = new double[size];
+        this.partitionStrings = new byte[size][];
+
+        this.loaded = new boolean[size];
+        this.booleans = new boolean[size][];
+        this.longs = new long[size][];
+        this.doubles = new double[size][];
+        this.stringData = new byte[size][];
+        this.stringOffsets = new int[size][];
+        this.stringLengths = new int[size][];
+        this.nulls = new boolean[size][];
+
+        for (int i = 0; i < size; i++) {
+            HiveColumnHandle column = columns.get(i);
+
+            names[i] = column.getName();
+            types[i] = column.getType();
+            hiveTypes[i] = column.getHiveType();
+            hiveColumnIndexes[i] = column.getHiveColumnIndex();
+            isPartitionColumn[i] = column.isPartitionKey();
+        }
+
+        // parse requested partition columns
+        Map<String, HivePartitionKey> partitionKeysByName = uniqueIndex(partitionKeys, HivePartitionKey.nameGetter());
+        for (int columnIndex = 0; columnIndex < size; columnIndex++) {
+            HiveColumnHandle column = columns.get(columnIndex);
+            if (column.isPartitionKey()) {
+                HivePartitionKey partitionKey = partitionKeysByName.get(column.getName());
+                checkArgument(partitionKey != null, "Unknown partition key %s", column.getName());
+
+                byte[] bytes = partitionKey.getValue().getBytes(Charsets.UTF_8);
+
+                switch (types[columnIndex]) {
+                    case BOOLEAN:
+                        if (isTrue(bytes, 0, bytes.length)) {
+                            partitionBooleans[columnIndex] = true;
+                        }
+                        else if (isFalse(bytes, 0, bytes.length)) {
+                            partitionBooleans[columnIndex] = false;
+                        }
+                        else {
+                            String valueString = new String(bytes, Charsets.UTF_8);
+                            throw new IllegalArgumentException(String.format("Invalid partition value '%s' for BOOLEAN partition key %s", valueString, names[columnIndex]));
+                        }
+                        break;
+                    case LONG:
+                        if (bytes.length == 0) {
+                            throw new IllegalArgumentException(String.format("Invalid partition value '' for BIGINT partition key %s", names[columnIndex]));
+                        }
+                        partitionLongs[columnIndex] = parseLong(bytes, 0, bytes.length);
+                        break;
+                    case DOUBLE:
+                        if (bytes.length == 0) {
+                            throw new IllegalArgumentException(String.format("Invalid partition value '' for DOUBLE partition key %s", names[columnIndex]));
+                        }
+                        partitionDoubles[columnIndex] = parseDouble(bytes, 0, bytes.length);
+                        break;
+                    case STRING:
+                        partitionStrings[columnIndex] = bytes;
+                        break;
+                    default:
+                        throw new UnsupportedOperationException("Unsupported column type: " + types[columnIndex]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    @Override
+    public long getCompletedBytes()
+    {
+        return reader.getCompletedBytes();
+    }
+
+    @Override
+    public ColumnType getType(int field)
+    {
+        return types[field];
+    }
+
+    @Override
+    public boolean advanceNextPosition()
+    {
+        if (closed) {
+            return false;
+        }
+
+        try {
+            position++;
+            while (position >= rowCount) {
+                if (!reader.advance()) {
+                    close();
+                    return false;
+                }
+                rowCount = reader.getRowCount();
+                position = 0;
+                Arrays.fill(loaded, false);
+            }
+            return true;
+        }
+        catch (IOException | RuntimeException e) {
+            close();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Reads the next row group that contains rows.  Positions of the current row group
+     * that have not been visited are skipped.
+     *
+     * @return false if there are no more row groups
+     */
+    boolean advanceRowGroup()
+    {
+        if (closed) {
+            return false;
+        }
+
+        try {
+            do {
+                if (!reader.advance()) {
+                    close();
+                    return false;
+                }
+                rowCount = reader.getRowCount();
+            }
+            while (rowCount == 0);
+            position = rowCount - 1;
+            Arrays.fill(loaded, false);
+            return true;
+        }
+        catch (IOException | RuntimeException e) {
+            close();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Returns the number of rows in the current row group.
+     */
+    int getRowGroupRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Returns the values of a field for every row of the current row group.  The values
+     * are copied, because the decoded arrays are reused for the next row group.
+     */
+    ColumnVector getRowGroupColumn(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+
+        boolean[] isNull = Arrays.copyOf(nulls[fieldId], rowCount);
+        switch (types[fieldId]) {
+            case BOOLEAN:
+                return booleanVector(rowCount, isNull, Arrays.copyOf(booleans[fieldId], rowCount));
+            case LONG:
+                return longVector(rowCount, isNull, Arrays.copyOf(longs[fieldId], rowCount));
+            case DOUBLE:
+                return doubleVector(rowCount, isNull, Arrays.copyOf(doubles[fieldId], rowCount));
+            case STRING:
+                return packStrings(fieldId, isNull);
+            default:
+                throw new UnsupportedOperationException("Unsupported column type: " + types[fieldId]);
+        }
+    }
+
+    private ColumnVector packStrings(int fieldId, boolean[] isNull)
+    {
+        // the values are not contiguous in the column data, because of the null and empty string markers
+        int[] valueOffsets = stringOffsets[fieldId];
+        int[] valueLengths = stringLengths[fieldId];
+
+        int[] offsets = new int[rowCount + 1];
+        for (int row = 0; row < rowCount; row++) {
+            offsets[row + 1] = offsets[row] + (isNull[row] ? 0 : valueLengths[row]);
+        }
+
+        byte[] data = stringData[fieldId];
+        byte[] bytes = new byte[offsets[rowCount]];
+        for (int row = 0; row < rowCount; row++) {
+            if (!isNull[row]) {
+                System.arraycopy(data, valueOffsets[row], bytes, offsets[row], valueLengths[row]);
+            }
+        }
+        return stringVector(rowCount, isNull, bytes, offsets);
+    }
+
+    @Override
+    public boolean getBoolean(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.BOOLEAN);
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        return booleans[fieldId][position];
+    }
+
+    @Override
+    public long getLong(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.LONG);
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        return longs[fieldId][position];
+    }
+
+    @Override
+    public double getDouble(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.DOUBLE);
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        return doubles[fieldId][position];
+    }
+
+    @Override
+    public byte[] getString(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.STRING);
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        int offset = stringOffsets[fieldId][position];
+        return Arrays.copyOfRange(stringData[fieldId], offset, offset + stringLengths[fieldId][position]);
+    }
+
+    @Override
+    public void appendString(int fieldId, StringSink sink)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.STRING);
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        sink.appendString(stringData[fieldId], stringOffsets[fieldId][position], stringLengths[fieldId][position]);
+    }
+
+    @Override
+    public boolean isNull(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        return nulls[fieldId][position];
+    }
+
+    private void loadColumn(int column)
+    {
+        loaded[column] = true;
+
+        if (nulls[column] == null || nulls[column].length < rowCount) {
+            allocateColumn(column);
+        }
+
+        if (isPartitionColumn[column]) {
+            loadPartitionColumn(column);
+            return;
+        }
+
+        int hiveColumnIndex = hiveColumnIndexes[column];
+        if (hiveColumnIndex >= reader.getColumnCount()) {
+            // this partition may contain fewer fields than what's declared in the schema
+            // this happens when additional columns are added to the hive table after a partition has been created
+            Arrays.fill(nulls[column], 0, rowCount, true);
+            return;
+        }
+
+        byte[] data = reader.getColumnData(hiveColumnIndex);
+        int[] offsets;
+        try {
+            offsets = reader.getCellOffsets(hiveColumnIndex);
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+
+        switch (types[column]) {
+            case BOOLEAN:
+                decodeBooleans(column, data, offsets);
+                break;
+            case LONG:
+                decodeLongs(column, data, offsets);
+                break;
+            case DOUBLE:
+                decodeDoubles(column, data, offsets);
+                break;
+            case STRING:
+                decodeStrings(column, data, offsets);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported column type: " + types[column]);
+        }
+    }
+
+    private void allocateColumn(int column)
+    {
+        int size = Math.max(rowCount, 1024);
+        nulls[column] = new boolean[size];
+        switch (types[column]) {
+            case BOOLEAN:
+                booleans[column] = new boolean[size];
+                break;
+            case LONG:
+                longs[column] = new long[size];
+                break;
+            case DOUBLE:
+                doubles[column] = new double[size];
+                break;
+            case STRING:
+                stringOffsets[column] = new int[size];
+                stringLengths[column] = new int[size];
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported column type: " + types[column]);
+        }
+    }
+
+    private void loadPartitionColumn(int column)
+    {
+        Arrays.fill(nulls[column], 0, rowCount, false);
+        switch (types[column]) {
+            case BOOLEAN:
+                Arrays.fill(booleans[column], 0, rowCount, partitionBooleans[column]);
+                break;
+            case LONG:
+                Arrays.fill(longs[column], 0, rowCount, partitionLongs[column]);
+                break;
+            case DOUBLE:
+                Arrays.fill(doubles[column], 0, rowCount, partitionDoubles[column]);
+                break;
+            case STRING:
+                stringData[column] = partitionStrings[column];
+                Arrays.fill(stringOffsets[column], 0, rowCount, 0);
+                Arrays.fill(stringLengths[column], 0, rowCount, partitionStrings[column].length);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported column type: " + types[column]);
+        }
+    }
+
+    private void decodeBooleans(int column, byte[] data, int[] offsets)
+    {
+        boolean[] values = booleans[column];
+        boolean[] isNull = nulls[column];
+        for (int row = 0; row < rowCount; row++) {
+            int start = offsets[row];
+            int length = offsets[row + 1] - start;
+            if (binarySerDe) {
+                isNull[row] = length == 0;
+                values[row] = length > 0 && data[start] != 0;
+            }
+            else if (isTrue(data, start, length)) {
+                isNull[row] = false;
+                values[row] = true;
+            }
+            else if (isFalse(data, start, length)) {
+                isNull[row] = false;
+                values[row] = false;
+            }
+            else {
+                isNull[row] = true;
+            }
+        }
+    }
+
+    private void decodeLongs(int column, byte[] data, int[] offsets)
+    {
+        HiveType hiveType = hiveTypes[column];
+        long[] values = longs[column];
+        boolean[] isNull = nulls[column];
+        for (int row = 0; row < rowCount; row++) {
+            int start = offsets[row];
+            int length = offsets[row + 1] - start;
+            if (length == 0 || (!binarySerDe && isTextNull(data, start, length))) {
+                isNull[row] = true;
+            }
+            else {
+                isNull[row] = false;
+                values[row] = binarySerDe ? parseBinaryLong(hiveType, data, start, length) : parseTextLong(hiveType, data, start, length);
+            }
+        }
+    }
+
+    private void decodeDoubles(int column, byte[] data, int[] offsets)
+    {
+        HiveType hiveType = hiveTypes[column];
+        double[] values = doubles[column];
+        boolean[] isNull = nulls[column];
+        for (int row = 0; row < rowCount; row++) {
+            int start = offsets[row];
+            int length = offsets[row + 1] - start;
+            if (length == 0 || (!binarySerDe && isTextNull(data, start, length))) {
+                isNull[row] = true;
+            }
+            else {
+                isNull[row] = false;
+                values[row] = binarySerDe ? parseBinaryDouble(hiveType, data, start, length) : parseDouble(data, start, length);
+            }
+        }
+    }
+
+    private void decodeStrings(int column, byte[] data, int[] offsets)
+    {
+        if (!binarySerDe && hiveTypes[column] == HiveType.BINARY) {
+            decodeBase64Strings(column, data, offsets);
+            return;
+        }
+
+        boolean emptyStringMarker = binarySerDe && hiveTypes[column] == HiveType.STRING;
+        int[] valueOffsets = stringOffsets[column];
+        int[] valueLengths = stringLengths[column];
+        boolean[] isNull = nulls[column];
+        for (int row = 0; row < rowCount; row++) {
+            int start = offsets[row];
+            int length = offsets[row + 1] - start;
+            valueOffsets[row] = start;
+            if (binarySerDe ? length == 0 : isTextNull(data, start, length)) {
+                isNull[row] = true;
+                valueLengths[row] = 0;
+            }
+            else {
+                isNull[row] = false;
+                // TODO: zero length BINARY is not supported. See https://issues.apache.org/jira/browse/HIVE-2483
+                if (emptyStringMarker && length == 1 && data[start] == HIVE_EMPTY_STRING_BYTE) {
+                    length = 0;
+                }
+                valueLengths[row] = length;
+            }
+        }
+        stringData[column] = data;
+    }
+
+    private void decodeBase64Strings(int column, byte[] data, int[] offsets)
+    {
+        // Hive base64 encodes binary values in the text format
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(offsets[rowCount] - offsets[0]);
+        int[] valueOffsets = stringOffsets[column];
+        int[] valueLengths = stringLengths[column];
+        boolean[] isNull = nulls[column];
+        for (int row = 0; row < rowCount; row++) {
+            int start = offsets[row];
+            int length = offsets[row + 1] - start;
+            valueOffsets[row] = decoded.size();
+            if (isTextNull(data, start, length)) {
+                isNull[row] = true;
+                valueLengths[row] = 0;
+            }
+            else {
+                isNull[row] = false;
+                byte[] value = Base64.decodeBase64(Arrays.copyOfRange(data, start, start + length));
+                decoded.write(value, 0, value.length);
+                valueLengths[row] = value.length;
+            }
+        }
+        stringData[column] = decoded.toByteArray();
+    }
+
+    private static boolean isTextNull(byte[] bytes, int start, int length)
+    {
+        return length == "\\N".length() && bytes[start] == '\\' && bytes[start + 1] == 'N';
+    }
+
+    private static long parseTextLong(HiveType hiveType, byte[] bytes, int start, int length)
+    {
+        if (hiveType == HiveType.TIMESTAMP) {
+            return parseHiveTimestamp(new String(bytes, start, length));
+        }
+        return parseLong(bytes, start, length);
+    }
+
+    private static long parseBinaryLong(HiveType hiveType, byte[] bytes, int start, int length)
+    {
+        switch (hiveType) {
+            case SHORT:
+                checkState(length == 2, "Short should be 2 bytes");
+                return (short) (((bytes[start] & 0xFF) << 8) | (bytes[start + 1] & 0xFF));
+            case TIMESTAMP:
+                return TimestampWritable.getSeconds(bytes, start);
+            case BYTE:
+                checkState(length == 1, "Byte should be 1 byte");
+                return bytes[start];
+            case INT:
+            case LONG:
+                if (length == 1) {
+                    return bytes[start];
+                }
+                long value = 0;
+                for (int i = 1; i < length; i++) {
+                    value <<= 8;
+                    value |= (bytes[start + i] & 0xFF);
+                }
+                return WritableUtils.isNegativeVInt(bytes[start]) ? ~value : value;
+            default:
+                throw new RuntimeException(String.format("%s is not a valid LONG type", hiveType));
+        }
+    }
+
+    private static double parseBinaryDouble(HiveType hiveType, byte[] bytes, int start, int length)
+    {
+        switch (hiveType) {
+            case FLOAT:
+                checkState(length == 4, "Float should be 4 bytes");
+                return Float.intBitsToFloat((int) readBigEndian(bytes, start, 4));
+            case DOUBLE:
+                checkState(length == 8, "Double should be 8 bytes");
+                return Double.longBitsToDouble(readBigEndian(bytes, start, 8));
+            default:
+                throw new RuntimeException(String.format("%s is not a valid DOUBLE type", hiveType));
+        }
+    }
+
+    private static long readBigEndian(byte[] bytes, int start, int length)
+    {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (bytes[start + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private void validateType(int fieldId, ColumnType type)
+    {
+        if (types[fieldId] != type) {
+            // we don't use Preconditions.checkArgument because it requires boxing fieldId, which affects inner loop performance
+            throw new IllegalArgumentException(String.format("Expected field to be %s, actual %s (field %s)", type, types[fieldId], fieldId));
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            reader.close();
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+}
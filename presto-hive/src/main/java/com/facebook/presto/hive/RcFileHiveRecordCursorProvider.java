@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.hive.rcfile.RcFileReader;
+import com.facebook.presto.spi.RecordCursor;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.ql.io.RCFileInputFormat;
+import org.apache.hadoop.hive.serde2.Deserializer;
+import org.apache.hadoop.hive.serde2.columnar.ColumnarSerDe;
+import org.apache.hadoop.hive.serde2.columnar.LazyBinaryColumnarSerDe;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static com.facebook.presto.hive.HiveUtil.getInputFormatName;
+import static com.facebook.presto.hive.RetryDriver.retry;
+import static org.apache.hadoop.hive.metastore.MetaStoreUtils.getDeserializer;
+
+/**
+ * Reads RCFiles written with the columnar text or binary SerDe directly, without
+ * the Hadoop record reader, for splits that only read primitive columns.
+ */
+public class RcFileHiveRecordCursorProvider
+        implements HiveRecordCursorProvider
+{
+    private static final Set<HiveType> SUPPORTED_TYPES = ImmutableSet.of(
+            HiveType.BOOLEAN,
+            HiveType.BYTE,
+            HiveType.SHORT,
+            HiveType.INT,
+            HiveType.LONG,
+            HiveType.FLOAT,
+            HiveType.DOUBLE,
+            HiveType.STRING,
+            HiveType.TIMESTAMP,
+            HiveType.BINARY);
+
+    @Override
+    public Optional<RecordCursor> createHiveRecordCursor(HiveSplit split, Configuration configuration, Path path, List<HiveColumnHandle> columns)
+    {
+        Optional<RcFileHiveRecordCursor> cursor = createRcFileHiveRecordCursor(split, configuration, path, columns);
+        if (!cursor.isPresent()) {
+            return Optional.absent();
+        }
+        return Optional.<RecordCursor>of(cursor.get());
+    }
+
+    Optional<RcFileHiveRecordCursor> createRcFileHiveRecordCursor(HiveSplit split, Configuration configuration, Path path, List<HiveColumnHandle> columns)
+    {
+        if (!RCFileInputFormat.class.getName().equals(getInputFormatName(split.getSchema()))) {
+            return Optional.absent();
+        }
+
+        Deserializer deserializer = createDeserializer(split);
+        boolean binarySerDe;
+        if (deserializer instanceof LazyBinaryColumnarSerDe) {
+            binarySerDe = true;
+        }
+        else if (deserializer instanceof ColumnarSerDe) {
+            binarySerDe = false;
+        }
+        else {
+            return Optional.absent();
+        }
+
+        ImmutableSet.Builder<Integer> readColumns = ImmutableSet.builder();
+        for (HiveColumnHandle column : columns) {
+            if (!SUPPORTED_TYPES.contains(column.getHiveType())) {
+                return Optional.absent();
+            }
+            if (!column.isPartitionKey()) {
+                readColumns.add(column.getHiveColumnIndex());
+            }
+        }
+
+        RcFileReader reader = createReader(split, configuration, path, readColumns.build());
+        return Optional.of(new RcFileHiveRecordCursor(
+                reader,
+                binarySerDe,
+                split.getLength(),
+                split.getPartitionKeys(),
+                columns));
+    }
+
+    private static RcFileReader createReader(final HiveSplit split, final Configuration configuration, final Path path, final Set<Integer> readColumns)
+    {
+        try {
+            return retry().stopOnIllegalExceptions().run("createRcFileReader", new Callable<RcFileReader>()
+            {
+                @Override
+                public RcFileReader call()
+                        throws IOException
+                {
+                    FileSystem fileSystem = path.getFileSystem(configuration);
+                    return new RcFileReader(fileSystem, path, split.getStart(), split.getLength(), readColumns, configuration);
+                }
+            });
+        }
+        catch (Exception e) {
+            throw new RuntimeException(String.format("Error opening Hive split %s (offset=%s, length=%s) using %s: %s",
+                    split.getPath(),
+                    split.getStart(),
+                    split.getLength(),
+                    RcFileReader.class.getSimpleName(),
+                    e.getMessage()),
+                    e);
+        }
+    }
+
+    private static Deserializer createDeserializer(HiveSplit split)
+    {
+        try {
+            return getDeserializer(null, split.getSchema());
+        }
+        catch (MetaException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+}
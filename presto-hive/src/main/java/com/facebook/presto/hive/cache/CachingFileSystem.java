@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import com.google.common.base.Optional;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * File system that reads files through a {@link FileRangeCache}.  All other
+ * operations are passed to the wrapped file system.
+ */
+public class CachingFileSystem
+        extends FilterFileSystem
+{
+    private final FileRangeCache cache;
+
+    // status of the split file, which is known up front, so opening it does not ask the file system
+    private final Optional<FileStatus> knownStatus;
+
+    public CachingFileSystem(FileSystem fileSystem, FileRangeCache cache)
+    {
+        this(fileSystem, cache, Optional.<FileStatus>absent());
+    }
+
+    public CachingFileSystem(FileSystem fileSystem, FileRangeCache cache, FileStatus knownStatus)
+    {
+        this(fileSystem, cache, Optional.of(checkNotNull(knownStatus, "knownStatus is null")));
+    }
+
+    private CachingFileSystem(FileSystem fileSystem, FileRangeCache cache, Optional<FileStatus> knownStatus)
+    {
+        super(checkNotNull(fileSystem, "fileSystem is null"));
+        this.cache = checkNotNull(cache, "cache is null");
+        this.knownStatus = knownStatus;
+    }
+
+    @Override
+    public FSDataInputStream open(Path path, int bufferSize)
+            throws IOException
+    {
+        FileStatus status;
+        if (knownStatus.isPresent() && knownStatus.get().getPath().equals(path)) {
+            status = knownStatus.get();
+        }
+        else {
+            status = fs.getFileStatus(path);
+        }
+        return new FSDataInputStream(new CachingInputStream(fs, path, status.getLen(), status.getModificationTime(), bufferSize, cache));
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        // the wrapped file system is shared through the Hadoop file system cache
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import com.facebook.presto.hive.cache.FileRangeCache.RangeKey;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads a file one cache range at a time.  Ranges missing from the cache are
+ * read from the underlying file system, which is only opened on the first miss.
+ */
+class CachingInputStream
+        extends FSInputStream
+{
+    private final FileSystem fileSystem;
+    private final Path path;
+    private final long length;
+    private final long modificationTime;
+    private final int bufferSize;
+    private final FileRangeCache cache;
+    private final int rangeSize;
+
+    private FSDataInputStream remote;
+
+    private final byte[] range;
+    private long rangeStart = -1;
+    private int rangeLength;
+
+    private long position;
+    private boolean closed;
+
+    CachingInputStream(FileSystem fileSystem, Path path, long length, long modificationTime, int bufferSize, FileRangeCache cache)
+    {
+        this.fileSystem = checkNotNull(fileSystem, "fileSystem is null");
+        this.path = checkNotNull(path, "path is null");
+        checkArgument(length >= 0, "length is negative");
+        this.length = length;
+        this.modificationTime = modificationTime;
+        this.bufferSize = bufferSize;
+        this.cache = checkNotNull(cache, "cache is null");
+        this.rangeSize = cache.getRangeSize();
+        this.range = new byte[(int) Math.min(rangeSize, length)];
+    }
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        byte[] buffer = new byte[1];
+        int read = read(buffer, 0, 1);
+        return (read == -1) ? -1 : (buffer[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+            throws IOException
+    {
+        checkClosed();
+        if (length == 0) {
+            return 0;
+        }
+        if (position >= this.length) {
+            return -1;
+        }
+
+        if ((position < rangeStart) || (position >= rangeStart + rangeLength)) {
+            loadRange(position / rangeSize);
+        }
+
+        int rangeOffset = (int) (position - rangeStart);
+        int bytes = Math.min(length, rangeLength - rangeOffset);
+        System.arraycopy(range, rangeOffset, buffer, offset, bytes);
+        position += bytes;
+        return bytes;
+    }
+
+    private void loadRange(long rangeIndex)
+            throws IOException
+    {
+        long start = rangeIndex * rangeSize;
+        int length = (int) Math.min(rangeSize, this.length - start);
+
+        // invalidate the current range in case the read fails
+        rangeStart = -1;
+        rangeLength = 0;
+
+        RangeKey key = new RangeKey(path.toString(), modificationTime, rangeIndex);
+        if (!cache.get(key, range, length)) {
+            if (remote == null) {
+                remote = fileSystem.open(path, bufferSize);
+            }
+            remote.readFully(start, range, 0, length);
+            cache.put(key, range, length);
+        }
+
+        rangeStart = start;
+        rangeLength = length;
+    }
+
+    @Override
+    public long skip(long n)
+            throws IOException
+    {
+        checkClosed();
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = Math.min(n, length - position);
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available()
+            throws IOException
+    {
+        checkClosed();
+        if ((position >= rangeStart) && (position < rangeStart + rangeLength)) {
+            return (int) (rangeStart + rangeLength - position);
+        }
+        return 0;
+    }
+
+    @Override
+    public void seek(long pos)
+            throws IOException
+    {
+        checkClosed();
+        if (pos < 0) {
+            throw new IOException("Cannot seek to negative position: " + pos);
+        }
+        position = pos;
+    }
+
+    @Override
+    public long getPos()
+            throws IOException
+    {
+        return position;
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos)
+            throws IOException
+    {
+        return false;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (remote != null) {
+            remote.close();
+        }
+    }
+
+    private void checkClosed()
+            throws IOException
+    {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Path whose file system reads through a {@link FileRangeCache}.  Input formats
+ * open splits using {@link #getFileSystem}, so wrapping the split path is enough
+ * to route the reads of a split through the cache.
+ */
+public class CachingPath
+        extends Path
+{
+    private final long length;
+    private final long modificationTime;
+    private final FileRangeCache cache;
+
+    public CachingPath(Path path, long length, long modificationTime, FileRangeCache cache)
+    {
+        super(checkNotNull(path, "path is null").toUri());
+        checkArgument(length >= 0, "length is negative");
+        this.length = length;
+        this.modificationTime = modificationTime;
+        this.cache = checkNotNull(cache, "cache is null");
+    }
+
+    @Override
+    public FileSystem getFileSystem(Configuration conf)
+            throws IOException
+    {
+        return new CachingFileSystem(super.getFileSystem(conf), cache, new FileStatus(length, false, 0, 0, modificationTime, this));
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import io.airlift.log.Logger;
+import io.airlift.units.DataSize;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cache of fixed size file ranges on local disk.  The index of the cached ranges
+ * is kept in memory and the least recently used ranges are evicted when the
+ * cached bytes exceed the maximum size.  Ranges are keyed by the modification
+ * time of the file, so a rewritten file never returns stale data.
+ * <p/>
+ * The index is not persisted, so the cache directory is cleared on startup.
+ */
+@ThreadSafe
+public class FileRangeCache
+{
+    private static final Logger log = Logger.get(FileRangeCache.class);
+
+    private final File directory;
+    private final long maxSize;
+    private final int rangeSize;
+    private final FileRangeCacheStats stats;
+
+    // cached ranges and their length, in access order
+    @GuardedBy("this")
+    private final LinkedHashMap<RangeKey, Integer> ranges = new LinkedHashMap<>(16, 0.75f, true);
+    @GuardedBy("this")
+    private long size;
+
+    public FileRangeCache(File directory, DataSize maxSize, DataSize rangeSize, FileRangeCacheStats stats)
+            throws IOException
+    {
+        this.directory = checkNotNull(directory, "directory is null");
+        this.maxSize = checkNotNull(maxSize, "maxSize is null").toBytes();
+        this.rangeSize = (int) checkNotNull(rangeSize, "rangeSize is null").toBytes();
+        this.stats = checkNotNull(stats, "stats is null");
+        checkArgument(this.rangeSize > 0 && this.rangeSize == rangeSize.toBytes(), "invalid range size: %s", rangeSize);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory: " + directory);
+        }
+        deleteContents(directory);
+        stats.setCacheSize(0, 0);
+    }
+
+    public int getRangeSize()
+    {
+        return rangeSize;
+    }
+
+    /**
+     * Reads a cached range into the buffer.
+     *
+     * @return false if the range is not cached
+     */
+    public boolean get(RangeKey key, byte[] buffer, int length)
+    {
+        synchronized (this) {
+            Integer cachedLength = ranges.get(key);
+            if ((cachedLength == null) || (cachedLength != length)) {
+                stats.miss();
+                return false;
+            }
+        }
+
+        try (InputStream in = new FileInputStream(getFile(key))) {
+            ByteStreams.readFully(in, buffer, 0, length);
+        }
+        catch (IOException e) {
+            // the range was evicted by a concurrent write, or the file is damaged
+            log.debug("Failed reading cached range %s: %s", key, e.getMessage());
+            invalidate(key);
+            stats.miss();
+            return false;
+        }
+
+        stats.hit(length);
+        return true;
+    }
+
+    /**
+     * Stores a range, evicting the least recently used ranges if necessary.
+     * Failures to write the range are logged and otherwise ignored.
+     */
+    public void put(RangeKey key, byte[] buffer, int length)
+    {
+        checkArgument(length <= rangeSize, "length is larger than the range size");
+        synchronized (this) {
+            if (ranges.containsKey(key)) {
+                return;
+            }
+        }
+
+        File file = getFile(key);
+        File tempFile = null;
+        try {
+            File parent = file.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Cannot create directory: " + parent);
+            }
+            // write to a temporary file, so readers never see a partial range
+            tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                out.write(buffer, 0, length);
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Cannot rename " + tempFile + " to " + file);
+            }
+        }
+        catch (IOException e) {
+            log.warn("Failed caching range %s: %s", key, e.getMessage());
+            if ((tempFile != null) && tempFile.exists() && !tempFile.delete()) {
+                log.warn("Could not delete temporary file: %s", tempFile);
+            }
+            return;
+        }
+        stats.written(length);
+
+        List<RangeKey> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (ranges.containsKey(key)) {
+                // cached concurrently by another reader
+                return;
+            }
+            ranges.put(key, length);
+            size += length;
+
+            Iterator<Map.Entry<RangeKey, Integer>> iterator = ranges.entrySet().iterator();
+            while ((size > maxSize) && iterator.hasNext()) {
+                Map.Entry<RangeKey, Integer> entry = iterator.next();
+                iterator.remove();
+                size -= entry.getValue();
+                evicted.add(entry.getKey());
+            }
+            stats.setCacheSize(size, ranges.size());
+        }
+
+        for (RangeKey evictedKey : evicted) {
+            File evictedFile = getFile(evictedKey);
+            if (!evictedFile.delete() && evictedFile.exists()) {
+                log.warn("Could not delete evicted range: %s", evictedFile);
+            }
+            stats.evicted();
+        }
+    }
+
+    private synchronized void invalidate(RangeKey key)
+    {
+        Integer length = ranges.remove(key);
+        if (length != null) {
+            size -= length;
+            stats.setCacheSize(size, ranges.size());
+        }
+    }
+
+    private File getFile(RangeKey key)
+    {
+        String name = Hashing.sha256().newHasher()
+                .putString(key.getPath(), Charsets.UTF_8)
+                .putLong(key.getModificationTime())
+                .putLong(key.getRangeIndex())
+                .hash()
+                .toString();
+        // spread the ranges over subdirectories to keep directories small
+        return new File(new File(directory, name.substring(0, 2)), name);
+    }
+
+    private static void deleteContents(File directory)
+            throws IOException
+    {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list cache directory: " + directory);
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteContents(file);
+            }
+            if (!file.delete()) {
+                throw new IOException("Cannot delete " + file);
+            }
+        }
+    }
+
+    public static final class RangeKey
+    {
+        private final String path;
+        private final long modificationTime;
+        private final long rangeIndex;
+
+        public RangeKey(String path, long modificationTime, long rangeIndex)
+        {
+            this.path = checkNotNull(path, "path is null");
+            this.modificationTime = modificationTime;
+            checkArgument(rangeIndex >= 0, "rangeIndex is negative");
+            this.rangeIndex = rangeIndex;
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        public long getModificationTime()
+        {
+            return modificationTime;
+        }
+
+        public long getRangeIndex()
+        {
+            return rangeIndex;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hashCode(path, modificationTime, rangeIndex);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            RangeKey other = (RangeKey) obj;
+            return Objects.equal(this.path, other.path) &&
+                    this.modificationTime == other.modificationTime &&
+                    this.rangeIndex == other.rangeIndex;
+        }
+
+        @Override
+        public String toString()
+        {
+            return Objects.toStringHelper(this)
+                    .add("path", path)
+                    .add("modificationTime", modificationTime)
+                    .add("rangeIndex", rangeIndex)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FileRangeCacheStats
+{
+    private final CounterStat hits = new CounterStat();
+    private final CounterStat misses = new CounterStat();
+    private final CounterStat bytesSaved = new CounterStat();
+    private final CounterStat bytesWritten = new CounterStat();
+    private final CounterStat evictions = new CounterStat();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final AtomicLong cachedRanges = new AtomicLong();
+
+    public void hit(long bytes)
+    {
+        hits.update(1);
+        bytesSaved.update(bytes);
+    }
+
+    public void miss()
+    {
+        misses.update(1);
+    }
+
+    public void written(long bytes)
+    {
+        bytesWritten.update(bytes);
+    }
+
+    public void evicted()
+    {
+        evictions.update(1);
+    }
+
+    public void setCacheSize(long bytes, long ranges)
+    {
+        cachedBytes.set(bytes);
+        cachedRanges.set(ranges);
+    }
+
+    @Managed
+    public double getHitRate()
+    {
+        long hitCount = hits.getTotalCount();
+        long requests = hitCount + misses.getTotalCount();
+        if (requests == 0) {
+            return 0;
+        }
+        return (double) hitCount / requests;
+    }
+
+    @Managed
+    public long getCachedBytes()
+    {
+        return cachedBytes.get();
+    }
+
+    @Managed
+    public long getCachedRanges()
+    {
+        return cachedRanges.get();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHits()
+    {
+        return hits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMisses()
+    {
+        return misses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getBytesSaved()
+    {
+        return bytesSaved;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getEvictions()
+    {
+        return evictions;
+    }
+}
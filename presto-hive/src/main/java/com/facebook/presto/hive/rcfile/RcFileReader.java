@@ -0,0 +1,483 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.rcfile;
+
+import com.google.common.io.ByteStreams;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Reads the row groups of an RCFile directly from the file system, without
+ * the Hadoop record reader.  Only the requested columns of a row group are
+ * read and decompressed, and the cells of a column are exposed as a single
+ * buffer with the offset of every cell.
+ * <p/>
+ * A row group belongs to the split that contains the sync marker preceding
+ * it, which matches the split assignment of the Hive RCFile record reader.
+ */
+public class RcFileReader
+        implements Closeable
+{
+    private static final byte[] RCFILE_MAGIC = {'R', 'C', 'F'};
+    private static final byte[] SEQUENCE_FILE_MAGIC = {'S', 'E', 'Q'};
+    private static final int RCFILE_VERSION = 1;
+    private static final int SEQUENCE_FILE_VERSION = 6;
+    private static final String COLUMN_COUNT_METADATA_KEY = "hive.io.rcfile.column.number";
+
+    private static final int SYNC_ESCAPE = -1;
+    private static final int SYNC_HASH_SIZE = 16;
+    private static final int SYNC_SEARCH_BUFFER_SIZE = 64 * 1024;
+
+    private final FSDataInputStream input;
+    private final long fileSize;
+    private final long start;
+    private final long end;
+    private final CompressionCodec codec;
+    private final Decompressor decompressor;
+    private final byte[] sync = new byte[SYNC_HASH_SIZE];
+    private final byte[] syncCheck = new byte[SYNC_HASH_SIZE];
+    private final int columnCount;
+    private final boolean[] readColumns;
+
+    private long lastSyncPosition;
+    private long position;
+    private boolean finished;
+    private boolean closed;
+
+    // current row group
+    private int rowCount;
+    private byte[] key = new byte[0];
+    private byte[] compressedBuffer = new byte[0];
+    private final int[] compressedSizes;
+    private final int[] uncompressedSizes;
+    private final int[] cellLengthsOffsets;
+    private final int[] cellLengthsSizes;
+    private final byte[][] columnData;
+    private final int[][] cellOffsets;
+    private final boolean[] cellOffsetsLoaded;
+
+    public RcFileReader(FileSystem fileSystem, Path path, long start, long length, Collection<Integer> readColumns, Configuration configuration)
+            throws IOException
+    {
+        checkNotNull(fileSystem, "fileSystem is null");
+        checkNotNull(path, "path is null");
+        checkArgument(start >= 0, "start is negative");
+        checkArgument(length >= 0, "length is negative");
+        checkNotNull(readColumns, "readColumns is null");
+        checkNotNull(configuration, "configuration is null");
+
+        this.fileSize = fileSystem.getFileStatus(path).getLen();
+        this.start = start;
+        this.end = start + length;
+        this.input = fileSystem.open(path);
+
+        try {
+            byte[] magic = new byte[3];
+            input.readFully(magic);
+            int version = input.readByte();
+            boolean isCompressed;
+            if (Arrays.equals(magic, RCFILE_MAGIC)) {
+                checkFormat(version == RCFILE_VERSION, "unsupported RCFile version %s", version);
+                isCompressed = input.readBoolean();
+            }
+            else if (Arrays.equals(magic, SEQUENCE_FILE_MAGIC)) {
+                // RCFiles written by old versions of Hive use a sequence file header
+                checkFormat(version == SEQUENCE_FILE_VERSION, "unsupported sequence file version %s", version);
+                Text.readString(input); // key class
+                Text.readString(input); // value class
+                isCompressed = input.readBoolean();
+                checkFormat(!input.readBoolean(), "block compressed sequence files are not RCFiles");
+            }
+            else {
+                throw new IOException("Not an RCFile: " + path);
+            }
+
+            if (isCompressed) {
+                String codecClassName = Text.readString(input);
+                try {
+                    Class<? extends CompressionCodec> codecClass = configuration.getClassByName(codecClassName).asSubclass(CompressionCodec.class);
+                    codec = ReflectionUtils.newInstance(codecClass, configuration);
+                }
+                catch (ClassNotFoundException e) {
+                    throw new IOException("Unknown compression codec: " + codecClassName, e);
+                }
+                decompressor = CodecPool.getDecompressor(codec);
+            }
+            else {
+                codec = null;
+                decompressor = null;
+            }
+
+            Integer columnCount = null;
+            int metadataEntries = input.readInt();
+            for (int i = 0; i < metadataEntries; i++) {
+                Text metadataKey = new Text();
+                Text metadataValue = new Text();
+                metadataKey.readFields(input);
+                metadataValue.readFields(input);
+                if (metadataKey.toString().equals(COLUMN_COUNT_METADATA_KEY)) {
+                    columnCount = Integer.parseInt(metadataValue.toString());
+                }
+            }
+            checkFormat(columnCount != null, "missing %s metadata", COLUMN_COUNT_METADATA_KEY);
+            this.columnCount = columnCount;
+
+            input.readFully(sync);
+
+            long headerEnd = input.getPos();
+            position = headerEnd;
+            if (start > 0) {
+                seekToNextSync(Math.max(start, headerEnd));
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+
+        this.readColumns = new boolean[columnCount];
+        for (int column : readColumns) {
+            if (column < columnCount) {
+                this.readColumns[column] = true;
+            }
+        }
+
+        compressedSizes = new int[columnCount];
+        uncompressedSizes = new int[columnCount];
+        cellLengthsOffsets = new int[columnCount];
+        cellLengthsSizes = new int[columnCount];
+        columnData = new byte[columnCount][];
+        cellOffsets = new int[columnCount][];
+        cellOffsetsLoaded = new boolean[columnCount];
+    }
+
+    /**
+     * Returns the number of columns stored in the file.
+     */
+    public int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * Returns the number of bytes of the split that have been processed.
+     */
+    public long getCompletedBytes()
+    {
+        return Math.min(end - start, Math.max(0, position - start));
+    }
+
+    /**
+     * Reads the next row group of the split.
+     *
+     * @return false if there are no more row groups in the split
+     */
+    public boolean advance()
+            throws IOException
+    {
+        checkState(!closed, "reader is closed");
+
+        rowCount = 0;
+        if (finished || position >= fileSize) {
+            finished = true;
+            return false;
+        }
+
+        long recordStart = position;
+        int recordLength = input.readInt();
+        if (recordLength == SYNC_ESCAPE) {
+            input.readFully(syncCheck);
+            checkFormat(Arrays.equals(sync, syncCheck), "invalid sync marker at %s", recordStart);
+            lastSyncPosition = recordStart;
+            if (input.getPos() >= fileSize) {
+                finished = true;
+                return false;
+            }
+            recordLength = input.readInt();
+        }
+
+        // the row group belongs to the next split
+        if (lastSyncPosition >= end) {
+            finished = true;
+            return false;
+        }
+
+        int keyLength = input.readInt();
+        int compressedKeyLength = input.readInt();
+        if (key.length < keyLength) {
+            key = new byte[keyLength];
+        }
+        if (codec == null) {
+            checkFormat(keyLength == compressedKeyLength, "uncompressed key length %s does not match %s", compressedKeyLength, keyLength);
+            input.readFully(key, 0, keyLength);
+        }
+        else {
+            readCompressed(compressedKeyLength, key, keyLength);
+        }
+
+        // row count, then the compressed size, uncompressed size and cell lengths of every column
+        int keyPosition = 0;
+        rowCount = readVInt(key, keyPosition);
+        keyPosition += WritableUtils.decodeVIntSize(key[keyPosition]);
+        long valuesLength = 0;
+        for (int column = 0; column < columnCount; column++) {
+            compressedSizes[column] = readVInt(key, keyPosition);
+            keyPosition += WritableUtils.decodeVIntSize(key[keyPosition]);
+            uncompressedSizes[column] = readVInt(key, keyPosition);
+            keyPosition += WritableUtils.decodeVIntSize(key[keyPosition]);
+            cellLengthsSizes[column] = readVInt(key, keyPosition);
+            keyPosition += WritableUtils.decodeVIntSize(key[keyPosition]);
+            cellLengthsOffsets[column] = keyPosition;
+            keyPosition += cellLengthsSizes[column];
+            valuesLength += compressedSizes[column];
+        }
+        checkFormat(keyPosition == keyLength, "key length is %s, but the key contains %s bytes", keyLength, keyPosition);
+        checkFormat(recordLength == compressedKeyLength + valuesLength, "record length is %s, but the record contains %s bytes", recordLength, compressedKeyLength + valuesLength);
+
+        // read the requested columns and skip over the others
+        long skip = 0;
+        for (int column = 0; column < columnCount; column++) {
+            cellOffsetsLoaded[column] = false;
+            if (!readColumns[column]) {
+                skip += compressedSizes[column];
+                continue;
+            }
+            if (skip > 0) {
+                input.seek(input.getPos() + skip);
+                skip = 0;
+            }
+
+            int uncompressedSize = uncompressedSizes[column];
+            if (columnData[column] == null || columnData[column].length < uncompressedSize) {
+                columnData[column] = new byte[uncompressedSize];
+            }
+            if (codec == null) {
+                checkFormat(compressedSizes[column] == uncompressedSize, "uncompressed column size %s does not match %s", compressedSizes[column], uncompressedSize);
+                input.readFully(columnData[column], 0, uncompressedSize);
+            }
+            else {
+                readCompressed(compressedSizes[column], columnData[column], uncompressedSize);
+            }
+        }
+        position = input.getPos() + skip;
+        if (skip > 0) {
+            input.seek(position);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of rows in the current row group.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Returns the uncompressed cells of a requested column in the current row group.
+     * The buffer is reused for the next row group.
+     */
+    public byte[] getColumnData(int column)
+    {
+        checkArgument(readColumns[column], "column %s was not requested", column);
+        return columnData[column];
+    }
+
+    /**
+     * Returns the offsets of the cells of a requested column in the current row group.
+     * The cell at position {@code i} ends where cell {@code i + 1} starts, so the
+     * array contains one more entry than the row count.
+     */
+    public int[] getCellOffsets(int column)
+            throws IOException
+    {
+        checkArgument(readColumns[column], "column %s was not requested", column);
+        if (!cellOffsetsLoaded[column]) {
+            decodeCellOffsets(column);
+            cellOffsetsLoaded[column] = true;
+        }
+        return cellOffsets[column];
+    }
+
+    private void decodeCellOffsets(int column)
+            throws IOException
+    {
+        int[] offsets = cellOffsets[column];
+        if (offsets == null || offsets.length < rowCount + 1) {
+            offsets = new int[rowCount + 1];
+            cellOffsets[column] = offsets;
+        }
+
+        // the cell lengths are run length encoded: a negative value repeats the previous length
+        int keyPosition = cellLengthsOffsets[column];
+        int keyEnd = keyPosition + cellLengthsSizes[column];
+        int row = 0;
+        int length = 0;
+        while (keyPosition < keyEnd) {
+            int value = readVInt(key, keyPosition);
+            keyPosition += WritableUtils.decodeVIntSize(key[keyPosition]);
+
+            int runLength = 1;
+            if (value < 0) {
+                runLength = ~value;
+            }
+            else {
+                length = value;
+            }
+            checkFormat(row + runLength <= rowCount, "column %s has more than %s cells", column, rowCount);
+            for (int i = 0; i < runLength; i++) {
+                offsets[row + 1] = offsets[row] + length;
+                row++;
+            }
+        }
+        checkFormat(row == rowCount, "column %s has %s cells, but the row group has %s rows", column, row, rowCount);
+        checkFormat(offsets[rowCount] == uncompressedSizes[column], "column %s cells contain %s bytes, but the column has %s bytes", column, offsets[rowCount], uncompressedSizes[column]);
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        finished = true;
+        try {
+            input.close();
+        }
+        finally {
+            if (decompressor != null) {
+                CodecPool.returnDecompressor(decompressor);
+            }
+        }
+    }
+
+    private void readCompressed(int compressedSize, byte[] output, int uncompressedSize)
+            throws IOException
+    {
+        if (compressedBuffer.length < compressedSize) {
+            compressedBuffer = new byte[compressedSize];
+        }
+        input.readFully(compressedBuffer, 0, compressedSize);
+
+        InputStream compressedInput = new ByteArrayInputStream(compressedBuffer, 0, compressedSize);
+        InputStream decompressed;
+        if (decompressor != null) {
+            decompressor.reset();
+            decompressed = codec.createInputStream(compressedInput, decompressor);
+        }
+        else {
+            decompressed = codec.createInputStream(compressedInput);
+        }
+        try {
+            ByteStreams.readFully(decompressed, output, 0, uncompressedSize);
+        }
+        finally {
+            decompressed.close();
+        }
+    }
+
+    /**
+     * Positions the input at the first sync marker at or after the specified position.
+     */
+    private void seekToNextSync(long searchStart)
+            throws IOException
+    {
+        // row groups following a sync marker start with the sync escape and the sync hash
+        byte[] pattern = new byte[4 + SYNC_HASH_SIZE];
+        Arrays.fill(pattern, 0, 4, (byte) 0xFF);
+        System.arraycopy(sync, 0, pattern, 4, SYNC_HASH_SIZE);
+
+        byte[] buffer = new byte[SYNC_SEARCH_BUFFER_SIZE];
+        long bufferStart = searchStart;
+        int buffered = 0;
+        // a sync marker after the end of the split belongs to the next split
+        while (bufferStart <= end && bufferStart + buffered < fileSize) {
+            int read = (int) Math.min(buffer.length - buffered, fileSize - (bufferStart + buffered));
+            input.readFully(bufferStart + buffered, buffer, buffered, read);
+            buffered += read;
+
+            for (int i = 0; i + pattern.length <= buffered; i++) {
+                if (matches(buffer, i, pattern)) {
+                    position = bufferStart + i;
+                    input.seek(position);
+                    return;
+                }
+            }
+
+            // keep the tail of the buffer, which may contain the start of a sync marker
+            int keep = Math.min(pattern.length - 1, buffered);
+            System.arraycopy(buffer, buffered - keep, buffer, 0, keep);
+            bufferStart += buffered - keep;
+            buffered = keep;
+        }
+
+        position = fileSize;
+        finished = true;
+    }
+
+    private static boolean matches(byte[] buffer, int offset, byte[] pattern)
+    {
+        for (int i = 0; i < pattern.length; i++) {
+            if (buffer[offset + i] != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readVInt(byte[] bytes, int offset)
+    {
+        byte first = bytes[offset];
+        int size = WritableUtils.decodeVIntSize(first);
+        if (size == 1) {
+            return first;
+        }
+        long value = 0;
+        for (int i = 1; i < size; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return (int) (WritableUtils.isNegativeVInt(first) ? ~value : value);
+    }
+
+    private static void checkFormat(boolean condition, String message, Object... args)
+            throws IOException
+    {
+        if (!condition) {
+            throw new IOException("Corrupt RCFile: " + String.format(message, args));
+        }
+    }
+}
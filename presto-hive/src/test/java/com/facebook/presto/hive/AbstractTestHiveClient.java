@@ -194,7 +194,9 @@ public abstract class AbstractTestHiveClient
                 maxOutstandingSplits,
                 maxThreads,
                 hiveClientConfig.getMinPartitionBatchSize(),
-                hiveClientConfig.getMaxPartitionBatchSize());
+                hiveClientConfig.getMaxPartitionBatchSize(),
+                hiveClientConfig.isOptimizedReaderEnabled(),
+                Optional.<HiveCacheAffinity>absent());
 
         metadata = client;
         splitManager = client;
@@ -31,6 +31,8 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.net.HostAndPort;
+import io.airlift.discovery.client.ServiceDescriptor;
+import io.airlift.discovery.client.testing.StaticServiceSelector;
 import io.airlift.log.Logger;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -98,6 +100,7 @@ public abstract class AbstractTestHiveClientS3
                 metastoreClient,
                 new HadoopApiStats(),
                 new HdfsEnvironment(new HdfsConfiguration(hiveClientConfig)),
+                new HiveCacheAffinity(new HiveConnectorId("hive-test"), new StaticServiceSelector(ImmutableList.<ServiceDescriptor>of())),
                 sameThreadExecutor());
     }
 
@@ -13,7 +13,12 @@
  */
 package com.facebook.presto.hive;
 
+import com.facebook.presto.spi.ColumnVector;
+import com.facebook.presto.spi.ColumnarPage;
+import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.RecordCursor;
+import com.facebook.presto.spi.StringRecordCursor;
+import com.facebook.presto.spi.StringSink;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Charsets;
@@ -41,6 +46,7 @@ import org.apache.hadoop.util.Progressable;
 import org.joda.time.DateTime;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.sql.Timestamp;
@@ -65,12 +71,13 @@ import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveO
 import static org.apache.hadoop.mapreduce.lib.output.FileOutputFormat.COMPRESS_CODEC;
 import static org.apache.hadoop.mapreduce.lib.output.FileOutputFormat.COMPRESS_TYPE;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 @Test(groups = "hive")
 public abstract class AbstractTestHiveFileFormats
 {
-    private static final int NUM_ROWS = 1000;
+    protected static final int NUM_ROWS = 1000;
     private static final double EPSILON = 0.001;
 
     private static final List<ObjectInspector> FIELD_INSPECTORS = ImmutableList.of(
@@ -207,6 +214,17 @@ public abstract class AbstractTestHiveFileFormats
         return columns;
     }
 
+    protected List<HiveColumnHandle> getPrimitiveColumns()
+    {
+        List<HiveColumnHandle> columns = new ArrayList<>();
+        for (HiveColumnHandle column : getColumns()) {
+            if (FIELD_INSPECTORS.get(column.getHiveColumnIndex()).getCategory() == ObjectInspector.Category.PRIMITIVE) {
+                columns.add(column);
+            }
+        }
+        return columns;
+    }
+
     public FileSplit createTestFile(String filePath, HiveOutputFormat<?, ?> outputFormat, @SuppressWarnings("deprecation") SerDe serDe, String compressionCodec)
             throws Exception
     {
@@ -266,11 +284,20 @@ public abstract class AbstractTestHiveFileFormats
 
     protected void checkCursor(RecordCursor cursor)
             throws IOException
+    {
+        checkCursor(cursor, TEST_VALUES.size());
+    }
+
+    /**
+     * Checks the values of the first {@code fieldCount} columns of the test file.
+     */
+    protected void checkCursor(RecordCursor cursor, int fieldCount)
+            throws IOException
     {
         for (int row = 0; row < NUM_ROWS; row++) {
             assertTrue(cursor.advanceNextPosition());
             assertTrue(cursor.isNull(0));
-            for (int i = 1; i < TEST_VALUES.size(); i++) {
+            for (int i = 1; i < fieldCount; i++) {
                 Object fieldFromCursor;
                 HiveType type = HiveType.getHiveType(FIELD_INSPECTORS.get(i));
                 switch (type.getNativeType()) {
@@ -285,6 +312,9 @@ public abstract class AbstractTestHiveFileFormats
                         break;
                     case STRING:
                         fieldFromCursor = cursor.getString(i);
+                        if (cursor instanceof StringRecordCursor) {
+                            assertEquals(appendString((StringRecordCursor) cursor, i), (byte[]) fieldFromCursor);
+                        }
                         break;
                     default:
                         throw new RuntimeException("unknown type");
@@ -305,4 +335,58 @@ public abstract class AbstractTestHiveFileFormats
             }
         }
     }
+
+    /**
+     * Checks the values of the first {@code fieldCount} columns of the test file, which must be primitive.
+     */
+    protected void checkPageSource(ConnectorPageSource pageSource, int fieldCount)
+    {
+        int rows = 0;
+        while (!pageSource.isFinished()) {
+            ColumnarPage page = pageSource.getNextPage();
+            if (page == null) {
+                continue;
+            }
+            assertEquals(page.getColumnCount(), fieldCount);
+            for (int position = 0; position < page.getPositionCount(); position++) {
+                assertTrue(page.getColumn(0).isNull(position));
+                for (int i = 1; i < fieldCount; i++) {
+                    ColumnVector column = page.getColumn(i);
+                    assertFalse(column.isNull(position), String.format("Unexpected null in column %s", COLUMN_NAMES.get(i)));
+                    switch (column.getType()) {
+                        case BOOLEAN:
+                            assertEquals(column.getBoolean(position), TEST_VALUES.get(i).getValue());
+                            break;
+                        case LONG:
+                            assertEquals(column.getLong(position), TEST_VALUES.get(i).getValue(), String.format("Wrong value for column %s", COLUMN_NAMES.get(i)));
+                            break;
+                        case DOUBLE:
+                            assertEquals(column.getDouble(position), (double) TEST_VALUES.get(i).getValue(), EPSILON);
+                            break;
+                        case STRING:
+                            assertEquals(column.getString(position), (byte[]) TEST_VALUES.get(i).getValue(), String.format("Wrong value for column %s", COLUMN_NAMES.get(i)));
+                            break;
+                        default:
+                            throw new RuntimeException("unknown type");
+                    }
+                }
+            }
+            rows += page.getPositionCount();
+        }
+        assertEquals(rows, NUM_ROWS);
+    }
+
+    private static byte[] appendString(StringRecordCursor cursor, int field)
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cursor.appendString(field, new StringSink()
+        {
+            @Override
+            public void appendString(byte[] bytes, int offset, int length)
+            {
+                out.write(bytes, offset, length);
+            }
+        });
+        return out.toByteArray();
+    }
 }
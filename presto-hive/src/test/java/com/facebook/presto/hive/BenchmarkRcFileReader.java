@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.hive.rcfile.RcFileReader;
+import com.facebook.presto.spi.RecordCursor;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.FileSinkOperator.RecordWriter;
+import org.apache.hadoop.hive.ql.io.RCFileInputFormat;
+import org.apache.hadoop.hive.ql.io.RCFileOutputFormat;
+import org.apache.hadoop.hive.serde2.SerDe;
+import org.apache.hadoop.hive.serde2.columnar.BytesRefArrayWritable;
+import org.apache.hadoop.hive.serde2.columnar.ColumnarSerDe;
+import org.apache.hadoop.hive.serde2.columnar.LazyBinaryColumnarSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.SettableStructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.Progressable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory.getStandardStructObjectInspector;
+import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaDoubleObjectInspector;
+import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaLongObjectInspector;
+import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaStringObjectInspector;
+import static org.apache.hadoop.mapreduce.lib.output.FileOutputFormat.COMPRESS_CODEC;
+import static org.apache.hadoop.mapreduce.lib.output.FileOutputFormat.COMPRESS_TYPE;
+
+/**
+ * Compares the RCFile record cursors that use the Hadoop record reader with the
+ * cursor over {@link RcFileReader}, on locally generated files with a bigint,
+ * a double and a string column.
+ */
+public final class BenchmarkRcFileReader
+{
+    private static final int ROWS = 2_000_000;
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+
+    private static final List<String> COLUMN_NAMES = ImmutableList.of("t_bigint", "t_double", "t_string");
+    private static final List<ObjectInspector> FIELD_INSPECTORS = ImmutableList.<ObjectInspector>of(
+            javaLongObjectInspector,
+            javaDoubleObjectInspector,
+            javaStringObjectInspector);
+    private static final String COLUMN_NAMES_STRING = Joiner.on(",").join(COLUMN_NAMES);
+    private static final String COLUMN_TYPES = "bigint:double:string";
+
+    private BenchmarkRcFileReader() {}
+
+    public static void main(String[] args)
+            throws Exception
+    {
+        for (String codec : new String[] {null, "default"}) {
+            benchmark(new ColumnarSerDe(), false, codec);
+            benchmark(new LazyBinaryColumnarSerDe(), true, codec);
+        }
+    }
+
+    private static void benchmark(@SuppressWarnings("deprecation") SerDe serDe, boolean binarySerDe, String codec)
+            throws Exception
+    {
+        File file = File.createTempFile("presto_benchmark", "rc");
+        try {
+            writeFile(file, serDe, codec);
+
+            String name = String.format("%s %s", serDe.getClass().getSimpleName(), codec == null ? "uncompressed" : codec);
+            System.out.printf("%s: %s rows, %s bytes%n", name, ROWS, file.length());
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                readLegacy(file, serDe, binarySerDe);
+                readOptimized(file, binarySerDe);
+            }
+
+            long legacyNanos = 0;
+            long optimizedNanos = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                long start = System.nanoTime();
+                readLegacy(file, serDe, binarySerDe);
+                legacyNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                readOptimized(file, binarySerDe);
+                optimizedNanos += System.nanoTime() - start;
+            }
+            printResult(name, "record reader", legacyNanos / ITERATIONS);
+            printResult(name, "rcfile reader", optimizedNanos / ITERATIONS);
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static void printResult(String name, String reader, long nanos)
+    {
+        long millis = NANOSECONDS.toMillis(nanos);
+        System.out.printf("%s %s: %,d ms, %,d rows/s%n", name, reader, millis, (long) (ROWS / (nanos / 1e9)));
+    }
+
+    private static long readLegacy(File file, @SuppressWarnings("deprecation") SerDe serDe, boolean binarySerDe)
+            throws Exception
+    {
+        JobConf jobConf = new JobConf();
+        FileSplit split = new FileSplit(new Path(file.getAbsolutePath()), 0, file.length(), new String[0]);
+        @SuppressWarnings("unchecked")
+        RecordReader<?, BytesRefArrayWritable> recordReader = (RecordReader<?, BytesRefArrayWritable>) new RCFileInputFormat<>().getRecordReader(split, jobConf, Reporter.NULL);
+
+        Properties schema = new Properties();
+        schema.setProperty("serialization.lib", serDe.getClass().getName());
+        schema.setProperty("columns", COLUMN_NAMES_STRING);
+        schema.setProperty("columns.types", COLUMN_TYPES);
+
+        RecordCursor cursor;
+        if (binarySerDe) {
+            cursor = new ColumnarBinaryHiveRecordCursor<>(recordReader, file.length(), schema, new ArrayList<HivePartitionKey>(), getColumns());
+        }
+        else {
+            cursor = new ColumnarTextHiveRecordCursor<>(recordReader, file.length(), schema, new ArrayList<HivePartitionKey>(), getColumns());
+        }
+        return consume(cursor);
+    }
+
+    private static long readOptimized(File file, boolean binarySerDe)
+            throws Exception
+    {
+        Configuration configuration = new Configuration();
+        Path path = new Path(file.getAbsolutePath());
+        FileSystem fileSystem = path.getFileSystem(configuration);
+        RcFileReader reader = new RcFileReader(fileSystem, path, 0, file.length(), ImmutableList.of(0, 1, 2), configuration);
+        return consume(new RcFileHiveRecordCursor(reader, binarySerDe, file.length(), new ArrayList<HivePartitionKey>(), getColumns()));
+    }
+
+    private static long consume(RecordCursor cursor)
+    {
+        long checksum = 0;
+        try {
+            while (cursor.advanceNextPosition()) {
+                checksum += cursor.getLong(0);
+                checksum += (long) cursor.getDouble(1);
+                checksum += cursor.getString(2).length;
+            }
+        }
+        finally {
+            cursor.close();
+        }
+        return checksum;
+    }
+
+    private static List<HiveColumnHandle> getColumns()
+    {
+        List<HiveColumnHandle> columns = new ArrayList<>();
+        for (int i = 0; i < COLUMN_NAMES.size(); i++) {
+            columns.add(new HiveColumnHandle("client_id=0", COLUMN_NAMES.get(i), i, HiveType.getHiveType(FIELD_INSPECTORS.get(i)), i, false));
+        }
+        return columns;
+    }
+
+    private static void writeFile(File file, @SuppressWarnings("deprecation") SerDe serDe, String codec)
+            throws Exception
+    {
+        JobConf jobConf = new JobConf();
+        Properties tableProperties = new Properties();
+        tableProperties.setProperty("columns", COLUMN_NAMES_STRING);
+        tableProperties.setProperty("columns.types", COLUMN_TYPES);
+        serDe.initialize(new Configuration(), tableProperties);
+
+        if (codec != null) {
+            jobConf.set(COMPRESS_CODEC, new CompressionCodecFactory(new Configuration()).getCodecByName(codec).getClass().getName());
+            jobConf.set(COMPRESS_TYPE, SequenceFile.CompressionType.BLOCK.toString());
+        }
+
+        RecordWriter recordWriter = new RCFileOutputFormat().getHiveRecordWriter(
+                jobConf,
+                new Path(file.getAbsolutePath()),
+                Text.class,
+                codec != null,
+                tableProperties,
+                new Progressable()
+                {
+                    @Override
+                    public void progress()
+                    {
+                    }
+                }
+        );
+
+        try {
+            SettableStructObjectInspector objectInspector = getStandardStructObjectInspector(COLUMN_NAMES, FIELD_INSPECTORS);
+            Object row = objectInspector.create();
+            List<StructField> fields = ImmutableList.copyOf(objectInspector.getAllStructFieldRefs());
+
+            for (int rowNumber = 0; rowNumber < ROWS; rowNumber++) {
+                objectInspector.setStructFieldData(row, fields.get(0), (long) rowNumber);
+                objectInspector.setStructFieldData(row, fields.get(1), rowNumber * 0.5);
+                objectInspector.setStructFieldData(row, fields.get(2), "value_" + (rowNumber % 1000));
+                recordWriter.write(serDe.serialize(row, objectInspector));
+            }
+        }
+        finally {
+            recordWriter.close(false);
+        }
+    }
+}
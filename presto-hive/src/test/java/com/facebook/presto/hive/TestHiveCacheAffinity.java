@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.spi.HostAddress;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.discovery.client.ServiceDescriptor;
+import io.airlift.discovery.client.ServiceState;
+import io.airlift.discovery.client.testing.StaticServiceSelector;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.facebook.presto.hive.HiveCacheAffinity.selectNode;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestHiveCacheAffinity
+{
+    @Test
+    public void testSelectNode()
+    {
+        List<HostAddress> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            nodes.add(HostAddress.fromParts("node" + i, 8080));
+        }
+
+        assertNull(selectNode(ImmutableList.<HostAddress>of(), "hdfs://host/file", 0));
+
+        // the selection does not depend on the order of the nodes
+        List<HostAddress> reversed = ImmutableList.copyOf(nodes).reverse();
+        for (int split = 0; split < 100; split++) {
+            assertEquals(selectNode(nodes, "s3://bucket/file", split * 1024), selectNode(reversed, "s3://bucket/file", split * 1024));
+        }
+
+        // removing a node only moves the splits of that node
+        HostAddress removed = nodes.remove(3);
+        int moved = 0;
+        for (int split = 0; split < 100; split++) {
+            HostAddress before = selectNode(ImmutableList.<HostAddress>builder().addAll(nodes).add(removed).build(), "s3://bucket/file", split * 1024);
+            HostAddress after = selectNode(nodes, "s3://bucket/file", split * 1024);
+            if (!before.equals(after)) {
+                assertEquals(before, removed);
+                moved++;
+            }
+        }
+        assertTrue(moved > 0);
+    }
+
+    @Test
+    public void testGetAddresses()
+    {
+        List<ServiceDescriptor> descriptors = ImmutableList.of(
+                node("http://worker1:8080", null, ServiceState.RUNNING),
+                node("http://worker2:8080", "hive,tpch", ServiceState.RUNNING),
+                node("http://worker3:8080", "tpch", ServiceState.RUNNING),
+                node("http://worker4:8080", null, ServiceState.STOPPED));
+        HiveCacheAffinity affinity = new HiveCacheAffinity(new HiveConnectorId("hive"), new StaticServiceSelector(descriptors));
+
+        List<HostAddress> workers = ImmutableList.of(HostAddress.fromString("worker1:8080"), HostAddress.fromString("worker2:8080"));
+        List<HostAddress> blockHosts = ImmutableList.of(HostAddress.fromString("datanode1"), HostAddress.fromString("worker1:8080"));
+
+        for (int split = 0; split < 20; split++) {
+            List<HostAddress> addresses = affinity.getAddresses("hdfs://host/file", split, blockHosts);
+            assertEquals(addresses.get(0), selectNode(workers, "hdfs://host/file", split));
+            assertTrue(addresses.containsAll(blockHosts));
+            assertEquals(addresses.size(), addresses.get(0).equals(HostAddress.fromString("worker1:8080")) ? 2 : 3);
+        }
+    }
+
+    private static ServiceDescriptor node(String uri, String datasources, ServiceState state)
+    {
+        ImmutableMap.Builder<String, String> properties = ImmutableMap.builder();
+        properties.put("http", uri);
+        if (datasources != null) {
+            properties.put("datasources", datasources);
+        }
+        return new ServiceDescriptor(UUID.randomUUID(), UUID.randomUUID().toString(), "presto", "general", null, state, properties.build());
+    }
+}
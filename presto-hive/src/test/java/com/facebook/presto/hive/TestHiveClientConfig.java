@@ -37,6 +37,7 @@ public class TestHiveClientConfig
                 .setMaxOutstandingSplits(1_000)
                 .setMaxGlobalSplitIteratorThreads(1_000)
                 .setMaxSplitIteratorThreads(50)
+                .setOptimizedReaderEnabled(true)
                 .setMetastoreCacheTtl(new Duration(1, TimeUnit.HOURS))
                 .setMetastoreRefreshInterval(new Duration(2, TimeUnit.MINUTES))
                 .setMaxMetastoreRefreshThreads(100)
@@ -56,7 +57,15 @@ public class TestHiveClientConfig
                 .setS3MaxClientRetries(3)
                 .setS3MaxErrorRetries(10)
                 .setS3ConnectTimeout(new Duration(5, TimeUnit.SECONDS))
-                .setS3StagingDirectory(new File(StandardSystemProperty.JAVA_IO_TMPDIR.value())));
+                .setS3StagingDirectory(new File(StandardSystemProperty.JAVA_IO_TMPDIR.value()))
+                .setS3ReadAheadPartSize(new DataSize(8, Unit.MEGABYTE))
+                .setS3ReadAheadWindow(new DataSize(32, Unit.MEGABYTE))
+                .setS3ReadAheadMaxMemory(new DataSize(512, Unit.MEGABYTE))
+                .setLocalCacheEnabled(false)
+                .setLocalCacheDirectory(null)
+                .setLocalCacheMaxSize(new DataSize(10, Unit.GIGABYTE))
+                .setLocalCacheRangeSize(new DataSize(1, Unit.MEGABYTE))
+                .setLocalCacheAffinityEnabled(true));
     }
 
     @Test
@@ -67,6 +76,7 @@ public class TestHiveClientConfig
                 .put("hive.max-outstanding-splits", "10")
                 .put("hive.max-global-split-iterator-threads", "10")
                 .put("hive.max-split-iterator-threads", "2")
+                .put("hive.optimized-reader.enabled", "false")
                 .put("hive.metastore-cache-ttl", "2h")
                 .put("hive.metastore-refresh-interval", "30m")
                 .put("hive.metastore-refresh-max-threads", "2500")
@@ -87,6 +97,14 @@ public class TestHiveClientConfig
                 .put("hive.s3.max-error-retries", "8")
                 .put("hive.s3.connect-timeout", "8s")
                 .put("hive.s3.staging-directory", "/s3-staging")
+                .put("hive.s3.read-ahead.part-size", "4MB")
+                .put("hive.s3.read-ahead.window", "64MB")
+                .put("hive.s3.read-ahead.max-memory", "1GB")
+                .put("hive.local-cache.enabled", "true")
+                .put("hive.local-cache.directory", "/ssd/presto-cache")
+                .put("hive.local-cache.max-size", "100GB")
+                .put("hive.local-cache.range-size", "4MB")
+                .put("hive.local-cache.affinity-enabled", "false")
                 .build();
 
         HiveClientConfig expected = new HiveClientConfig()
@@ -94,6 +112,7 @@ public class TestHiveClientConfig
                 .setMaxOutstandingSplits(10)
                 .setMaxGlobalSplitIteratorThreads(10)
                 .setMaxSplitIteratorThreads(2)
+                .setOptimizedReaderEnabled(false)
                 .setMetastoreCacheTtl(new Duration(2, TimeUnit.HOURS))
                 .setMetastoreRefreshInterval(new Duration(30, TimeUnit.MINUTES))
                 .setMaxMetastoreRefreshThreads(2500)
@@ -113,7 +132,15 @@ public class TestHiveClientConfig
                 .setS3MaxClientRetries(9)
                 .setS3MaxErrorRetries(8)
                 .setS3ConnectTimeout(new Duration(8, TimeUnit.SECONDS))
-                .setS3StagingDirectory(new File("/s3-staging"));
+                .setS3StagingDirectory(new File("/s3-staging"))
+                .setS3ReadAheadPartSize(new DataSize(4, Unit.MEGABYTE))
+                .setS3ReadAheadWindow(new DataSize(64, Unit.MEGABYTE))
+                .setS3ReadAheadMaxMemory(new DataSize(1, Unit.GIGABYTE))
+                .setLocalCacheEnabled(true)
+                .setLocalCacheDirectory(new File("/ssd/presto-cache"))
+                .setLocalCacheMaxSize(new DataSize(100, Unit.GIGABYTE))
+                .setLocalCacheRangeSize(new DataSize(4, Unit.MEGABYTE))
+                .setLocalCacheAffinityEnabled(false);
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
@@ -13,7 +13,11 @@
  */
 package com.facebook.presto.hive;
 
+import com.facebook.presto.hive.rcfile.RcFileReader;
 import com.facebook.presto.spi.RecordCursor;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.hive.ql.io.RCFileInputFormat;
 import org.apache.hadoop.hive.ql.io.RCFileOutputFormat;
 import org.apache.hadoop.hive.serde2.SerDe;
@@ -27,9 +31,15 @@ import org.apache.hadoop.mapred.Reporter;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
 public class TestHiveFileFormats
         extends AbstractTestHiveFileFormats
 {
@@ -90,4 +100,113 @@ public class TestHiveFileFormats
             file.delete();
         }
     }
+
+    @Test
+    public void testRcTextOptimized()
+            throws Exception
+    {
+        @SuppressWarnings("deprecation")
+        SerDe serde = new ColumnarSerDe();
+        File file = File.createTempFile("presto_test", "rc-text");
+        try {
+            FileSplit split = createTestFile(file.getAbsolutePath(), new RCFileOutputFormat(), serde, null);
+            List<HiveColumnHandle> columns = getPrimitiveColumns();
+            RecordCursor cursor = createOptimizedCursor(split, false, columns);
+
+            checkCursor(cursor, columns.size());
+            assertFalse(cursor.advanceNextPosition());
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRcBinaryOptimized()
+            throws Exception
+    {
+        @SuppressWarnings("deprecation")
+        SerDe serde = new LazyBinaryColumnarSerDe();
+        File file = File.createTempFile("presto_test", "rc-binary");
+        try {
+            FileSplit split = createTestFile(file.getAbsolutePath(), new RCFileOutputFormat(), serde, "default");
+            List<HiveColumnHandle> columns = getPrimitiveColumns();
+            RecordCursor cursor = createOptimizedCursor(split, true, columns);
+
+            checkCursor(cursor, columns.size());
+            assertFalse(cursor.advanceNextPosition());
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRcPageSource()
+            throws Exception
+    {
+        @SuppressWarnings("deprecation")
+        SerDe serde = new LazyBinaryColumnarSerDe();
+        File file = File.createTempFile("presto_test", "rc-binary");
+        try {
+            FileSplit split = createTestFile(file.getAbsolutePath(), new RCFileOutputFormat(), serde, null);
+            List<HiveColumnHandle> columns = getPrimitiveColumns();
+            RcFileHivePageSource pageSource = new RcFileHivePageSource(createOptimizedCursor(split, true, columns), columns);
+
+            checkPageSource(pageSource, columns.size());
+            assertNull(pageSource.getNextPage());
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRcOptimizedSplits()
+            throws Exception
+    {
+        @SuppressWarnings("deprecation")
+        SerDe serde = new LazyBinaryColumnarSerDe();
+        File file = File.createTempFile("presto_test", "rc-binary");
+        try {
+            FileSplit split = createTestFile(file.getAbsolutePath(), new RCFileOutputFormat(), serde, null);
+            List<HiveColumnHandle> columns = ImmutableList.of(getPrimitiveColumns().get(6));
+
+            // every row must be read by exactly one of the splits
+            long rows = 0;
+            long start = 0;
+            long splitLength = split.getLength() / 3;
+            while (start < split.getLength()) {
+                long length = Math.min(splitLength, split.getLength() - start);
+                RecordCursor cursor = createOptimizedCursor(new FileSplit(split.getPath(), start, length, new String[0]), true, columns);
+                while (cursor.advanceNextPosition()) {
+                    assertEquals(cursor.getLong(0), 4L);
+                    rows++;
+                }
+                start += length;
+            }
+            assertEquals(rows, NUM_ROWS);
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static RcFileHiveRecordCursor createOptimizedCursor(FileSplit split, boolean binarySerDe, List<HiveColumnHandle> columns)
+            throws IOException
+    {
+        List<Integer> readColumns = new ArrayList<>();
+        for (HiveColumnHandle column : columns) {
+            readColumns.add(column.getHiveColumnIndex());
+        }
+
+        Configuration configuration = new Configuration();
+        FileSystem fileSystem = split.getPath().getFileSystem(configuration);
+        RcFileReader reader = new RcFileReader(fileSystem, split.getPath(), split.getStart(), split.getLength(), readColumns, configuration);
+        return new RcFileHiveRecordCursor(reader, binarySerDe, split.getLength(), new ArrayList<HivePartitionKey>(), columns);
+    }
 }
@@ -35,7 +35,7 @@ public class TestHiveSplit
 
         ImmutableList<HivePartitionKey> partitionKeys = ImmutableList.of(new HivePartitionKey("a", HiveType.STRING, "apple"), new HivePartitionKey("b", HiveType.LONG, "42"));
         ImmutableList<HostAddress> addresses = ImmutableList.of(HostAddress.fromParts("127.0.0.1", 44), HostAddress.fromParts("127.0.0.1", 45));
-        HiveSplit expected = new HiveSplit("clientId", "db", "table", "partitionId", "path", 42, 88, schema, partitionKeys, addresses);
+        HiveSplit expected = new HiveSplit("clientId", "db", "table", "partitionId", "path", 42, 88, 1024, 1400000000000L, schema, partitionKeys, addresses);
 
         String json = codec.toJson(expected);
         HiveSplit actual = codec.fromJson(json);
@@ -47,6 +47,8 @@ public class TestHiveSplit
         assertEquals(actual.getPath(), expected.getPath());
         assertEquals(actual.getStart(), expected.getStart());
         assertEquals(actual.getLength(), expected.getLength());
+        assertEquals(actual.getFileSize(), expected.getFileSize());
+        assertEquals(actual.getFileModifiedTime(), expected.getFileModifiedTime());
         assertEquals(actual.getSchema(), expected.getSchema());
         assertEquals(actual.getPartitionKeys(), expected.getPartitionKeys());
         assertEquals(actual.getAddresses(), expected.getAddresses());
@@ -0,0 +1,322 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.hive.PrestoS3PrefetchingInputStream.ObjectRange;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestPrestoS3PrefetchingInputStream
+{
+    private static final byte[] DATA = createData(100);
+
+    @Test
+    public void testSequentialRead()
+            throws Exception
+    {
+        TestingRangeSource source = new TestingRangeSource();
+        PrestoS3BufferPool bufferPool = new PrestoS3BufferPool(10, 3);
+        PrestoS3PrefetchingInputStream input = new PrestoS3PrefetchingInputStream(source, 0, bufferPool, 4, sameThreadExecutor());
+
+        byte[] buffer = new byte[7];
+        assertEquals(input.read(buffer, 0, buffer.length), 7);
+        assertEquals(Arrays.copyOf(buffer, 7), Arrays.copyOfRange(DATA, 0, 7));
+
+        // the part at the position and the read-ahead parts allowed by the buffer pool
+        assertEquals(source.getRanges(), ImmutableList.of(range(0, 10), range(10, 20), range(20, 30)));
+        assertEquals(bufferPool.getBuffersInUse(), 3);
+
+        assertEquals(readAll(input, 7), Arrays.copyOfRange(DATA, 7, DATA.length));
+        assertEquals(input.read(), -1);
+
+        // every byte is requested once
+        List<List<Long>> expected = new ArrayList<>();
+        for (long start = 0; start < DATA.length; start += 10) {
+            expected.add(range(start, start + 10));
+        }
+        assertEquals(source.getRanges(), expected);
+
+        input.close();
+        assertEquals(bufferPool.getBuffersInUse(), 0);
+    }
+
+    @Test
+    public void testSeekWithinWindow()
+            throws Exception
+    {
+        TestingRangeSource source = new TestingRangeSource();
+        PrestoS3BufferPool bufferPool = new PrestoS3BufferPool(10, 10);
+        PrestoS3PrefetchingInputStream input = new PrestoS3PrefetchingInputStream(source, 0, bufferPool, 4, sameThreadExecutor());
+
+        input.seek(5);
+        assertEquals(input.read(), DATA[5] & 0xFF);
+        input.seek(33);
+        assertEquals(input.read(), DATA[33] & 0xFF);
+        assertEquals(input.getPos(), 34);
+
+        assertEquals(source.getRanges(), ImmutableList.of(range(5, 15), range(15, 25), range(25, 35), range(35, 45), range(45, 55), range(55, 65)));
+        input.close();
+        assertEquals(bufferPool.getBuffersInUse(), 0);
+    }
+
+    @Test
+    public void testRandomAccess()
+            throws Exception
+    {
+        TestingRangeSource source = new TestingRangeSource();
+        PrestoS3BufferPool bufferPool = new PrestoS3BufferPool(10, 10);
+        PrestoS3PrefetchingInputStream input = new PrestoS3PrefetchingInputStream(source, 0, bufferPool, 2, sameThreadExecutor());
+
+        assertEquals(input.read(), DATA[0] & 0xFF);
+        input.seek(90);
+        assertEquals(input.read(), DATA[90] & 0xFF);
+
+        // the second seek out of the window switches to range reads without read-ahead
+        input.seek(50);
+        source.clearRanges();
+        byte[] buffer = new byte[3];
+        assertEquals(input.read(buffer, 0, buffer.length), 3);
+        assertEquals(buffer, Arrays.copyOfRange(DATA, 50, 53));
+        assertEquals(source.getRanges(), ImmutableList.of(range(50, 60)));
+        assertEquals(bufferPool.getBuffersInUse(), 0);
+
+        // a sequential run of a part switches back to read-ahead
+        buffer = new byte[7];
+        assertEquals(input.read(buffer, 0, buffer.length), 7);
+        assertEquals(buffer, Arrays.copyOfRange(DATA, 53, 60));
+        assertEquals(input.read(), DATA[60] & 0xFF);
+        assertEquals(source.getRanges(), ImmutableList.of(range(50, 60), range(60, 70), range(70, 80)));
+
+        input.close();
+        assertEquals(bufferPool.getBuffersInUse(), 0);
+    }
+
+    @Test
+    public void testNearbyRandomReads()
+            throws Exception
+    {
+        TestingRangeSource source = new TestingRangeSource();
+        PrestoS3BufferPool bufferPool = new PrestoS3BufferPool(10, 10);
+        PrestoS3PrefetchingInputStream input = new PrestoS3PrefetchingInputStream(source, 0, bufferPool, 2, sameThreadExecutor());
+
+        assertEquals(input.read(), DATA[0] & 0xFF);
+        input.seek(90);
+        assertEquals(input.read(), DATA[90] & 0xFF);
+        input.seek(50);
+        source.clearRanges();
+
+        // small reads near each other are served by one request
+        byte[] buffer = new byte[2];
+        assertEquals(input.read(buffer, 0, buffer.length), 2);
+        assertEquals(buffer, Arrays.copyOfRange(DATA, 50, 52));
+        input.seek(55);
+        assertEquals(input.read(buffer, 0, buffer.length), 2);
+        assertEquals(buffer, Arrays.copyOfRange(DATA, 55, 57));
+        input.seek(59);
+        assertEquals(input.read(buffer, 0, buffer.length), 1);
+        assertEquals(buffer[0], DATA[59]);
+        assertEquals(source.getRanges(), ImmutableList.of(range(50, 60)));
+
+        // a read before the requested bytes needs a new request
+        input.seek(20);
+        assertEquals(input.read(), DATA[20] & 0xFF);
+
+        // reads at least as large as a request are not buffered
+        input.seek(70);
+        buffer = new byte[10];
+        assertEquals(input.read(buffer, 0, buffer.length), 10);
+        assertEquals(buffer, Arrays.copyOfRange(DATA, 70, 80));
+        assertEquals(source.getRanges(), ImmutableList.of(range(50, 60), range(20, 30), range(70, 80)));
+
+        input.close();
+        assertEquals(bufferPool.getBuffersInUse(), 0);
+    }
+
+    @Test
+    public void testLengthFromFirstResponse()
+            throws Exception
+    {
+        // the object is shorter than a part
+        TestingRangeSource source = new TestingRangeSource(Arrays.copyOf(DATA, 5));
+        PrestoS3BufferPool bufferPool = new PrestoS3BufferPool(10, 10);
+        PrestoS3PrefetchingInputStream input = new PrestoS3PrefetchingInputStream(source, 0, bufferPool, 4, sameThreadExecutor());
+
+        assertEquals(readAll(input, 3), Arrays.copyOf(DATA, 5));
+        assertEquals(source.getRanges(), ImmutableList.of(range(0, 10)));
+
+        // the end of the object is known without another request
+        input.seek(50);
+        assertEquals(input.read(), -1);
+        assertEquals(source.getRanges(), ImmutableList.of(range(0, 10)));
+        input.close();
+
+        // the first read starts after the end of the object
+        source.clearRanges();
+        input = new PrestoS3PrefetchingInputStream(source, 0, bufferPool, 4, sameThreadExecutor());
+        input.seek(7);
+        assertEquals(input.read(), -1);
+        assertEquals(input.read(), -1);
+        assertEquals(source.getRanges(), ImmutableList.of(range(7, 17)));
+        input.close();
+        assertEquals(bufferPool.getBuffersInUse(), 0);
+    }
+
+    @Test
+    public void testExhaustedBufferPool()
+            throws Exception
+    {
+        TestingRangeSource source = new TestingRangeSource();
+        PrestoS3BufferPool bufferPool = new PrestoS3BufferPool(10, 2);
+        PrestoS3PrefetchingInputStream first = new PrestoS3PrefetchingInputStream(source, 0, bufferPool, 4, sameThreadExecutor());
+        PrestoS3PrefetchingInputStream second = new PrestoS3PrefetchingInputStream(source, 0, bufferPool, 4, sameThreadExecutor());
+
+        assertEquals(first.read(), DATA[0] & 0xFF);
+        assertEquals(bufferPool.getBuffersInUse(), 2);
+
+        // the second stream reads without read-ahead
+        assertEquals(readAll(second, 3), DATA);
+        assertEquals(bufferPool.getBuffersInUse(), 2);
+
+        assertEquals(readAll(first, 5), Arrays.copyOfRange(DATA, 1, DATA.length));
+        first.close();
+        second.close();
+        assertEquals(bufferPool.getBuffersInUse(), 0);
+    }
+
+    @Test
+    public void testRetry()
+            throws Exception
+    {
+        TestingRangeSource source = new TestingRangeSource();
+        PrestoS3BufferPool bufferPool = new PrestoS3BufferPool(10, 10);
+        PrestoS3PrefetchingInputStream input = new PrestoS3PrefetchingInputStream(source, 1, bufferPool, 1, sameThreadExecutor());
+
+        source.failNextRequests(1);
+        assertEquals(readAll(input, 10), DATA);
+        input.close();
+
+        input = new PrestoS3PrefetchingInputStream(source, 1, bufferPool, 1, sameThreadExecutor());
+        source.failNextRequests(2);
+        try {
+            input.read();
+            fail("expected IOException");
+        }
+        catch (IOException expected) {
+        }
+
+        // the failed part is not reused
+        assertEquals(input.read(), DATA[0] & 0xFF);
+        input.close();
+        assertEquals(bufferPool.getBuffersInUse(), 0);
+    }
+
+    private static byte[] readAll(InputStream input, int readSize)
+            throws IOException
+    {
+        List<Byte> bytes = new ArrayList<>();
+        byte[] buffer = new byte[readSize];
+        while (true) {
+            int n = input.read(buffer, 0, buffer.length);
+            if (n == -1) {
+                break;
+            }
+            assertTrue(n > 0);
+            for (int i = 0; i < n; i++) {
+                bytes.add(buffer[i]);
+            }
+        }
+        byte[] result = new byte[bytes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bytes.get(i);
+        }
+        return result;
+    }
+
+    private static List<Long> range(long start, long end)
+    {
+        return ImmutableList.of(start, end);
+    }
+
+    private static byte[] createData(int length)
+    {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    private static class TestingRangeSource
+            implements PrestoS3PrefetchingInputStream.RangeSource
+    {
+        private final byte[] data;
+        private final List<List<Long>> ranges = new ArrayList<>();
+        private int failures;
+
+        public TestingRangeSource()
+        {
+            this(DATA);
+        }
+
+        public TestingRangeSource(byte[] data)
+        {
+            this.data = data;
+        }
+
+        @Override
+        public ObjectRange openRange(long start, long end)
+                throws IOException
+        {
+            assertFalse(start < 0 || start >= end, String.format("invalid range [%s, %s)", start, end));
+            if (failures > 0) {
+                failures--;
+                throw new IOException("testing failure");
+            }
+            ranges.add(range(start, end));
+
+            // like S3, the range ends at the end of the object
+            int rangeStart = (int) Math.min(start, data.length);
+            int rangeEnd = (int) Math.min(end, data.length);
+            return new ObjectRange(new ByteArrayInputStream(data, rangeStart, rangeEnd - rangeStart), data.length);
+        }
+
+        public List<List<Long>> getRanges()
+        {
+            return ImmutableList.copyOf(ranges);
+        }
+
+        public void clearRanges()
+        {
+            ranges.clear();
+        }
+
+        public void failNextRequests(int count)
+        {
+            failures = count;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import com.google.common.io.Files;
+import io.airlift.testing.FileUtils;
+import io.airlift.units.DataSize;
+import io.airlift.units.DataSize.Unit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestCachingFileSystem
+{
+    private static final byte[] DATA = createData(25);
+
+    private File directory;
+    private Path path;
+    private FileRangeCacheStats stats;
+    private FileRangeCache cache;
+    private FileSystem fileSystem;
+
+    @BeforeMethod
+    public void setup()
+            throws Exception
+    {
+        directory = Files.createTempDir();
+        File file = new File(directory, "data");
+        Files.write(DATA, file);
+        path = new Path(file.toURI());
+
+        stats = new FileRangeCacheStats();
+        cache = new FileRangeCache(new File(directory, "cache"), new DataSize(100, Unit.BYTE), new DataSize(10, Unit.BYTE), stats);
+        fileSystem = new CachingFileSystem(FileSystem.getLocal(new Configuration()), cache);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        FileUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    public void testReadThroughCache()
+            throws Exception
+    {
+        assertEquals(readFile(), DATA);
+        assertEquals(stats.getMisses().getTotalCount(), 3);
+        assertEquals(stats.getHits().getTotalCount(), 0);
+
+        assertEquals(readFile(), DATA);
+        assertEquals(stats.getMisses().getTotalCount(), 3);
+        assertEquals(stats.getHits().getTotalCount(), 3);
+        assertEquals(stats.getBytesSaved().getTotalCount(), DATA.length);
+    }
+
+    @Test
+    public void testSeek()
+            throws Exception
+    {
+        try (FSDataInputStream input = fileSystem.open(path)) {
+            input.seek(23);
+            assertEquals(input.read(), DATA[23]);
+            assertEquals(input.getPos(), 24);
+
+            input.seek(5);
+            byte[] buffer = new byte[10];
+            input.readFully(buffer);
+            assertEquals(buffer, Arrays.copyOfRange(DATA, 5, 15));
+
+            input.seek(DATA.length);
+            assertEquals(input.read(), -1);
+        }
+        // only the ranges that were read are cached
+        assertEquals(stats.getCachedRanges(), 3);
+        assertEquals(stats.getCachedBytes(), DATA.length);
+    }
+
+    @Test
+    public void testKnownFileStatus()
+            throws Exception
+    {
+        StatusCountingFileSystem statusCountingFileSystem = new StatusCountingFileSystem(FileSystem.getLocal(new Configuration()));
+        File otherFile = new File(directory, "other");
+        Files.write(DATA, otherFile);
+        Path otherPath = new Path(otherFile.toURI());
+
+        // the status of the split file comes from the split
+        fileSystem = new CachingFileSystem(statusCountingFileSystem, cache, new FileStatus(DATA.length, false, 0, 0, 42, path));
+        assertEquals(readFile(), DATA);
+        assertEquals(readFile(), DATA);
+        assertEquals(statusCountingFileSystem.getFileStatusCalls(), 0);
+        assertEquals(stats.getHits().getTotalCount(), 3);
+
+        // other files are looked up
+        try (FSDataInputStream input = fileSystem.open(otherPath)) {
+            assertEquals(input.read(), DATA[0]);
+        }
+        assertEquals(statusCountingFileSystem.getFileStatusCalls(), 1);
+    }
+
+    private byte[] readFile()
+            throws Exception
+    {
+        byte[] data = new byte[DATA.length];
+        try (FSDataInputStream input = fileSystem.open(path)) {
+            input.readFully(data);
+            assertEquals(input.read(), -1);
+        }
+        return data;
+    }
+
+    private static byte[] createData(int length)
+    {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private static class StatusCountingFileSystem
+            extends FilterFileSystem
+    {
+        private final AtomicInteger fileStatusCalls = new AtomicInteger();
+
+        private StatusCountingFileSystem(FileSystem fileSystem)
+        {
+            super(fileSystem);
+        }
+
+        private int getFileStatusCalls()
+        {
+            return fileStatusCalls.get();
+        }
+
+        @Override
+        public FileStatus getFileStatus(Path path)
+                throws IOException
+        {
+            fileStatusCalls.incrementAndGet();
+            return super.getFileStatus(path);
+        }
+    }
+}
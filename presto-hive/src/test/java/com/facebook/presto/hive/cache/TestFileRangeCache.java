@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import com.facebook.presto.hive.cache.FileRangeCache.RangeKey;
+import com.google.common.io.Files;
+import io.airlift.testing.FileUtils;
+import io.airlift.units.DataSize;
+import io.airlift.units.DataSize.Unit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestFileRangeCache
+{
+    private File directory;
+    private FileRangeCacheStats stats;
+
+    @BeforeMethod
+    public void setup()
+    {
+        directory = Files.createTempDir();
+        stats = new FileRangeCacheStats();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        FileUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    public void testGetAndPut()
+            throws Exception
+    {
+        FileRangeCache cache = new FileRangeCache(directory, new DataSize(100, Unit.BYTE), new DataSize(10, Unit.BYTE), stats);
+        RangeKey key = new RangeKey("hdfs://host/file", 1234, 0);
+        byte[] buffer = new byte[10];
+
+        assertFalse(cache.get(key, buffer, 10));
+        cache.put(key, data(10, 1), 10);
+        assertTrue(cache.get(key, buffer, 10));
+        assertEquals(buffer, data(10, 1));
+
+        // a rewritten file is a different range
+        assertFalse(cache.get(new RangeKey("hdfs://host/file", 5678, 0), buffer, 10));
+        assertFalse(cache.get(new RangeKey("hdfs://host/file", 1234, 1), buffer, 10));
+        // a range of a different length is not returned
+        assertFalse(cache.get(key, buffer, 5));
+
+        assertEquals(stats.getHits().getTotalCount(), 1);
+        assertEquals(stats.getMisses().getTotalCount(), 4);
+        assertEquals(stats.getBytesSaved().getTotalCount(), 10);
+        assertEquals(stats.getBytesWritten().getTotalCount(), 10);
+        assertEquals(stats.getCachedBytes(), 10);
+        assertEquals(stats.getCachedRanges(), 1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction()
+            throws Exception
+    {
+        FileRangeCache cache = new FileRangeCache(directory, new DataSize(30, Unit.BYTE), new DataSize(10, Unit.BYTE), stats);
+        byte[] buffer = new byte[10];
+
+        cache.put(key(0), data(10, 0), 10);
+        cache.put(key(1), data(10, 1), 10);
+        cache.put(key(2), data(10, 2), 10);
+        assertTrue(cache.get(key(0), buffer, 10));
+
+        // range 1 is the least recently used
+        cache.put(key(3), data(10, 3), 10);
+        assertFalse(cache.get(key(1), buffer, 10));
+        assertTrue(cache.get(key(2), buffer, 10));
+        assertEquals(buffer, data(10, 2));
+        assertTrue(cache.get(key(3), buffer, 10));
+        assertTrue(cache.get(key(0), buffer, 10));
+        assertEquals(buffer, data(10, 0));
+
+        assertEquals(stats.getEvictions().getTotalCount(), 1);
+        assertEquals(stats.getCachedBytes(), 30);
+        assertEquals(stats.getCachedRanges(), 3);
+    }
+
+    @Test
+    public void testClearedOnStartup()
+            throws Exception
+    {
+        FileRangeCache cache = new FileRangeCache(directory, new DataSize(100, Unit.BYTE), new DataSize(10, Unit.BYTE), stats);
+        cache.put(key(0), data(10, 0), 10);
+
+        cache = new FileRangeCache(directory, new DataSize(100, Unit.BYTE), new DataSize(10, Unit.BYTE), stats);
+        assertFalse(cache.get(key(0), new byte[10], 10));
+        assertEquals(directory.list().length, 0);
+    }
+
+    @Test
+    public void testMissingFile()
+            throws Exception
+    {
+        FileRangeCache cache = new FileRangeCache(directory, new DataSize(100, Unit.BYTE), new DataSize(10, Unit.BYTE), stats);
+        cache.put(key(0), data(10, 0), 10);
+
+        FileUtils.deleteDirectoryContents(directory);
+        assertFalse(cache.get(key(0), new byte[10], 10));
+        assertEquals(stats.getCachedRanges(), 0);
+
+        // the range can be cached again
+        cache.put(key(0), data(10, 0), 10);
+        assertTrue(cache.get(key(0), new byte[10], 10));
+    }
+
+    private static RangeKey key(long rangeIndex)
+    {
+        return new RangeKey("s3://bucket/file", 0, rangeIndex);
+    }
+
+    private static byte[] data(int length, int value)
+    {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+}
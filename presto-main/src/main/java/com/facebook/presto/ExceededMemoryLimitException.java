@@ -24,4 +24,9 @@ public class ExceededMemoryLimitException
     {
         super(StandardErrorCode.EXCEEDED_MEMORY_LIMIT, String.format("Task exceeded max memory size of %s", maxMemory));
     }
+
+    public ExceededMemoryLimitException(DataSize maxMemory, String reason)
+    {
+        super(StandardErrorCode.EXCEEDED_MEMORY_LIMIT, String.format("Task exceeded max memory size of %s: %s", maxMemory, reason));
+    }
 }
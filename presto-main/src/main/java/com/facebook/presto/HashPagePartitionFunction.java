@@ -18,16 +18,20 @@ import com.facebook.presto.block.BlockCursor;
 import com.facebook.presto.operator.Page;
 import com.facebook.presto.operator.PageBuilder;
 import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.tuple.TupleInfo.Type;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
-import io.airlift.slice.Slice;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.facebook.presto.operator.HashStrategyUtils.hashCursors;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
 
 public final class HashPagePartitionFunction
         implements PagePartitionFunction
@@ -42,9 +46,11 @@ public final class HashPagePartitionFunction
             @JsonProperty("partitionCount") int partitionCount,
             @JsonProperty("partitioningChannels") List<Integer> partitioningChannels)
     {
+        checkArgument(partitionCount > 0, "partitionCount must be greater than zero");
+        checkArgument(partition >= 0 && partition < partitionCount, "partition must be in the range [0, partitionCount)");
         this.partition = partition;
         this.partitionCount = partitionCount;
-        this.partitioningChannels = ImmutableList.copyOf(partitioningChannels);
+        this.partitioningChannels = ImmutableList.copyOf(checkNotNull(partitioningChannels, "partitioningChannels is null"));
     }
 
     @JsonProperty
@@ -74,6 +80,13 @@ public final class HashPagePartitionFunction
 
         List<TupleInfo> tupleInfos = getTupleInfos(pages);
 
+        ImmutableList.Builder<Type> partitioningTypes = ImmutableList.builder();
+        for (int channel : partitioningChannels) {
+            partitioningTypes.add(tupleInfos.get(channel).getType());
+        }
+        List<Type> types = partitioningTypes.build();
+        BlockCursor[] partitioningCursors = new BlockCursor[partitioningChannels.size()];
+
         PageBuilder pageBuilder = new PageBuilder(tupleInfos);
 
         ImmutableList.Builder<Page> partitionedPages = ImmutableList.builder();
@@ -83,6 +96,9 @@ public final class HashPagePartitionFunction
             for (int i = 0; i < cursors.length; i++) {
                 cursors[i] = page.getBlock(i).cursor();
             }
+            for (int i = 0; i < partitioningCursors.length; i++) {
+                partitioningCursors[i] = cursors[partitioningChannels.get(i)];
+            }
             // for each position
             for (int position = 0; position < page.getPositionCount(); position++) {
                 // advance all cursors
@@ -91,7 +107,7 @@ public final class HashPagePartitionFunction
                 }
 
                 // if hash is not in range skip
-                int partitionHashBucket = getPartitionHashBucket(tupleInfos, cursors);
+                int partitionHashBucket = getPartitionHashBucket(types, partitioningCursors);
                 if (partitionHashBucket != partition) {
                     continue;
                 }
@@ -115,29 +131,17 @@ public final class HashPagePartitionFunction
         return partitionedPages.build();
     }
 
-    private int getPartitionHashBucket(List<TupleInfo> tupleInfos, BlockCursor[] cursors)
+    private int getPartitionHashBucket(List<Type> types, BlockCursor[] partitioningCursors)
     {
-        long hashCode = 1;
-        for (int channel : partitioningChannels) {
-            hashCode *= 31;
-            hashCode += calculateHashCode(tupleInfos.get(channel), cursors[channel]);
-        }
-        // clear the sign bit
-        hashCode &= 0x7fff_ffff_ffff_ffffL;
+        int rowHash = hashCursors(types, partitioningCursors);
 
-        int bucket = (int) (hashCode % partitionCount);
+        // The consumer partitions its join build side with the low bits of the same row
+        // hash, so mix the hash before selecting the node to keep those partitions balanced.
+        int bucket = (murmurHash3(rowHash) & Integer.MAX_VALUE) % partitionCount;
         checkState(bucket >= 0 && bucket < partitionCount);
         return bucket;
     }
 
-    private static int calculateHashCode(TupleInfo tupleInfo, BlockCursor cursor)
-    {
-        Slice slice = cursor.getRawSlice();
-        int offset = cursor.getRawOffset();
-        int length = tupleInfo.size(slice, offset);
-        return slice.hashCode(offset, length);
-    }
-
     @Override
     public int hashCode()
     {
@@ -19,6 +19,10 @@ public final class PrestoMediaTypes
 {
     public static final String PRESTO_PAGES = "application/X-presto-pages";
     public static final MediaType PRESTO_PAGES_TYPE = MediaType.create("application", "X-presto-pages");
+    public static final String PRESTO_SNAPPY_PAGES = "application/X-presto-snappy-pages";
+    public static final MediaType PRESTO_SNAPPY_PAGES_TYPE = MediaType.create("application", "X-presto-snappy-pages");
+    public static final String PRESTO_SNAPPY_JSON = "application/X-presto-snappy-json";
+    public static final MediaType PRESTO_SNAPPY_JSON_TYPE = MediaType.create("application", "X-presto-snappy-json");
 
     private PrestoMediaTypes()
     {
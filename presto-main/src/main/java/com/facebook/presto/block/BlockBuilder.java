@@ -14,6 +14,7 @@
 package com.facebook.presto.block;
 
 import com.facebook.presto.block.uncompressed.UncompressedBlock;
+import com.facebook.presto.spi.StringSink;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleReadable;
 import com.google.common.base.Charsets;
@@ -27,6 +28,7 @@ import io.airlift.units.DataSize.Unit;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class BlockBuilder
+        implements StringSink
 {
     public static final DataSize DEFAULT_MAX_BLOCK_SIZE = new DataSize(64, Unit.KILOBYTE);
     public static final double DEFAULT_STORAGE_MULTIPLIER = 1.2;
@@ -149,6 +151,19 @@ public class BlockBuilder
         return append(Slices.wrappedBuffer(value));
     }
 
+    public BlockBuilder append(byte[] value, int offset, int length)
+    {
+        tupleBuilder.append(value, offset, length);
+        positionCount++;
+        return this;
+    }
+
+    @Override
+    public void appendString(byte[] bytes, int offset, int length)
+    {
+        append(bytes, offset, length);
+    }
+
     public BlockBuilder append(String value)
     {
         return append(Slices.copiedBuffer(value, Charsets.UTF_8));
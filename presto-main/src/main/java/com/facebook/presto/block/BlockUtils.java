@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.block;
 
+import com.facebook.presto.block.uncompressed.UncompressedBlock;
 import com.facebook.presto.tuple.Tuple;
 import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.base.Optional;
@@ -30,6 +31,24 @@ public final class BlockUtils
 {
     private BlockUtils() {}
 
+    /**
+     * Returns the block as an uncompressed block.  Run length encoded, dictionary
+     * encoded and compressed blocks are decoded into a new block.
+     */
+    public static UncompressedBlock toUncompressedBlock(Block block)
+    {
+        if (block instanceof UncompressedBlock) {
+            return (UncompressedBlock) block;
+        }
+
+        BlockBuilder blockBuilder = new BlockBuilder(block.getTupleInfo());
+        BlockCursor cursor = block.cursor();
+        while (cursor.advanceNextPosition()) {
+            cursor.appendTupleTo(blockBuilder);
+        }
+        return blockBuilder.build();
+    }
+
     // TODO: remove this hack after empty blocks are supported
     public static BlockIterable emptyBlockIterable()
     {
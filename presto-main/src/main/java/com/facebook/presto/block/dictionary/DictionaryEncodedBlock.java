@@ -14,10 +14,13 @@
 package com.facebook.presto.block.dictionary;
 
 import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.BlockCursor;
 import com.facebook.presto.block.RandomAccessBlock;
 import com.facebook.presto.serde.BlockEncoding;
 import com.facebook.presto.serde.DictionaryBlockEncoding;
 import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.primitives.Ints;
 import io.airlift.units.DataSize;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -84,7 +87,12 @@ public class DictionaryEncodedBlock
     public RandomAccessBlock toRandomAccessBlock()
     {
         // todo add a RandomAccessDictionaryEncodedBlock that contains a RandomAccessBlock for the ids
-        throw new UnsupportedOperationException();
+        BlockBuilder blockBuilder = new BlockBuilder(dictionary.getTupleInfo());
+        BlockCursor cursor = idBlock.cursor();
+        while (cursor.advanceNextPosition()) {
+            dictionary.appendTupleTo(Ints.checkedCast(cursor.getLong()), blockBuilder);
+        }
+        return blockBuilder.build().toRandomAccessBlock();
     }
 
     @Override
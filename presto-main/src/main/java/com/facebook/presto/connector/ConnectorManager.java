@@ -22,13 +22,16 @@ import com.facebook.presto.spi.ConnectorFactory;
 import com.facebook.presto.spi.ConnectorHandleResolver;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputHandleResolver;
+import com.facebook.presto.spi.ConnectorPageSourceProvider;
 import com.facebook.presto.spi.ConnectorRecordSetProvider;
 import com.facebook.presto.spi.ConnectorRecordSinkProvider;
 import com.facebook.presto.spi.ConnectorSplitManager;
 import com.facebook.presto.split.ConnectorDataStreamProvider;
 import com.facebook.presto.split.DataStreamManager;
+import com.facebook.presto.split.PageSourceDataStreamProvider;
 import com.facebook.presto.split.RecordSetDataStreamProvider;
 import com.facebook.presto.split.SplitManager;
+import com.google.common.base.Optional;
 import com.google.inject.Inject;
 
 import javax.annotation.Nullable;
@@ -134,6 +137,24 @@ public class ConnectorManager
             }
         }
 
+        if (connectorDataStreamProvider == null) {
+            try {
+                ConnectorPageSourceProvider connectorPageSourceProvider = connector.getPageSourceProvider();
+                checkNotNull(connectorPageSourceProvider, "Connector %s returned a null page source provider", connectorId);
+
+                // splits that can not be read as pages fall back to the record set provider
+                Optional<ConnectorRecordSetProvider> connectorRecordSetProvider = Optional.absent();
+                try {
+                    connectorRecordSetProvider = Optional.fromNullable(connector.getRecordSetProvider());
+                }
+                catch (UnsupportedOperationException ignored) {
+                }
+                connectorDataStreamProvider = new PageSourceDataStreamProvider(connectorPageSourceProvider, connectorRecordSetProvider);
+            }
+            catch (UnsupportedOperationException ignored) {
+            }
+        }
+
         if (connectorDataStreamProvider == null) {
             ConnectorRecordSetProvider connectorRecordSetProvider = null;
             try {
@@ -21,6 +21,7 @@ import com.facebook.presto.spi.ConnectorFactory;
 import com.facebook.presto.spi.ConnectorHandleResolver;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputHandleResolver;
+import com.facebook.presto.spi.ConnectorPageSourceProvider;
 import com.facebook.presto.spi.ConnectorRecordSetProvider;
 import com.facebook.presto.spi.ConnectorRecordSinkProvider;
 import com.facebook.presto.spi.ConnectorSplitManager;
@@ -95,6 +96,12 @@ public class NativeConnectorFactory
                 return recordSinkProvider;
             }
 
+            @Override
+            public ConnectorPageSourceProvider getPageSourceProvider()
+            {
+                throw new UnsupportedOperationException();
+            }
+
             @Override
             public ConnectorOutputHandleResolver getOutputHandleResolver()
             {
@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.execution;
 
+import com.facebook.presto.execution.SplitAssignmentPolicy.NodeCosts;
 import com.facebook.presto.spi.HostAddress;
 import com.facebook.presto.spi.Node;
 import com.facebook.presto.spi.NodeManager;
@@ -23,6 +24,7 @@ import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
@@ -45,7 +47,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static com.facebook.presto.execution.StragglerDetector.findStragglers;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 public class NodeScheduler
@@ -54,13 +58,35 @@ public class NodeScheduler
     private final AtomicLong scheduleLocal = new AtomicLong();
     private final AtomicLong scheduleRack = new AtomicLong();
     private final AtomicLong scheduleRandom = new AtomicLong();
+    private final AtomicLong scheduleAwayFromStraggler = new AtomicLong();
     private final int minCandidates;
+    private final double stragglerThroughputRatio;
+    private final SplitAssignmentPolicy assignmentPolicy;
 
     @Inject
     public NodeScheduler(NodeManager nodeManager, NodeSchedulerConfig config)
+    {
+        this(nodeManager, config, createAssignmentPolicy(config));
+    }
+
+    public NodeScheduler(NodeManager nodeManager, NodeSchedulerConfig config, SplitAssignmentPolicy assignmentPolicy)
     {
         this.nodeManager = nodeManager;
         this.minCandidates = config.getMinCandidates();
+        this.stragglerThroughputRatio = config.getStragglerThroughputRatio();
+        this.assignmentPolicy = checkNotNull(assignmentPolicy, "assignmentPolicy is null");
+    }
+
+    private static SplitAssignmentPolicy createAssignmentPolicy(NodeSchedulerConfig config)
+    {
+        switch (config.getAssignmentPolicy()) {
+            case QUEUED_SPLITS:
+                return new QueuedSplitsAssignmentPolicy();
+            case THROUGHPUT:
+                return new ThroughputAssignmentPolicy(config.getRemoteSplitPenalty());
+            default:
+                throw new IllegalArgumentException("Unsupported assignment policy " + config.getAssignmentPolicy());
+        }
     }
 
     @Managed
@@ -81,12 +107,19 @@ public class NodeScheduler
         return scheduleRandom.get();
     }
 
+    @Managed
+    public long getScheduleAwayFromStraggler()
+    {
+        return scheduleAwayFromStraggler.get();
+    }
+
     @Managed
     public void reset()
     {
         scheduleLocal.set(0);
         scheduleRack.set(0);
         scheduleRandom.set(0);
+        scheduleAwayFromStraggler.set(0);
     }
 
     public NodeSelector createNodeSelector(final String dataSourceName, Map<Node, RemoteTask> taskMap, int maxPendingSplitsPerTask)
@@ -177,30 +210,53 @@ public class NodeScheduler
         public Multimap<Node, Split> computeAssignments(Set<Split> splits)
         {
             Multimap<Node, Split> assignment = HashMultimap.create();
+            NodeMap nodeMap = this.nodeMap.get().get();
+            NodeCosts nodeCosts = assignmentPolicy.createNodeCosts(taskMap);
+
+            // tasks that are far slower than the rest of the stage only get splits no other node can run
+            Set<Node> stragglers = findStragglers(taskMap, stragglerThroughputRatio);
 
             for (Split split : splits) {
-                List<Node> candidateNodes = selectCandidateNodes(nodeMap.get().get(), split);
-                checkState(!candidateNodes.isEmpty(), "No nodes available to run query");
+                CandidateNodes candidateNodes = selectCandidateNodes(nodeMap, split);
+                checkState(!candidateNodes.getNodes().isEmpty(), "No nodes available to run query");
 
                 Node chosen = null;
-                int min = Integer.MAX_VALUE;
-                for (Node node : candidateNodes) {
-                    RemoteTask task = taskMap.get(node);
-                    int currentSplits = (task == null) ? 0 : task.getQueuedSplits();
-                    int assignedSplits = currentSplits + assignment.get(node).size();
-                    if (assignedSplits < min && assignedSplits < maxPendingSplitsPerTask) {
+                double min = Double.MAX_VALUE;
+                Node chosenStraggler = null;
+                double minStraggler = Double.MAX_VALUE;
+                List<Node> nodes = candidateNodes.getNodes();
+                for (int i = 0; i < nodes.size(); i++) {
+                    Node node = nodes.get(i);
+                    if (nodeCosts.getQueuedSplits(node) >= maxPendingSplitsPerTask) {
+                        continue;
+                    }
+                    double cost = nodeCosts.getSplitCost(node, i < candidateNodes.getLocalNodes());
+                    if (stragglers.contains(node)) {
+                        if (cost < minStraggler) {
+                            chosenStraggler = node;
+                            minStraggler = cost;
+                        }
+                    }
+                    else if (cost < min) {
                         chosen = node;
-                        min = assignedSplits;
+                        min = cost;
                     }
                 }
+                if (chosen == null) {
+                    chosen = chosenStraggler;
+                }
+                else if (chosenStraggler != null && minStraggler < min) {
+                    scheduleAwayFromStraggler.incrementAndGet();
+                }
                 if (chosen != null) {
                     assignment.put(chosen, split);
+                    nodeCosts.splitAssigned(chosen);
                 }
             }
             return assignment;
         }
 
-        private List<Node> selectCandidateNodes(NodeMap nodeMap, Split split)
+        private CandidateNodes selectCandidateNodes(NodeMap nodeMap, Split split)
         {
             Set<Node> chosen = new LinkedHashSet<>(minCandidates);
 
@@ -232,6 +288,8 @@ public class NodeScheduler
                 }
             }
 
+            int localNodes = chosen.size();
+
             // add nodes in same rack, if below the minimum count
             if (split.isRemotelyAccessible() && chosen.size() < minCandidates) {
                 for (HostAddress hint : split.getAddresses()) {
@@ -260,7 +318,7 @@ public class NodeScheduler
             // add some random nodes if below the minimum count
             if (split.isRemotelyAccessible()) {
                 if (chosen.size() < minCandidates) {
-                    for (Node node : lazyShuffle(nodeMap.getNodesByHost().values())) {
+                    for (Node node : randomNodes(nodeMap.getNodes(), minCandidates - chosen.size())) {
                         if (chosen.add(node)) {
                             scheduleRandom.incrementAndGet();
                         }
@@ -272,7 +330,51 @@ public class NodeScheduler
                 }
             }
 
-            return ImmutableList.copyOf(chosen);
+            return new CandidateNodes(ImmutableList.copyOf(chosen), localNodes);
+        }
+    }
+
+    /**
+     * Returns at least {@code count} random nodes, or all nodes if there are not enough.
+     * Only the list of all nodes is shuffled when a small sample is not enough, so
+     * selecting candidates for a split does not cost time linear in the cluster size.
+     */
+    private static Iterable<Node> randomNodes(List<Node> nodes, int count)
+    {
+        if (nodes.size() <= 2 * count) {
+            return lazyShuffle(nodes);
+        }
+
+        // oversample, as the caller skips duplicates and nodes it already chose
+        List<Node> sample = new ArrayList<>(2 * count);
+        for (int i = 0; i < 2 * count; i++) {
+            sample.add(nodes.get(ThreadLocalRandom.current().nextInt(nodes.size())));
+        }
+        return Iterables.concat(sample, lazyShuffle(nodes));
+    }
+
+    private static class CandidateNodes
+    {
+        private final List<Node> nodes;
+        private final int localNodes;
+
+        private CandidateNodes(List<Node> nodes, int localNodes)
+        {
+            this.nodes = nodes;
+            this.localNodes = localNodes;
+        }
+
+        /**
+         * Candidate nodes, starting with the nodes that are local to the data of the split
+         */
+        public List<Node> getNodes()
+        {
+            return nodes;
+        }
+
+        public int getLocalNodes()
+        {
+            return localNodes;
         }
     }
 
@@ -313,12 +415,14 @@ public class NodeScheduler
         private final SetMultimap<HostAddress, Node> nodesByHostAndPort;
         private final SetMultimap<InetAddress, Node> nodesByHost;
         private final SetMultimap<Rack, Node> nodesByRack;
+        private final List<Node> nodes;
 
         public NodeMap(SetMultimap<HostAddress, Node> nodesByHostAndPort, SetMultimap<InetAddress, Node> nodesByHost, SetMultimap<Rack, Node> nodesByRack)
         {
             this.nodesByHostAndPort = nodesByHostAndPort;
             this.nodesByHost = nodesByHost;
             this.nodesByRack = nodesByRack;
+            this.nodes = ImmutableList.copyOf(nodesByHost.values());
         }
 
         private SetMultimap<HostAddress, Node> getNodesByHostAndPort()
@@ -335,6 +439,11 @@ public class NodeScheduler
         {
             return nodesByRack;
         }
+
+        public List<Node> getNodes()
+        {
+            return nodes;
+        }
     }
 
     private static class Rack
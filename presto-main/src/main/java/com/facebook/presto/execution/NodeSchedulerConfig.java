@@ -14,12 +14,25 @@
 package com.facebook.presto.execution;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
 public class NodeSchedulerConfig
 {
+    public enum AssignmentPolicy
+    {
+        QUEUED_SPLITS,
+        THROUGHPUT
+    }
+
     private int minCandidates = 10;
+    private AssignmentPolicy assignmentPolicy = AssignmentPolicy.QUEUED_SPLITS;
+    private double remoteSplitPenalty = 0.5;
+    private double stragglerThroughputRatio = 0.1;
 
     @Min(1)
     public int getMinCandidates()
@@ -33,4 +46,47 @@ public class NodeSchedulerConfig
         this.minCandidates = candidates;
         return this;
     }
+
+    @NotNull
+    public AssignmentPolicy getAssignmentPolicy()
+    {
+        return assignmentPolicy;
+    }
+
+    @Config("node-scheduler.assignment-policy")
+    @ConfigDescription("How a split is assigned to one of its candidate nodes: QUEUED_SPLITS or THROUGHPUT")
+    public NodeSchedulerConfig setAssignmentPolicy(AssignmentPolicy assignmentPolicy)
+    {
+        this.assignmentPolicy = assignmentPolicy;
+        return this;
+    }
+
+    @DecimalMin("0.0")
+    public double getRemoteSplitPenalty()
+    {
+        return remoteSplitPenalty;
+    }
+
+    @Config("node-scheduler.remote-split-penalty")
+    @ConfigDescription("Extra cost, in splits, of running a split on a node that is not local to its data")
+    public NodeSchedulerConfig setRemoteSplitPenalty(double remoteSplitPenalty)
+    {
+        this.remoteSplitPenalty = remoteSplitPenalty;
+        return this;
+    }
+
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    public double getStragglerThroughputRatio()
+    {
+        return stragglerThroughputRatio;
+    }
+
+    @Config("node-scheduler.straggler-throughput-ratio")
+    @ConfigDescription("Tasks with an input throughput below this fraction of the stage median receive no new splits if another candidate is available; 0 disables")
+    public NodeSchedulerConfig setStragglerThroughputRatio(double stragglerThroughputRatio)
+    {
+        this.stragglerThroughputRatio = stragglerThroughputRatio;
+        return this;
+    }
 }
@@ -14,6 +14,7 @@
 package com.facebook.presto.execution;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.Duration;
 import io.airlift.units.MinDuration;
 
@@ -37,6 +38,7 @@ public class QueryManagerConfig
 
     private int remoteTaskMaxConsecutiveErrorCount = 10;
     private Duration remoteTaskMinErrorDuration = new Duration(2, TimeUnit.MINUTES);
+    private boolean remoteTaskCompressionEnabled;
 
     @Min(1)
     public int getScheduleSplitBatchSize()
@@ -155,4 +157,17 @@ public class QueryManagerConfig
         this.remoteTaskMinErrorDuration = remoteTaskMinErrorDuration;
         return this;
     }
+
+    public boolean isRemoteTaskCompressionEnabled()
+    {
+        return remoteTaskCompressionEnabled;
+    }
+
+    @Config("query.remote-task.compression-enabled")
+    @ConfigDescription("Send task updates and receive task info as Snappy compressed JSON")
+    public QueryManagerConfig setRemoteTaskCompressionEnabled(boolean remoteTaskCompressionEnabled)
+    {
+        this.remoteTaskCompressionEnabled = remoteTaskCompressionEnabled;
+        return this;
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.spi.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Assigns each split to the candidate node with the fewest queued splits.
+ */
+public class QueuedSplitsAssignmentPolicy
+        implements SplitAssignmentPolicy
+{
+    @Override
+    public NodeCosts createNodeCosts(Map<Node, RemoteTask> taskMap)
+    {
+        return new QueuedSplitsNodeCosts(taskMap);
+    }
+
+    private static class QueuedSplitsNodeCosts
+            implements NodeCosts
+    {
+        private final Map<Node, RemoteTask> taskMap;
+        private final Map<Node, Integer> queuedSplits = new HashMap<>();
+
+        private QueuedSplitsNodeCosts(Map<Node, RemoteTask> taskMap)
+        {
+            this.taskMap = checkNotNull(taskMap, "taskMap is null");
+        }
+
+        @Override
+        public int getQueuedSplits(Node node)
+        {
+            Integer splits = queuedSplits.get(node);
+            if (splits == null) {
+                RemoteTask task = taskMap.get(node);
+                splits = (task == null) ? 0 : task.getQueuedSplits();
+                queuedSplits.put(node, splits);
+            }
+            return splits;
+        }
+
+        @Override
+        public double getSplitCost(Node node, boolean local)
+        {
+            return getQueuedSplits(node);
+        }
+
+        @Override
+        public void splitAssigned(Node node)
+        {
+            queuedSplits.put(node, getQueuedSplits(node) + 1);
+        }
+    }
+}
@@ -19,12 +19,9 @@ import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.operator.Page;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
-import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
-import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
@@ -32,21 +29,22 @@ import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 
 import javax.annotation.concurrent.GuardedBy;
-import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.facebook.presto.execution.BufferResult.emptyResults;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -54,6 +52,16 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+/**
+ * A buffer of pages shared by a set of named output queues.
+ * <p/>
+ * The producer appends each page to every open queue while holding the
+ * monitor of this buffer.  Each queue tracks its own sequence ids and is
+ * consumed under its own lock, so readers never contend with the producer
+ * or with each other.  A page is reference counted by the queues holding
+ * it, and its bytes are released from the buffer when the last queue
+ * acknowledges it.
+ */
 @ThreadSafe
 public class SharedBuffer
 {
@@ -78,20 +86,18 @@ public class SharedBuffer
     @GuardedBy("this")
     private OutputBuffers outputBuffers;
 
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    /**
+     * All pages added while the buffer is OPEN, so queues added later see every page.
+     */
     @GuardedBy("this")
-    private long bufferedBytes;
-    @GuardedBy("this")
-    private final LinkedList<Page> masterQueue = new LinkedList<>();
-    @GuardedBy("this")
-    private final LinkedList<QueuedPage> queuedPages = new LinkedList<>();
+    private final List<BufferedPage> masterQueue = new ArrayList<>();
+    private final Queue<QueuedPage> queuedPages = new ConcurrentLinkedQueue<>();
     @GuardedBy("this")
     private long masterSequenceId;
-    @GuardedBy("this")
-    private Map<String, NamedQueue> namedQueues = new HashMap<>();
-    @GuardedBy("this")
-    private final SortedSet<NamedQueue> openQueuesBySequenceId = new TreeSet<>();
-    @GuardedBy("this")
-    private StateMachine<QueueState> state;
+    private final ConcurrentMap<String, NamedQueue> namedQueues = new ConcurrentHashMap<>();
+    private final StateMachine<QueueState> state;
 
     private final AtomicLong pagesAdded = new AtomicLong();
 
@@ -126,6 +132,8 @@ public class SharedBuffer
 
     public synchronized SharedBufferInfo getInfo()
     {
+        updateMasterSequenceId();
+
         ImmutableList.Builder<BufferInfo> infos = ImmutableList.builder();
         for (NamedQueue namedQueue : namedQueues.values()) {
             infos.add(new BufferInfo(namedQueue.getQueueId(), namedQueue.isFinished(), namedQueue.size(), namedQueue.pagesRemoved()));
@@ -157,14 +165,23 @@ public class SharedBuffer
             if (!namedQueues.containsKey(bufferId)) {
                 checkState(state.get() == QueueState.OPEN, "%s is not OPEN", SharedBuffer.class.getSimpleName());
                 NamedQueue namedQueue = new NamedQueue(bufferId, entry.getValue());
+
+                // a new queue starts with every page added so far
+                for (BufferedPage page : masterQueue) {
+                    page.retain();
+                    namedQueue.append(page);
+                }
                 namedQueues.put(bufferId, namedQueue);
-                openQueuesBySequenceId.add(namedQueue);
             }
         }
 
         if (outputBuffers.isNoMoreBufferIds()) {
-            namedQueues = ImmutableMap.copyOf(namedQueues);
             if (state.compareAndSet(QueueState.OPEN, QueueState.NO_MORE_QUEUES)) {
+                // the master queue is no longer needed, so pages are now only held by the named queues
+                for (BufferedPage page : masterQueue) {
+                    release(page);
+                }
+                masterQueue.clear();
                 updateState();
             }
         }
@@ -180,29 +197,56 @@ public class SharedBuffer
         }
 
         // is there room in the buffer
-        if (bufferedBytes < maxBufferedBytes) {
+        if (bufferedBytes.get() < maxBufferedBytes) {
             addInternal(page);
             return Futures.immediateFuture(true);
         }
 
         QueuedPage queuedPage = new QueuedPage(page);
-        queuedPages.addLast(queuedPage);
+        queuedPages.add(queuedPage);
+
+        // a consumer may have freed space since the check above
+        refillBuffer();
+
         return queuedPage.getFuture();
     }
 
     private synchronized void addInternal(Page page)
     {
-        // add page
-        masterQueue.add(page);
+        // count the references before publishing the page, so a fast consumer can not release it early
+        int references = 0;
+        if (state.get() == QueueState.OPEN) {
+            references++;
+        }
+        for (NamedQueue namedQueue : namedQueues.values()) {
+            if (!namedQueue.isFinished()) {
+                references++;
+            }
+        }
+
         pagesAdded.incrementAndGet();
-        bufferedBytes += page.getDataSize().toBytes();
+        if (references == 0) {
+            // no one will ever read this page
+            return;
+        }
+
+        BufferedPage bufferedPage = new BufferedPage(page, references);
+        bufferedBytes.addAndGet(bufferedPage.getBytes());
+
+        if (state.get() == QueueState.OPEN) {
+            masterQueue.add(bufferedPage);
+        }
 
-        // notify consumers an page has arrived
-        this.notifyAll();
+        // add page to each queue and notify consumers a page has arrived
+        for (NamedQueue namedQueue : namedQueues.values()) {
+            if (!namedQueue.isFinished()) {
+                namedQueue.append(bufferedPage);
+            }
+        }
     }
 
     @VisibleForTesting
-    public synchronized void acknowledge(String outputId, long sequenceId)
+    public void acknowledge(String outputId, long sequenceId)
     {
         checkNotNull(outputId, "outputId is null");
 
@@ -215,26 +259,20 @@ public class SharedBuffer
             return;
         }
 
-        // remove queue from set before calling getPages because getPages changes
-        // the sequence number of the queue which is used for identity comparison in the
-        // sorted set
-        openQueuesBySequenceId.remove(namedQueue);
-
         // acknowledge the pages
         namedQueue.acknowledge(sequenceId);
 
-        // only add back the queue if it is still open
-        if (!closed.get()) {
-            openQueuesBySequenceId.add(namedQueue);
-        }
-        else {
-            namedQueue.setFinished();
+        // once the buffer is closed, an acknowledgement means the reader is done
+        if (closed.get()) {
+            synchronized (this) {
+                namedQueue.setFinished();
+            }
         }
 
-        updateState();
+        updateStateIfNecessary();
     }
 
-    public synchronized BufferResult get(String outputId, long startingSequenceId, DataSize maxSize, Duration maxWait)
+    public BufferResult get(String outputId, long startingSequenceId, DataSize maxSize, Duration maxWait)
             throws InterruptedException
     {
         checkNotNull(outputId, "outputId is null");
@@ -250,99 +288,146 @@ public class SharedBuffer
             return emptyResults(namedQueue.getSequenceId(), true);
         }
 
+        // acknowledge the previous pages, which may free space for a blocked producer
+        namedQueue.acknowledge(startingSequenceId);
+        if (!queuedPages.isEmpty()) {
+            refillBuffer();
+        }
+
         // wait for pages to arrive
-        if (namedQueue.isEmpty()) {
-            long remainingNanos = maxWait.roundTo(NANOSECONDS);
-            long end = System.nanoTime() + remainingNanos;
-            while (remainingNanos > 0 && namedQueue.isEmpty() && !namedQueue.isFinished()) {
-                // wait for timeout or notification
-                NANOSECONDS.timedWait(this, remainingNanos);
-                remainingNanos = end - System.nanoTime();
+        long remainingNanos = maxWait.roundTo(NANOSECONDS);
+        long end = System.nanoTime() + remainingNanos;
+        while (remainingNanos > 0) {
+            // register for the notification before checking, so an append between the check and the wait is not missed
+            ListenableFuture<?> pagesAvailable = namedQueue.getPagesAvailableFuture();
+            if (!namedQueue.isEmpty() || namedQueue.isFinished() || closed.get()) {
+                break;
             }
+            waitFor(pagesAvailable, remainingNanos);
+            remainingNanos = end - System.nanoTime();
         }
 
-        // remove queue from set before calling getPages because getPages changes
-        // the sequence number of the queue which is used for identity comparison in the
-        // sorted set
-        openQueuesBySequenceId.remove(namedQueue);
-
         // get the pages
         BufferResult results = namedQueue.getPages(startingSequenceId, maxSize);
 
-        // only add back the queue if it is still open
-        if (!closed.get() || !results.isBufferClosed()) {
-            openQueuesBySequenceId.add(namedQueue);
-        }
-        else {
-            namedQueue.setFinished();
-        }
-
-        updateState();
+        updateStateIfNecessary();
 
         return results;
     }
 
-    public synchronized void abort(String outputId)
+    private static void waitFor(ListenableFuture<?> future, long timeoutNanos)
+            throws InterruptedException
+    {
+        try {
+            future.get(timeoutNanos, NANOSECONDS);
+        }
+        catch (TimeoutException ignored) {
+        }
+        catch (ExecutionException e) {
+            // the future is only ever completed successfully
+            throw new AssertionError(e);
+        }
+    }
+
+    public void abort(String outputId)
     {
         checkNotNull(outputId, "outputId is null");
         NamedQueue namedQueue = namedQueues.get(outputId);
         if (namedQueue == null || namedQueue.isFinished()) {
             return;
         }
-        namedQueue.setFinished();
-        openQueuesBySequenceId.remove(namedQueue);
 
-        updateState();
+        synchronized (this) {
+            namedQueue.setFinished();
+            updateState();
+        }
+    }
+
+    /**
+     * Consumers only need the buffer lock when there is work for the producer side:
+     * refilling the buffer from queued pages, or finishing queues after the buffer is closed.
+     */
+    private void updateStateIfNecessary()
+    {
+        if (closed.get() || !queuedPages.isEmpty()) {
+            updateState();
+        }
     }
 
     private synchronized void updateState()
     {
         if (closed.get()) {
-            // remove all empty queues
-            for (Iterator<NamedQueue> iterator = openQueuesBySequenceId.iterator(); iterator.hasNext(); ) {
-                NamedQueue namedQueue = iterator.next();
-                if (namedQueue.isEmpty()) {
+            // finish all empty queues
+            for (NamedQueue namedQueue : namedQueues.values()) {
+                if (!namedQueue.isFinished() && namedQueue.isEmpty()) {
                     namedQueue.setFinished();
-                    iterator.remove();
                 }
             }
             // discard queued pages (not officially in the buffer) and waiters
-            for (QueuedPage queuedPage : queuedPages) {
-                queuedPage.getFuture().set(null);
-            }
-            queuedPages.clear();
+            releaseQueuedPages();
         }
 
-        if (state.get() == QueueState.NO_MORE_QUEUES && !openQueuesBySequenceId.isEmpty()) {
-            // advance master sequence id
-            long oldMasterSequenceId = masterSequenceId;
-            masterSequenceId = openQueuesBySequenceId.iterator().next().getSequenceId();
+        refillBuffer();
 
-            // drop consumed pages
-            int pagesToRemove = Ints.checkedCast(masterSequenceId - oldMasterSequenceId);
-            checkState(pagesToRemove >= 0,
-                    "Master sequence id moved backwards: oldMasterSequenceId=%s, newMasterSequenceId=%s",
-                    oldMasterSequenceId,
-                    masterSequenceId);
+        if (state.get() == QueueState.NO_MORE_QUEUES && closed.get() && allQueuesFinished()) {
+            destroy();
+        }
+    }
 
-            for (int i = 0; i < pagesToRemove; i++) {
-                Page page = masterQueue.removeFirst();
-                bufferedBytes -= page.getDataSize().toBytes();
+    private synchronized void refillBuffer()
+    {
+        // refill buffer from queued pages
+        while (!closed.get() && bufferedBytes.get() < maxBufferedBytes) {
+            QueuedPage queuedPage = queuedPages.poll();
+            if (queuedPage == null) {
+                break;
             }
+            addInternal(queuedPage.getPage());
+            queuedPage.getFuture().set(null);
+        }
+    }
 
-            // refill buffer from queued pages
-            while (!queuedPages.isEmpty() && bufferedBytes < maxBufferedBytes) {
-                QueuedPage queuedPage = queuedPages.removeFirst();
-                addInternal(queuedPage.getPage());
-                queuedPage.getFuture().set(null);
+    private synchronized void updateMasterSequenceId()
+    {
+        if (state.get() != QueueState.NO_MORE_QUEUES) {
+            return;
+        }
+
+        // the master sequence id is the oldest page still needed by an open queue
+        long minSequenceId = Long.MAX_VALUE;
+        for (NamedQueue namedQueue : namedQueues.values()) {
+            if (!namedQueue.isFinished()) {
+                minSequenceId = Math.min(minSequenceId, namedQueue.getSequenceId());
             }
         }
+        if (minSequenceId != Long.MAX_VALUE) {
+            masterSequenceId = Math.max(masterSequenceId, minSequenceId);
+        }
+    }
 
-        if (state.get() == QueueState.NO_MORE_QUEUES && closed.get() && openQueuesBySequenceId.isEmpty()) {
-            destroy();
+    private boolean allQueuesFinished()
+    {
+        for (NamedQueue namedQueue : namedQueues.values()) {
+            if (!namedQueue.isFinished()) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        this.notifyAll();
+    private void releaseQueuedPages()
+    {
+        QueuedPage queuedPage;
+        while ((queuedPage = queuedPages.poll()) != null) {
+            queuedPage.getFuture().set(null);
+        }
+    }
+
+    private void release(BufferedPage page)
+    {
+        if (page.release()) {
+            bufferedBytes.addAndGet(-page.getBytes());
+        }
     }
 
     /**
@@ -362,37 +447,47 @@ public class SharedBuffer
     public synchronized void destroy()
     {
         closed.set(true);
+        updateMasterSequenceId();
         state.set(QueueState.FINISHED);
 
-        // drop all of the queues
-        for (NamedQueue namedQueue : openQueuesBySequenceId) {
+        // drop all of the queues, which also notifies readers that the buffer has been destroyed
+        for (NamedQueue namedQueue : namedQueues.values()) {
             namedQueue.setFinished();
         }
-        openQueuesBySequenceId.clear();
 
         // clear the buffer
+        for (BufferedPage page : masterQueue) {
+            release(page);
+        }
         masterQueue.clear();
-        bufferedBytes = 0;
 
         // free queued page waiters
-        for (QueuedPage queuedPage : queuedPages) {
-            queuedPage.getFuture().set(null);
-        }
-        queuedPages.clear();
-
-        // notify readers that the buffer has been destroyed
-        this.notifyAll();
+        releaseQueuedPages();
     }
 
-    @NotThreadSafe
+    /**
+     * Pages are appended by the producer while holding the buffer lock, and
+     * are acknowledged and read by consumers while holding the queue lock.
+     */
+    @ThreadSafe
     private class NamedQueue
-            implements Comparable<NamedQueue>
     {
         private final String queueId;
         private final PagePartitionFunction partitionFunction;
 
-        private long sequenceId;
-        private boolean finished;
+        /**
+         * Pages with a sequence id of at least {@code pagesDropped}.
+         */
+        private final Queue<BufferedPage> bufferedPages = new ConcurrentLinkedQueue<>();
+        private final AtomicReference<SettableFuture<?>> pagesAvailable = new AtomicReference<>();
+
+        @GuardedBy("SharedBuffer.this")
+        private volatile long pagesAppended;
+        @GuardedBy("this")
+        private long pagesDropped;
+        @GuardedBy("this")
+        private volatile long sequenceId;
+        private volatile boolean finished;
 
         private NamedQueue(String queueId, PagePartitionFunction partitionFunction)
         {
@@ -407,16 +502,26 @@ public class SharedBuffer
 
         public boolean isFinished()
         {
-            checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
-
             return finished;
         }
 
-        public void setFinished()
+        public synchronized void setFinished()
         {
+            // the buffer lock prevents the producer from appending a page after the queue is drained
             checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
 
+            if (finished) {
+                return;
+            }
             finished = true;
+
+            BufferedPage page;
+            while ((page = bufferedPages.poll()) != null) {
+                release(page);
+            }
+
+            // wake up readers so they see the queue is finished
+            notifyPagesAvailable();
         }
 
         public boolean isEmpty()
@@ -426,8 +531,6 @@ public class SharedBuffer
 
         public long getSequenceId()
         {
-            checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
-
             return sequenceId;
         }
 
@@ -438,30 +541,62 @@ public class SharedBuffer
 
         public int size()
         {
-            checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
-
             if (finished) {
                 return 0;
             }
+            return (int) Math.max(0, pagesAppended - sequenceId);
+        }
 
-            int listOffset = Ints.checkedCast(sequenceId - masterSequenceId);
-            if (listOffset >= masterQueue.size()) {
-                return 0;
+        public void append(BufferedPage page)
+        {
+            checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
+
+            bufferedPages.add(page);
+            pagesAppended++;
+            notifyPagesAvailable();
+        }
+
+        public ListenableFuture<?> getPagesAvailableFuture()
+        {
+            while (true) {
+                SettableFuture<?> future = pagesAvailable.get();
+                if (future != null) {
+                    return future;
+                }
+                SettableFuture<?> newFuture = SettableFuture.create();
+                if (pagesAvailable.compareAndSet(null, newFuture)) {
+                    return newFuture;
+                }
             }
-            // todo include queued pages?
-            return masterQueue.size() - listOffset;
         }
 
-        public void acknowledge(long sequenceId)
+        private void notifyPagesAvailable()
+        {
+            SettableFuture<?> future = pagesAvailable.getAndSet(null);
+            if (future != null) {
+                future.set(null);
+            }
+        }
+
+        public synchronized void acknowledge(long sequenceId)
         {
             if (this.sequenceId < sequenceId) {
                 this.sequenceId = sequenceId;
             }
+
+            // drop the acknowledged pages
+            while (pagesDropped < this.sequenceId) {
+                BufferedPage page = bufferedPages.poll();
+                if (page == null) {
+                    break;
+                }
+                pagesDropped++;
+                release(page);
+            }
         }
 
-        public BufferResult getPages(long startingSequenceId, DataSize maxSize)
+        public synchronized BufferResult getPages(long startingSequenceId, DataSize maxSize)
         {
-            checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
             checkArgument(maxSize.toBytes() > 0, "maxSize must be at least 1 byte");
 
             acknowledge(startingSequenceId);
@@ -470,8 +605,8 @@ public class SharedBuffer
                 return emptyResults(sequenceId, true);
             }
 
-            int listOffset = Ints.checkedCast(sequenceId - masterSequenceId);
-            if (listOffset >= masterQueue.size()) {
+            // the queue may have been acknowledged past the pages appended so far
+            if (pagesDropped < sequenceId || bufferedPages.isEmpty()) {
                 return emptyResults(sequenceId, false);
             }
 
@@ -479,28 +614,16 @@ public class SharedBuffer
 
             List<Page> pages = new ArrayList<>();
             long bytes = 0;
-            while (listOffset < masterQueue.size()) {
-                Page page = masterQueue.get(listOffset++);
-                bytes += page.getDataSize().toBytes();
+            for (BufferedPage page : bufferedPages) {
+                bytes += page.getBytes();
                 // break (and don't add) if this page would exceed the limit
                 if (!pages.isEmpty() && bytes > maxBytes) {
                     break;
                 }
-                pages.add(page);
+                pages.add(page.getPage());
             }
 
-            return new BufferResult(startingSequenceId, startingSequenceId + pages.size(), false, ImmutableList.copyOf(pages), partitionFunction);
-        }
-
-        @Override
-        public int compareTo(NamedQueue other)
-        {
-            checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
-
-            return ComparisonChain.start()
-                    .compare(this.sequenceId, other.sequenceId)
-                    .compare(this.queueId, other.queueId)
-                    .result();
+            return new BufferResult(sequenceId, sequenceId + pages.size(), false, ImmutableList.copyOf(pages), partitionFunction);
         }
 
         @Override
@@ -514,6 +637,45 @@ public class SharedBuffer
         }
     }
 
+    private static class BufferedPage
+    {
+        private final Page page;
+        private final long bytes;
+        private final AtomicInteger referenceCount;
+
+        private BufferedPage(Page page, int referenceCount)
+        {
+            this.page = page;
+            this.bytes = page.getDataSize().toBytes();
+            this.referenceCount = new AtomicInteger(referenceCount);
+        }
+
+        private Page getPage()
+        {
+            return page;
+        }
+
+        private long getBytes()
+        {
+            return bytes;
+        }
+
+        private void retain()
+        {
+            referenceCount.incrementAndGet();
+        }
+
+        /**
+         * Returns true if this was the last reference to the page.
+         */
+        private boolean release()
+        {
+            int references = referenceCount.decrementAndGet();
+            checkState(references >= 0, "Page released too many times");
+            return references == 0;
+        }
+    }
+
     private static class QueuedPage
     {
         private final Page page;
@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.spi.Node;
+
+import java.util.Map;
+
+/**
+ * Decides how expensive it is to run one more split on a node, which the
+ * {@link NodeScheduler} uses to choose among the candidate nodes of a split.
+ */
+public interface SplitAssignmentPolicy
+{
+    /**
+     * Creates the costs for one round of split assignments.  Implementations should
+     * read the statistics of the tasks here, so the cost of a round stays linear in
+     * the number of splits times the number of candidates.
+     */
+    NodeCosts createNodeCosts(Map<Node, RemoteTask> taskMap);
+
+    interface NodeCosts
+    {
+        /**
+         * Number of splits queued on the node, including splits assigned in this round.
+         */
+        int getQueuedSplits(Node node);
+
+        /**
+         * Cost of running one more split on the node.  Lower is better.
+         *
+         * @param local whether the node is local to the data of the split
+         */
+        double getSplitCost(Node node, boolean local);
+
+        void splitAssigned(Node node);
+    }
+}
@@ -78,6 +78,7 @@ public class SqlQueryExecution
     private final int maxPendingSplitsPerNode;
     private final int initialHashPartitions;
     private final boolean experimentalSyntaxEnabled;
+    private final boolean distributedJoinsEnabled;
     private final ExecutorService queryExecutor;
 
     private final QueryExplainer queryExplainer;
@@ -98,6 +99,7 @@ public class SqlQueryExecution
             int maxPendingSplitsPerNode,
             int initialHashPartitions,
             boolean experimentalSyntaxEnabled,
+            boolean distributedJoinsEnabled,
             ExecutorService queryExecutor)
     {
         try (SetThreadName setThreadName = new SetThreadName("Query-%s", queryId)) {
@@ -110,6 +112,7 @@ public class SqlQueryExecution
             this.locationFactory = checkNotNull(locationFactory, "locationFactory is null");
             this.queryExecutor = checkNotNull(queryExecutor, "queryExecutor is null");
             this.experimentalSyntaxEnabled = experimentalSyntaxEnabled;
+            this.distributedJoinsEnabled = distributedJoinsEnabled;
 
             checkArgument(maxPendingSplitsPerNode > 0, "scheduleSplitBatchSize must be greater than 0");
             this.scheduleSplitBatchSize = scheduleSplitBatchSize;
@@ -126,7 +129,7 @@ public class SqlQueryExecution
             checkNotNull(self, "self is null");
             this.stateMachine = new QueryStateMachine(queryId, query, session, self, queryExecutor);
 
-            this.queryExplainer = new QueryExplainer(session, planOptimizers, metadata, experimentalSyntaxEnabled);
+            this.queryExplainer = new QueryExplainer(session, planOptimizers, metadata, experimentalSyntaxEnabled, distributedJoinsEnabled);
         }
     }
 
@@ -206,7 +209,7 @@ public class SqlQueryExecution
         stateMachine.setInputs(inputs);
 
         // fragment the plan
-        SubPlan subplan = new DistributedLogicalPlanner(metadata, idAllocator).createSubPlans(plan, false);
+        SubPlan subplan = new DistributedLogicalPlanner(metadata, idAllocator).createSubPlans(plan, false, distributedJoinsEnabled);
 
         stateMachine.recordAnalysisTime(analysisStart);
         return subplan;
@@ -385,6 +388,7 @@ public class SqlQueryExecution
         private final int maxPendingSplitsPerNode;
         private final int initialHashPartitions;
         private final boolean experimentalSyntaxEnabled;
+        private final boolean distributedJoinsEnabled;
         private final Metadata metadata;
         private final SplitManager splitManager;
         private final NodeScheduler nodeScheduler;
@@ -415,7 +419,9 @@ public class SqlQueryExecution
             this.nodeScheduler = checkNotNull(nodeScheduler, "nodeScheduler is null");
             this.planOptimizers = checkNotNull(planOptimizers, "planOptimizers is null");
             this.remoteTaskFactory = checkNotNull(remoteTaskFactory, "remoteTaskFactory is null");
-            this.experimentalSyntaxEnabled = checkNotNull(analyzerConfig, "analyzerConfig is null").isExperimentalSyntaxEnabled();
+            checkNotNull(analyzerConfig, "analyzerConfig is null");
+            this.experimentalSyntaxEnabled = analyzerConfig.isExperimentalSyntaxEnabled();
+            this.distributedJoinsEnabled = analyzerConfig.isDistributedJoinsEnabled();
 
             this.executor = Executors.newCachedThreadPool(threadsNamed("query-scheduler-%d"));
             this.executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) executor);
@@ -446,6 +452,7 @@ public class SqlQueryExecution
                     maxPendingSplitsPerNode,
                     initialHashPartitions,
                     experimentalSyntaxEnabled,
+                    distributedJoinsEnabled,
                     executor);
 
             return queryExecution;
@@ -36,6 +36,7 @@ import com.facebook.presto.sql.planner.PlanFragment.PlanDistribution;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.facebook.presto.util.SetThreadName;
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.FutureCallback;
@@ -48,6 +49,7 @@ import org.joda.time.DateTime;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
+import java.io.File;
 import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.util.ArrayList;
@@ -121,6 +123,7 @@ public class SqlTaskExecution
             ExecutorService notificationExecutor,
             DataSize maxTaskMemoryUsage,
             DataSize operatorPreAllocatedMemory,
+            Optional<File> spillPath,
             QueryMonitor queryMonitor,
             boolean cpuTimerEnabled)
     {
@@ -134,6 +137,7 @@ public class SqlTaskExecution
                 taskExecutor,
                 maxTaskMemoryUsage,
                 operatorPreAllocatedMemory,
+                spillPath,
                 queryMonitor,
                 notificationExecutor,
                 cpuTimerEnabled
@@ -157,6 +161,7 @@ public class SqlTaskExecution
             TaskExecutor taskExecutor,
             DataSize maxTaskMemoryUsage,
             DataSize operatorPreAllocatedMemory,
+            Optional<File> spillPath,
             QueryMonitor queryMonitor,
             Executor notificationExecutor,
             boolean cpuTimerEnabled)
@@ -190,7 +195,8 @@ public class SqlTaskExecution
                     session,
                     checkNotNull(maxTaskMemoryUsage, "maxTaskMemoryUsage is null"),
                     checkNotNull(operatorPreAllocatedMemory, "operatorPreAllocatedMemory is null"),
-                    cpuTimerEnabled);
+                    cpuTimerEnabled,
+                    checkNotNull(spillPath, "spillPath is null"));
 
             this.sharedBuffer = new SharedBuffer(
                     taskId,
@@ -210,7 +216,7 @@ public class SqlTaskExecution
 
             this.queryMonitor = checkNotNull(queryMonitor, "queryMonitor is null");
 
-            taskHandle = taskExecutor.addTask(taskId);
+            taskHandle = taskExecutor.addTask(taskId, session.getSource());
 
             LocalExecutionPlan localExecutionPlan = planner.plan(session, fragment.getRoot(), fragment.getSymbols(), new TaskOutputFactory(sharedBuffer));
             List<DriverFactory> driverFactories = localExecutionPlan.getDriverFactories();
@@ -245,7 +251,9 @@ public class SqlTaskExecution
         // start unpartitioned drivers
         List<DriverSplitRunner> runners = new ArrayList<>();
         for (DriverSplitRunnerFactory driverFactory : unpartitionedDriverFactories) {
-            runners.add(driverFactory.createDriverRunner(null));
+            for (int i = 0; i < driverFactory.getDriverInstances(); i++) {
+                runners.add(driverFactory.createDriverRunner(null));
+            }
             driverFactory.setNoMoreSplits();
         }
         enqueueDrivers(true, runners);
@@ -559,6 +567,11 @@ public class SqlTaskExecution
             this.pipelineContext = taskContext.addPipelineContext(driverFactory.isInputDriver(), driverFactory.isOutputDriver());
         }
 
+        private int getDriverInstances()
+        {
+            return driverFactory.getDriverInstances();
+        }
+
         private DriverSplitRunner createDriverRunner(@Nullable ScheduledSplit partitionedSplit)
         {
             pendingCreation.incrementAndGet();
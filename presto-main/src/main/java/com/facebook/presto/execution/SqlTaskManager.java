@@ -23,6 +23,7 @@ import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.sql.planner.LocalExecutionPlanner;
 import com.facebook.presto.sql.planner.PlanFragment;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -40,6 +41,7 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
+import java.io.File;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
@@ -53,6 +55,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import static com.facebook.presto.operator.SpillFile.deleteAllSpillFiles;
 import static com.facebook.presto.util.Threads.threadsNamed;
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -76,6 +79,7 @@ public class SqlTaskManager
     private final QueryMonitor queryMonitor;
     private final DataSize maxTaskMemoryUsage;
     private final DataSize operatorPreAllocatedMemory;
+    private final Optional<File> spillPath;
     private final Duration infoCacheTime;
     private final Duration clientTimeout;
     private final boolean cpuTimerEnabled;
@@ -112,6 +116,7 @@ public class SqlTaskManager
         this.maxBufferSize = config.getSinkMaxBufferSize();
         this.maxTaskMemoryUsage = config.getMaxTaskMemoryUsage();
         this.operatorPreAllocatedMemory = config.getOperatorPreAllocatedMemory();
+        this.spillPath = config.isSpillEnabled() ? Optional.of(config.getSpillPath()) : Optional.<File>absent();
         this.infoCacheTime = config.getInfoMaxAge();
         this.clientTimeout = config.getClientTimeout();
         this.cpuTimerEnabled = config.isTaskCpuTimerEnabled();
@@ -126,6 +131,11 @@ public class SqlTaskManager
     @PostConstruct
     public void start()
     {
+        // spill files of tasks that were running when the server last stopped
+        if (spillPath.isPresent()) {
+            deleteAllSpillFiles(spillPath.get());
+        }
+
         taskManagementExecutor.scheduleAtFixedRate(new Runnable()
         {
             @Override
@@ -280,7 +290,7 @@ public class SqlTaskManager
     }
 
     @Override
-    public TaskInfo updateTask(Session session, TaskId taskId, PlanFragment fragment, List<TaskSource> sources, OutputBuffers outputBuffers)
+    public TaskInfo updateTask(Session session, TaskId taskId, Optional<PlanFragment> fragment, List<TaskSource> sources, OutputBuffers outputBuffers)
     {
         URI location = locationFactory.createLocalTaskLocation(taskId);
 
@@ -294,10 +304,15 @@ public class SqlTaskManager
                     return taskInfo;
                 }
 
+                // the fragment is only sent until the task has been created
+                if (!fragment.isPresent()) {
+                    throw new NoSuchElementException("Unknown task " + taskId + " and the update does not contain a plan fragment");
+                }
+
                 taskExecution = SqlTaskExecution.createSqlTaskExecution(session,
                         taskId,
                         location,
-                        fragment,
+                        fragment.get(),
                         sources,
                         outputBuffers,
                         planner,
@@ -306,6 +321,7 @@ public class SqlTaskManager
                         taskNotificationExecutor,
                         maxTaskMemoryUsage,
                         operatorPreAllocatedMemory,
+                        spillPath,
                         queryMonitor,
                         cpuTimerEnabled
                 );
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.spi.Node;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.facebook.presto.execution.ThroughputAssignmentPolicy.getInputBytesPerSecond;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Finds the tasks of a source partitioned stage that process their input much
+ * slower than the other tasks of the stage, usually because their node has a
+ * degraded disk or is busy with garbage collection.
+ */
+final class StragglerDetector
+{
+    // the median is meaningless with fewer tasks
+    private static final int MIN_TASKS_WITH_THROUGHPUT = 3;
+
+    private StragglerDetector()
+    {
+    }
+
+    /**
+     * Returns the nodes whose input throughput is below {@code throughputRatio} times
+     * the median throughput of the tasks.  A ratio of zero disables the detection.
+     */
+    static Set<Node> findStragglers(Map<Node, RemoteTask> taskMap, double throughputRatio)
+    {
+        checkNotNull(taskMap, "taskMap is null");
+        checkArgument(throughputRatio >= 0 && throughputRatio <= 1, "throughputRatio must be between 0 and 1");
+
+        if (throughputRatio == 0 || taskMap.size() < MIN_TASKS_WITH_THROUGHPUT) {
+            return ImmutableSet.of();
+        }
+
+        Map<Node, Double> throughput = new HashMap<>();
+        for (Map.Entry<Node, RemoteTask> entry : taskMap.entrySet()) {
+            TaskInfo taskInfo = entry.getValue().getTaskInfo();
+            if (taskInfo.getState().isDone()) {
+                continue;
+            }
+            Double bytesPerSecond = getInputBytesPerSecond(taskInfo.getStats());
+            if (bytesPerSecond != null) {
+                throughput.put(entry.getKey(), bytesPerSecond);
+            }
+        }
+        if (throughput.size() < MIN_TASKS_WITH_THROUGHPUT) {
+            return ImmutableSet.of();
+        }
+
+        List<Double> values = new ArrayList<>(throughput.values());
+        Collections.sort(values);
+        double median = values.get(values.size() / 2);
+
+        ImmutableSet.Builder<Node> stragglers = ImmutableSet.builder();
+        for (Map.Entry<Node, Double> entry : throughput.entrySet()) {
+            if (entry.getValue() < median * throughputRatio) {
+                stragglers.add(entry.getKey());
+            }
+        }
+        return stragglers.build();
+    }
+}
@@ -17,7 +17,10 @@ import com.facebook.presto.util.CpuTimer;
 import com.facebook.presto.util.SetThreadName;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
 import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
@@ -30,6 +33,7 @@ import io.airlift.units.Duration;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.concurrent.GuardedBy;
@@ -39,21 +43,25 @@ import javax.inject.Inject;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicLongArray;
 
@@ -70,8 +78,8 @@ public class TaskExecutor
     // each task is guaranteed a minimum number of tasks
     private static final int GUARANTEED_SPLITS_PER_TASK = 3;
 
-    // each time we run a split, run it for this length before returning to the pool
-    private static final Duration SPLIT_RUN_QUANTA = new Duration(1, TimeUnit.SECONDS);
+    // a query moves to the next level once its (weighted) thread usage exceeds the level threshold
+    private static final long[] LEVEL_THRESHOLD_SECONDS = {0, 1, 10, 60, 300};
 
     private static final AtomicLong NEXT_RUNNER_ID = new AtomicLong();
     private static final AtomicLong NEXT_WORKER_ID = new AtomicLong();
@@ -82,17 +90,24 @@ public class TaskExecutor
     private final int runnerThreads;
     private final int minimumNumberOfTasks;
 
+    // each time we run a split, run it for this length before returning to the pool
+    private final Duration splitRunQuanta;
+    private final Map<String, Integer> resourceGroupWeights;
+
     private final Ticker ticker;
 
     @GuardedBy("this")
     private final List<TaskHandle> tasks;
 
+    @GuardedBy("this")
+    private final Map<QueryId, QueryHandle> queries = new HashMap<>();
+
     private final Set<PrioritizedSplitRunner> allSplits = new HashSet<>();
-    private final PriorityBlockingQueue<PrioritizedSplitRunner> pendingSplits;
+    private final WorkStealingSplitQueue pendingSplits;
     private final Set<PrioritizedSplitRunner> runningSplits = Sets.newSetFromMap(new ConcurrentHashMap<PrioritizedSplitRunner, Boolean>());
     private final Set<PrioritizedSplitRunner> blockedSplits = Sets.newSetFromMap(new ConcurrentHashMap<PrioritizedSplitRunner, Boolean>());
 
-    private final AtomicLongArray completedTasksPerLevel = new AtomicLongArray(5);
+    private final AtomicLongArray completedTasksPerLevel = new AtomicLongArray(LEVEL_THRESHOLD_SECONDS.length);
 
     private final DistributionStat queuedTime = new DistributionStat();
     private final DistributionStat wallTime = new DistributionStat();
@@ -102,7 +117,11 @@ public class TaskExecutor
     @Inject
     public TaskExecutor(TaskManagerConfig config)
     {
-        this(checkNotNull(config, "config is null").getMaxShardProcessorThreads());
+        this(checkNotNull(config, "config is null").getMaxShardProcessorThreads(),
+                config.getSplitRunQuanta(),
+                config.getLevelTimeMultiplier(),
+                parseResourceGroupWeights(config.getResourceGroupWeights()),
+                Ticker.systemTicker());
     }
 
     public TaskExecutor(int runnerThreads)
@@ -112,19 +131,34 @@ public class TaskExecutor
 
     @VisibleForTesting
     public TaskExecutor(int runnerThreads, Ticker ticker)
+    {
+        this(runnerThreads, new Duration(1, TimeUnit.SECONDS), 2.0, ImmutableMap.<String, Integer>of(), ticker);
+    }
+
+    @VisibleForTesting
+    public TaskExecutor(int runnerThreads, Duration splitRunQuanta, double levelTimeMultiplier, Map<String, Integer> resourceGroupWeights, Ticker ticker)
     {
         checkArgument(runnerThreads > 0, "runnerThreads must be at least 1");
+        checkNotNull(splitRunQuanta, "splitRunQuanta is null");
+        checkArgument(splitRunQuanta.toMillis() > 0, "splitRunQuanta must be positive");
+        checkArgument(levelTimeMultiplier >= 1.0, "levelTimeMultiplier must be at least 1");
+        checkNotNull(resourceGroupWeights, "resourceGroupWeights is null");
+        for (Map.Entry<String, Integer> entry : resourceGroupWeights.entrySet()) {
+            checkArgument(entry.getValue() > 0, "weight of resource group %s must be positive", entry.getKey());
+        }
 
         // we manages thread pool size directly, so create an unlimited pool
         this.executor = Executors.newCachedThreadPool(threadsNamed("task-processor-%d"));
         this.executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) executor);
         this.runnerThreads = runnerThreads;
+        this.splitRunQuanta = splitRunQuanta;
+        this.resourceGroupWeights = ImmutableMap.copyOf(resourceGroupWeights);
 
         this.ticker = checkNotNull(ticker, "ticker is null");
 
         // we assume we need at least two tasks per runner thread to keep the system busy
         this.minimumNumberOfTasks = 2 * this.runnerThreads;
-        this.pendingSplits = new PriorityBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 10);
+        this.pendingSplits = new WorkStealingSplitQueue(runnerThreads, LEVEL_THRESHOLD_SECONDS.length, levelTimeMultiplier);
         this.tasks = new LinkedList<>();
     }
 
@@ -132,8 +166,8 @@ public class TaskExecutor
     public synchronized void start()
     {
         checkState(!closed, "TaskExecutor is closed");
-        for (int i = 0; i < runnerThreads; i++) {
-            addRunnerThread();
+        for (int runner = 0; runner < runnerThreads; runner++) {
+            addRunnerThread(runner);
         }
     }
 
@@ -156,10 +190,10 @@ public class TaskExecutor
                 .toString();
     }
 
-    private synchronized void addRunnerThread()
+    private synchronized void addRunnerThread(int runner)
     {
         try {
-            executor.execute(new Runner());
+            executor.execute(new Runner(runner));
         }
         catch (RejectedExecutionException ignored) {
         }
@@ -167,7 +201,27 @@ public class TaskExecutor
 
     public synchronized TaskHandle addTask(TaskId taskId)
     {
-        TaskHandle taskHandle = new TaskHandle(checkNotNull(taskId, "taskId is null"));
+        return addTask(taskId, null);
+    }
+
+    /**
+     * Adds a task to the executor.  All tasks of a query share the thread usage used
+     * to prioritize their splits, which is scaled down by the weight of the resource
+     * group of the query.  Unknown resource groups have a weight of one.
+     */
+    public synchronized TaskHandle addTask(TaskId taskId, @Nullable String resourceGroup)
+    {
+        checkNotNull(taskId, "taskId is null");
+
+        QueryHandle queryHandle = queries.get(taskId.getQueryId());
+        if (queryHandle == null) {
+            Integer weight = (resourceGroup == null) ? null : resourceGroupWeights.get(resourceGroup);
+            queryHandle = new QueryHandle(taskId.getQueryId(), Objects.firstNonNull(weight, 1));
+            queries.put(taskId.getQueryId(), queryHandle);
+        }
+        queryHandle.taskAdded();
+
+        TaskHandle taskHandle = new TaskHandle(taskId, queryHandle);
         tasks.add(taskHandle);
         return taskHandle;
     }
@@ -175,7 +229,12 @@ public class TaskExecutor
     public synchronized void removeTask(TaskHandle taskHandle)
     {
         taskHandle.destroy();
-        tasks.remove(taskHandle);
+        if (tasks.remove(taskHandle)) {
+            QueryHandle queryHandle = taskHandle.getQueryHandle();
+            if (queryHandle.taskRemoved() == 0) {
+                queries.remove(queryHandle.getQueryId());
+            }
+        }
 
         // record completed stats
         long threadUsageNanos = taskHandle.getThreadUsageNanos();
@@ -283,24 +342,73 @@ public class TaskExecutor
         return null;
     }
 
+    @ThreadSafe
+    private static class QueryHandle
+    {
+        private final QueryId queryId;
+        private final int weight;
+        private final AtomicLong queryThreadUsageNanos = new AtomicLong();
+
+        // guarded by the task executor
+        private int tasks;
+
+        private QueryHandle(QueryId queryId, int weight)
+        {
+            this.queryId = queryId;
+            this.weight = weight;
+        }
+
+        private QueryId getQueryId()
+        {
+            return queryId;
+        }
+
+        private void taskAdded()
+        {
+            tasks++;
+        }
+
+        private int taskRemoved()
+        {
+            tasks--;
+            return tasks;
+        }
+
+        private void addThreadUsageNanos(long durationNanos)
+        {
+            queryThreadUsageNanos.addAndGet(durationNanos);
+        }
+
+        /**
+         * Thread usage of all tasks of the query, scaled down by the weight of its resource group
+         */
+        private long getScheduledNanos()
+        {
+            return queryThreadUsageNanos.get() / weight;
+        }
+    }
+
     @NotThreadSafe
     public static class TaskHandle
     {
         private final TaskId taskId;
+        private final QueryHandle queryHandle;
         private final Queue<PrioritizedSplitRunner> queuedSplits = new ArrayDeque<>(10);
         private final List<PrioritizedSplitRunner> runningSplits = new ArrayList<>(10);
         private final AtomicLong taskThreadUsageNanos = new AtomicLong();
 
         private final AtomicInteger nextSplitId = new AtomicInteger();
 
-        private TaskHandle(TaskId taskId)
+        private TaskHandle(TaskId taskId, QueryHandle queryHandle)
         {
             this.taskId = taskId;
+            this.queryHandle = queryHandle;
         }
 
-        private long addThreadUsageNanos(long durationNanos)
+        private void addThreadUsageNanos(long durationNanos)
         {
-            return taskThreadUsageNanos.addAndGet(durationNanos);
+            taskThreadUsageNanos.addAndGet(durationNanos);
+            queryHandle.addThreadUsageNanos(durationNanos);
         }
 
         private TaskId getTaskId()
@@ -308,6 +416,11 @@ public class TaskExecutor
             return taskId;
         }
 
+        private QueryHandle getQueryHandle()
+        {
+            return queryHandle;
+        }
+
         private void destroy()
         {
             for (PrioritizedSplitRunner runningSplit : runningSplits) {
@@ -341,6 +454,11 @@ public class TaskExecutor
             return taskThreadUsageNanos.get();
         }
 
+        private long getScheduledNanos()
+        {
+            return queryHandle.getScheduledNanos();
+        }
+
         private PrioritizedSplitRunner pollNextSplit()
         {
             PrioritizedSplitRunner split = queuedSplits.poll();
@@ -386,8 +504,9 @@ public class TaskExecutor
         private final AtomicBoolean destroyed = new AtomicBoolean();
 
         private final AtomicInteger priorityLevel = new AtomicInteger();
-        private final AtomicLong threadUsageNanos = new AtomicLong();
+        private final AtomicLong scheduledNanos = new AtomicLong();
         private final AtomicLong lastRun = new AtomicLong();
+        private final AtomicLong queuedNanos = new AtomicLong();
         private final AtomicLong start = new AtomicLong();
 
         private final AtomicLong cpuTime = new AtomicLong();
@@ -432,23 +551,25 @@ public class TaskExecutor
             return finished || destroyed.get();
         }
 
-        public ListenableFuture<?> process()
+        public ListenableFuture<?> process(Duration splitRunQuanta)
                 throws Exception
         {
             try {
                 start.compareAndSet(0, System.currentTimeMillis());
 
                 processCalls.incrementAndGet();
+                long startNanos = ticker.read();
                 CpuTimer timer = new CpuTimer();
-                ListenableFuture<?> blocked = split.processFor(SPLIT_RUN_QUANTA);
+                ListenableFuture<?> blocked = split.processFor(splitRunQuanta);
 
                 CpuTimer.CpuDuration elapsed = timer.elapsedTime();
 
-                // update priority level base on total thread usage of task
-                long durationNanos = elapsed.getWall().roundTo(TimeUnit.NANOSECONDS);
-                long threadUsageNanos = taskHandle.addThreadUsageNanos(durationNanos);
-                this.threadUsageNanos.set(threadUsageNanos);
-                priorityLevel.set(calculatePriorityLevel(threadUsageNanos));
+                // update priority level base on total thread usage of the query
+                long durationNanos = ticker.read() - startNanos;
+                taskHandle.addThreadUsageNanos(durationNanos);
+                long scheduledNanos = taskHandle.getScheduledNanos();
+                this.scheduledNanos.set(scheduledNanos);
+                priorityLevel.set(calculatePriorityLevel(scheduledNanos));
 
                 // record last run for prioritization within a level
                 lastRun.set(ticker.read());
@@ -464,16 +585,31 @@ public class TaskExecutor
 
         public boolean updatePriorityLevel()
         {
-            int newPriority = calculatePriorityLevel(taskHandle.getThreadUsageNanos());
+            int newPriority = calculatePriorityLevel(taskHandle.getScheduledNanos());
             if (newPriority == priorityLevel.getAndSet(newPriority)) {
                 return false;
             }
 
             // update thread usage while if level changed
-            threadUsageNanos.set(taskHandle.getThreadUsageNanos());
+            scheduledNanos.set(taskHandle.getScheduledNanos());
             return true;
         }
 
+        public int getPriorityLevel()
+        {
+            return priorityLevel.get();
+        }
+
+        private void setQueuedNanos(long queuedNanos)
+        {
+            this.queuedNanos.set(queuedNanos);
+        }
+
+        private long getQueuedNanos()
+        {
+            return queuedNanos.get();
+        }
+
         @Override
         public int compareTo(PrioritizedSplitRunner o)
         {
@@ -484,8 +620,8 @@ public class TaskExecutor
                 return result;
             }
 
-            if (level < 4) {
-                result = Long.compare(threadUsageNanos.get(), threadUsageNanos.get());
+            if (level < LEVEL_THRESHOLD_SECONDS.length - 1) {
+                result = Long.compare(scheduledNanos.get(), o.scheduledNanos.get());
             }
             else {
                 result = Long.compare(lastRun.get(), o.lastRun.get());
@@ -520,27 +656,402 @@ public class TaskExecutor
         }
     }
 
-    private static int calculatePriorityLevel(long threadUsageNanos)
+    private static int calculatePriorityLevel(long scheduledNanos)
+    {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(scheduledNanos);
+
+        int priorityLevel = 0;
+        while (priorityLevel + 1 < LEVEL_THRESHOLD_SECONDS.length && seconds >= LEVEL_THRESHOLD_SECONDS[priorityLevel + 1]) {
+            priorityLevel++;
+        }
+        return priorityLevel;
+    }
+
+    /**
+     * Time used by each priority level across all runner queues.  Each level is given
+     * a share of the runner time that shrinks by the level time multiplier with every
+     * level, and the next split is taken from the waiting level that has used the least
+     * of its share.  Unlike strict priorities, this keeps long running queries
+     * progressing while short queries are favored.  The accounting is global, so a
+     * split is charged to its level no matter which runner queue it was taken from.
+     */
+    @ThreadSafe
+    private static class LevelScheduledTime
     {
-        long millis = TimeUnit.NANOSECONDS.toMillis(threadUsageNanos);
+        private final double[] levelShares;
+        private final AtomicLongArray levelScheduledNanos;
+        // number of splits of each level waiting in any runner queue
+        private final AtomicIntegerArray levelWaitingSplits;
 
-        int priorityLevel;
-        if (millis < 1000) {
-            priorityLevel = 0;
+        private LevelScheduledTime(int levels, double levelTimeMultiplier)
+        {
+            this.levelShares = new double[levels];
+            for (int level = 0; level < levels; level++) {
+                levelShares[level] = Math.pow(levelTimeMultiplier, -level);
+            }
+            this.levelScheduledNanos = new AtomicLongArray(levels);
+            this.levelWaitingSplits = new AtomicIntegerArray(levels);
         }
-        else if (millis < 10_000) {
-            priorityLevel = 1;
+
+        public void splitQueued(int level)
+        {
+            if (levelWaitingSplits.getAndIncrement(level) > 0) {
+                return;
+            }
+
+            // an idle level must not be able to catch up on the time it did not use
+            long minimumNanos = (long) (getReferenceNormalizedNanos(level) * levelShares[level]);
+            while (true) {
+                long scheduledNanos = levelScheduledNanos.get(level);
+                if (scheduledNanos >= minimumNanos || levelScheduledNanos.compareAndSet(level, scheduledNanos, minimumNanos)) {
+                    return;
+                }
+            }
+        }
+
+        public void splitDequeued(int level)
+        {
+            levelWaitingSplits.decrementAndGet(level);
+        }
+
+        public void addLevelTime(int level, long nanos)
+        {
+            levelScheduledNanos.addAndGet(level, nanos);
         }
-        else if (millis < 60_000) {
-            priorityLevel = 2;
+
+        public int getWaitingSplits()
+        {
+            int waitingSplits = 0;
+            for (int level = 0; level < levelShares.length; level++) {
+                waitingSplits += levelWaitingSplits.get(level);
+            }
+            return waitingSplits;
         }
-        else if (millis < 300_000) {
-            priorityLevel = 3;
+
+        /**
+         * Waiting level that has used the least of its share, or -1 if no split is waiting.
+         */
+        public int selectLevel()
+        {
+            return selectLevel(-1);
         }
-        else {
-            priorityLevel = 4;
+
+        private int selectLevel(int excludedLevel)
+        {
+            int selectedLevel = -1;
+            double selectedNormalizedNanos = Double.MAX_VALUE;
+            for (int level = 0; level < levelShares.length; level++) {
+                if (level == excludedLevel || levelWaitingSplits.get(level) <= 0) {
+                    continue;
+                }
+                double normalizedNanos = getNormalizedNanos(level);
+                if (normalizedNanos < selectedNormalizedNanos) {
+                    selectedLevel = level;
+                    selectedNormalizedNanos = normalizedNanos;
+                }
+            }
+            return selectedLevel;
         }
-        return priorityLevel;
+
+        /**
+         * Normalized time of the least served waiting level other than the specified
+         * level, or of the most served level if no other level is waiting.
+         */
+        private double getReferenceNormalizedNanos(int level)
+        {
+            int waitingLevel = selectLevel(level);
+            if (waitingLevel >= 0) {
+                return getNormalizedNanos(waitingLevel);
+            }
+
+            double maxNormalizedNanos = 0;
+            for (int i = 0; i < levelShares.length; i++) {
+                maxNormalizedNanos = Math.max(maxNormalizedNanos, getNormalizedNanos(i));
+            }
+            return maxNormalizedNanos;
+        }
+
+        private double getNormalizedNanos(int level)
+        {
+            return levelScheduledNanos.get(level) / levelShares[level];
+        }
+    }
+
+    /**
+     * Queue of splits of a single runner thread with one queue per priority level.
+     */
+    @ThreadSafe
+    private static class MultilevelSplitQueue
+    {
+        @GuardedBy("this")
+        private final List<PriorityQueue<PrioritizedSplitRunner>> levelWaitingSplits;
+        private final LevelScheduledTime levelScheduledTime;
+        private final List<DistributionStat> levelQueuedTime;
+
+        private MultilevelSplitQueue(LevelScheduledTime levelScheduledTime, List<DistributionStat> levelQueuedTime)
+        {
+            this.levelScheduledTime = levelScheduledTime;
+            this.levelQueuedTime = ImmutableList.copyOf(levelQueuedTime);
+
+            ImmutableList.Builder<PriorityQueue<PrioritizedSplitRunner>> levelWaitingSplits = ImmutableList.builder();
+            for (int level = 0; level < levelQueuedTime.size(); level++) {
+                levelWaitingSplits.add(new PriorityQueue<PrioritizedSplitRunner>());
+            }
+            this.levelWaitingSplits = levelWaitingSplits.build();
+        }
+
+        public synchronized void put(PrioritizedSplitRunner split)
+        {
+            int level = split.getPriorityLevel();
+            split.setQueuedNanos(System.nanoTime());
+            levelWaitingSplits.get(level).add(split);
+            levelScheduledTime.splitQueued(level);
+        }
+
+        /**
+         * Takes the best split of the specified level.
+         */
+        @Nullable
+        public synchronized PrioritizedSplitRunner poll(int level)
+        {
+            PrioritizedSplitRunner split = levelWaitingSplits.get(level).poll();
+            if (split == null) {
+                return null;
+            }
+            levelScheduledTime.splitDequeued(level);
+            levelQueuedTime.get(level).add(System.nanoTime() - split.getQueuedNanos());
+            return split;
+        }
+
+        /**
+         * Takes the best split of the least served level that has splits in this queue.
+         */
+        @Nullable
+        public synchronized PrioritizedSplitRunner poll()
+        {
+            int selectedLevel = -1;
+            double selectedNormalizedNanos = Double.MAX_VALUE;
+            for (int level = 0; level < levelWaitingSplits.size(); level++) {
+                if (levelWaitingSplits.get(level).isEmpty()) {
+                    continue;
+                }
+                double normalizedNanos = levelScheduledTime.getNormalizedNanos(level);
+                if (normalizedNanos < selectedNormalizedNanos) {
+                    selectedLevel = level;
+                    selectedNormalizedNanos = normalizedNanos;
+                }
+            }
+            if (selectedLevel < 0) {
+                return null;
+            }
+            return poll(selectedLevel);
+        }
+
+        public synchronized int size()
+        {
+            int size = 0;
+            for (Queue<PrioritizedSplitRunner> waitingSplits : levelWaitingSplits) {
+                size += waitingSplits.size();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Pool of split queues with one queue per runner thread.  A runner picks the
+     * least served waiting level across all queues, takes the best split of that level
+     * from its own queue, and steals the best split of that level from another queue
+     * when its own queue has none.  Splits returned by a runner stay in its queue, and
+     * splits that become ready on other threads go to an idle runner, so runners and
+     * blocked split callbacks do not contend on a single lock.  Runners with nothing
+     * to take block until a split is queued.
+     */
+    @ThreadSafe
+    private static class WorkStealingSplitQueue
+    {
+        private final List<MultilevelSplitQueue> queues;
+        private final LevelScheduledTime levelScheduledTime;
+        private final List<DistributionStat> levelQueuedTime;
+        private final AtomicBoolean[] idle;
+        private final Queue<Integer> idleQueues = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger nextQueue = new AtomicInteger();
+
+        // runners blocked until a split is queued; only then do queued splits signal the monitor of this queue
+        private final AtomicInteger waitingRunners = new AtomicInteger();
+
+        private WorkStealingSplitQueue(int runners, int levels, double levelTimeMultiplier)
+        {
+            ImmutableList.Builder<DistributionStat> levelQueuedTime = ImmutableList.builder();
+            for (int level = 0; level < levels; level++) {
+                levelQueuedTime.add(new DistributionStat());
+            }
+            this.levelQueuedTime = levelQueuedTime.build();
+            this.levelScheduledTime = new LevelScheduledTime(levels, levelTimeMultiplier);
+
+            ImmutableList.Builder<MultilevelSplitQueue> queues = ImmutableList.builder();
+            this.idle = new AtomicBoolean[runners];
+            for (int runner = 0; runner < runners; runner++) {
+                queues.add(new MultilevelSplitQueue(levelScheduledTime, this.levelQueuedTime));
+                idle[runner] = new AtomicBoolean();
+            }
+            this.queues = queues.build();
+        }
+
+        /**
+         * Adds a split that became ready on a thread that is not a runner.
+         */
+        public void put(PrioritizedSplitRunner split)
+        {
+            put(split, selectQueue());
+        }
+
+        /**
+         * Adds a split to the queue of the specified runner.
+         */
+        public void put(PrioritizedSplitRunner split, int runner)
+        {
+            queues.get(runner).put(split);
+
+            // the split is counted as waiting before the check, and a runner registers
+            // as waiting before it checks for waiting splits, so no wakeup is lost
+            if (waitingRunners.get() > 0) {
+                synchronized (this) {
+                    notify();
+                }
+            }
+        }
+
+        public PrioritizedSplitRunner take(int runner)
+                throws InterruptedException
+        {
+            while (true) {
+                PrioritizedSplitRunner split = poll(runner);
+                if (split != null) {
+                    return split;
+                }
+
+                idle[runner].set(true);
+                idleQueues.add(runner);
+                try {
+                    awaitSplit();
+                }
+                finally {
+                    idle[runner].set(false);
+                }
+            }
+        }
+
+        public void addLevelTime(int level, long nanos)
+        {
+            levelScheduledTime.addLevelTime(level, nanos);
+        }
+
+        public int size()
+        {
+            int size = 0;
+            for (MultilevelSplitQueue queue : queues) {
+                size += queue.size();
+            }
+            return size;
+        }
+
+        public DistributionStat getLevelQueuedTime(int level)
+        {
+            return levelQueuedTime.get(level);
+        }
+
+        public int getWaitingRunners()
+        {
+            return waitingRunners.get();
+        }
+
+        @Nullable
+        private PrioritizedSplitRunner poll(int runner)
+        {
+            MultilevelSplitQueue queue = queues.get(runner);
+
+            int level = levelScheduledTime.selectLevel();
+            if (level >= 0) {
+                PrioritizedSplitRunner split = queue.poll(level);
+                if (split != null) {
+                    return split;
+                }
+                split = steal(runner, level);
+                if (split != null) {
+                    return split;
+                }
+            }
+
+            // the waiting splits changed while polling
+            PrioritizedSplitRunner split = queue.poll();
+            if (split != null) {
+                return split;
+            }
+            return steal(runner, -1);
+        }
+
+        @Nullable
+        private PrioritizedSplitRunner steal(int runner, int level)
+        {
+            for (int i = 1; i < queues.size(); i++) {
+                MultilevelSplitQueue queue = queues.get((runner + i) % queues.size());
+                PrioritizedSplitRunner split = (level < 0) ? queue.poll() : queue.poll(level);
+                if (split != null) {
+                    return split;
+                }
+            }
+            return null;
+        }
+
+        private void awaitSplit()
+                throws InterruptedException
+        {
+            synchronized (this) {
+                waitingRunners.incrementAndGet();
+                try {
+                    while (levelScheduledTime.getWaitingSplits() == 0) {
+                        wait();
+                    }
+                }
+                finally {
+                    waitingRunners.decrementAndGet();
+                }
+            }
+        }
+
+        private int selectQueue()
+        {
+            // entries of runners that are no longer idle are stale and skipped
+            Integer runner = idleQueues.poll();
+            while (runner != null) {
+                if (idle[runner].compareAndSet(true, false)) {
+                    return runner;
+                }
+                runner = idleQueues.poll();
+            }
+            return (nextQueue.getAndIncrement() & Integer.MAX_VALUE) % queues.size();
+        }
+    }
+
+    @VisibleForTesting
+    static Map<String, Integer> parseResourceGroupWeights(String resourceGroupWeights)
+    {
+        checkNotNull(resourceGroupWeights, "resourceGroupWeights is null");
+
+        ImmutableMap.Builder<String, Integer> weights = ImmutableMap.builder();
+        Map<String, String> entries = Splitter.on(',').trimResults().omitEmptyStrings().withKeyValueSeparator(Splitter.on(':').trimResults()).split(resourceGroupWeights);
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            int weight;
+            try {
+                weight = Integer.parseInt(entry.getValue());
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Invalid weight for resource group %s: %s", entry.getKey(), entry.getValue()));
+            }
+            checkArgument(weight > 0, "weight of resource group %s must be positive", entry.getKey());
+            weights.put(entry.getKey(), weight);
+        }
+        return weights.build();
     }
 
     private class Runner
@@ -548,6 +1059,14 @@ public class TaskExecutor
     {
         private final long runnerId = NEXT_RUNNER_ID.getAndIncrement();
 
+        // index of the split queue owned by this runner
+        private final int runner;
+
+        private Runner(int runner)
+        {
+            this.runner = runner;
+        }
+
         @Override
         public void run()
         {
@@ -555,11 +1074,13 @@ public class TaskExecutor
                 while (!closed && !Thread.currentThread().isInterrupted()) {
                     // select next worker
                     final PrioritizedSplitRunner split;
+                    final int priorityLevel;
                     try {
-                        split = pendingSplits.take();
+                        split = pendingSplits.take(runner);
+                        priorityLevel = split.getPriorityLevel();
                         if (split.updatePriorityLevel()) {
                             // priority level changed, return split to queue for re-prioritization
-                            pendingSplits.put(split);
+                            pendingSplits.put(split, runner);
                             continue;
                         }
                     }
@@ -573,12 +1094,14 @@ public class TaskExecutor
 
                         boolean finished;
                         ListenableFuture<?> blocked;
+                        long startNanos = ticker.read();
                         try {
-                            blocked = split.process();
+                            blocked = split.process(splitRunQuanta);
                             finished = split.isFinished();
                         }
                         finally {
                             runningSplits.remove(split);
+                            pendingSplits.addLevelTime(priorityLevel, ticker.read() - startNanos);
                         }
 
                         if (finished) {
@@ -587,7 +1110,7 @@ public class TaskExecutor
                         }
                         else {
                             if (blocked.isDone()) {
-                                pendingSplits.put(split);
+                                pendingSplits.put(split, runner);
                             }
                             else {
                                 blockedSplits.add(split);
@@ -613,7 +1136,7 @@ public class TaskExecutor
             finally {
                 // unless we have been closed, we need to replace this thread
                 if (!closed) {
-                    addRunnerThread();
+                    addRunnerThread(runner);
                 }
             }
         }
@@ -629,6 +1152,12 @@ public class TaskExecutor
         return tasks.size();
     }
 
+    @Managed
+    public synchronized int getQueries()
+    {
+        return queries.size();
+    }
+
     @Managed
     public int getRunnerThreads()
     {
@@ -665,6 +1194,12 @@ public class TaskExecutor
         return blockedSplits.size();
     }
 
+    @Managed
+    public int getIdleRunnerThreads()
+    {
+        return pendingSplits.getWaitingRunners();
+    }
+
     @Managed
     public long getCompletedTasksLevel0()
     {
@@ -739,6 +1274,41 @@ public class TaskExecutor
         return wallTime;
     }
 
+    @Managed
+    @Nested
+    public DistributionStat getLevel0QueuedTime()
+    {
+        return pendingSplits.getLevelQueuedTime(0);
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getLevel1QueuedTime()
+    {
+        return pendingSplits.getLevelQueuedTime(1);
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getLevel2QueuedTime()
+    {
+        return pendingSplits.getLevelQueuedTime(2);
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getLevel3QueuedTime()
+    {
+        return pendingSplits.getLevelQueuedTime(3);
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getLevel4QueuedTime()
+    {
+        return pendingSplits.getLevelQueuedTime(4);
+    }
+
     private synchronized int calculateRunningTasksForLevel(int level)
     {
         int count = 0;
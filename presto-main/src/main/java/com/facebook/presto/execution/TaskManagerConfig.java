@@ -14,14 +14,17 @@
 package com.facebook.presto.execution;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
 import io.airlift.units.Duration;
 import io.airlift.units.MinDuration;
 
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 
 public class TaskManagerConfig
@@ -30,6 +33,16 @@ public class TaskManagerConfig
     private DataSize maxTaskMemoryUsage = new DataSize(256, Unit.MEGABYTE);
     private DataSize operatorPreAllocatedMemory = new DataSize(16, Unit.MEGABYTE);
     private int maxShardProcessorThreads = Runtime.getRuntime().availableProcessors() * 4;
+    private Duration splitRunQuanta = new Duration(1, TimeUnit.SECONDS);
+    private double levelTimeMultiplier = 2.0;
+    private String resourceGroupWeights = "";
+
+    private boolean spillEnabled;
+    private File spillPath = new File("var/spill");
+
+    private int hashBuildConcurrency = 1;
+
+    private boolean columnarProcessingEnabled;
 
     private DataSize sinkMaxBufferSize = new DataSize(32, Unit.MEGABYTE);
 
@@ -87,6 +100,100 @@ public class TaskManagerConfig
         return this;
     }
 
+    @MinDuration("1ms")
+    @NotNull
+    public Duration getSplitRunQuanta()
+    {
+        return splitRunQuanta;
+    }
+
+    @Config("task.split-run-quanta")
+    @ConfigDescription("Time a split runs before it returns its thread to the pool")
+    public TaskManagerConfig setSplitRunQuanta(Duration splitRunQuanta)
+    {
+        this.splitRunQuanta = splitRunQuanta;
+        return this;
+    }
+
+    @DecimalMin("1.0")
+    public double getLevelTimeMultiplier()
+    {
+        return levelTimeMultiplier;
+    }
+
+    @Config("task.level-time-multiplier")
+    @ConfigDescription("Ratio of the runner time shares of consecutive split priority levels")
+    public TaskManagerConfig setLevelTimeMultiplier(double levelTimeMultiplier)
+    {
+        this.levelTimeMultiplier = levelTimeMultiplier;
+        return this;
+    }
+
+    @NotNull
+    public String getResourceGroupWeights()
+    {
+        return resourceGroupWeights;
+    }
+
+    @Config("task.resource-group-weights")
+    @ConfigDescription("Comma separated source:weight pairs; thread usage of queries from a source is divided by its weight")
+    public TaskManagerConfig setResourceGroupWeights(String resourceGroupWeights)
+    {
+        this.resourceGroupWeights = resourceGroupWeights;
+        return this;
+    }
+
+    public boolean isSpillEnabled()
+    {
+        return spillEnabled;
+    }
+
+    @Config("task.spill-enabled")
+    public TaskManagerConfig setSpillEnabled(boolean spillEnabled)
+    {
+        this.spillEnabled = spillEnabled;
+        return this;
+    }
+
+    @NotNull
+    public File getSpillPath()
+    {
+        return spillPath;
+    }
+
+    @Config("task.spill-path")
+    public TaskManagerConfig setSpillPath(File spillPath)
+    {
+        this.spillPath = spillPath;
+        return this;
+    }
+
+    @Min(1)
+    public int getHashBuildConcurrency()
+    {
+        return hashBuildConcurrency;
+    }
+
+    @Config("task.hash-build-concurrency")
+    public TaskManagerConfig setHashBuildConcurrency(int hashBuildConcurrency)
+    {
+        this.hashBuildConcurrency = hashBuildConcurrency;
+        return this;
+    }
+
+    public boolean isColumnarProcessingEnabled()
+    {
+        return columnarProcessingEnabled;
+    }
+
+    @Config("task.columnar-processing-enabled")
+    @ConfigDescription("Evaluate compiled filters and projections a page at a time instead of a row at a time")
+    public TaskManagerConfig setColumnarProcessingEnabled(boolean columnarProcessingEnabled)
+    {
+        this.columnarProcessingEnabled = columnarProcessingEnabled;
+        return this;
+    }
+
     @NotNull
     public DataSize getSinkMaxBufferSize()
     {
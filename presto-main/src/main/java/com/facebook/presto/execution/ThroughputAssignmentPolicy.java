@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.operator.TaskStats;
+import com.facebook.presto.spi.Node;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Assigns each split to the candidate node that is expected to finish it first.
+ * The time a node needs to drain its queue is estimated from the input bytes per
+ * split and the input bytes the drivers of the node process per second of scheduled
+ * time.  The rate measures how fast a node is rather than how much work it has been
+ * given, so a node that received few splits is not mistaken for a slow node.  Nodes
+ * without statistics are assumed to have the average throughput of the stage.
+ * Running a split on a node that is not local to its data costs an extra fraction
+ * of a split.
+ */
+public class ThroughputAssignmentPolicy
+        implements SplitAssignmentPolicy
+{
+    private final double remoteSplitPenalty;
+
+    public ThroughputAssignmentPolicy(double remoteSplitPenalty)
+    {
+        checkArgument(remoteSplitPenalty >= 0, "remoteSplitPenalty is negative");
+        this.remoteSplitPenalty = remoteSplitPenalty;
+    }
+
+    @Override
+    public NodeCosts createNodeCosts(Map<Node, RemoteTask> taskMap)
+    {
+        checkNotNull(taskMap, "taskMap is null");
+
+        long totalInputBytes = 0;
+        long totalCompletedDrivers = 0;
+        double totalThroughput = 0;
+        int nodesWithThroughput = 0;
+
+        ImmutableMap.Builder<Node, Integer> queuedSplits = ImmutableMap.builder();
+        ImmutableMap.Builder<Node, Double> throughput = ImmutableMap.builder();
+        for (Map.Entry<Node, RemoteTask> entry : taskMap.entrySet()) {
+            RemoteTask task = entry.getValue();
+            queuedSplits.put(entry.getKey(), task.getQueuedSplits());
+
+            TaskStats stats = task.getTaskInfo().getStats();
+            totalInputBytes += stats.getRawInputDataSize().toBytes();
+            totalCompletedDrivers += stats.getCompletedDrivers();
+
+            Double bytesPerSecond = getInputBytesPerSecond(stats);
+            if (bytesPerSecond != null) {
+                throughput.put(entry.getKey(), bytesPerSecond);
+                totalThroughput += bytesPerSecond;
+                nodesWithThroughput++;
+            }
+        }
+
+        double bytesPerSplit = (totalCompletedDrivers == 0) ? 1.0 : Math.max(1.0, (double) totalInputBytes / totalCompletedDrivers);
+        double defaultThroughput = (nodesWithThroughput == 0) ? 1.0 : totalThroughput / nodesWithThroughput;
+        return new ThroughputNodeCosts(queuedSplits.build(), throughput.build(), bytesPerSplit, defaultThroughput, remoteSplitPenalty);
+    }
+
+    /**
+     * Raw input bytes per second the drivers of the task were scheduled, or null if the task has not processed any input yet
+     */
+    @Nullable
+    static Double getInputBytesPerSecond(TaskStats stats)
+    {
+        long inputBytes = stats.getRawInputDataSize().toBytes();
+        double scheduledSeconds = stats.getTotalScheduledTime().getValue(TimeUnit.SECONDS);
+        if (inputBytes == 0 || scheduledSeconds <= 0) {
+            return null;
+        }
+        return inputBytes / scheduledSeconds;
+    }
+
+    private static class ThroughputNodeCosts
+            implements NodeCosts
+    {
+        private final Map<Node, Integer> queuedSplits;
+        private final Map<Node, Double> throughput;
+        private final double bytesPerSplit;
+        private final double defaultThroughput;
+        private final double remoteSplitPenalty;
+        private final Map<Node, Integer> assignedSplits = new HashMap<>();
+
+        private ThroughputNodeCosts(Map<Node, Integer> queuedSplits, Map<Node, Double> throughput, double bytesPerSplit, double defaultThroughput, double remoteSplitPenalty)
+        {
+            this.queuedSplits = queuedSplits;
+            this.throughput = throughput;
+            this.bytesPerSplit = bytesPerSplit;
+            this.defaultThroughput = defaultThroughput;
+            this.remoteSplitPenalty = remoteSplitPenalty;
+        }
+
+        @Override
+        public int getQueuedSplits(Node node)
+        {
+            Integer queued = queuedSplits.get(node);
+            Integer assigned = assignedSplits.get(node);
+            return (queued == null ? 0 : queued) + (assigned == null ? 0 : assigned);
+        }
+
+        @Override
+        public double getSplitCost(Node node, boolean local)
+        {
+            Double bytesPerSecond = throughput.get(node);
+            if (bytesPerSecond == null) {
+                bytesPerSecond = defaultThroughput;
+            }
+
+            // seconds until the node finishes the queued splits and this split
+            double splits = getQueuedSplits(node) + 1 + (local ? 0 : remoteSplitPenalty);
+            return splits * bytesPerSplit / bytesPerSecond;
+        }
+
+        @Override
+        public void splitAssigned(Node node)
+        {
+            Integer assigned = assignedSplits.get(node);
+            assignedSplits.put(node, (assigned == null ? 0 : assigned) + 1);
+        }
+    }
+}
@@ -16,28 +16,28 @@ package com.facebook.presto.metadata;
 import com.facebook.presto.block.Block;
 import com.facebook.presto.block.BlockIterable;
 import com.facebook.presto.block.BlockUtils;
-import com.facebook.presto.execution.TaskId;
-import com.facebook.presto.operator.AlignmentOperator;
-import com.facebook.presto.operator.OperatorContext;
-import com.facebook.presto.operator.Page;
-import com.facebook.presto.operator.TaskContext;
 import com.facebook.presto.serde.BlocksFileEncoding;
 import com.facebook.presto.serde.BlocksFileReader;
 import com.facebook.presto.serde.BlocksFileStats;
+import com.facebook.presto.serde.BlocksFileWriter;
+import com.facebook.presto.serde.BlocksFileZone;
 import com.facebook.presto.spi.ColumnHandle;
-import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.util.KeyBoundedExecutor;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Function;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
+import com.google.common.io.OutputSupplier;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import io.airlift.concurrent.ThreadPoolExecutorMBean;
 import io.airlift.log.Logger;
+import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
 import org.skife.jdbi.v2.Handle;
@@ -51,11 +51,16 @@ import javax.annotation.PreDestroy;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import static com.facebook.presto.util.Threads.threadsNamed;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -68,11 +73,22 @@ import static java.util.concurrent.Executors.newFixedThreadPool;
 public class DatabaseLocalStorageManager
         implements LocalStorageManager
 {
-    private static final boolean ENABLE_OPTIMIZATION = false;
-
     private static final int RUN_LENGTH_AVERAGE_CUTOFF = 3;
     private static final int DICTIONARY_CARDINALITY_CUTOFF = 1000;
 
+    // encodings are compared on a sample of the first positions of each column file
+    private static final int ENCODING_SAMPLE_POSITIONS = 64 * 1024;
+    // encodings within this fraction of the smallest encoded size are chosen by decode cost
+    private static final double ENCODING_SIZE_TOLERANCE = 0.1;
+    // run length encoded values are read once per run, raw values need no decoding,
+    // dictionary values need a lookup per position, and snappy blocks are decompressed
+    private static final List<BlocksFileEncoding> ENCODINGS_BY_DECODE_COST = ImmutableList.of(
+            BlocksFileEncoding.RLE,
+            BlocksFileEncoding.DIC_RLE,
+            BlocksFileEncoding.RAW,
+            BlocksFileEncoding.DIC_RAW,
+            BlocksFileEncoding.SNAPPY);
+
     private static final Logger log = Logger.get(DatabaseLocalStorageManager.class);
 
     private final ExecutorService executor;
@@ -84,21 +100,19 @@ public class DatabaseLocalStorageManager
     private final File baseStagingDir;
     private final StorageManagerDao dao;
 
-    private final LoadingCache<File, Slice> mappedFileCache = CacheBuilder.newBuilder().build(new CacheLoader<File, Slice>()
-    {
-        @Override
-        public Slice load(File file)
-                throws Exception
-        {
-            checkArgument(file.isAbsolute(), "file is not absolute: %s", file);
-            checkArgument(file.canRead(), "file is not readable: %s", file);
-            if (file.length() == 0) {
-                return Slices.EMPTY_SLICE;
-            }
-            return Slices.mapFileReadOnly(file);
-        }
-    });
+    // Evicted files are unmapped by the garbage collector once no reader references their slice.
+    // Unmapping explicitly is not safe, because blocks read from the file point into the mapping.
+    private final LoadingCache<File, Slice> mappedFileCache;
+    private final AtomicLong mappedBytes = new AtomicLong();
     private final BlocksFileEncoding defaultEncoding;
+    private final boolean optimizeEncodings;
+    private final AtomicLong reencodedColumns = new AtomicLong();
+    private final AtomicLong reencodingSavedBytes = new AtomicLong();
+
+    // Readers hold the read lock of a shard while they look up and map a column file, and
+    // the files of the shard are only replaced or deleted while holding the write lock, so
+    // a reader never maps a file after it has been replaced.
+    private final Striped<ReadWriteLock> shardLocks = Striped.readWriteLock(64);
 
     @Inject
     public DatabaseLocalStorageManager(@ForLocalStorageManager IDBI dbi, DatabaseLocalStorageManagerConfig config)
@@ -115,6 +129,42 @@ public class DatabaseLocalStorageManager
         this.executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) executor);
         this.shardBoundedExecutor = new KeyBoundedExecutor<>(executor);
 
+        this.mappedFileCache = CacheBuilder.newBuilder()
+                .maximumWeight(config.getMaxMappedSize().toBytes())
+                .weigher(new Weigher<File, Slice>()
+                {
+                    @Override
+                    public int weigh(File file, Slice slice)
+                    {
+                        return slice.length();
+                    }
+                })
+                .removalListener(new RemovalListener<File, Slice>()
+                {
+                    @Override
+                    public void onRemoval(RemovalNotification<File, Slice> notification)
+                    {
+                        mappedBytes.addAndGet(-notification.getValue().length());
+                    }
+                })
+                .recordStats()
+                .build(new CacheLoader<File, Slice>()
+                {
+                    @Override
+                    public Slice load(File file)
+                            throws Exception
+                    {
+                        checkArgument(file.isAbsolute(), "file is not absolute: %s", file);
+                        checkArgument(file.canRead(), "file is not readable: %s", file);
+                        if (file.length() == 0) {
+                            return Slices.EMPTY_SLICE;
+                        }
+                        Slice slice = Slices.mapFileReadOnly(file);
+                        mappedBytes.addAndGet(slice.length());
+                        return slice;
+                    }
+                });
+
         dao.createTableColumns();
 
         if (config.isCompressed()) {
@@ -123,6 +173,7 @@ public class DatabaseLocalStorageManager
         else {
             defaultEncoding = BlocksFileEncoding.RAW;
         }
+        this.optimizeEncodings = config.isOptimizeEncodings();
     }
 
     @PreDestroy
@@ -138,6 +189,54 @@ public class DatabaseLocalStorageManager
         return executorMBean;
     }
 
+    @Managed
+    public long getMappedBytes()
+    {
+        return mappedBytes.get();
+    }
+
+    @Managed
+    public long getMappedFiles()
+    {
+        return mappedFileCache.size();
+    }
+
+    @Managed
+    public double getMappedFileCacheHitRate()
+    {
+        return mappedFileCache.stats().hitRate();
+    }
+
+    @Managed
+    public long getMappedFileCacheHitCount()
+    {
+        return mappedFileCache.stats().hitCount();
+    }
+
+    @Managed
+    public long getMappedFileCacheMissCount()
+    {
+        return mappedFileCache.stats().missCount();
+    }
+
+    @Managed
+    public long getMappedFileCacheEvictionCount()
+    {
+        return mappedFileCache.stats().evictionCount();
+    }
+
+    @Managed
+    public long getReencodedColumns()
+    {
+        return reencodedColumns.get();
+    }
+
+    @Managed
+    public long getReencodingSavedBytes()
+    {
+        return reencodingSavedBytes.get();
+    }
+
     @Override
     public ColumnFileHandle createStagingFileHandles(UUID shardUuid, List<? extends ColumnHandle> columnHandles)
             throws IOException
@@ -163,94 +262,110 @@ public class DatabaseLocalStorageManager
 
         columnFileHandle.commit();
 
-        // Process staged files to optimize encodings if necessary
-        ColumnFileHandle finalColumnFileHandle = optimizeEncodings(columnFileHandle);
+        // Move the staged files into the storage directory with their current encoding
+        ColumnFileHandle finalColumnFileHandle = moveStagedFiles(columnFileHandle);
 
         // Commit all the columns at the same time once everything has been successfully imported
         commitShardColumns(finalColumnFileHandle);
 
         // Delete empty staging directory
         deleteStagingDirectory(columnFileHandle);
+
+        // Re-encode the columns in the background, so the import does not wait for it
+        if (optimizeEncodings) {
+            for (Map.Entry<ColumnHandle, File> entry : finalColumnFileHandle.getFiles().entrySet()) {
+                if (entry.getValue().exists()) {
+                    shardBoundedExecutor.execute(finalColumnFileHandle.getShardUuid(), new EncodingJob(finalColumnFileHandle.getShardUuid(), entry.getKey()));
+                }
+            }
+        }
     }
 
-    private ColumnFileHandle optimizeEncodings(ColumnFileHandle columnFileHandle)
+    private ColumnFileHandle moveStagedFiles(ColumnFileHandle columnFileHandle)
             throws IOException
     {
         UUID shardUuid = columnFileHandle.getShardUuid();
         File shardPath = getShardPath(baseStorageDir, shardUuid);
 
-        ImmutableList.Builder<BlockIterable> sourcesBuilder = ImmutableList.builder();
         ColumnFileHandle.Builder builder = ColumnFileHandle.builder(shardUuid);
-
         for (Map.Entry<ColumnHandle, File> entry : columnFileHandle.getFiles().entrySet()) {
             File file = entry.getValue();
             ColumnHandle columnHandle = entry.getKey();
 
+            File outputFile = getColumnFile(shardPath, columnHandle, defaultEncoding);
             if (file.length() > 0) {
-                Slice slice = mappedFileCache.getUnchecked(file.getAbsoluteFile());
-                checkState(file.length() == slice.length(), "File %s, length %s was mapped to Slice length %s", file.getAbsolutePath(), file.length(), slice.length());
-                // Compute optimal encoding from stats
-                BlocksFileReader blocks = BlocksFileReader.readBlocks(slice);
-                BlocksFileStats stats = blocks.getStats();
-                boolean rleEncode = stats.getAvgRunLength() > RUN_LENGTH_AVERAGE_CUTOFF;
-                boolean dicEncode = stats.getUniqueCount() < DICTIONARY_CARDINALITY_CUTOFF;
-
-                BlocksFileEncoding encoding = defaultEncoding;
-
-                if (ENABLE_OPTIMIZATION) {
-                    if (dicEncode && rleEncode) {
-                        encoding = BlocksFileEncoding.DIC_RLE;
-                    }
-                    else if (dicEncode) {
-                        encoding = BlocksFileEncoding.DIC_RAW;
-                    }
-                    else if (rleEncode) {
-                        encoding = BlocksFileEncoding.RLE;
-                    }
-                }
-
-                File outputFile = getColumnFile(shardPath, columnHandle, encoding);
                 Files.createParentDirs(outputFile);
-
-                if (encoding == defaultEncoding) {
-                    // Optimization: source is already raw, so just move.
-                    Files.move(file, outputFile);
-                    // still register the file with the builder so that it can
-                    // be committed correctly.
-                    builder.addColumn(columnHandle, outputFile);
-                }
-                else {
-                    // source builder and output builder move in parallel if the
-                    // column gets written
-                    sourcesBuilder.add(blocks);
-                    builder.addColumn(columnHandle, outputFile, encoding);
-                }
-            }
-            else {
-                // fake file
-                File outputFile = getColumnFile(shardPath, columnHandle, defaultEncoding);
-                builder.addColumn(columnHandle, outputFile);
+                Files.move(file, outputFile);
+                mappedFileCache.invalidate(file.getAbsoluteFile());
             }
+            // empty files are registered, but not moved
+            builder.addColumn(columnHandle, outputFile);
         }
 
-        List<BlockIterable> sources = sourcesBuilder.build();
         ColumnFileHandle targetFileHandle = builder.build();
+        targetFileHandle.commit();
+        return targetFileHandle;
+    }
 
-        if (!sources.isEmpty()) {
-            // Throw out any stats generated by the optimization step
-            Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
-            OperatorContext operatorContext = new TaskContext(new TaskId("query", "stage", "task"), executor, session)
-                    .addPipelineContext(true, true)
-                    .addDriverContext()
-                    .addOperatorContext(0, "OptimizeEncodings");
+    /**
+     * Chooses the encoding of a column file by encoding a sample of the file with
+     * every applicable encoding.  The encoding with the smallest size is chosen,
+     * unless another encoding is almost as small and is cheaper to decode.  The
+     * choice only depends on the data, so a column always gets the same encoding.
+     */
+    @VisibleForTesting
+    static BlocksFileEncoding chooseEncoding(BlocksFileReader blocks)
+    {
+        BlocksFileStats stats = blocks.getStats();
 
-            AlignmentOperator source = new AlignmentOperator(operatorContext, sources);
-            importData(source, targetFileHandle);
+        List<BlocksFileEncoding> candidates = new ArrayList<>();
+        candidates.add(BlocksFileEncoding.RAW);
+        candidates.add(BlocksFileEncoding.SNAPPY);
+        if (stats.getAvgRunLength() > RUN_LENGTH_AVERAGE_CUTOFF) {
+            candidates.add(BlocksFileEncoding.RLE);
+        }
+        if (stats.getUniqueCount() < DICTIONARY_CARDINALITY_CUTOFF) {
+            candidates.add(BlocksFileEncoding.DIC_RAW);
+            if (stats.getAvgRunLength() > RUN_LENGTH_AVERAGE_CUTOFF) {
+                candidates.add(BlocksFileEncoding.DIC_RLE);
+            }
         }
 
-        targetFileHandle.commit();
+        List<Block> sample = new ArrayList<>();
+        int samplePositions = 0;
+        for (Block block : blocks) {
+            if (samplePositions >= ENCODING_SAMPLE_POSITIONS) {
+                break;
+            }
+            sample.add(block);
+            samplePositions += block.getPositionCount();
+        }
 
-        return targetFileHandle;
+        Map<BlocksFileEncoding, Long> sizes = new EnumMap<>(BlocksFileEncoding.class);
+        long minSize = Long.MAX_VALUE;
+        for (BlocksFileEncoding encoding : candidates) {
+            final DynamicSliceOutput output = new DynamicSliceOutput(1024);
+            BlocksFileWriter.writeBlocks(encoding, new OutputSupplier<DynamicSliceOutput>()
+            {
+                @Override
+                public DynamicSliceOutput getOutput()
+                {
+                    return output;
+                }
+            }, sample);
+            long size = output.size();
+            sizes.put(encoding, size);
+            minSize = Math.min(minSize, size);
+        }
+
+        // the encoding that is cheapest to decode among the encodings that are almost as small as the smallest
+        for (BlocksFileEncoding encoding : ENCODINGS_BY_DECODE_COST) {
+            Long size = sizes.get(encoding);
+            if (size != null && size <= minSize * (1 + ENCODING_SIZE_TOLERANCE)) {
+                return encoding;
+            }
+        }
+        throw new IllegalStateException("no candidate encoding for sizes " + sizes);
     }
 
     @SuppressWarnings("ResultOfMethodCallIgnored")
@@ -263,17 +378,6 @@ public class DatabaseLocalStorageManager
         }
     }
 
-    private static void importData(AlignmentOperator source, ColumnFileHandle fileHandle)
-    {
-        while (!source.isFinished()) {
-            Page page = source.getOutput();
-            if (page != null) {
-                fileHandle.append(page);
-            }
-            checkState(source.isBlocked().isDone(), "Alignment operator is blocked");
-        }
-    }
-
     /**
      * Generate a file system path for a shard UUID.
      * <p/>
@@ -335,37 +439,56 @@ public class DatabaseLocalStorageManager
     @Override
     public BlockIterable getBlocks(UUID shardUuid, ColumnHandle columnHandle)
     {
-        checkNotNull(columnHandle);
-        checkState(columnHandle instanceof NativeColumnHandle, "Can only load blocks from a native column");
-        long columnId = ((NativeColumnHandle) columnHandle).getColumnId();
-
-        checkState(shardExists(shardUuid), "shard %s does not exist in local database", shardUuid);
-        String filename = dao.getColumnFilename(shardUuid, columnId);
-        File file = new File(getShardPath(baseStorageDir, shardUuid), filename);
+        Slice slice = mapColumnFile(shardUuid, columnHandle);
 
         // TODO: remove this hack when empty blocks are allowed
-        if (!file.exists()) {
+        if (slice == null) {
             return BlockUtils.emptyBlockIterable();
         }
 
-        return convertFilesToBlocks(ImmutableList.of(file));
+        return BlocksFileReader.readBlocks(slice);
     }
 
-    private BlockIterable convertFilesToBlocks(Iterable<File> files)
+    @Override
+    public List<BlocksFileZone> getZones(UUID shardUuid, ColumnHandle columnHandle)
     {
-        checkArgument(files.iterator().hasNext(), "no files in stream");
+        Slice slice = mapColumnFile(shardUuid, columnHandle);
+        if (slice == null) {
+            return ImmutableList.of();
+        }
+        return BlocksFileReader.readBlocks(slice).getZones();
+    }
 
-        Iterable<Block> blocks = Iterables.concat(Iterables.transform(files, new Function<File, Iterable<? extends Block>>()
-        {
-            @Override
-            public Iterable<? extends Block> apply(File file)
-            {
-                Slice slice = mappedFileCache.getUnchecked(file.getAbsoluteFile());
-                return BlocksFileReader.readBlocks(slice);
-            }
-        }));
+    /**
+     * Maps the file of a column, or returns null if the column has no rows.
+     */
+    private Slice mapColumnFile(UUID shardUuid, ColumnHandle columnHandle)
+    {
+        checkNotNull(columnHandle);
+        checkState(columnHandle instanceof NativeColumnHandle, "Can only load blocks from a native column");
+        long columnId = ((NativeColumnHandle) columnHandle).getColumnId();
 
-        return BlockUtils.toBlocks(blocks);
+        checkState(shardExists(shardUuid), "shard %s does not exist in local database", shardUuid);
+        File shardPath = getShardPath(baseStorageDir, shardUuid);
+
+        Lock lock = shardLocks.get(shardUuid).readLock();
+        lock.lock();
+        try {
+            String filename = dao.getColumnFilename(shardUuid, columnId);
+            if (filename == null) {
+                return null;
+            }
+            // empty files are registered, but not stored
+            File file = new File(shardPath, filename);
+            if (!file.exists()) {
+                return null;
+            }
+            Slice slice = mappedFileCache.getUnchecked(file.getAbsoluteFile());
+            return (slice.length() == 0) ? null : slice;
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -393,6 +516,88 @@ public class DatabaseLocalStorageManager
         return dir;
     }
 
+    private class EncodingJob
+            implements Runnable
+    {
+        private final UUID shardUuid;
+        private final ColumnHandle columnHandle;
+
+        private EncodingJob(UUID shardUuid, ColumnHandle columnHandle)
+        {
+            this.shardUuid = checkNotNull(shardUuid, "shardUuid is null");
+            this.columnHandle = checkNotNull(columnHandle, "columnHandle is null");
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                reencode();
+            }
+            catch (IOException | RuntimeException e) {
+                log.warn(e, "failed to re-encode column %s of shard %s", columnHandle, shardUuid);
+            }
+        }
+
+        private void reencode()
+                throws IOException
+        {
+            long columnId = ((NativeColumnHandle) columnHandle).getColumnId();
+            String filename = dao.getColumnFilename(shardUuid, columnId);
+            if (filename == null) {
+                // shard was dropped
+                return;
+            }
+
+            File shardPath = getShardPath(baseStorageDir, shardUuid);
+            File file = new File(shardPath, filename);
+            BlocksFileReader blocks = BlocksFileReader.readBlocks(mappedFileCache.getUnchecked(file.getAbsoluteFile()));
+
+            BlocksFileEncoding encoding = chooseEncoding(blocks);
+            File outputFile = getColumnFile(shardPath, columnHandle, encoding);
+            if (outputFile.equals(file)) {
+                return;
+            }
+
+            try {
+                BlocksFileWriter.writeBlocks(encoding, Files.newOutputStreamSupplier(outputFile), blocks);
+            }
+            catch (RuntimeException e) {
+                deleteFile(outputFile);
+                throw e;
+            }
+
+            // publish the new file before the old file is removed from the cache, so
+            // readers that wait for the lock map the new file
+            Lock lock = shardLocks.get(shardUuid).writeLock();
+            lock.lock();
+            try {
+                // only replace the file if the column was not changed or dropped in the meantime
+                if (dao.updateColumnFilename(shardUuid, columnId, filename, outputFile.getName()) == 0) {
+                    deleteFile(outputFile);
+                    return;
+                }
+                mappedFileCache.invalidate(file.getAbsoluteFile());
+            }
+            finally {
+                lock.unlock();
+            }
+
+            reencodedColumns.incrementAndGet();
+            reencodingSavedBytes.addAndGet(file.length() - outputFile.length());
+
+            // blocks of queries that mapped the old file remain readable after it is deleted
+            deleteFile(file);
+        }
+    }
+
+    private static void deleteFile(File file)
+    {
+        if (!file.delete()) {
+            log.warn("failed to delete file: %s", file.getAbsolutePath());
+        }
+    }
+
     private class DropJob
             implements Runnable
     {
@@ -407,14 +612,22 @@ public class DatabaseLocalStorageManager
         public void run()
         {
             // TODO: dropping needs to be globally coordinated with read queries
-            List<String> shardFiles = dao.getShardFiles(shardUuid);
-            for (String shardFile : shardFiles) {
-                File file = new File(getShardPath(baseStorageDir, shardUuid), shardFile);
-                if (!file.delete()) {
-                    log.warn("failed to delete file: %s", file.getAbsolutePath());
+            Lock lock = shardLocks.get(shardUuid).writeLock();
+            lock.lock();
+            try {
+                List<String> shardFiles = dao.getShardFiles(shardUuid);
+                for (String shardFile : shardFiles) {
+                    File file = new File(getShardPath(baseStorageDir, shardUuid), shardFile);
+                    mappedFileCache.invalidate(file.getAbsoluteFile());
+                    if (!file.delete()) {
+                        log.warn("failed to delete file: %s", file.getAbsolutePath());
+                    }
                 }
+                dao.dropShard(shardUuid);
+            }
+            finally {
+                lock.unlock();
             }
-            dao.dropShard(shardUuid);
         }
     }
 }
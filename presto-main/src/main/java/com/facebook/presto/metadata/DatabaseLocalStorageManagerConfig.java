@@ -15,6 +15,8 @@ package com.facebook.presto.metadata;
 
 import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.DataSize.Unit;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
@@ -26,6 +28,8 @@ public class DatabaseLocalStorageManagerConfig
     private File dataDirectory = new File("var/data");
     private int tasksPerNode = 32;
     private boolean compressed = true;
+    private DataSize maxMappedSize = new DataSize(4, Unit.GIGABYTE);
+    private boolean optimizeEncodings = true;
 
     @NotNull
     public File getDataDirectory()
@@ -55,6 +59,33 @@ public class DatabaseLocalStorageManagerConfig
         return this;
     }
 
+    @NotNull
+    public DataSize getMaxMappedSize()
+    {
+        return maxMappedSize;
+    }
+
+    @Config("storage-manager.max-mapped-size")
+    @ConfigDescription("Maximum size of the column files that are kept memory mapped")
+    public DatabaseLocalStorageManagerConfig setMaxMappedSize(DataSize maxMappedSize)
+    {
+        this.maxMappedSize = maxMappedSize;
+        return this;
+    }
+
+    public boolean isOptimizeEncodings()
+    {
+        return optimizeEncodings;
+    }
+
+    @Config("storage-manager.optimize-encodings")
+    @ConfigDescription("Re-encode imported columns in the background with the encoding that works best for their data")
+    public DatabaseLocalStorageManagerConfig setOptimizeEncodings(boolean optimizeEncodings)
+    {
+        this.optimizeEncodings = optimizeEncodings;
+        return this;
+    }
+
     @Deprecated
     public boolean isCompressed()
     {
@@ -14,6 +14,7 @@
 package com.facebook.presto.metadata;
 
 import com.facebook.presto.block.BlockIterable;
+import com.facebook.presto.serde.BlocksFileZone;
 import com.facebook.presto.spi.ColumnHandle;
 
 import java.io.IOException;
@@ -24,6 +25,8 @@ public interface LocalStorageManager
 {
     BlockIterable getBlocks(UUID shardUuid, ColumnHandle columnHandle);
 
+    List<BlocksFileZone> getZones(UUID shardUuid, ColumnHandle columnHandle);
+
     boolean shardExists(UUID shardUuid);
 
     void dropShard(UUID shardUuid);
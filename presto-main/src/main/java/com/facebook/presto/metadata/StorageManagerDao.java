@@ -41,6 +41,16 @@ public interface StorageManagerDao
             @Bind("columnId") long columnId,
             @Bind("filename") String filename);
 
+    @SqlUpdate("UPDATE columns SET filename = :newFilename\n" +
+            "WHERE shard_uuid = :shardUuid\n" +
+            "  AND column_id = :columnId\n" +
+            "  AND filename = :oldFilename")
+    int updateColumnFilename(
+            @Bind("shardUuid") UUID shardUuid,
+            @Bind("columnId") long columnId,
+            @Bind("oldFilename") String oldFilename,
+            @Bind("newFilename") String newFilename);
+
     @SqlQuery("SELECT filename\n" +
             "FROM columns\n" +
             "WHERE shard_uuid = :shardUuid\n" +
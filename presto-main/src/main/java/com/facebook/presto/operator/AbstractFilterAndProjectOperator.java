@@ -29,17 +29,85 @@ public abstract class AbstractFilterAndProjectOperator
     private final List<TupleInfo> tupleInfos;
 
     private final PageBuilder pageBuilder;
+    private final boolean columnar;
+    private final SelectedPositions selectedPositions = new SelectedPositions();
+    private final EncodedPageProcessor encodedPageProcessor;
     private boolean finishing;
 
     public AbstractFilterAndProjectOperator(OperatorContext operatorContext, Iterable<TupleInfo> tupleInfos)
+    {
+        this(operatorContext, tupleInfos, false);
+    }
+
+    public AbstractFilterAndProjectOperator(OperatorContext operatorContext, Iterable<TupleInfo> tupleInfos, boolean columnar)
     {
         this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
         this.tupleInfos = ImmutableList.copyOf(checkNotNull(tupleInfos, "tupleInfos is null"));
         this.pageBuilder = new PageBuilder(getTupleInfos());
+        this.columnar = columnar;
+        this.encodedPageProcessor = new EncodedPageProcessor(this.tupleInfos)
+        {
+            @Override
+            protected int filterAndProjectColumnar(Page page, int[] selectedPositions, PageBuilder pageBuilder)
+            {
+                return AbstractFilterAndProjectOperator.this.filterAndProjectColumnar(page, selectedPositions, pageBuilder);
+            }
+
+            @Override
+            protected int getSingleInputChannel()
+            {
+                return AbstractFilterAndProjectOperator.this.getSingleInputChannel();
+            }
+        };
     }
 
     protected abstract void filterAndProjectRowOriented(Page page, PageBuilder pageBuilder);
 
+    /**
+     * Evaluates the filter over every position of the page, recording the selected
+     * positions in {@code selectedPositions}, and then evaluates each projection
+     * over only the selected positions.
+     *
+     * @return the number of selected positions
+     */
+    protected int filterAndProjectColumnar(Page page, int[] selectedPositions, PageBuilder pageBuilder)
+    {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support columnar processing");
+    }
+
+    /**
+     * Returns true if the filter and projections always produce the same result for the
+     * same input, which allows them to be evaluated once per distinct value of run length
+     * and dictionary encoded input.  Operators returning true must support columnar processing.
+     */
+    protected boolean isDeterministic()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the only input channel read by the filter and projections, or -1 if they
+     * read more than one channel or none.
+     */
+    protected int getSingleInputChannel()
+    {
+        return -1;
+    }
+
+    private void processPage(Page page)
+    {
+        if (isDeterministic() && encodedPageProcessor.process(page, pageBuilder)) {
+            return;
+        }
+
+        if (columnar) {
+            filterAndProjectColumnar(page, selectedPositions.get(page.getPositionCount()), pageBuilder);
+        }
+        else {
+            filterAndProjectRowOriented(page, pageBuilder);
+        }
+    }
+
     @Override
     public OperatorContext getOperatorContext()
     {
@@ -83,7 +151,7 @@ public abstract class AbstractFilterAndProjectOperator
         checkNotNull(page, "page is null");
         checkState(!pageBuilder.isFull(), "Page buffer is full");
 
-        filterAndProjectRowOriented(page, pageBuilder);
+        processPage(page);
     }
 
     @Override
@@ -42,6 +42,9 @@ public abstract class AbstractScanFilterAndProjectOperator
     private final List<TupleInfo> tupleInfos;
     private final List<ColumnHandle> columns;
     private final PageBuilder pageBuilder;
+    private final boolean columnar;
+    private final SelectedPositions selectedPositions = new SelectedPositions();
+    private final EncodedPageProcessor encodedPageProcessor;
 
     @GuardedBy("this")
     private RecordCursor cursor;
@@ -59,6 +62,17 @@ public abstract class AbstractScanFilterAndProjectOperator
             DataStreamProvider dataStreamProvider,
             Iterable<ColumnHandle> columns,
             Iterable<TupleInfo> tupleInfos)
+    {
+        this(operatorContext, sourceId, dataStreamProvider, columns, tupleInfos, false);
+    }
+
+    protected AbstractScanFilterAndProjectOperator(
+            OperatorContext operatorContext,
+            PlanNodeId sourceId,
+            DataStreamProvider dataStreamProvider,
+            Iterable<ColumnHandle> columns,
+            Iterable<TupleInfo> tupleInfos,
+            boolean columnar)
     {
         this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
         this.planNodeId = checkNotNull(sourceId, "sourceId is null");
@@ -67,10 +81,70 @@ public abstract class AbstractScanFilterAndProjectOperator
         this.columns = ImmutableList.copyOf(checkNotNull(columns, "columns is null"));
 
         this.pageBuilder = new PageBuilder(getTupleInfos());
+        this.columnar = columnar;
+        this.encodedPageProcessor = new EncodedPageProcessor(this.tupleInfos)
+        {
+            @Override
+            protected int filterAndProjectColumnar(Page page, int[] selectedPositions, PageBuilder pageBuilder)
+            {
+                return AbstractScanFilterAndProjectOperator.this.filterAndProjectColumnar(page, selectedPositions, pageBuilder);
+            }
+
+            @Override
+            protected int getSingleInputChannel()
+            {
+                return AbstractScanFilterAndProjectOperator.this.getSingleInputChannel();
+            }
+        };
     }
 
     protected abstract void filterAndProjectRowOriented(Page page, PageBuilder pageBuilder);
 
+    /**
+     * Evaluates the filter over every position of the page, recording the selected
+     * positions in {@code selectedPositions}, and then evaluates each projection
+     * over only the selected positions.
+     *
+     * @return the number of selected positions
+     */
+    protected int filterAndProjectColumnar(Page page, int[] selectedPositions, PageBuilder pageBuilder)
+    {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support columnar processing");
+    }
+
+    /**
+     * Returns true if the filter and projections always produce the same result for the
+     * same input, which allows them to be evaluated once per distinct value of run length
+     * and dictionary encoded input.  Operators returning true must support columnar processing.
+     */
+    protected boolean isDeterministic()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the only input channel read by the filter and projections, or -1 if they
+     * read more than one channel or none.
+     */
+    protected int getSingleInputChannel()
+    {
+        return -1;
+    }
+
+    private void processPage(Page page)
+    {
+        if (isDeterministic() && encodedPageProcessor.process(page, pageBuilder)) {
+            return;
+        }
+
+        if (columnar) {
+            filterAndProjectColumnar(page, selectedPositions.get(page.getPositionCount()), pageBuilder);
+        }
+        else {
+            filterAndProjectRowOriented(page, pageBuilder);
+        }
+    }
+
     protected abstract int filterAndProjectRowOriented(RecordCursor cursor, PageBuilder pageBuilder);
 
     @Override
@@ -186,7 +260,7 @@ public abstract class AbstractScanFilterAndProjectOperator
             else {
                 Page output = operator.getOutput();
                 if (output != null) {
-                    filterAndProjectRowOriented(output, pageBuilder);
+                    processPage(output);
                 }
             }
         }
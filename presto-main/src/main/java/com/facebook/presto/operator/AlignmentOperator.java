@@ -20,9 +20,13 @@ import com.facebook.presto.block.BlockIterables;
 import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.DataSize;
 
+import javax.annotation.Nullable;
+
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -86,6 +90,10 @@ public class AlignmentOperator
     private final List<Iterator<Block>> iterators;
     private final List<BlockCursor> cursors;
 
+    private final Iterator<Range<Long>> selectedRanges;
+    private Range<Long> currentRange;
+    private long position;
+
     private boolean finished;
 
     public AlignmentOperator(OperatorContext operatorContext, BlockIterable... channels)
@@ -94,8 +102,18 @@ public class AlignmentOperator
     }
 
     public AlignmentOperator(OperatorContext operatorContext, Iterable<BlockIterable> channels)
+    {
+        this(operatorContext, channels, null);
+    }
+
+    /**
+     * @param selectedRows the rows to produce, or null to produce all rows; the ranges
+     * must be closed below, and rows outside of the ranges are skipped without being read
+     */
+    public AlignmentOperator(OperatorContext operatorContext, Iterable<BlockIterable> channels, @Nullable RangeSet<Long> selectedRows)
     {
         this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
+        this.selectedRanges = (selectedRows == null) ? null : selectedRows.asRanges().iterator();
         this.tupleInfos = toTupleInfos(checkNotNull(channels, "channels is null"));
 
         expectedDataSize = BlockIterables.getDataSize(channels);
@@ -181,6 +199,24 @@ public class AlignmentOperator
             return null;
         }
 
+        // skip to the next selected row
+        if (selectedRanges != null) {
+            while (currentRange == null || (currentRange.hasUpperBound() && currentRange.upperEndpoint() <= position)) {
+                if (!selectedRanges.hasNext()) {
+                    finished = true;
+                    return null;
+                }
+                currentRange = selectedRanges.next();
+            }
+            if (currentRange.lowerEndpoint() > position) {
+                if (!skip(currentRange.lowerEndpoint() - position)) {
+                    finished = true;
+                    return null;
+                }
+                position = currentRange.lowerEndpoint();
+            }
+        }
+
         // all iterators should end together
         if (cursors.get(0).getRemainingPositions() <= 0 && !iterators.get(0).hasNext()) {
             for (Iterator<Block> iterator : iterators) {
@@ -204,6 +240,12 @@ public class AlignmentOperator
             length = Math.min(length, cursor.getRemainingPositions());
         }
 
+        // do not read past the end of the selected range
+        if (selectedRanges != null && currentRange.hasUpperBound()) {
+            length = (int) Math.min(length, currentRange.upperEndpoint() - position);
+        }
+        position += length;
+
         // build page
         Block[] blocks = new Block[iterators.size()];
         for (int i = 0; i < cursors.size(); i++) {
@@ -215,6 +257,41 @@ public class AlignmentOperator
         return page;
     }
 
+    /**
+     * Advances all channels by the specified number of positions.
+     *
+     * @return false if the channels ended before the positions were skipped
+     */
+    private boolean skip(long positions)
+    {
+        for (int i = 0; i < iterators.size(); i++) {
+            Iterator<? extends Block> iterator = iterators.get(i);
+
+            long remaining = positions;
+            while (remaining > 0) {
+                BlockCursor cursor = cursors.get(i);
+                if (cursor.getRemainingPositions() <= 0) {
+                    if (!iterator.hasNext()) {
+                        return false;
+                    }
+
+                    // skip entire blocks without opening a cursor
+                    Block block = iterator.next();
+                    if (block.getPositionCount() <= remaining) {
+                        remaining -= block.getPositionCount();
+                        continue;
+                    }
+                    cursor = block.cursor();
+                    cursors.set(i, cursor);
+                }
+                int length = (int) Math.min(remaining, cursor.getRemainingPositions());
+                cursor.getRegionAndAdvance(length);
+                remaining -= length;
+            }
+        }
+        return true;
+    }
+
     private static List<TupleInfo> toTupleInfos(Iterable<BlockIterable> channels)
     {
         ImmutableList.Builder<TupleInfo> tupleInfos = ImmutableList.builder();
@@ -0,0 +1,206 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.uncompressed.UncompressedBlock;
+import com.facebook.presto.tuple.TupleInfo.Type;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slices;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static it.unimi.dsi.fastutil.HashCommon.arraySize;
+import static it.unimi.dsi.fastutil.HashCommon.maxFill;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+
+/**
+ * Group by hash for a single BIGINT key. The keys are stored directly in an
+ * open addressed {@code long[]} table, so a probe does not need to decode the
+ * location of the group values or compare slices. Null is tracked as a
+ * separate group.
+ */
+public class BigintGroupByHash
+        implements GroupByHash
+{
+    private static final float FILL_RATIO = 0.75f;
+    private static final List<Type> TYPES = ImmutableList.of(Type.FIXED_INT_64);
+
+    private final int channel;
+
+    // open addressed hash table from value to group id
+    private int mask;
+    private int maxFill;
+    private long[] values;
+    private int[] groupIds;
+
+    private int nullGroupId = -1;
+
+    // group id to value
+    private long[] valuesByGroupId;
+
+    private int nextGroupId;
+
+    public BigintGroupByHash(int channel, int expectedSize)
+    {
+        checkArgument(channel >= 0, "channel must be at least zero");
+        checkArgument(expectedSize > 0, "expectedSize must be greater than zero");
+        this.channel = channel;
+
+        int hashSize = arraySize(expectedSize, FILL_RATIO);
+        this.mask = hashSize - 1;
+        this.maxFill = maxFill(hashSize, FILL_RATIO);
+        this.values = new long[hashSize];
+        this.groupIds = new int[hashSize];
+        Arrays.fill(groupIds, -1);
+
+        this.valuesByGroupId = new long[maxFill];
+    }
+
+    @Override
+    public long getEstimatedSize()
+    {
+        return sizeOf(values) + sizeOf(groupIds) + sizeOf(valuesByGroupId);
+    }
+
+    @Override
+    public List<Type> getTypes()
+    {
+        return TYPES;
+    }
+
+    @Override
+    public int getGroupCount()
+    {
+        return nextGroupId;
+    }
+
+    @Override
+    public GroupByIdBlock getGroupIds(Page page)
+    {
+        int positionCount = page.getPositionCount();
+
+        int groupIdBlockSize = SINGLE_LONG.getFixedSize() * positionCount;
+        BlockBuilder blockBuilder = new BlockBuilder(SINGLE_LONG, groupIdBlockSize, Slices.allocate(groupIdBlockSize).getOutput());
+
+        BlockCursor cursor = page.getBlock(channel).cursor();
+        for (int position = 0; position < positionCount; position++) {
+            checkState(cursor.advanceNextPosition());
+
+            if (cursor.isNull()) {
+                if (nullGroupId < 0) {
+                    nullGroupId = nextGroupId++;
+                    growValuesByGroupId();
+                }
+                blockBuilder.append(nullGroupId);
+            }
+            else {
+                blockBuilder.append(putIfAbsent(cursor.getLong()));
+            }
+        }
+        UncompressedBlock block = blockBuilder.build();
+        return new GroupByIdBlock(nextGroupId, block);
+    }
+
+    @Override
+    public void appendValuesTo(int groupId, BlockBuilder[] builders)
+    {
+        if (groupId == nullGroupId) {
+            builders[0].appendNull();
+        }
+        else {
+            builders[0].append(valuesByGroupId[groupId]);
+        }
+    }
+
+    @Override
+    public int hashGroup(int groupId)
+    {
+        if (groupId == nullGroupId) {
+            return 0;
+        }
+        return (int) murmurHash3(valuesByGroupId[groupId]);
+    }
+
+    private int putIfAbsent(long value)
+    {
+        int hashPosition = getHashPosition(value, mask);
+
+        // look for an existing group with this value
+        while (groupIds[hashPosition] != -1) {
+            if (values[hashPosition] == value) {
+                return groupIds[hashPosition];
+            }
+            hashPosition = (hashPosition + 1) & mask;
+        }
+
+        // add a new group
+        int groupId = nextGroupId++;
+        values[hashPosition] = value;
+        groupIds[hashPosition] = groupId;
+        valuesByGroupId[groupId] = value;
+
+        // increase capacity, if necessary
+        if (nextGroupId >= maxFill) {
+            rehash(maxFill * 2);
+        }
+        return groupId;
+    }
+
+    private void growValuesByGroupId()
+    {
+        if (nextGroupId >= maxFill) {
+            rehash(maxFill * 2);
+        }
+    }
+
+    private void rehash(int size)
+    {
+        int newSize = arraySize(size + 1, FILL_RATIO);
+
+        int newMask = newSize - 1;
+        long[] newValues = new long[newSize];
+        int[] newGroupIds = new int[newSize];
+        Arrays.fill(newGroupIds, -1);
+
+        for (int i = 0; i < values.length; i++) {
+            int groupId = groupIds[i];
+            if (groupId != -1) {
+                int hashPosition = getHashPosition(values[i], newMask);
+                while (newGroupIds[hashPosition] != -1) {
+                    hashPosition = (hashPosition + 1) & newMask;
+                }
+                newValues[hashPosition] = values[i];
+                newGroupIds[hashPosition] = groupId;
+            }
+        }
+
+        this.mask = newMask;
+        this.maxFill = maxFill(newSize, FILL_RATIO);
+        this.values = newValues;
+        this.groupIds = newGroupIds;
+        this.valuesByGroupId = Arrays.copyOf(valuesByGroupId, maxFill);
+    }
+
+    private static int getHashPosition(long rawHash, int mask)
+    {
+        return ((int) murmurHash3(rawHash)) & mask;
+    }
+}
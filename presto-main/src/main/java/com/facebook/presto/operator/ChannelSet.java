@@ -24,6 +24,7 @@ import io.airlift.units.DataSize;
 import it.unimi.dsi.fastutil.longs.LongHash;
 import it.unimi.dsi.fastutil.longs.LongOpenCustomHashSet;
 
+import static com.facebook.presto.block.BlockUtils.toUncompressedBlock;
 import static com.facebook.presto.operator.SliceHashStrategy.LOOKUP_SLICE_INDEX;
 import static com.facebook.presto.operator.SyntheticAddress.encodeSyntheticAddress;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -125,12 +126,13 @@ public class ChannelSet
             blockBuilder = new BlockBuilder(tupleInfo, slice.length(), slice.getOutput());
         }
 
-        public void addBlock(Block sourceBlock)
+        public void addBlock(Block block)
         {
             operatorContext.setMemoryReservation(getEstimatedSize());
 
+            UncompressedBlock sourceBlock = toUncompressedBlock(block);
             BlockCursor sourceCursor = sourceBlock.cursor();
-            Slice sourceSlice = ((UncompressedBlock) sourceBlock).getSlice();
+            Slice sourceSlice = sourceBlock.getSlice();
             strategy.setLookupSlice(sourceSlice);
 
             for (int position = 0; position < sourceBlock.getPositionCount(); position++) {
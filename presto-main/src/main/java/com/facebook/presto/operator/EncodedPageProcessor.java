@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.dictionary.Dictionary;
+import com.facebook.presto.block.dictionary.DictionaryEncodedBlock;
+import com.facebook.presto.block.rle.RunLengthEncodedBlock;
+import com.facebook.presto.tuple.Tuple;
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Evaluates a deterministic filter and projections once per distinct value
+ * of run length encoded and dictionary encoded pages, instead of once per
+ * position.  The results are copied to the output for every position that
+ * references a selected value.  When the filter and projections read a
+ * single channel, only that channel needs to be encoded; the other channels
+ * of the page are not read.
+ */
+@NotThreadSafe
+abstract class EncodedPageProcessor
+{
+    private final List<TupleInfo> tupleInfos;
+
+    // results for the most recently processed dictionary
+    private Dictionary dictionary;
+    private int[] dictionaryResultIndexes;
+    private Tuple[][] dictionaryResults;
+
+    protected EncodedPageProcessor(List<TupleInfo> tupleInfos)
+    {
+        this.tupleInfos = ImmutableList.copyOf(checkNotNull(tupleInfos, "tupleInfos is null"));
+    }
+
+    /**
+     * Evaluates the filter over every position of the page, recording the selected
+     * positions in {@code selectedPositions}, and projects the selected positions.
+     *
+     * @return the number of selected positions
+     */
+    protected abstract int filterAndProjectColumnar(Page page, int[] selectedPositions, PageBuilder pageBuilder);
+
+    /**
+     * Returns the only channel read by the filter and projections, or -1 if they read
+     * more than one channel or none.
+     */
+    protected abstract int getSingleInputChannel();
+
+    /**
+     * Processes the page if it is run length or dictionary encoded.
+     *
+     * @return true if the page was processed; otherwise the caller must process the page
+     */
+    public boolean process(Page page, PageBuilder pageBuilder)
+    {
+        if (page.getChannelCount() == 0 || page.getPositionCount() <= 1) {
+            return false;
+        }
+
+        int inputChannel = getSingleInputChannel();
+        Block inputBlock = (inputChannel >= 0) ? page.getBlock(inputChannel) : null;
+
+        if (inputBlock instanceof RunLengthEncodedBlock || (inputChannel < 0 && isRunLengthEncoded(page))) {
+            processRunLengthEncoded(page, pageBuilder);
+            return true;
+        }
+
+        if (inputBlock instanceof DictionaryEncodedBlock) {
+            DictionaryEncodedBlock block = (DictionaryEncodedBlock) inputBlock;
+
+            // only evaluate a new dictionary if it is not larger than the page
+            if (block.getDictionary() != dictionary && block.getDictionary().size() > page.getPositionCount()) {
+                return false;
+            }
+            processDictionaryEncoded(page, inputChannel, pageBuilder);
+            return true;
+        }
+
+        return false;
+    }
+
+    private void processRunLengthEncoded(Page page, PageBuilder pageBuilder)
+    {
+        // every channel that is read has the same value at all positions
+        Block[] values = new Block[page.getChannelCount()];
+        for (int channel = 0; channel < values.length; channel++) {
+            values[channel] = new RunLengthEncodedBlock(getFirstValue(page.getBlock(channel)), 1);
+        }
+
+        Page results = evaluate(new Page(values), new int[1]);
+        if (results.getPositionCount() == 0) {
+            return;
+        }
+
+        Tuple[][] tuples = toTuples(results);
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            pageBuilder.declarePosition();
+            for (int channel = 0; channel < tuples.length; channel++) {
+                pageBuilder.getBlockBuilder(channel).append(tuples[channel][0]);
+            }
+        }
+    }
+
+    private void processDictionaryEncoded(Page page, int inputChannel, PageBuilder pageBuilder)
+    {
+        DictionaryEncodedBlock block = (DictionaryEncodedBlock) page.getBlock(inputChannel);
+        if (block.getDictionary() != dictionary) {
+            loadDictionary(page, inputChannel);
+        }
+
+        BlockCursor ids = block.getIdBlock().cursor();
+        while (ids.advanceNextPosition()) {
+            int resultIndex = dictionaryResultIndexes[Ints.checkedCast(ids.getLong())];
+            if (resultIndex >= 0) {
+                pageBuilder.declarePosition();
+                for (int channel = 0; channel < dictionaryResults.length; channel++) {
+                    pageBuilder.getBlockBuilder(channel).append(dictionaryResults[channel][resultIndex]);
+                }
+            }
+        }
+    }
+
+    private void loadDictionary(Page page, int inputChannel)
+    {
+        Dictionary dictionary = ((DictionaryEncodedBlock) page.getBlock(inputChannel)).getDictionary();
+
+        BlockBuilder values = new BlockBuilder(dictionary.getTupleInfo());
+        for (int dictionaryKey = 0; dictionaryKey < dictionary.size(); dictionaryKey++) {
+            dictionary.appendTupleTo(dictionaryKey, values);
+        }
+
+        // the other channels are not read, so any value of the right type will do
+        Block[] blocks = new Block[page.getChannelCount()];
+        for (int channel = 0; channel < blocks.length; channel++) {
+            if (channel == inputChannel) {
+                blocks[channel] = values.build();
+            }
+            else {
+                blocks[channel] = new RunLengthEncodedBlock(getFirstValue(page.getBlock(channel)), dictionary.size());
+            }
+        }
+
+        int[] selectedPositions = new int[dictionary.size()];
+        Page results = evaluate(new Page(blocks), selectedPositions);
+
+        int[] resultIndexes = new int[dictionary.size()];
+        Arrays.fill(resultIndexes, -1);
+        for (int resultIndex = 0; resultIndex < results.getPositionCount(); resultIndex++) {
+            resultIndexes[selectedPositions[resultIndex]] = resultIndex;
+        }
+
+        this.dictionary = dictionary;
+        this.dictionaryResultIndexes = resultIndexes;
+        this.dictionaryResults = toTuples(results);
+    }
+
+    private Page evaluate(Page page, int[] selectedPositions)
+    {
+        PageBuilder pageBuilder = new PageBuilder(tupleInfos);
+        int selectedCount = filterAndProjectColumnar(page, selectedPositions, pageBuilder);
+        Page results = pageBuilder.build();
+        checkState(results.getPositionCount() == selectedCount, "Expected %s results, but got %s", selectedCount, results.getPositionCount());
+        return results;
+    }
+
+    private static Tuple getFirstValue(Block block)
+    {
+        if (block instanceof RunLengthEncodedBlock) {
+            return ((RunLengthEncodedBlock) block).getValue();
+        }
+        BlockCursor cursor = block.cursor();
+        checkState(cursor.advanceNextPosition(), "block is empty");
+        return cursor.getTuple();
+    }
+
+    private static boolean isRunLengthEncoded(Page page)
+    {
+        for (Block block : page.getBlocks()) {
+            if (!(block instanceof RunLengthEncodedBlock)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Tuple[][] toTuples(Page page)
+    {
+        Tuple[][] tuples = new Tuple[page.getChannelCount()][page.getPositionCount()];
+        for (int channel = 0; channel < page.getChannelCount(); channel++) {
+            BlockCursor cursor = page.getBlock(channel).cursor();
+            for (int position = 0; position < page.getPositionCount(); position++) {
+                checkState(cursor.advanceNextPosition());
+                tuples[channel][position] = cursor.getTuple();
+            }
+        }
+        return tuples;
+    }
+}
@@ -43,6 +43,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.facebook.presto.util.Threads.checkNotSameThreadExecutor;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
@@ -52,9 +53,12 @@ public class ExchangeClient
 {
     private static final Page NO_MORE_PAGES = new Page(0);
 
-    private final long maxBufferedBytes;
-    private final DataSize maxResponseSize;
+    @GuardedBy("this")
+    private long maxBufferedBytes;
+    @GuardedBy("this")
+    private DataSize maxResponseSize;
     private final int concurrentRequestMultiplier;
+    private final boolean compressionEnabled;
     private final AsyncHttpClient httpClient;
     private final Executor executor;
 
@@ -89,10 +93,21 @@ public class ExchangeClient
             int concurrentRequestMultiplier,
             AsyncHttpClient httpClient,
             Executor executor)
+    {
+        this(maxBufferedBytes, maxResponseSize, concurrentRequestMultiplier, false, httpClient, executor);
+    }
+
+    public ExchangeClient(DataSize maxBufferedBytes,
+            DataSize maxResponseSize,
+            int concurrentRequestMultiplier,
+            boolean compressionEnabled,
+            AsyncHttpClient httpClient,
+            Executor executor)
     {
         this.maxBufferedBytes = maxBufferedBytes.toBytes();
         this.maxResponseSize = maxResponseSize;
         this.concurrentRequestMultiplier = concurrentRequestMultiplier;
+        this.compressionEnabled = compressionEnabled;
         this.httpClient = httpClient;
         this.executor = checkNotSameThreadExecutor(executor, "executor");
     }
@@ -104,11 +119,30 @@ public class ExchangeClient
             bufferedPages--;
         }
 
+        long compressedBytes = 0;
+        long uncompressedBytes = 0;
         ImmutableList.Builder<PageBufferClientStatus> exchangeStatus = ImmutableList.builder();
         for (HttpPageBufferClient client : allClients.values()) {
             exchangeStatus.add(client.getStatus());
+            compressedBytes += client.getCompressedBytesReceived();
+            uncompressedBytes += client.getUncompressedBytesReceived();
+        }
+        return new ExchangeClientStatus(bufferBytes, averageBytesPerRequest, bufferedPages, compressedBytes, uncompressedBytes, exchangeStatus.build());
+    }
+
+    /**
+     * Lowers the buffer of this client, and the size of each response, to at most
+     * the specified size.  Must be called before any location is added.
+     */
+    public synchronized void limitBufferSize(DataSize maxBufferSize)
+    {
+        checkNotNull(maxBufferSize, "maxBufferSize is null");
+        checkArgument(maxBufferSize.toBytes() > 0, "maxBufferSize must be positive");
+        checkState(locations.isEmpty(), "Buffer size must be limited before locations are added");
+        maxBufferedBytes = Math.min(maxBufferedBytes, maxBufferSize.toBytes());
+        if (maxBufferSize.toBytes() < maxResponseSize.toBytes()) {
+            maxResponseSize = maxBufferSize;
         }
-        return new ExchangeClientStatus(bufferBytes, averageBytesPerRequest, bufferedPages, exchangeStatus.build());
     }
 
     public synchronized void addLocation(URI location)
@@ -233,7 +267,7 @@ public class ExchangeClient
         // add clients for new locations
         for (URI location : locations) {
             if (!allClients.containsKey(location)) {
-                HttpPageBufferClient client = new HttpPageBufferClient(httpClient, maxResponseSize, location, new ExchangeClientCallback(), executor);
+                HttpPageBufferClient client = new HttpPageBufferClient(httpClient, maxResponseSize, location, new ExchangeClientCallback(), compressionEnabled, executor);
                 allClients.put(location, client);
                 queuedClients.add(client);
             }
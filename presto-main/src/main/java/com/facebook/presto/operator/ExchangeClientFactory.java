@@ -30,6 +30,7 @@ public class ExchangeClientFactory
 {
     private final DataSize maxBufferedBytes;
     private final int concurrentRequestMultiplier;
+    private final boolean compressionEnabled;
     private final AsyncHttpClient httpClient;
     private final DataSize maxResponseSize;
     private final Executor executor;
@@ -40,6 +41,7 @@ public class ExchangeClientFactory
         this(config.getExchangeMaxBufferSize(),
                 new DataSize(10, Unit.MEGABYTE),
                 config.getExchangeConcurrentRequestMultiplier(),
+                config.isExchangeCompressionEnabled(),
                 httpClient,
                 executor);
     }
@@ -49,9 +51,20 @@ public class ExchangeClientFactory
             int concurrentRequestMultiplier,
             AsyncHttpClient httpClient,
             Executor executor)
+    {
+        this(maxBufferedBytes, maxResponseSize, concurrentRequestMultiplier, false, httpClient, executor);
+    }
+
+    public ExchangeClientFactory(DataSize maxBufferedBytes,
+            DataSize maxResponseSize,
+            int concurrentRequestMultiplier,
+            boolean compressionEnabled,
+            AsyncHttpClient httpClient,
+            Executor executor)
     {
         this.maxBufferedBytes = checkNotNull(maxBufferedBytes, "maxBufferedBytes is null");
         this.concurrentRequestMultiplier = concurrentRequestMultiplier;
+        this.compressionEnabled = compressionEnabled;
         this.httpClient = checkNotNull(httpClient, "httpClient is null");
         this.maxResponseSize = checkNotNull(maxResponseSize, "maxResponseSize is null");
         this.executor = checkNotNull(executor, "executor is null");
@@ -64,6 +77,6 @@ public class ExchangeClientFactory
     @Override
     public ExchangeClient get()
     {
-        return new ExchangeClient(maxBufferedBytes, maxResponseSize, concurrentRequestMultiplier, httpClient, executor);
+        return new ExchangeClient(maxBufferedBytes, maxResponseSize, concurrentRequestMultiplier, compressionEnabled, httpClient, executor);
     }
 }
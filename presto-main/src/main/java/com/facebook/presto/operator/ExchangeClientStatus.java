@@ -27,6 +27,8 @@ public class ExchangeClientStatus
     private final long bufferedBytes;
     private final long averageBytesPerRequest;
     private final int bufferedPages;
+    private final long compressedBytes;
+    private final long uncompressedBytes;
     private final List<PageBufferClientStatus> pageBufferClientStatuses;
 
     @JsonCreator
@@ -34,11 +36,15 @@ public class ExchangeClientStatus
             @JsonProperty("bufferedBytes") long bufferedBytes,
             @JsonProperty("averageBytesPerRequest") long averageBytesPerRequest,
             @JsonProperty("bufferedPages") int bufferedPages,
+            @JsonProperty("compressedBytes") long compressedBytes,
+            @JsonProperty("uncompressedBytes") long uncompressedBytes,
             @JsonProperty("pageBufferClientStatuses") List<PageBufferClientStatus> pageBufferClientStatuses)
     {
         this.bufferedBytes = bufferedBytes;
         this.averageBytesPerRequest = averageBytesPerRequest;
         this.bufferedPages = bufferedPages;
+        this.compressedBytes = compressedBytes;
+        this.uncompressedBytes = uncompressedBytes;
         this.pageBufferClientStatuses = ImmutableList.copyOf(checkNotNull(pageBufferClientStatuses, "pageBufferClientStatuses is null"));
     }
 
@@ -60,6 +66,24 @@ public class ExchangeClientStatus
         return bufferedPages;
     }
 
+    /**
+     * Bytes of page data received over the wire.
+     */
+    @JsonProperty
+    public long getCompressedBytes()
+    {
+        return compressedBytes;
+    }
+
+    /**
+     * Bytes of page data received, after decompression.
+     */
+    @JsonProperty
+    public long getUncompressedBytes()
+    {
+        return uncompressedBytes;
+    }
+
     @JsonProperty
     public List<PageBufferClientStatus> getPageBufferClientStatuses()
     {
@@ -73,6 +97,8 @@ public class ExchangeClientStatus
                 .add("bufferBytes", bufferedBytes)
                 .add("averageBytesPerRequest", averageBytesPerRequest)
                 .add("bufferedPages", bufferedPages)
+                .add("compressedBytes", compressedBytes)
+                .add("uncompressedBytes", uncompressedBytes)
                 .add("pageBufferClientStatuses", pageBufferClientStatuses)
                 .toString();
     }
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.facebook.presto.operator.MergeSortedPages.mergeSortedPages;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Sorts pages using a {@link PagesIndex}. When spilling is enabled and the index
+ * can not reserve more memory, the index is sorted and written to a spill file
+ * as a run, and the runs are combined with a streaming merge once all input has
+ * been added. Without a spill path this behaves exactly like a plain PagesIndex.
+ */
+@NotThreadSafe
+public class ExternalSorter
+        implements Closeable
+{
+    private final OperatorContext operatorContext;
+    private final List<TupleInfo> tupleInfos;
+    private final int[] sortChannels;
+    private final SortOrder[] sortOrders;
+    private final Optional<File> spillPath;
+
+    private final PagesIndex pagesIndex;
+    private final List<SpillFile> runs = new ArrayList<>();
+
+    public ExternalSorter(OperatorContext operatorContext, List<TupleInfo> tupleInfos, int expectedPositions, int[] sortChannels, SortOrder[] sortOrders)
+    {
+        this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
+        this.tupleInfos = ImmutableList.copyOf(checkNotNull(tupleInfos, "tupleInfos is null"));
+        this.sortChannels = checkNotNull(sortChannels, "sortChannels is null").clone();
+        this.sortOrders = checkNotNull(sortOrders, "sortOrders is null").clone();
+        checkArgument(sortChannels.length == sortOrders.length, "sortChannels and sortOrders must have the same length");
+        this.spillPath = operatorContext.getSpillPath();
+
+        this.pagesIndex = new PagesIndex(tupleInfos, expectedPositions, operatorContext);
+    }
+
+    public void addPage(Page page)
+    {
+        checkNotNull(page, "page is null");
+        if (!spillPath.isPresent()) {
+            pagesIndex.addPage(page);
+            return;
+        }
+
+        if (!pagesIndex.tryAddPage(page)) {
+            spillRun();
+        }
+    }
+
+    public boolean isSpilled()
+    {
+        return !runs.isEmpty();
+    }
+
+    /**
+     * Sorts and returns the in-memory index. Only valid if nothing has been spilled.
+     */
+    public PagesIndex sortInMemory()
+    {
+        checkState(runs.isEmpty(), "sorter has spilled to disk");
+        pagesIndex.sort(sortChannels, sortOrders);
+        return pagesIndex;
+    }
+
+    /**
+     * Spills the positions still in memory and returns the merged contents of all runs.
+     * The returned pages contain every channel of the input.
+     */
+    public Iterator<Page> mergeRuns()
+    {
+        checkState(!runs.isEmpty(), "sorter has not spilled to disk");
+        if (pagesIndex.getPositionCount() > 0) {
+            spillRun();
+        }
+
+        ImmutableList.Builder<Iterator<Page>> sortedStreams = ImmutableList.builder();
+        for (SpillFile run : runs) {
+            sortedStreams.add(run.readPages());
+        }
+        return mergeSortedPages(sortedStreams.build(), tupleInfos, sortChannels, sortOrders);
+    }
+
+    private void spillRun()
+    {
+        pagesIndex.sort(sortChannels, sortOrders);
+
+        SpillFile run = SpillFile.createSpillFile(spillPath.get());
+        runs.add(run);
+
+        PageBuilder pageBuilder = new PageBuilder(tupleInfos);
+        int positionCount = pagesIndex.getPositionCount();
+        int position = 0;
+        while (position < positionCount) {
+            pageBuilder.reset();
+            while (!pageBuilder.isFull() && position < positionCount) {
+                for (int channel = 0; channel < tupleInfos.size(); channel++) {
+                    pagesIndex.appendTupleTo(channel, position, pageBuilder.getBlockBuilder(channel));
+                }
+                position++;
+            }
+            run.writePage(pageBuilder.build());
+        }
+        run.finishWriting();
+
+        operatorContext.recordSpill(run.getSpilledBytes());
+        pagesIndex.clear();
+    }
+
+    @Override
+    public void close()
+    {
+        for (SpillFile run : runs) {
+            run.close();
+        }
+        runs.clear();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.tuple.TupleInfo.Type;
+
+import java.util.List;
+
+public final class GroupByHashes
+{
+    private GroupByHashes()
+    {
+    }
+
+    /**
+     * Creates a group by hash specialized for the key types.
+     */
+    public static GroupByHash createGroupByHash(List<Type> types, int[] channels, int expectedSize)
+    {
+        if (types.size() == 1 && types.get(0) == Type.FIXED_INT_64) {
+            return new BigintGroupByHash(channels[0], expectedSize);
+        }
+        return new MultiChannelGroupByHash(types, channels, expectedSize);
+    }
+}
@@ -22,26 +22,39 @@ import com.facebook.presto.sql.tree.Input;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleInfo.Type;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.DataSize;
-import it.unimi.dsi.fastutil.longs.Long2IntMap.Entry;
-import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 
+import static com.facebook.presto.operator.AggregationFunctionDefinition.aggregation;
+import static com.facebook.presto.operator.GroupByHashes.createGroupByHash;
+import static com.facebook.presto.operator.SpillFile.createSpillFile;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.transform;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
 
 public class HashAggregationOperator
-        implements Operator
+        implements Operator, Closeable
 {
+    private static final int SPILL_PARTITIONS = 16;
+    // a partition that does not fit in memory is repartitioned, up to this many times
+    private static final int MAX_SPILL_LEVEL = 4;
+
     public static class HashAggregationOperatorFactory
             implements OperatorFactory
     {
@@ -110,11 +123,17 @@ public class HashAggregationOperator
 
     private final List<TupleInfo> tupleInfos;
     private final HashMemoryManager memoryManager;
+    private final Optional<File> spillPath;
 
     private GroupByHashAggregationBuilder aggregationBuilder;
     private Iterator<Page> outputIterator;
     private boolean finishing;
 
+    // groups are hash partitioned into these files when the aggregation does not fit in memory
+    private List<SpillFile> spillFiles;
+    // partitions of spilled partitions that were too large to merge in memory
+    private final List<SpillFile> repartitionedSpillFiles = new ArrayList<>();
+
     public HashAggregationOperator(
             OperatorContext operatorContext,
             List<TupleInfo> groupByTupleInfos,
@@ -134,6 +153,7 @@ public class HashAggregationOperator
         this.step = step;
         this.expectedGroups = expectedGroups;
         this.memoryManager = new HashMemoryManager(operatorContext);
+        this.spillPath = operatorContext.getSpillPath();
 
         this.tupleInfos = toTupleInfos(groupByTupleInfos, step, functionDefinitions);
     }
@@ -180,13 +200,7 @@ public class HashAggregationOperator
         checkState(!finishing, "Operator is already finishing");
         checkNotNull(page, "page is null");
         if (aggregationBuilder == null) {
-            aggregationBuilder = new GroupByHashAggregationBuilder(
-                    functionDefinitions,
-                    step,
-                    expectedGroups,
-                    groupByTupleInfos,
-                    groupByChannels,
-                    memoryManager);
+            aggregationBuilder = createAggregationBuilder();
 
             // assume initial aggregationBuilder is not full
         }
@@ -212,11 +226,27 @@ public class HashAggregationOperator
 
             // Only partial aggregation can flush early. Also, check that we are not flushing tiny bits at a time
             if (!finishing && step != Step.PARTIAL) {
-                throw new ExceededMemoryLimitException(memoryManager.getMaxMemorySize());
+                if (!spillPath.isPresent()) {
+                    throw new ExceededMemoryLimitException(memoryManager.getMaxMemorySize());
+                }
+                spillToDisk();
+                return null;
             }
 
-            outputIterator = aggregationBuilder.build();
-            aggregationBuilder = null;
+            if (spillFiles != null) {
+                // some groups are already on disk, so the in memory groups must be merged with them
+                spillAggregationBuilder();
+                aggregationBuilder = null;
+                memoryManager.releaseMemory();
+                for (SpillFile spillFile : spillFiles) {
+                    spillFile.finishWriting();
+                }
+                outputIterator = new SpilledPartitionsIterator(spillFiles.iterator());
+            }
+            else {
+                outputIterator = aggregationBuilder.build();
+                aggregationBuilder = null;
+            }
 
             if (!outputIterator.hasNext()) {
                 return null;
@@ -226,6 +256,210 @@ public class HashAggregationOperator
         return outputIterator.next();
     }
 
+    @Override
+    public void close()
+    {
+        if (spillFiles != null) {
+            for (SpillFile spillFile : spillFiles) {
+                spillFile.close();
+            }
+        }
+        for (SpillFile spillFile : repartitionedSpillFiles) {
+            spillFile.close();
+        }
+    }
+
+    private GroupByHashAggregationBuilder createAggregationBuilder()
+    {
+        return new GroupByHashAggregationBuilder(
+                functionDefinitions,
+                step,
+                expectedGroups,
+                groupByTupleInfos,
+                groupByChannels,
+                memoryManager);
+    }
+
+    private void spillToDisk()
+    {
+        if (spillFiles == null) {
+            spillFiles = createSpillFiles();
+        }
+
+        spillAggregationBuilder();
+
+        // the groups are now on disk, so start over with an empty hash
+        aggregationBuilder = createAggregationBuilder();
+        memoryManager.releaseMemory();
+    }
+
+    private List<SpillFile> createSpillFiles()
+    {
+        ImmutableList.Builder<SpillFile> builder = ImmutableList.builder();
+        for (int i = 0; i < SPILL_PARTITIONS; i++) {
+            builder.add(createSpillFile(spillPath.get()));
+        }
+        return builder.build();
+    }
+
+    private void spillAggregationBuilder()
+    {
+        spill(aggregationBuilder, spillFiles, 0);
+    }
+
+    private void spill(GroupByHashAggregationBuilder builder, List<SpillFile> spillFiles, int level)
+    {
+        long spilledBytes = getSpilledBytes(spillFiles);
+        builder.spill(spillFiles, level);
+        operatorContext.recordSpill(getSpilledBytes(spillFiles) - spilledBytes);
+    }
+
+    private static long getSpilledBytes(List<SpillFile> spillFiles)
+    {
+        long spilledBytes = 0;
+        for (SpillFile spillFile : spillFiles) {
+            spilledBytes += spillFile.getSpilledBytes();
+        }
+        return spilledBytes;
+    }
+
+    /**
+     * Merges the intermediate results spilled to each partition. A group is always
+     * spilled to the same partition, so each partition can be finalized on its own.
+     * A partition that does not fit in memory is split again with a different hash
+     * seed, and its new partitions are merged before the remaining ones.
+     */
+    private class SpilledPartitionsIterator
+            extends AbstractIterator<Page>
+    {
+        private final Deque<SpilledPartition> partitions = new ArrayDeque<>();
+        private final List<AggregationFunctionDefinition> spilledFunctionDefinitions;
+        private final List<Integer> spilledGroupByChannels;
+        private Iterator<Page> currentPartition = Iterators.emptyIterator();
+
+        private SpilledPartitionsIterator(Iterator<SpillFile> partitions)
+        {
+            while (partitions.hasNext()) {
+                this.partitions.add(new SpilledPartition(partitions.next(), 0));
+            }
+
+            // spilled pages contain the group by columns followed by the intermediate value of each function
+            int groupByCount = groupByTupleInfos.size();
+            ImmutableList.Builder<Integer> groupByChannels = ImmutableList.builder();
+            for (int i = 0; i < groupByCount; i++) {
+                groupByChannels.add(i);
+            }
+            this.spilledGroupByChannels = groupByChannels.build();
+
+            ImmutableList.Builder<AggregationFunctionDefinition> definitions = ImmutableList.builder();
+            for (int i = 0; i < functionDefinitions.size(); i++) {
+                AggregationFunctionDefinition functionDefinition = functionDefinitions.get(i);
+                definitions.add(aggregation(
+                        functionDefinition.getFunction(),
+                        ImmutableList.of(new Input(groupByCount + i)),
+                        Optional.<Input>absent(),
+                        Optional.<Input>absent(),
+                        functionDefinition.getConfidence()));
+            }
+            this.spilledFunctionDefinitions = definitions.build();
+        }
+
+        @Override
+        protected Page computeNext()
+        {
+            while (!currentPartition.hasNext()) {
+                if (partitions.isEmpty()) {
+                    memoryManager.releaseMemory();
+                    return endOfData();
+                }
+                currentPartition = mergePartition(partitions.poll());
+            }
+            return currentPartition.next();
+        }
+
+        private Iterator<Page> mergePartition(SpilledPartition partition)
+        {
+            // memory of the previous partition is no longer needed
+            memoryManager.releaseMemory();
+
+            GroupByHashAggregationBuilder builder = createMergeBuilder();
+            List<SpillFile> subpartitions = null;
+
+            Iterator<Page> pages = partition.getSpillFile().readPages();
+            while (pages.hasNext()) {
+                builder.processPage(pages.next());
+                if (builder.isFull()) {
+                    if (partition.getLevel() >= MAX_SPILL_LEVEL) {
+                        // repartitioning does not help when a few groups need all the memory
+                        throw new ExceededMemoryLimitException(memoryManager.getMaxMemorySize(), "Spilled aggregation partition still does not fit after repartitioning it " + MAX_SPILL_LEVEL + " times");
+                    }
+                    if (subpartitions == null) {
+                        subpartitions = createSpillFiles();
+                        repartitionedSpillFiles.addAll(subpartitions);
+                    }
+                    spill(builder, subpartitions, partition.getLevel() + 1);
+                    builder = createMergeBuilder();
+                    memoryManager.releaseMemory();
+                }
+            }
+            partition.getSpillFile().close();
+
+            if (subpartitions == null) {
+                return builder.build();
+            }
+
+            // the partition did not fit, so merge its partitions next
+            spill(builder, subpartitions, partition.getLevel() + 1);
+            memoryManager.releaseMemory();
+            for (int i = subpartitions.size() - 1; i >= 0; i--) {
+                SpillFile subpartition = subpartitions.get(i);
+                subpartition.finishWriting();
+                partitions.addFirst(new SpilledPartition(subpartition, partition.getLevel() + 1));
+            }
+            return Iterators.emptyIterator();
+        }
+
+        private GroupByHashAggregationBuilder createMergeBuilder()
+        {
+            return new GroupByHashAggregationBuilder(
+                    spilledFunctionDefinitions,
+                    Step.FINAL,
+                    expectedGroups,
+                    groupByTupleInfos,
+                    spilledGroupByChannels,
+                    memoryManager);
+        }
+    }
+
+    private static class SpilledPartition
+    {
+        private final SpillFile spillFile;
+        private final int level;
+
+        private SpilledPartition(SpillFile spillFile, int level)
+        {
+            this.spillFile = spillFile;
+            this.level = level;
+        }
+
+        public SpillFile getSpillFile()
+        {
+            return spillFile;
+        }
+
+        public int getLevel()
+        {
+            return level;
+        }
+    }
+
+    private static int getSpillPartition(int groupHash, int level, int partitionCount)
+    {
+        // each level mixes in a different seed, so the groups of one partition are spread over all partitions of the next level
+        int hash = murmurHash3(groupHash ^ (level * 0x9E3779B9));
+        return (hash & Integer.MAX_VALUE) % partitionCount;
+    }
+
     private static List<TupleInfo> toTupleInfos(List<TupleInfo> groupByTupleInfo, Step step, List<AggregationFunctionDefinition> functionDefinitions)
     {
         ImmutableList.Builder<TupleInfo> tupleInfos = ImmutableList.builder();
@@ -263,7 +497,7 @@ public class HashAggregationOperator
                 }
             }));
 
-            this.groupByHash = new GroupByHash(groupByTypes, Ints.toArray(groupByChannels), expectedGroups);
+            this.groupByHash = createGroupByHash(groupByTypes, Ints.toArray(groupByChannels), expectedGroups);
             this.memoryManager = memoryManager;
 
             // wrapper each function with an aggregator
@@ -306,12 +540,13 @@ public class HashAggregationOperator
             final PageBuilder pageBuilder = new PageBuilder(tupleInfos.build());
             return new AbstractIterator<Page>()
             {
-                private final ObjectIterator<Entry> pagePositionToGroup = groupByHash.getPagePositionToGroupId().long2IntEntrySet().fastIterator();
+                private final int groupCount = groupByHash.getGroupCount();
+                private int groupId;
 
                 @Override
                 protected Page computeNext()
                 {
-                    if (!pagePositionToGroup.hasNext()) {
+                    if (groupId >= groupCount) {
                         return endOfData();
                     }
 
@@ -323,18 +558,16 @@ public class HashAggregationOperator
                         groupByBlockBuilders[i] = pageBuilder.getBlockBuilder(i);
                     }
 
-                    while (!pageBuilder.isFull() && pagePositionToGroup.hasNext()) {
-                        Entry next = pagePositionToGroup.next();
-                        long pagePosition = next.getLongKey();
-                        int groupId = next.getIntValue();
-
-                        groupByHash.appendValuesTo(pagePosition, groupByBlockBuilders);
+                    while (!pageBuilder.isFull() && groupId < groupCount) {
+                        groupByHash.appendValuesTo(groupId, groupByBlockBuilders);
 
                         for (int i = 0; i < aggregators.size(); i++) {
                             Aggregator aggregator = aggregators.get(i);
                             BlockBuilder output = pageBuilder.getBlockBuilder(types.size() + i);
                             aggregator.evaluate(groupId, output);
                         }
+
+                        groupId++;
                     }
 
                     Page page = pageBuilder.build();
@@ -342,6 +575,56 @@ public class HashAggregationOperator
                 }
             };
         }
+
+        /**
+         * Writes the group by values and the intermediate state of each group to the
+         * spill file selected by the hash of the group at the given spill level.
+         */
+        public void spill(List<SpillFile> spillFiles, int level)
+        {
+            List<Type> types = groupByHash.getTypes();
+            ImmutableList.Builder<TupleInfo> tupleInfos = ImmutableList.builder();
+            for (Type type : types) {
+                tupleInfos.add(new TupleInfo(type));
+            }
+            for (Aggregator aggregator : aggregators) {
+                tupleInfos.add(aggregator.getIntermediateTupleInfo());
+            }
+
+            List<TupleInfo> spilledTupleInfos = tupleInfos.build();
+            PageBuilder[] pageBuilders = new PageBuilder[spillFiles.size()];
+            for (int partition = 0; partition < pageBuilders.length; partition++) {
+                pageBuilders[partition] = new PageBuilder(spilledTupleInfos);
+            }
+
+            BlockBuilder[] groupByBlockBuilders = new BlockBuilder[types.size()];
+            for (int groupId = 0; groupId < groupByHash.getGroupCount(); groupId++) {
+                int partition = getSpillPartition(groupByHash.hashGroup(groupId), level, pageBuilders.length);
+                PageBuilder pageBuilder = pageBuilders[partition];
+
+                for (int i = 0; i < types.size(); i++) {
+                    groupByBlockBuilders[i] = pageBuilder.getBlockBuilder(i);
+                }
+                groupByHash.appendValuesTo(groupId, groupByBlockBuilders);
+
+                for (int i = 0; i < aggregators.size(); i++) {
+                    Aggregator aggregator = aggregators.get(i);
+                    BlockBuilder output = pageBuilder.getBlockBuilder(types.size() + i);
+                    aggregator.evaluateIntermediate(groupId, output);
+                }
+
+                if (pageBuilder.isFull()) {
+                    spillFiles.get(partition).writePage(pageBuilder.build());
+                    pageBuilder.reset();
+                }
+            }
+
+            for (int partition = 0; partition < pageBuilders.length; partition++) {
+                if (!pageBuilders[partition].isEmpty()) {
+                    spillFiles.get(partition).writePage(pageBuilders[partition].build());
+                }
+            }
+        }
     }
 
     public static class HashMemoryManager
@@ -373,6 +656,12 @@ public class HashAggregationOperator
             return false;
         }
 
+        public void releaseMemory()
+        {
+            operatorContext.freeMemory(currentMemoryReservation);
+            currentMemoryReservation = 0;
+        }
+
         public DataSize getMaxMemorySize()
         {
             return operatorContext.getMaxMemorySize();
@@ -425,6 +714,11 @@ public class HashAggregationOperator
             }
         }
 
+        public TupleInfo getIntermediateTupleInfo()
+        {
+            return aggregation.getIntermediateTupleInfo();
+        }
+
         public void processPage(GroupByIdBlock groupIds, Page page)
         {
             if (step == Step.FINAL) {
@@ -444,5 +738,10 @@ public class HashAggregationOperator
                 aggregation.evaluateFinal(groupId, output);
             }
         }
+
+        public void evaluateIntermediate(int groupId, BlockBuilder output)
+        {
+            aggregation.evaluateIntermediate(groupId, output);
+        }
     }
 }
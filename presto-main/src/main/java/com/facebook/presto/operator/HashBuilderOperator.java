@@ -13,7 +13,11 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.ExceededMemoryLimitException;
+import com.facebook.presto.block.BlockCursor;
 import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.tuple.TupleInfo.Type;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -23,8 +27,13 @@ import com.google.common.util.concurrent.SettableFuture;
 
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import static com.facebook.presto.operator.HashStrategyUtils.addToHashCode;
+import static com.facebook.presto.operator.HashStrategyUtils.valueHashCode;
+import static com.facebook.presto.operator.PartitionedLookupSource.getPartition;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
@@ -32,14 +41,46 @@ import static com.google.common.base.Preconditions.checkState;
 public class HashBuilderOperator
         implements Operator
 {
+    /**
+     * Collects the build side of a join. With a single partition, one builder indexes the
+     * whole build side. With multiple partitions, one builder is created per partition:
+     * each builder routes its share of the input rows to partitions by the hash of the join
+     * channels, and once every builder has buffered its input, each builder indexes the rows
+     * of its own partition. The lookup source is available when all partitions are indexed.
+     */
     public static class HashSupplier
     {
         private final List<TupleInfo> tupleInfos;
-        private final SettableFuture<JoinHash> hashFuture = SettableFuture.create();
+        private final int partitionCount;
+        private final SettableFuture<List<JoinHash>> hashFuture = SettableFuture.create();
+
+        private final SettableFuture<?> pagesBufferedFuture = SettableFuture.create();
+        private final List<List<Page>> partitionPages;
+        private int pendingBuilders;
+
+        private final JoinHash[] partitions;
+        private int pendingPartitions;
 
         public HashSupplier(List<TupleInfo> tupleInfos)
+        {
+            this(tupleInfos, 1);
+        }
+
+        public HashSupplier(List<TupleInfo> tupleInfos, int partitionCount)
         {
             this.tupleInfos = ImmutableList.copyOf(checkNotNull(tupleInfos, "tupleInfos is null"));
+            checkArgument(partitionCount > 0, "partitionCount must be at least 1");
+            this.partitionCount = partitionCount;
+
+            ImmutableList.Builder<List<Page>> partitionPages = ImmutableList.builder();
+            for (int partition = 0; partition < partitionCount; partition++) {
+                partitionPages.add(new ArrayList<Page>());
+            }
+            this.partitionPages = partitionPages.build();
+            this.pendingBuilders = partitionCount;
+
+            this.partitions = new JoinHash[partitionCount];
+            this.pendingPartitions = partitionCount;
         }
 
         public List<TupleInfo> getTupleInfos()
@@ -47,23 +88,89 @@ public class HashBuilderOperator
             return tupleInfos;
         }
 
-        public ListenableFuture<JoinHash> getSourceHash()
+        public int getPartitionCount()
         {
-            return Futures.transform(hashFuture, new Function<JoinHash, JoinHash>()
+            return partitionCount;
+        }
+
+        public ListenableFuture<LookupSource> getSourceHash()
+        {
+            return Futures.transform(hashFuture, new Function<List<JoinHash>, LookupSource>()
             {
                 @Override
-                public JoinHash apply(JoinHash joinHash)
+                public LookupSource apply(List<JoinHash> partitions)
                 {
-                    return new JoinHash(joinHash);
+                    // each probe needs its own copy, since the copy holds the probe cursors
+                    if (partitions.size() == 1) {
+                        return new JoinHash(partitions.get(0));
+                    }
+                    ImmutableList.Builder<JoinHash> copies = ImmutableList.builder();
+                    for (JoinHash partition : partitions) {
+                        copies.add(new JoinHash(partition));
+                    }
+                    return new PartitionedLookupSource(copies.build());
                 }
             });
         }
 
-        void setHash(JoinHash joinHash)
+        ListenableFuture<?> getPagesBufferedFuture()
+        {
+            return pagesBufferedFuture;
+        }
+
+        void addPartitionPages(List<List<Page>> pages)
+        {
+            checkArgument(pages.size() == partitionCount, "Expected pages for %s partitions, but got %s", partitionCount, pages.size());
+            synchronized (this) {
+                checkState(pendingBuilders > 0, "All builders have already added pages");
+                for (int partition = 0; partition < partitionCount; partition++) {
+                    partitionPages.get(partition).addAll(pages.get(partition));
+                }
+                pendingBuilders--;
+                if (pendingBuilders > 0) {
+                    return;
+                }
+            }
+            // complete the future outside of the lock, since listeners run in this thread
+            pagesBufferedFuture.set(null);
+        }
+
+        synchronized List<Page> getPartitionPages(int partition)
         {
-            boolean wasSet = hashFuture.set(joinHash);
+            checkState(pendingBuilders == 0, "Not all builders have added pages");
+            return ImmutableList.copyOf(partitionPages.get(partition));
+        }
+
+        void setPartition(int partition, JoinHash joinHash)
+        {
+            checkNotNull(joinHash, "joinHash is null");
+            List<JoinHash> hashes;
+            synchronized (this) {
+                checkState(partitions[partition] == null, "Hash for partition %s already set", partition);
+                partitions[partition] = joinHash;
+                // release the buffered pages, they are now owned by the partition index
+                partitionPages.get(partition).clear();
+                pendingPartitions--;
+                if (pendingPartitions > 0) {
+                    return;
+                }
+                hashes = ImmutableList.copyOf(partitions);
+            }
+            boolean wasSet = hashFuture.set(hashes);
             checkState(wasSet, "Hash already set");
         }
+
+        @VisibleForTesting
+        synchronized long getEstimatedSize()
+        {
+            long size = 0;
+            for (JoinHash joinHash : partitions) {
+                if (joinHash != null) {
+                    size += joinHash.getEstimatedSize();
+                }
+            }
+            return size;
+        }
     }
 
     public static class HashBuilderOperatorFactory
@@ -73,6 +180,7 @@ public class HashBuilderOperator
         private final HashSupplier hashSupplier;
         private final List<Integer> hashChannels;
         private final int expectedPositions;
+        private int nextPartition;
         private boolean closed;
 
         public HashBuilderOperatorFactory(
@@ -80,9 +188,24 @@ public class HashBuilderOperator
                 List<TupleInfo> tupleInfos,
                 List<Integer> hashChannels,
                 int expectedPositions)
+        {
+            this(operatorId, tupleInfos, hashChannels, expectedPositions, 1);
+        }
+
+        /**
+         * Creates a factory for {@code partitionCount} builders that index the build side in parallel.
+         * Exactly {@code partitionCount} operators must be created, and each must receive a disjoint
+         * share of the build input.
+         */
+        public HashBuilderOperatorFactory(
+                int operatorId,
+                List<TupleInfo> tupleInfos,
+                List<Integer> hashChannels,
+                int expectedPositions,
+                int partitionCount)
         {
             this.operatorId = operatorId;
-            this.hashSupplier = new HashSupplier(checkNotNull(tupleInfos, "tupleInfos is null"));
+            this.hashSupplier = new HashSupplier(checkNotNull(tupleInfos, "tupleInfos is null"), partitionCount);
 
             Preconditions.checkArgument(!hashChannels.isEmpty(), "hashChannels is empty");
             this.hashChannels = ImmutableList.copyOf(checkNotNull(hashChannels, "hashChannels is null"));
@@ -102,13 +225,15 @@ public class HashBuilderOperator
         }
 
         @Override
-        public Operator createOperator(DriverContext driverContext)
+        public synchronized Operator createOperator(DriverContext driverContext)
         {
             checkState(!closed, "Factory is already closed");
+            checkState(nextPartition < hashSupplier.getPartitionCount(), "All %s hash builders have already been created", hashSupplier.getPartitionCount());
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, HashBuilderOperator.class.getSimpleName());
             return new HashBuilderOperator(
                     operatorContext,
                     hashSupplier,
+                    nextPartition++,
                     hashChannels,
                     expectedPositions);
         }
@@ -120,28 +245,79 @@ public class HashBuilderOperator
         }
     }
 
+    private enum State
+    {
+        CONSUMING_INPUT,
+        BUFFERED,
+        FINISHED
+    }
+
     private final OperatorContext operatorContext;
     private final HashSupplier hashSupplier;
+    private final int partition;
     private final List<Integer> hashChannels;
+    private final int expectedPositions;
 
     private final PagesIndex pagesIndex;
 
-    private boolean finished;
+    // only used when the build side is partitioned
+    private final Type[] hashTypes;
+    private final BlockCursor[] hashCursors;
+    private final PageBuilder[] partitionBuilders;
+    private final List<List<Page>> partitionPages;
+    private long partitionPagesBytes;
+
+    private State state = State.CONSUMING_INPUT;
+
+    public HashBuilderOperator(
+            OperatorContext operatorContext,
+            HashSupplier hashSupplier,
+            List<Integer> hashChannels,
+            int expectedPositions)
+    {
+        this(operatorContext, hashSupplier, 0, hashChannels, expectedPositions);
+    }
 
     public HashBuilderOperator(
             OperatorContext operatorContext,
             HashSupplier hashSupplier,
+            int partition,
             List<Integer> hashChannels,
             int expectedPositions)
     {
         this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
 
         this.hashSupplier = checkNotNull(hashSupplier, "hashSupplier is null");
+        checkArgument(partition >= 0 && partition < hashSupplier.getPartitionCount(), "Invalid partition %s", partition);
+        this.partition = partition;
 
         Preconditions.checkArgument(!hashChannels.isEmpty(), "hashChannels is empty");
         this.hashChannels = ImmutableList.copyOf(checkNotNull(hashChannels, "hashChannels is null"));
-
-        this.pagesIndex = new PagesIndex(hashSupplier.getTupleInfos(), expectedPositions, operatorContext);
+        this.expectedPositions = expectedPositions;
+
+        int partitionCount = hashSupplier.getPartitionCount();
+        if (partitionCount == 1) {
+            this.pagesIndex = new PagesIndex(hashSupplier.getTupleInfos(), expectedPositions, operatorContext);
+            this.hashTypes = null;
+            this.hashCursors = null;
+            this.partitionBuilders = null;
+            this.partitionPages = null;
+        }
+        else {
+            this.pagesIndex = null;
+            this.hashTypes = new Type[this.hashChannels.size()];
+            for (int i = 0; i < hashTypes.length; i++) {
+                hashTypes[i] = hashSupplier.getTupleInfos().get(this.hashChannels.get(i)).getType();
+            }
+            this.hashCursors = new BlockCursor[hashTypes.length];
+            this.partitionBuilders = new PageBuilder[partitionCount];
+            ImmutableList.Builder<List<Page>> partitionPages = ImmutableList.builder();
+            for (int i = 0; i < partitionCount; i++) {
+                partitionBuilders[i] = new PageBuilder(hashSupplier.getTupleInfos());
+                partitionPages.add(new ArrayList<Page>());
+            }
+            this.partitionPages = partitionPages.build();
+        }
     }
 
     @Override
@@ -159,40 +335,83 @@ public class HashBuilderOperator
     @Override
     public void finish()
     {
-        if (finished) {
+        if (state == State.FINISHED) {
+            return;
+        }
+
+        if (pagesIndex != null) {
+            JoinHash joinHash = new JoinHash(pagesIndex, hashChannels, operatorContext);
+            hashSupplier.setPartition(0, joinHash);
+            state = State.FINISHED;
             return;
         }
 
-        JoinHash joinHash = new JoinHash(pagesIndex, hashChannels, operatorContext);
-        hashSupplier.setHash(joinHash);
-        finished = true;
+        if (state == State.CONSUMING_INPUT) {
+            for (int i = 0; i < partitionBuilders.length; i++) {
+                flushPartition(i);
+            }
+            hashSupplier.addPartitionPages(partitionPages);
+            for (List<Page> pages : partitionPages) {
+                pages.clear();
+            }
+            state = State.BUFFERED;
+        }
+
+        // wait for all builders to route their input before indexing this partition
+        if (!hashSupplier.getPagesBufferedFuture().isDone()) {
+            return;
+        }
+
+        List<Page> pages = hashSupplier.getPartitionPages(partition);
+        int positionCount = 0;
+        for (Page page : pages) {
+            positionCount += page.getPositionCount();
+        }
+        PagesIndex partitionIndex = new PagesIndex(hashSupplier.getTupleInfos(), Math.max(positionCount, expectedPositions / partitionBuilders.length), operatorContext);
+        for (Page page : pages) {
+            partitionIndex.addPage(page);
+        }
+        hashSupplier.setPartition(partition, new JoinHash(partitionIndex, hashChannels, operatorContext));
+
+        // the routed pages are now reserved by the partition indexes
+        operatorContext.freeMemory(partitionPagesBytes);
+        partitionPagesBytes = 0;
+        state = State.FINISHED;
     }
 
     @Override
     public boolean isFinished()
     {
-        return finished;
+        return state == State.FINISHED;
     }
 
     @Override
     public ListenableFuture<?> isBlocked()
     {
+        if (state == State.BUFFERED) {
+            return hashSupplier.getPagesBufferedFuture();
+        }
         return NOT_BLOCKED;
     }
 
     @Override
     public boolean needsInput()
     {
-        return !finished;
+        return state == State.CONSUMING_INPUT;
     }
 
     @Override
     public void addInput(Page page)
     {
         checkNotNull(page, "page is null");
-        checkState(!isFinished(), "Operator is already finished");
+        checkState(state == State.CONSUMING_INPUT, "Operator is already finishing");
 
-        pagesIndex.addPage(page);
+        if (pagesIndex != null) {
+            pagesIndex.addPage(page);
+        }
+        else {
+            partitionPage(page);
+        }
         operatorContext.recordGeneratedOutput(page.getDataSize(), page.getPositionCount());
     }
 
@@ -201,4 +420,60 @@ public class HashBuilderOperator
     {
         return null;
     }
+
+    private void partitionPage(Page page)
+    {
+        BlockCursor[] cursors = new BlockCursor[page.getChannelCount()];
+        for (int channel = 0; channel < cursors.length; channel++) {
+            cursors[channel] = page.getBlock(channel).cursor();
+        }
+        for (int i = 0; i < hashCursors.length; i++) {
+            hashCursors[i] = cursors[hashChannels.get(i)];
+        }
+
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            for (BlockCursor cursor : cursors) {
+                checkState(cursor.advanceNextPosition());
+            }
+
+            int partition = getPartition(hashCurrentRow(), partitionBuilders.length);
+            PageBuilder pageBuilder = partitionBuilders[partition];
+            for (int channel = 0; channel < cursors.length; channel++) {
+                cursors[channel].appendTupleTo(pageBuilder.getBlockBuilder(channel));
+            }
+            if (pageBuilder.isFull()) {
+                flushPartition(partition);
+            }
+        }
+    }
+
+    /**
+     * Must produce the same hash as the probe side lookup in {@link JoinHash}.
+     */
+    private int hashCurrentRow()
+    {
+        int result = 0;
+        for (int i = 0; i < hashCursors.length; i++) {
+            BlockCursor cursor = hashCursors[i];
+            result = addToHashCode(result, valueHashCode(hashTypes[i], cursor.getRawSlice(), cursor.getRawOffset()));
+        }
+        return result;
+    }
+
+    private void flushPartition(int partition)
+    {
+        PageBuilder pageBuilder = partitionBuilders[partition];
+        if (pageBuilder.isEmpty()) {
+            return;
+        }
+        Page page = pageBuilder.build();
+        pageBuilder.reset();
+        partitionPages.get(partition).add(page);
+
+        long pageBytes = page.getDataSize().toBytes();
+        if (!operatorContext.reserveMemory(pageBytes)) {
+            throw new ExceededMemoryLimitException(operatorContext.getMaxMemorySize());
+        }
+        partitionPagesBytes += pageBytes;
+    }
 }
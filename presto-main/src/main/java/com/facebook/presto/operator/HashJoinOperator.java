@@ -85,7 +85,7 @@ public class HashJoinOperator
         }
     }
 
-    private final ListenableFuture<JoinHash> hashFuture;
+    private final ListenableFuture<LookupSource> hashFuture;
 
     private final OperatorContext operatorContext;
     private final int[] probeJoinChannels;
@@ -96,7 +96,7 @@ public class HashJoinOperator
 
     private final PageBuilder pageBuilder;
 
-    private JoinHash hash;
+    private LookupSource hash;
     private boolean finishing;
     private int joinPosition = -1;
 
@@ -13,10 +13,13 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.block.BlockCursor;
 import com.facebook.presto.tuple.TupleInfo.Type;
 import com.google.common.primitives.Longs;
 import io.airlift.slice.Slice;
 
+import java.util.List;
+
 import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
 
 public final class HashStrategyUtils
@@ -31,6 +34,20 @@ public final class HashStrategyUtils
         return result;
     }
 
+    /**
+     * Hash of the values at the current position of the cursors. This is the row
+     * hash used by joins and by hash partitioned exchanges.
+     */
+    public static int hashCursors(List<Type> types, BlockCursor[] cursors)
+    {
+        int result = 0;
+        for (int channel = 0; channel < types.size(); channel++) {
+            BlockCursor cursor = cursors[channel];
+            result = addToHashCode(result, valueHashCode(types.get(channel), cursor.getRawSlice(), cursor.getRawOffset()));
+        }
+        return result;
+    }
+
     private static int getVariableBinaryLength(Slice slice, int offset)
     {
         return slice.getInt(offset + SIZE_OF_BYTE);
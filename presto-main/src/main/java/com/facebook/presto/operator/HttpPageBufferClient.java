@@ -14,9 +14,11 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.serde.PagesSerde;
+import com.facebook.presto.serde.PagesSerde.SnappyPagesReader;
 import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.CountingInputStream;
 import com.google.common.net.MediaType;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -42,12 +44,17 @@ import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
 import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES_TYPE;
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_SNAPPY_PAGES;
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_SNAPPY_PAGES_TYPE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_SIZE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_NEXT_TOKEN;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.net.HttpHeaders.ACCEPT;
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static io.airlift.http.client.Request.Builder.prepareDelete;
 import static io.airlift.http.client.Request.Builder.prepareGet;
@@ -82,6 +89,7 @@ public class HttpPageBufferClient
     private final DataSize maxResponseSize;
     private final URI location;
     private final ClientCallback clientCallback;
+    private final boolean compressionEnabled;
     @GuardedBy("this")
     private boolean closed;
     @GuardedBy("this")
@@ -96,12 +104,21 @@ public class HttpPageBufferClient
     private final AtomicInteger requestsScheduled = new AtomicInteger();
     private final AtomicInteger requestsCompleted = new AtomicInteger();
 
+    private final AtomicLong compressedBytesReceived = new AtomicLong();
+    private final AtomicLong uncompressedBytesReceived = new AtomicLong();
+
     public HttpPageBufferClient(AsyncHttpClient httpClient, DataSize maxResponseSize, URI location, ClientCallback clientCallback, Executor executor)
+    {
+        this(httpClient, maxResponseSize, location, clientCallback, false, executor);
+    }
+
+    public HttpPageBufferClient(AsyncHttpClient httpClient, DataSize maxResponseSize, URI location, ClientCallback clientCallback, boolean compressionEnabled, Executor executor)
     {
         this.httpClient = checkNotNull(httpClient, "httpClient is null");
         this.maxResponseSize = checkNotNull(maxResponseSize, "maxResponseSize is null");
         this.location = checkNotNull(location, "location is null");
         this.clientCallback = checkNotNull(clientCallback, "clientCallback is null");
+        this.compressionEnabled = compressionEnabled;
         this.executor = checkNotNull(executor, "executor is null");
     }
 
@@ -124,6 +141,22 @@ public class HttpPageBufferClient
         return new PageBufferClientStatus(location, state, lastUpdate, pagesReceived.get(), requestsScheduled.get(), requestsCompleted.get(), httpRequestState);
     }
 
+    /**
+     * Bytes of page data received over the wire.
+     */
+    public long getCompressedBytesReceived()
+    {
+        return compressedBytesReceived.get();
+    }
+
+    /**
+     * Bytes of page data received, after decompression.
+     */
+    public long getUncompressedBytesReceived()
+    {
+        return uncompressedBytesReceived.get();
+    }
+
     public synchronized boolean isRunning()
     {
         return future != null;
@@ -166,8 +199,10 @@ public class HttpPageBufferClient
         }
 
         final URI uri = HttpUriBuilder.uriBuilderFrom(location).appendPath(String.valueOf(token)).build();
+        // servers that do not support compressed pages respond with uncompressed pages
         future = httpClient.executeAsync(prepareGet()
                 .setHeader(PRESTO_MAX_SIZE, maxResponseSize.toString())
+                .setHeader(ACCEPT, compressionEnabled ? PRESTO_SNAPPY_PAGES + ", " + PRESTO_PAGES + ";q=0.5" : PRESTO_PAGES)
                 .setUri(uri).build(), new PageResponseHandler());
 
         Futures.addCallback(future, new FutureCallback<PagesResponse>()
@@ -180,6 +215,8 @@ public class HttpPageBufferClient
                 }
 
                 requestsCompleted.incrementAndGet();
+                compressedBytesReceived.addAndGet(result.getCompressedBytes());
+                uncompressedBytesReceived.addAndGet(result.getUncompressedBytes());
 
                 List<Page> pages;
                 synchronized (HttpPageBufferClient.this) {
@@ -325,15 +362,23 @@ public class HttpPageBufferClient
             }
 
             String contentType = response.getHeader(CONTENT_TYPE);
-            if (contentType == null || !MediaType.parse(contentType).is(PRESTO_PAGES_TYPE)) {
+            MediaType mediaType = (contentType == null) ? null : MediaType.parse(contentType);
+            if (mediaType == null || !(mediaType.is(PRESTO_PAGES_TYPE) || mediaType.is(PRESTO_SNAPPY_PAGES_TYPE))) {
                 // this can happen when an error page is returned, but is unlikely given the above 200
                 log.debug("Expected %s response from server but got %s: uri=%s, response=%s", PRESTO_PAGES_TYPE, contentType, request.getUri(), response);
                 return PagesResponse.createEmptyPagesResponse(token, nextToken);
             }
 
             try {
-                InputStreamSliceInput sliceInput = new InputStreamSliceInput(response.getInputStream());
-                return PagesResponse.createPagesResponse(token, nextToken, ImmutableList.copyOf(PagesSerde.readPages(sliceInput)));
+                if (mediaType.is(PRESTO_SNAPPY_PAGES_TYPE)) {
+                    SnappyPagesReader pagesReader = PagesSerde.readSnappyPages(new InputStreamSliceInput(response.getInputStream()));
+                    List<Page> pages = ImmutableList.copyOf(pagesReader);
+                    return PagesResponse.createPagesResponse(token, nextToken, pages, pagesReader.getCompressedBytes(), pagesReader.getUncompressedBytes());
+                }
+
+                CountingInputStream input = new CountingInputStream(response.getInputStream());
+                List<Page> pages = ImmutableList.copyOf(PagesSerde.readPages(new InputStreamSliceInput(input)));
+                return PagesResponse.createPagesResponse(token, nextToken, pages, input.getCount(), input.getCount());
             }
             catch (IOException e) {
                 throw Throwables.propagate(e);
@@ -348,6 +393,11 @@ public class HttpPageBufferClient
             return new PagesResponse(token, nextToken, pages, false);
         }
 
+        public static PagesResponse createPagesResponse(long token, long nextToken, Iterable<Page> pages, long compressedBytes, long uncompressedBytes)
+        {
+            return new PagesResponse(token, nextToken, pages, false, compressedBytes, uncompressedBytes);
+        }
+
         public static PagesResponse createEmptyPagesResponse(long token, long nextToken)
         {
             return new PagesResponse(token, nextToken, ImmutableList.<Page>of(), false);
@@ -362,13 +412,22 @@ public class HttpPageBufferClient
         private final long nextToken;
         private final List<Page> pages;
         private final boolean clientClosed;
+        private final long compressedBytes;
+        private final long uncompressedBytes;
 
         public PagesResponse(long token, long nextToken, Iterable<Page> pages, boolean clientClosed)
+        {
+            this(token, nextToken, pages, clientClosed, 0, 0);
+        }
+
+        public PagesResponse(long token, long nextToken, Iterable<Page> pages, boolean clientClosed, long compressedBytes, long uncompressedBytes)
         {
             this.token = token;
             this.nextToken = nextToken;
             this.pages = ImmutableList.copyOf(pages);
             this.clientClosed = clientClosed;
+            this.compressedBytes = compressedBytes;
+            this.uncompressedBytes = uncompressedBytes;
         }
 
         public long getToken()
@@ -391,6 +450,16 @@ public class HttpPageBufferClient
             return clientClosed;
         }
 
+        public long getCompressedBytes()
+        {
+            return compressedBytes;
+        }
+
+        public long getUncompressedBytes()
+        {
+            return uncompressedBytes;
+        }
+
         @Override
         public String toString()
         {
@@ -399,6 +468,8 @@ public class HttpPageBufferClient
                     .add("nextToken", nextToken)
                     .add("pages.size()", pages.size())
                     .add("clientClosed", clientClosed)
+                    .add("compressedBytes", compressedBytes)
+                    .add("uncompressedBytes", uncompressedBytes)
                     .toString();
         }
     }
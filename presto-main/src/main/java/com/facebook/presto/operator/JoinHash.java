@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.block.BlockCursor;
 import com.facebook.presto.tuple.TupleInfo.Type;
 import com.google.common.collect.ImmutableList;
@@ -28,10 +29,11 @@ import java.util.Arrays;
 import java.util.List;
 
 import static com.facebook.presto.operator.HashStrategyUtils.addToHashCode;
-import static com.facebook.presto.operator.HashStrategyUtils.valueHashCode;
+import static com.facebook.presto.operator.HashStrategyUtils.hashCursors;
 import static io.airlift.slice.SizeOf.sizeOf;
 
 public class JoinHash
+        implements LookupSource
 {
     private static final long CURRENT_ROW_ADDRESS = 0xFF_FF_FF_FF_FF_FF_FF_FFL;
 
@@ -48,9 +50,14 @@ public class JoinHash
         this.positionLinks = new IntArrayList(new int[pagesIndex.getPositionCount()]);
         Arrays.fill(positionLinks.elements(), -1);
 
+        // the pages index has already reserved its own memory
+        long hashSize = getEstimatedSize() - pagesIndex.getEstimatedSize().toBytes();
+        if (!operatorContext.reserveMemory(hashSize)) {
+            throw new ExceededMemoryLimitException(operatorContext.getMaxMemorySize());
+        }
+
         // index pages
         for (int position = 0; position < pagesIndex.getPositionCount(); position++) {
-            operatorContext.setMemoryReservation(getEstimatedSize());
 
             // address and position are the same thing on this side
             // todo we should be able to do this with a set but fast utils doesn't have anything like that
@@ -72,30 +79,61 @@ public class JoinHash
 
     public long getEstimatedSize()
     {
-        return pagesIndex.getEstimatedSize().toBytes() + addressToPositionMap.getEstimatedSize().toBytes() + sizeOf(positionLinks.elements());
+        return pagesIndex.getEstimatedSize().toBytes() +
+                addressToPositionMap.getEstimatedSize().toBytes() +
+                sizeOf(positionLinks.elements()) +
+                hashStrategy.getEstimatedSize();
     }
 
+    public int getPositionCount()
+    {
+        return pagesIndex.getPositionCount();
+    }
+
+    @Override
     public int getChannelCount()
     {
         return pagesIndex.getTupleInfos().size();
     }
 
+    @Override
     public void setProbeCursors(BlockCursor[] cursors, int[] probeJoinChannels)
     {
         hashStrategy.setProbeCursors(cursors, probeJoinChannels);
     }
 
+    /**
+     * Hash of the join channels of the current probe row. This is the same hash used
+     * to partition the build side, see {@link PartitionedLookupSource#getPartition}.
+     */
+    public int hashCurrentRow()
+    {
+        return hashStrategy.hashCurrentRow();
+    }
+
+    @Override
     public int getJoinPosition()
     {
+        return getJoinPosition(hashCurrentRow());
+    }
+
+    /**
+     * Looks up the current probe row using a hash already computed with {@link #hashCurrentRow()}.
+     */
+    public int getJoinPosition(int currentRowHash)
+    {
+        hashStrategy.setCurrentRowHash(currentRowHash);
         int position = addressToPositionMap.get(CURRENT_ROW_ADDRESS);
         return position;
     }
 
+    @Override
     public int getNextJoinPosition(int currentPosition)
     {
         return positionLinks.getInt(currentPosition);
     }
 
+    @Override
     public void appendTupleTo(int position, PageBuilder pageBuilder, int outputChannelOffset)
     {
         for (int channel = 0; channel < getChannelCount(); channel++) {
@@ -110,6 +148,11 @@ public class JoinHash
         private final List<ChannelIndex> channels;
         private final BlockCursor[] joinCursors;
 
+        // hash of each build position, computed once so rehashing and probe
+        // collisions never hash the build rows again
+        private final int[] positionHashes;
+        private int currentRowHash;
+
         private PagesHashStrategy(PagesIndex pagesIndex, List<Integer> hashChannels)
         {
             ImmutableList.Builder<Type> types = ImmutableList.builder();
@@ -121,6 +164,11 @@ public class JoinHash
             this.types = types.build();
             this.channels = channels.build();
             this.joinCursors = new BlockCursor[hashChannels.size()];
+
+            this.positionHashes = new int[pagesIndex.getPositionCount()];
+            for (int position = 0; position < positionHashes.length; position++) {
+                positionHashes[position] = computePositionHash(position);
+            }
         }
 
         private PagesHashStrategy(PagesHashStrategy pagesHashStrategy)
@@ -128,6 +176,12 @@ public class JoinHash
             this.types = pagesHashStrategy.types;
             this.channels = pagesHashStrategy.channels;
             this.joinCursors = new BlockCursor[types.size()];
+            this.positionHashes = pagesHashStrategy.positionHashes;
+        }
+
+        public long getEstimatedSize()
+        {
+            return sizeOf(positionHashes);
         }
 
         public void setProbeCursors(BlockCursor[] cursors, int[] probeJoinChannels)
@@ -138,21 +192,24 @@ public class JoinHash
             }
         }
 
+        public void setCurrentRowHash(int currentRowHash)
+        {
+            this.currentRowHash = currentRowHash;
+        }
+
         @Override
         public int hashCode(long address)
         {
             if (address == CURRENT_ROW_ADDRESS) {
-                return hashCurrentRow();
+                return currentRowHash;
             }
             else {
-                return hashPosition(address);
+                return positionHashes[Ints.checkedCast(address)];
             }
         }
 
-        private int hashPosition(long address)
+        private int computePositionHash(int position)
         {
-            int position = Ints.checkedCast(address);
-
             int result = 0;
             for (ChannelIndex hashChannel : channels) {
                 result = addToHashCode(result, hashChannel.hashCode(position));
@@ -162,13 +219,7 @@ public class JoinHash
 
         private int hashCurrentRow()
         {
-            int result = 0;
-            for (int channel = 0; channel < types.size(); channel++) {
-                Type type = types.get(channel);
-                BlockCursor cursor = joinCursors[channel];
-                result = addToHashCode(result, valueHashCode(type, cursor.getRawSlice(), cursor.getRawOffset()));
-            }
-            return result;
+            return hashCursors(types, joinCursors);
         }
 
         @Override
@@ -198,6 +249,9 @@ public class JoinHash
             if (thisPosition == thatPosition) {
                 return true;
             }
+            if (positionHashes[thisPosition] != positionHashes[thatPosition]) {
+                return false;
+            }
 
             for (ChannelIndex hashChannel : channels) {
                 if (!hashChannel.equals(thisPosition, thatPosition)) {
@@ -209,6 +263,9 @@ public class JoinHash
 
         private boolean positionEqualsCurrentRow(int position)
         {
+            if (positionHashes[position] != currentRowHash) {
+                return false;
+            }
             for (int i = 0; i < channels.size(); i++) {
                 ChannelIndex channelIndex = channels.get(i);
                 if (!channelIndex.equals(position, joinCursors[i])) {
@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.BlockCursor;
+
+/**
+ * Read-only lookup structure for the build side of a hash join. An instance holds the
+ * current probe cursors, so it must not be shared between probe operators.
+ */
+public interface LookupSource
+{
+    int getChannelCount();
+
+    void setProbeCursors(BlockCursor[] cursors, int[] probeJoinChannels);
+
+    /**
+     * @return the first build position matching the current probe row, or -1 if there is no match
+     */
+    int getJoinPosition();
+
+    /**
+     * @return the next build position with the same key as the given position, or -1 if there are no more
+     */
+    int getNextJoinPosition(int currentPosition);
+
+    void appendTupleTo(int position, PageBuilder pageBuilder, int outputChannelOffset);
+}
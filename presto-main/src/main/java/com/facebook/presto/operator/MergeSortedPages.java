@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.tuple.FieldOrderedTupleComparator;
+import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.tuple.TupleReadable;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.primitives.Ints;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Streaming k-way merge of page streams that are each sorted on the same channels.
+ * Only the current page of every stream is held in memory.
+ */
+public final class MergeSortedPages
+{
+    private MergeSortedPages()
+    {
+    }
+
+    public static Iterator<Page> mergeSortedPages(List<Iterator<Page>> sortedStreams, List<TupleInfo> tupleInfos, int[] sortChannels, SortOrder[] sortOrders)
+    {
+        checkNotNull(sortedStreams, "sortedStreams is null");
+        checkNotNull(tupleInfos, "tupleInfos is null");
+        checkNotNull(sortChannels, "sortChannels is null");
+        checkNotNull(sortOrders, "sortOrders is null");
+        checkArgument(sortChannels.length == sortOrders.length, "sortChannels and sortOrders must have the same length");
+
+        return new MergingIterator(sortedStreams, tupleInfos, new FieldOrderedTupleComparator(Ints.asList(sortChannels), Arrays.asList(sortOrders)));
+    }
+
+    private static class MergingIterator
+            extends AbstractIterator<Page>
+    {
+        private final PriorityQueue<PageStream> queue;
+        private final PageBuilder pageBuilder;
+
+        private MergingIterator(List<Iterator<Page>> sortedStreams, List<TupleInfo> tupleInfos, final Comparator<TupleReadable[]> comparator)
+        {
+            this.queue = new PriorityQueue<>(Math.max(1, sortedStreams.size()), new Comparator<PageStream>()
+            {
+                @Override
+                public int compare(PageStream left, PageStream right)
+                {
+                    return comparator.compare(left.getCursors(), right.getCursors());
+                }
+            });
+            for (Iterator<Page> sortedStream : sortedStreams) {
+                PageStream stream = new PageStream(sortedStream);
+                if (stream.advance()) {
+                    queue.add(stream);
+                }
+            }
+            this.pageBuilder = new PageBuilder(tupleInfos);
+        }
+
+        @Override
+        protected Page computeNext()
+        {
+            if (queue.isEmpty()) {
+                return endOfData();
+            }
+
+            pageBuilder.reset();
+            while (!pageBuilder.isFull() && !queue.isEmpty()) {
+                PageStream stream = queue.poll();
+                stream.appendRowTo(pageBuilder);
+                if (stream.advance()) {
+                    queue.add(stream);
+                }
+            }
+            return pageBuilder.build();
+        }
+    }
+
+    private static class PageStream
+    {
+        private final Iterator<Page> pages;
+        private BlockCursor[] cursors;
+
+        private PageStream(Iterator<Page> pages)
+        {
+            this.pages = checkNotNull(pages, "pages is null");
+        }
+
+        public BlockCursor[] getCursors()
+        {
+            return cursors;
+        }
+
+        public void appendRowTo(PageBuilder pageBuilder)
+        {
+            for (int channel = 0; channel < cursors.length; channel++) {
+                cursors[channel].appendTupleTo(pageBuilder.getBlockBuilder(channel));
+            }
+        }
+
+        /**
+         * Moves to the next row, loading the next non-empty page if necessary.
+         *
+         * @return false if the stream is exhausted
+         */
+        public boolean advance()
+        {
+            if (cursors != null && advanceCursors()) {
+                return true;
+            }
+
+            while (pages.hasNext()) {
+                Page page = pages.next();
+                if (page.getPositionCount() == 0) {
+                    continue;
+                }
+
+                Block[] blocks = page.getBlocks();
+                cursors = new BlockCursor[blocks.length];
+                for (int channel = 0; channel < blocks.length; channel++) {
+                    cursors[channel] = blocks[channel].cursor();
+                }
+                checkState(advanceCursors(), "page is empty");
+                return true;
+            }
+            cursors = null;
+            return false;
+        }
+
+        private boolean advanceCursors()
+        {
+            boolean advanced = false;
+            for (BlockCursor cursor : cursors) {
+                advanced = cursor.advanceNextPosition();
+            }
+            return advanced;
+        }
+    }
+}
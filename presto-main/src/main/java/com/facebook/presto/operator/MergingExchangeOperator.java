@@ -0,0 +1,400 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.spi.Split;
+import com.facebook.presto.split.RemoteSplit;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.facebook.presto.tuple.FieldOrderedTupleComparator;
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.units.DataSize;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Exchange that reads every remote location as a separate stream and merges the
+ * streams in order. Each remote location must produce its rows sorted on the
+ * sort channels, so the output of this operator is sorted without buffering the
+ * full input. The merge only consumes the head of each stream, so each stream
+ * buffers about one page instead of a full exchange buffer.
+ */
+public class MergingExchangeOperator
+        implements SourceOperator, Closeable
+{
+    private static final DataSize STREAM_BUFFER_SIZE = PageBuilder.DEFAULT_MAX_PAGE_SIZE;
+
+    public static class MergingExchangeOperatorFactory
+            implements SourceOperatorFactory
+    {
+        private final int operatorId;
+        private final PlanNodeId sourceId;
+        private final Supplier<ExchangeClient> exchangeClientSupplier;
+        private final List<TupleInfo> tupleInfos;
+        private final List<Integer> sortChannels;
+        private final List<SortOrder> sortOrders;
+        private boolean closed;
+
+        public MergingExchangeOperatorFactory(
+                int operatorId,
+                PlanNodeId sourceId,
+                Supplier<ExchangeClient> exchangeClientSupplier,
+                List<TupleInfo> tupleInfos,
+                List<Integer> sortChannels,
+                List<SortOrder> sortOrders)
+        {
+            this.operatorId = operatorId;
+            this.sourceId = checkNotNull(sourceId, "sourceId is null");
+            this.exchangeClientSupplier = checkNotNull(exchangeClientSupplier, "exchangeClientSupplier is null");
+            this.tupleInfos = ImmutableList.copyOf(checkNotNull(tupleInfos, "tupleInfos is null"));
+            this.sortChannels = ImmutableList.copyOf(checkNotNull(sortChannels, "sortChannels is null"));
+            this.sortOrders = ImmutableList.copyOf(checkNotNull(sortOrders, "sortOrders is null"));
+            checkArgument(sortChannels.size() == sortOrders.size(), "sortChannels and sortOrders must have the same size");
+        }
+
+        @Override
+        public PlanNodeId getSourceId()
+        {
+            return sourceId;
+        }
+
+        @Override
+        public List<TupleInfo> getTupleInfos()
+        {
+            return tupleInfos;
+        }
+
+        @Override
+        public SourceOperator createOperator(DriverContext driverContext)
+        {
+            checkState(!closed, "Factory is already closed");
+
+            OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, MergingExchangeOperator.class.getSimpleName());
+            return new MergingExchangeOperator(
+                    operatorContext,
+                    tupleInfos,
+                    sourceId,
+                    exchangeClientSupplier,
+                    sortChannels,
+                    sortOrders);
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+
+    private final OperatorContext operatorContext;
+    private final PlanNodeId sourceId;
+    private final Supplier<ExchangeClient> exchangeClientSupplier;
+    private final List<TupleInfo> tupleInfos;
+
+    private final List<RemoteStream> streams = new ArrayList<>();
+    private final List<RemoteStream> pendingStreams = new ArrayList<>();
+    private final PriorityQueue<RemoteStream> queue;
+    private final SettableFuture<?> noMoreSplitsFuture = SettableFuture.create();
+    private final PageBuilder pageBuilder;
+
+    private boolean noMoreSplits;
+    private boolean finished;
+
+    public MergingExchangeOperator(
+            OperatorContext operatorContext,
+            List<TupleInfo> tupleInfos,
+            PlanNodeId sourceId,
+            Supplier<ExchangeClient> exchangeClientSupplier,
+            List<Integer> sortChannels,
+            List<SortOrder> sortOrders)
+    {
+        this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
+        this.sourceId = checkNotNull(sourceId, "sourceId is null");
+        this.exchangeClientSupplier = checkNotNull(exchangeClientSupplier, "exchangeClientSupplier is null");
+        this.tupleInfos = checkNotNull(tupleInfos, "tupleInfos is null");
+        checkNotNull(sortChannels, "sortChannels is null");
+        checkNotNull(sortOrders, "sortOrders is null");
+
+        final FieldOrderedTupleComparator comparator = new FieldOrderedTupleComparator(sortChannels, sortOrders);
+        this.queue = new PriorityQueue<>(16, new Comparator<RemoteStream>()
+        {
+            @Override
+            public int compare(RemoteStream left, RemoteStream right)
+            {
+                return comparator.compare(left.getCursors(), right.getCursors());
+            }
+        });
+        this.pageBuilder = new PageBuilder(tupleInfos);
+
+        operatorContext.setInfoSupplier(new Supplier<Object>()
+        {
+            @Override
+            public Object get()
+            {
+                ImmutableList.Builder<ExchangeClientStatus> status = ImmutableList.builder();
+                for (RemoteStream stream : getStreams()) {
+                    status.add(stream.getExchangeClient().getStatus());
+                }
+                return status.build();
+            }
+        });
+    }
+
+    @Override
+    public PlanNodeId getSourceId()
+    {
+        return sourceId;
+    }
+
+    @Override
+    public synchronized void addSplit(Split split)
+    {
+        checkNotNull(split, "split is null");
+        checkArgument(split instanceof RemoteSplit, "split is not a remote split");
+        checkState(!noMoreSplits, "No more splits already set");
+
+        // each location gets its own client, so the location can be read as a separate sorted stream;
+        // the client only needs to stay about a page ahead of the merge, so many streams do not
+        // multiply the exchange buffer
+        URI location = ((RemoteSplit) split).getLocation();
+        ExchangeClient exchangeClient = exchangeClientSupplier.get();
+        exchangeClient.limitBufferSize(STREAM_BUFFER_SIZE);
+        exchangeClient.addLocation(location);
+        exchangeClient.noMoreLocations();
+
+        RemoteStream stream = new RemoteStream(exchangeClient);
+        streams.add(stream);
+        pendingStreams.add(stream);
+    }
+
+    @Override
+    public synchronized void noMoreSplits()
+    {
+        noMoreSplits = true;
+        noMoreSplitsFuture.set(null);
+    }
+
+    private synchronized List<RemoteStream> getStreams()
+    {
+        return ImmutableList.copyOf(streams);
+    }
+
+    @Override
+    public OperatorContext getOperatorContext()
+    {
+        return operatorContext;
+    }
+
+    @Override
+    public List<TupleInfo> getTupleInfos()
+    {
+        return tupleInfos;
+    }
+
+    @Override
+    public void finish()
+    {
+        close();
+    }
+
+    @Override
+    public synchronized boolean isFinished()
+    {
+        return finished;
+    }
+
+    @Override
+    public synchronized ListenableFuture<?> isBlocked()
+    {
+        if (!noMoreSplits) {
+            return noMoreSplitsFuture;
+        }
+
+        // a row can only be produced once every unfinished stream has a row available
+        for (RemoteStream stream : pendingStreams) {
+            ListenableFuture<?> blocked = stream.getExchangeClient().isBlocked();
+            if (!blocked.isDone()) {
+                return blocked;
+            }
+        }
+        return NOT_BLOCKED;
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return false;
+    }
+
+    @Override
+    public void addInput(Page page)
+    {
+        throw new UnsupportedOperationException(getClass().getName() + " can not take input");
+    }
+
+    @Override
+    public synchronized Page getOutput()
+    {
+        if (!noMoreSplits || finished) {
+            return null;
+        }
+
+        while (true) {
+            // load the next page of every stream that has run out of rows
+            for (Iterator<RemoteStream> iterator = pendingStreams.iterator(); iterator.hasNext(); ) {
+                RemoteStream stream = iterator.next();
+                if (stream.advance()) {
+                    iterator.remove();
+                    queue.add(stream);
+                }
+                else if (stream.isFinished()) {
+                    iterator.remove();
+                }
+            }
+
+            if (!pendingStreams.isEmpty()) {
+                // waiting for data, so flush what has been merged so far
+                return flush();
+            }
+
+            if (queue.isEmpty()) {
+                finished = true;
+                return flush();
+            }
+
+            // merge until a stream runs out of buffered rows or the page is full
+            while (!pageBuilder.isFull()) {
+                RemoteStream stream = queue.poll();
+                stream.appendRowTo(pageBuilder);
+                if (stream.advanceCursors()) {
+                    queue.add(stream);
+                }
+                else {
+                    pendingStreams.add(stream);
+                    break;
+                }
+            }
+
+            if (pageBuilder.isFull()) {
+                return flush();
+            }
+        }
+    }
+
+    private Page flush()
+    {
+        if (pageBuilder.isEmpty()) {
+            return null;
+        }
+        Page page = pageBuilder.build();
+        pageBuilder.reset();
+        return page;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        finished = true;
+        for (RemoteStream stream : streams) {
+            stream.getExchangeClient().close();
+        }
+        pendingStreams.clear();
+        queue.clear();
+    }
+
+    private class RemoteStream
+    {
+        private final ExchangeClient exchangeClient;
+        private BlockCursor[] cursors;
+
+        private RemoteStream(ExchangeClient exchangeClient)
+        {
+            this.exchangeClient = exchangeClient;
+        }
+
+        public ExchangeClient getExchangeClient()
+        {
+            return exchangeClient;
+        }
+
+        public BlockCursor[] getCursors()
+        {
+            return cursors;
+        }
+
+        public boolean isFinished()
+        {
+            return exchangeClient.isClosed();
+        }
+
+        public void appendRowTo(PageBuilder pageBuilder)
+        {
+            for (int channel = 0; channel < cursors.length; channel++) {
+                cursors[channel].appendTupleTo(pageBuilder.getBlockBuilder(channel));
+            }
+        }
+
+        /**
+         * Loads the next non-empty page that is already buffered by the client.
+         *
+         * @return false if no page is available yet or the stream is finished
+         */
+        public boolean advance()
+        {
+            while (true) {
+                Page page = exchangeClient.pollPage();
+                if (page == null) {
+                    cursors = null;
+                    return false;
+                }
+                operatorContext.recordGeneratedInput(page.getDataSize(), page.getPositionCount());
+                if (page.getPositionCount() == 0) {
+                    continue;
+                }
+
+                Block[] blocks = page.getBlocks();
+                cursors = new BlockCursor[blocks.length];
+                for (int channel = 0; channel < blocks.length; channel++) {
+                    cursors[channel] = blocks[channel].cursor();
+                }
+                checkState(advanceCursors(), "page is empty");
+                return true;
+            }
+        }
+
+        public boolean advanceCursors()
+        {
+            boolean advanced = false;
+            for (BlockCursor cursor : cursors) {
+                advanced = cursor.advanceNextPosition();
+            }
+            return advanced;
+        }
+    }
+}
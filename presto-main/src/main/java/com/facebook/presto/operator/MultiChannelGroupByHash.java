@@ -0,0 +1,521 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.uncompressed.UncompressedBlock;
+import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.tuple.TupleInfo.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+import io.airlift.units.DataSize;
+import io.airlift.units.DataSize.Unit;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
+import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
+import static com.facebook.presto.operator.SyntheticAddress.encodeSyntheticAddress;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_DOUBLE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static it.unimi.dsi.fastutil.HashCommon.arraySize;
+import static it.unimi.dsi.fastutil.HashCommon.maxFill;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+
+/**
+ * Group by hash for any combination of key types. Group values are stored in
+ * {@link GroupByPageBuilder}s, and the hash table is an open addressed array of
+ * group ids. The raw hash and the address of the values of each group are kept in
+ * flat arrays indexed by group id, so probing only compares rows with the same
+ * hash and the table can be rehashed without reading the group values.
+ */
+public class MultiChannelGroupByHash
+        implements GroupByHash
+{
+    private static final float FILL_RATIO = 0.75f;
+
+    private final List<Type> types;
+    private final int[] channels;
+
+    private GroupByPageBuilder activePage;
+
+    private final List<GroupByPageBuilder> allPages;
+    private long completedPagesMemorySize;
+
+    // open addressed hash table from hash to group id
+    private int mask;
+    private int maxFill;
+    private int[] groupIdsByHash;
+
+    // group id to the values and the raw hash of the group
+    private long[] groupAddressByGroupId;
+    private int[] rawHashByGroupId;
+
+    private int nextGroupId;
+
+    public MultiChannelGroupByHash(List<Type> types, int[] channels, int expectedSize)
+    {
+        this.types = ImmutableList.copyOf(checkNotNull(types, "types is null"));
+        this.channels = checkNotNull(channels, "channels is null").clone();
+        checkArgument(types.size() == channels.length, "types and channels have different sizes");
+        checkArgument(expectedSize > 0, "expectedSize must be greater than zero");
+
+        this.allPages = ObjectArrayList.wrap(new GroupByPageBuilder[1024], 0);
+        this.activePage = new GroupByPageBuilder(types);
+        this.allPages.add(activePage);
+
+        int hashSize = arraySize(expectedSize, FILL_RATIO);
+        this.mask = hashSize - 1;
+        this.maxFill = maxFill(hashSize, FILL_RATIO);
+        this.groupIdsByHash = new int[hashSize];
+        Arrays.fill(groupIdsByHash, -1);
+
+        this.groupAddressByGroupId = new long[maxFill];
+        this.rawHashByGroupId = new int[maxFill];
+    }
+
+    @Override
+    public long getEstimatedSize()
+    {
+        return completedPagesMemorySize +
+                activePage.getMemorySize() +
+                sizeOf(groupIdsByHash) +
+                sizeOf(groupAddressByGroupId) +
+                sizeOf(rawHashByGroupId);
+    }
+
+    @Override
+    public List<Type> getTypes()
+    {
+        return types;
+    }
+
+    @Override
+    public int getGroupCount()
+    {
+        return nextGroupId;
+    }
+
+    @Override
+    public GroupByIdBlock getGroupIds(Page page)
+    {
+        int positionCount = page.getPositionCount();
+
+        int groupIdBlockSize = SINGLE_LONG.getFixedSize() * positionCount;
+        BlockBuilder blockBuilder = new BlockBuilder(SINGLE_LONG, groupIdBlockSize, Slices.allocate(groupIdBlockSize).getOutput());
+
+        // open cursors for group blocks
+        BlockCursor[] cursors = new BlockCursor[channels.length];
+        for (int i = 0; i < channels.length; i++) {
+            cursors[i] = page.getBlock(channels[i]).cursor();
+        }
+
+        for (int position = 0; position < positionCount; position++) {
+            for (BlockCursor cursor : cursors) {
+                checkState(cursor.advanceNextPosition());
+            }
+
+            int rawHash = hashRow(cursors);
+            int hashPosition = getHashPosition(rawHash, mask);
+
+            // look for an existing group with the same values
+            int groupId = -1;
+            while (groupIdsByHash[hashPosition] != -1) {
+                int candidate = groupIdsByHash[hashPosition];
+                if (rawHashByGroupId[candidate] == rawHash && positionEqualsRow(groupAddressByGroupId[candidate], cursors)) {
+                    groupId = candidate;
+                    break;
+                }
+                hashPosition = (hashPosition + 1) & mask;
+            }
+
+            if (groupId < 0) {
+                groupId = addNewGroup(hashPosition, rawHash, cursors);
+            }
+            blockBuilder.append(groupId);
+        }
+        UncompressedBlock block = blockBuilder.build();
+        return new GroupByIdBlock(nextGroupId, block);
+    }
+
+    @Override
+    public void appendValuesTo(int groupId, BlockBuilder[] builders)
+    {
+        long address = groupAddressByGroupId[groupId];
+        GroupByPageBuilder page = allPages.get(decodeSliceIndex(address));
+        page.appendValuesTo(decodePosition(address), builders);
+    }
+
+    @Override
+    public int hashGroup(int groupId)
+    {
+        return rawHashByGroupId[groupId];
+    }
+
+    private int addNewGroup(int hashPosition, int rawHash, BlockCursor... row)
+    {
+        int pageIndex = allPages.size() - 1;
+        if (!activePage.append(row)) {
+            // record the active page memory size
+            completedPagesMemorySize += activePage.getMemorySize();
+
+            activePage = new GroupByPageBuilder(types);
+            allPages.add(activePage);
+            pageIndex++;
+
+            // TODO make the page builder allocation guarantee enough space to hold at least the first row.
+            checkState(activePage.append(row), "Could not add row to empty page builder");
+        }
+
+        // record group id in hash
+        int groupId = nextGroupId++;
+        groupAddressByGroupId[groupId] = encodeSyntheticAddress(pageIndex, activePage.getPositionCount() - 1);
+        rawHashByGroupId[groupId] = rawHash;
+        groupIdsByHash[hashPosition] = groupId;
+
+        // increase capacity, if necessary
+        if (nextGroupId >= maxFill) {
+            rehash(maxFill * 2);
+        }
+        return groupId;
+    }
+
+    private void rehash(int size)
+    {
+        int newSize = arraySize(size + 1, FILL_RATIO);
+
+        int newMask = newSize - 1;
+        int[] newGroupIdsByHash = new int[newSize];
+        Arrays.fill(newGroupIdsByHash, -1);
+
+        // the raw hash of every group is known, so the values do not need to be read
+        for (int groupId = 0; groupId < nextGroupId; groupId++) {
+            int hashPosition = getHashPosition(rawHashByGroupId[groupId], newMask);
+            while (newGroupIdsByHash[hashPosition] != -1) {
+                hashPosition = (hashPosition + 1) & newMask;
+            }
+            newGroupIdsByHash[hashPosition] = groupId;
+        }
+
+        this.mask = newMask;
+        this.maxFill = maxFill(newSize, FILL_RATIO);
+        this.groupIdsByHash = newGroupIdsByHash;
+        this.groupAddressByGroupId = Arrays.copyOf(groupAddressByGroupId, maxFill);
+        this.rawHashByGroupId = Arrays.copyOf(rawHashByGroupId, maxFill);
+    }
+
+    private int hashRow(BlockCursor[] row)
+    {
+        int result = 0;
+        for (int channel = 0; channel < types.size(); channel++) {
+            Type type = types.get(channel);
+            BlockCursor cursor = row[channel];
+            result = addToHashCode(result, valueHashCode(type, cursor.getRawSlice(), cursor.getRawOffset()));
+        }
+        return result;
+    }
+
+    private boolean positionEqualsRow(long address, BlockCursor[] row)
+    {
+        return allPages.get(decodeSliceIndex(address)).equals(decodePosition(address), row);
+    }
+
+    private static int getHashPosition(int rawHash, int mask)
+    {
+        return murmurHash3(rawHash) & mask;
+    }
+
+    private static class GroupByPageBuilder
+    {
+        private final List<ChannelBuilder> channels;
+        private int positionCount;
+        private boolean full;
+
+        public GroupByPageBuilder(List<Type> types)
+        {
+            ImmutableList.Builder<ChannelBuilder> builder = ImmutableList.builder();
+            for (Type type : types) {
+                builder.add(new ChannelBuilder(type));
+            }
+            channels = builder.build();
+        }
+
+        public int getPositionCount()
+        {
+            return positionCount;
+        }
+
+        public long getMemorySize()
+        {
+            long memorySize = 0;
+            for (ChannelBuilder channel : channels) {
+                memorySize += channel.getMemorySize();
+            }
+            return memorySize;
+        }
+
+        private boolean append(BlockCursor... row)
+        {
+            // don't add row if already full
+            if (full) {
+                return false;
+            }
+
+            // append to each channel
+            for (int channel = 0; channel < row.length; channel++) {
+                if (!channels.get(channel).append(row[channel])) {
+                    // This early return will result in uneven channels, but this is not
+                    // a problem since the position count is not incremented.  This means
+                    // that although some channels have "garbage" on the end, these values
+                    // will never be read since the position is not valid.
+                    full = true;
+                    return false;
+                }
+            }
+            positionCount++;
+            return true;
+        }
+
+        public void appendValuesTo(int position, BlockBuilder[] builders)
+        {
+            for (int i = 0; i < channels.size(); i++) {
+                ChannelBuilder channel = channels.get(i);
+                channel.appendTo(position, builders[i]);
+            }
+        }
+
+        public boolean equals(int position, BlockCursor... row)
+        {
+            for (int i = 0; i < channels.size(); i++) {
+                ChannelBuilder thisBlock = this.channels.get(i);
+                if (!thisBlock.equals(position, row[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class ChannelBuilder
+    {
+        public static final DataSize DEFAULT_MAX_BLOCK_SIZE = new DataSize(64, Unit.KILOBYTE);
+
+        private final Type type;
+        private final SliceOutput sliceOutput;
+        private final Slice slice;
+        private final IntArrayList positionOffsets;
+
+        public ChannelBuilder(Type type)
+        {
+            checkNotNull(type, "type is null");
+
+            this.type = type;
+            this.slice = Slices.allocate(Ints.checkedCast(DEFAULT_MAX_BLOCK_SIZE.toBytes()));
+            this.sliceOutput = slice.getOutput();
+            this.positionOffsets = new IntArrayList(1024);
+        }
+
+        public long getMemorySize()
+        {
+            return slice.length() + sizeOf(positionOffsets.elements());
+        }
+
+        public boolean equals(int position, BlockCursor cursor)
+        {
+            checkArgument(position >= 0 && position < positionOffsets.size());
+
+            int offset = positionOffsets.getInt(position);
+
+            Slice rightSlice = cursor.getRawSlice();
+            int rightOffset = cursor.getRawOffset();
+            return valueEquals(type, slice, offset, rightSlice, rightOffset);
+        }
+
+        public void appendTo(int position, BlockBuilder builder)
+        {
+            checkArgument(position >= 0 && position < positionOffsets.size());
+
+            int offset = positionOffsets.getInt(position);
+
+            if (slice.getByte(offset) != 0) {
+                builder.appendNull();
+            }
+            else if (type == Type.FIXED_INT_64) {
+                builder.append(slice.getLong(offset + SIZE_OF_BYTE));
+            }
+            else if (type == Type.DOUBLE) {
+                builder.append(slice.getDouble(offset + SIZE_OF_BYTE));
+            }
+            else if (type == Type.BOOLEAN) {
+                builder.append(slice.getByte(offset + SIZE_OF_BYTE) != 0);
+            }
+            else if (type == Type.VARIABLE_BINARY) {
+                int sliceLength = getVariableBinaryLength(slice, offset);
+                builder.append(slice.slice(offset + SIZE_OF_BYTE + SIZE_OF_INT, sliceLength));
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported type " + type);
+            }
+        }
+
+        public boolean append(BlockCursor cursor)
+        {
+            // the extra BYTE here is for the null flag
+            int writableBytes = sliceOutput.writableBytes() - SIZE_OF_BYTE;
+
+            boolean isNull = cursor.isNull();
+
+            if (type == Type.FIXED_INT_64) {
+                if (writableBytes < SIZE_OF_LONG) {
+                    return false;
+                }
+
+                positionOffsets.add(sliceOutput.size());
+                sliceOutput.writeByte(isNull ? 1 : 0);
+                sliceOutput.appendLong(isNull ? 0 : cursor.getLong());
+            }
+            else if (type == Type.DOUBLE) {
+                if (writableBytes < SIZE_OF_DOUBLE) {
+                    return false;
+                }
+
+                positionOffsets.add(sliceOutput.size());
+                sliceOutput.writeByte(isNull ? 1 : 0);
+                sliceOutput.appendDouble(isNull ? 0 : cursor.getDouble());
+            }
+            else if (type == Type.BOOLEAN) {
+                if (writableBytes < SIZE_OF_BYTE) {
+                    return false;
+                }
+
+                positionOffsets.add(sliceOutput.size());
+                sliceOutput.writeByte(isNull ? 1 : 0);
+                sliceOutput.writeByte(!isNull && cursor.getBoolean() ? 1 : 0);
+            }
+            else if (type == Type.VARIABLE_BINARY) {
+                int sliceLength = isNull ? 0 : getVariableBinaryLength(cursor.getRawSlice(), cursor.getRawOffset());
+                if (writableBytes < SIZE_OF_INT + sliceLength) {
+                    return false;
+                }
+
+                int startingOffset = sliceOutput.size();
+                positionOffsets.add(startingOffset);
+                sliceOutput.writeByte(isNull ? 1 : 0);
+                sliceOutput.appendInt(sliceLength + SIZE_OF_BYTE + SIZE_OF_INT);
+                if (!isNull) {
+                    sliceOutput.writeBytes(cursor.getRawSlice(), cursor.getRawOffset() + SIZE_OF_BYTE + SIZE_OF_INT, sliceLength);
+                }
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported type " + type);
+            }
+            return true;
+        }
+
+        public UncompressedBlock build()
+        {
+            checkState(!positionOffsets.isEmpty(), "Cannot build an empty block");
+
+            return new UncompressedBlock(positionOffsets.size(), new TupleInfo(type), sliceOutput.slice());
+        }
+    }
+
+    private static int addToHashCode(int result, int hashCode)
+    {
+        result = 31 * result + hashCode;
+        return result;
+    }
+
+    private static int valueHashCode(Type type, Slice slice, int offset)
+    {
+        boolean isNull = slice.getByte(offset) != 0;
+        if (isNull) {
+            return 0;
+        }
+
+        if (type == Type.FIXED_INT_64) {
+            return Longs.hashCode(slice.getLong(offset + SIZE_OF_BYTE));
+        }
+        else if (type == Type.DOUBLE) {
+            long longValue = Double.doubleToLongBits(slice.getDouble(offset + SIZE_OF_BYTE));
+            return Longs.hashCode(longValue);
+        }
+        else if (type == Type.BOOLEAN) {
+            return slice.getByte(offset + SIZE_OF_BYTE) != 0 ? 1 : 0;
+        }
+        else if (type == Type.VARIABLE_BINARY) {
+            int sliceLength = getVariableBinaryLength(slice, offset);
+            return slice.hashCode(offset + SIZE_OF_BYTE + SIZE_OF_INT, sliceLength);
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported type " + type);
+        }
+    }
+
+    private static int getVariableBinaryLength(Slice slice, int offset)
+    {
+        // INT here is the length and the BYTE is the null flag
+        return slice.getInt(offset + SIZE_OF_BYTE) - SIZE_OF_INT - SIZE_OF_BYTE;
+    }
+
+    private static boolean valueEquals(Type type, Slice leftSlice, int leftOffset, Slice rightSlice, int rightOffset)
+    {
+        // check if null flags are the same
+        boolean leftIsNull = leftSlice.getByte(leftOffset) != 0;
+        boolean rightIsNull = rightSlice.getByte(rightOffset) != 0;
+        if (leftIsNull != rightIsNull) {
+            return false;
+        }
+
+        // if values are both null, they are equal
+        if (leftIsNull) {
+            return true;
+        }
+
+        if (type == Type.FIXED_INT_64 || type == Type.DOUBLE) {
+            long leftValue = leftSlice.getLong(leftOffset + SIZE_OF_BYTE);
+            long rightValue = rightSlice.getLong(rightOffset + SIZE_OF_BYTE);
+            return leftValue == rightValue;
+        }
+        else if (type == Type.BOOLEAN) {
+            boolean leftValue = leftSlice.getByte(leftOffset + SIZE_OF_BYTE) != 0;
+            boolean rightValue = rightSlice.getByte(rightOffset + SIZE_OF_BYTE) != 0;
+            return leftValue == rightValue;
+        }
+        else if (type == Type.VARIABLE_BINARY) {
+            int leftLength = getVariableBinaryLength(leftSlice, leftOffset);
+            int rightLength = getVariableBinaryLength(rightSlice, rightOffset);
+            return leftSlice.equals(leftOffset + SIZE_OF_BYTE + SIZE_OF_INT, leftLength,
+                    rightSlice, rightOffset + SIZE_OF_BYTE + SIZE_OF_INT, rightLength);
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported type " + type);
+        }
+    }
+}
@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.sql.analyzer.Session;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.stats.CounterStat;
@@ -24,6 +25,7 @@ import io.airlift.units.Duration;
 
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.io.File;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.util.concurrent.Executor;
@@ -72,6 +74,9 @@ public class OperatorContext
 
     private final AtomicLong memoryReservation = new AtomicLong();
 
+    private final AtomicLong spilledDataSize = new AtomicLong();
+    private final AtomicLong spilledRuns = new AtomicLong();
+
     private final AtomicReference<Supplier<Object>> infoSupplier = new AtomicReference<>();
 
     public OperatorContext(int operatorId, String operatorType, DriverContext driverContext, Executor executor)
@@ -190,6 +195,19 @@ public class OperatorContext
         return result;
     }
 
+    public void freeMemory(long bytes)
+    {
+        checkArgument(bytes >= 0, "bytes is negative");
+        checkArgument(bytes <= memoryReservation.get(), "tried to free more memory than is reserved");
+        driverContext.freeMemory(bytes);
+        memoryReservation.getAndAdd(-bytes);
+    }
+
+    public Optional<File> getSpillPath()
+    {
+        return driverContext.getSpillPath();
+    }
+
     public synchronized long setMemoryReservation(long newMemoryReservation)
     {
         checkArgument(newMemoryReservation >= 0, "newMemoryReservation is negative");
@@ -204,6 +222,13 @@ public class OperatorContext
         return newMemoryReservation;
     }
 
+    public void recordSpill(long bytes)
+    {
+        checkArgument(bytes >= 0, "bytes is negative");
+        spilledDataSize.getAndAdd(bytes);
+        spilledRuns.incrementAndGet();
+    }
+
     public void setInfoSupplier(Supplier<Object> infoSupplier)
     {
         checkNotNull(infoSupplier, "infoProvider is null");
@@ -264,6 +289,10 @@ public class OperatorContext
                 new Duration(finishUserNanos.get(), NANOSECONDS).convertToMostSuccinctTimeUnit(),
 
                 new DataSize(memoryReservation.get(), BYTE).convertToMostSuccinctDataSize(),
+
+                new DataSize(spilledDataSize.get(), BYTE).convertToMostSuccinctDataSize(),
+                spilledRuns.get(),
+
                 info);
     }
 
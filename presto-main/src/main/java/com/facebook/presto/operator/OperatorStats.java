@@ -56,6 +56,9 @@ public class OperatorStats
 
     private final DataSize memoryReservation;
 
+    private final DataSize spilledDataSize;
+    private final long spilledRuns;
+
     private final Object info;
 
     @JsonCreator
@@ -86,6 +89,9 @@ public class OperatorStats
 
             @JsonProperty("memoryReservation") DataSize memoryReservation,
 
+            @JsonProperty("spilledDataSize") DataSize spilledDataSize,
+            @JsonProperty("spilledRuns") long spilledRuns,
+
             @JsonProperty("info") Object info)
     {
         checkArgument(operatorId >= 0, "operatorId is negative");
@@ -117,6 +123,10 @@ public class OperatorStats
 
         this.memoryReservation = checkNotNull(memoryReservation, "memoryReservation is null");
 
+        this.spilledDataSize = checkNotNull(spilledDataSize, "spilledDataSize is null");
+        checkArgument(spilledRuns >= 0, "spilledRuns is negative");
+        this.spilledRuns = spilledRuns;
+
         this.info = info;
     }
 
@@ -240,6 +250,18 @@ public class OperatorStats
         return memoryReservation;
     }
 
+    @JsonProperty
+    public DataSize getSpilledDataSize()
+    {
+        return spilledDataSize;
+    }
+
+    @JsonProperty
+    public long getSpilledRuns()
+    {
+        return spilledRuns;
+    }
+
     @Nullable
     @JsonProperty
     public Object getInfo()
@@ -277,6 +299,9 @@ public class OperatorStats
 
         long memoryReservation = this.memoryReservation.toBytes();
 
+        long spilledDataSize = this.spilledDataSize.toBytes();
+        long spilledRuns = this.spilledRuns;
+
         for (OperatorStats operator : operators) {
             checkArgument(operator.getOperatorId() == operatorId, "Expected operatorId to be %s but was %s", operatorId, operator.getOperatorId());
 
@@ -302,6 +327,9 @@ public class OperatorStats
             blockedWall += operator.getBlockedWall().roundTo(NANOSECONDS);
 
             memoryReservation += operator.getMemoryReservation().toBytes();
+
+            spilledDataSize += operator.getSpilledDataSize().toBytes();
+            spilledRuns += operator.getSpilledRuns();
         }
 
         return new OperatorStats(
@@ -331,6 +359,9 @@ public class OperatorStats
 
                 new DataSize(memoryReservation, BYTE).convertToMostSuccinctDataSize(),
 
+                new DataSize(spilledDataSize, BYTE).convertToMostSuccinctDataSize(),
+                spilledRuns,
+
                 // todo merge operator info?
                 null);
     }
@@ -13,18 +13,21 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.block.Block;
 import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.Closeable;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 public class OrderByOperator
-        implements Operator
+        implements Operator, Closeable
 {
     public static class OrderByOperatorFactory
             implements OperatorFactory
@@ -113,7 +116,9 @@ public class OrderByOperator
     private final int[] outputChannels;
     private final List<TupleInfo> tupleInfos;
 
-    private final PagesIndex pageIndex;
+    private final ExternalSorter sorter;
+    private PagesIndex pageIndex;
+    private Iterator<Page> sortedPages;
 
     private final PageBuilder pageBuilder;
     private int currentPosition;
@@ -134,7 +139,7 @@ public class OrderByOperator
         this.sortChannels = checkNotNull(sortChannels, "sortChannels is null");
         this.sortOrder = checkNotNull(sortOrder, "sortOrder is null");
 
-        this.pageIndex = new PagesIndex(sourceTupleInfos, expectedPositions, operatorContext);
+        this.sorter = new ExternalSorter(operatorContext, sourceTupleInfos, expectedPositions, sortChannels, sortOrder);
 
         this.pageBuilder = new PageBuilder(this.tupleInfos);
     }
@@ -157,8 +162,14 @@ public class OrderByOperator
         if (state == State.NEEDS_INPUT) {
             state = State.HAS_OUTPUT;
 
-            // sort the index
-            pageIndex.sort(sortChannels, sortOrder);
+            if (sorter.isSpilled()) {
+                // merge the sorted runs from disk
+                sortedPages = sorter.mergeRuns();
+            }
+            else {
+                // sort the index
+                pageIndex = sorter.sortInMemory();
+            }
         }
     }
 
@@ -186,7 +197,7 @@ public class OrderByOperator
         checkState(state == State.NEEDS_INPUT, "Operator is already finishing");
         checkNotNull(page, "page is null");
 
-        pageIndex.addPage(page);
+        sorter.addPage(page);
     }
 
     @Override
@@ -196,6 +207,10 @@ public class OrderByOperator
             return null;
         }
 
+        if (sortedPages != null) {
+            return getSpilledOutput();
+        }
+
         if (currentPosition >= pageIndex.getPositionCount()) {
             state = State.FINISHED;
             return null;
@@ -220,6 +235,28 @@ public class OrderByOperator
         return page;
     }
 
+    private Page getSpilledOutput()
+    {
+        if (!sortedPages.hasNext()) {
+            state = State.FINISHED;
+            return null;
+        }
+
+        // merged pages contain all source channels
+        Page page = sortedPages.next();
+        Block[] blocks = new Block[outputChannels.length];
+        for (int i = 0; i < outputChannels.length; i++) {
+            blocks[i] = page.getBlock(outputChannels[i]);
+        }
+        return new Page(page.getPositionCount(), blocks);
+    }
+
+    @Override
+    public void close()
+    {
+        sorter.close();
+    }
+
     private static SortOrder[] defaultSortOrder(int[] orderByChannels)
     {
         SortOrder[] sortOrder = new SortOrder[orderByChannels.length];
@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.uncompressed.UncompressedBlock;
+import com.facebook.presto.spi.ColumnType;
+import com.facebook.presto.spi.ColumnVector;
+import com.facebook.presto.spi.ColumnarPage;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.tuple.TupleInfo.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.SliceOutput;
+import io.airlift.units.DataSize;
+
+import java.io.Closeable;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_DOUBLE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static io.airlift.units.DataSize.Unit.BYTE;
+
+/**
+ * Produces the pages of a connector page source.  Each column of a page is
+ * converted to a block in a single pass over the column, instead of copying
+ * the values of every row through a record cursor.
+ */
+public class PageSourceOperator
+        implements Operator, Closeable
+{
+    private final OperatorContext operatorContext;
+    private final ConnectorPageSource pageSource;
+    private final List<TupleInfo> tupleInfos;
+    private boolean finished;
+    private long completedBytes;
+
+    public PageSourceOperator(OperatorContext operatorContext, ConnectorPageSource pageSource)
+    {
+        this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
+        this.pageSource = checkNotNull(pageSource, "pageSource is null");
+
+        ImmutableList.Builder<TupleInfo> tupleInfos = ImmutableList.builder();
+        for (ColumnType columnType : pageSource.getColumnTypes()) {
+            tupleInfos.add(new TupleInfo(Type.fromColumnType(columnType)));
+        }
+        this.tupleInfos = tupleInfos.build();
+    }
+
+    @Override
+    public OperatorContext getOperatorContext()
+    {
+        return operatorContext;
+    }
+
+    @Override
+    public List<TupleInfo> getTupleInfos()
+    {
+        return tupleInfos;
+    }
+
+    @Override
+    public void finish()
+    {
+        close();
+    }
+
+    @Override
+    public void close()
+    {
+        finished = true;
+        pageSource.close();
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        if (!finished && pageSource.isFinished()) {
+            close();
+        }
+        return finished;
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return NOT_BLOCKED;
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return false;
+    }
+
+    @Override
+    public void addInput(Page page)
+    {
+        throw new UnsupportedOperationException(getClass().getName() + " can not take input");
+    }
+
+    @Override
+    public Page getOutput()
+    {
+        if (finished) {
+            return null;
+        }
+
+        ColumnarPage columnarPage = pageSource.getNextPage();
+        if (columnarPage == null) {
+            if (pageSource.isFinished()) {
+                close();
+            }
+            return null;
+        }
+        checkState(columnarPage.getColumnCount() == tupleInfos.size(), "Expected %s columns, but page has %s columns", tupleInfos.size(), columnarPage.getColumnCount());
+
+        Block[] blocks = new Block[columnarPage.getColumnCount()];
+        for (int column = 0; column < blocks.length; column++) {
+            blocks[column] = toBlock(tupleInfos.get(column), columnarPage.getColumn(column));
+        }
+        Page page = new Page(columnarPage.getPositionCount(), blocks);
+
+        long bytesProcessed = pageSource.getCompletedBytes() - completedBytes;
+        operatorContext.recordGeneratedInput(new DataSize(bytesProcessed, BYTE), page.getPositionCount());
+        completedBytes += bytesProcessed;
+
+        return page;
+    }
+
+    static Block toBlock(TupleInfo tupleInfo, ColumnVector vector)
+    {
+        checkState(tupleInfo.getType().toColumnType() == vector.getType(), "Expected %s column, but is %s", tupleInfo.getType().toColumnType(), vector.getType());
+
+        int positionCount = vector.getPositionCount();
+        SliceOutput output;
+        switch (vector.getType()) {
+            case BOOLEAN:
+                output = new DynamicSliceOutput(positionCount * (SIZE_OF_BYTE + SIZE_OF_BYTE));
+                for (int position = 0; position < positionCount; position++) {
+                    boolean isNull = vector.isNull(position);
+                    output.writeByte(isNull ? 1 : 0);
+                    output.writeByte(!isNull && vector.getBoolean(position) ? 1 : 0);
+                }
+                break;
+            case LONG:
+                output = new DynamicSliceOutput(positionCount * (SIZE_OF_BYTE + SIZE_OF_LONG));
+                for (int position = 0; position < positionCount; position++) {
+                    boolean isNull = vector.isNull(position);
+                    output.writeByte(isNull ? 1 : 0);
+                    output.writeLong(isNull ? 0 : vector.getLong(position));
+                }
+                break;
+            case DOUBLE:
+                output = new DynamicSliceOutput(positionCount * (SIZE_OF_BYTE + SIZE_OF_DOUBLE));
+                for (int position = 0; position < positionCount; position++) {
+                    boolean isNull = vector.isNull(position);
+                    output.writeByte(isNull ? 1 : 0);
+                    output.writeDouble(isNull ? 0 : vector.getDouble(position));
+                }
+                break;
+            case STRING:
+                byte[] bytes = vector.getStringBytes();
+                output = new DynamicSliceOutput(positionCount * (SIZE_OF_BYTE + SIZE_OF_INT) + vector.getStringOffset(positionCount) - vector.getStringOffset(0));
+                for (int position = 0; position < positionCount; position++) {
+                    if (vector.isNull(position)) {
+                        output.writeByte(1);
+                        output.writeInt(SIZE_OF_BYTE + SIZE_OF_INT);
+                    }
+                    else {
+                        int length = vector.getStringLength(position);
+                        output.writeByte(0);
+                        output.writeInt(SIZE_OF_BYTE + SIZE_OF_INT + length);
+                        output.writeBytes(bytes, vector.getStringOffset(position), length);
+                    }
+                }
+                break;
+            default:
+                throw new AssertionError("unimplemented type: " + vector.getType());
+        }
+        return new UncompressedBlock(positionCount, tupleInfo, output.slice());
+    }
+}
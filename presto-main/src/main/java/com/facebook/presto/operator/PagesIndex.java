@@ -13,9 +13,9 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.block.Block;
 import com.facebook.presto.block.BlockBuilder;
-import com.facebook.presto.block.uncompressed.UncompressedBlock;
 import com.facebook.presto.tuple.TupleInfo;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
@@ -25,6 +25,8 @@ import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
 
 import java.util.List;
 
+import static com.facebook.presto.block.BlockUtils.toUncompressedBlock;
+
 /**
  * PagesIndex a low-level data structure which contains the address of every value position of every channel.
  * This data structure is not general purpose and is designed for a few specific uses:
@@ -40,6 +42,7 @@ public class PagesIndex
     private final ChannelIndex[] indexes;
     private final List<TupleInfo> tupleInfos;
     private final OperatorContext operatorContext;
+    private final int expectedPositions;
 
     private int positionCount;
     private long estimatedSize;
@@ -48,7 +51,13 @@ public class PagesIndex
     {
         this.tupleInfos = tupleInfos;
         this.operatorContext = operatorContext;
+        this.expectedPositions = expectedPositions;
         this.indexes = new ChannelIndex[tupleInfos.size()];
+        createIndexes();
+    }
+
+    private void createIndexes()
+    {
         for (int channel = 0; channel < indexes.length; channel++) {
             indexes[channel] = new ChannelIndex(expectedPositions, tupleInfos.get(channel));
         }
@@ -64,15 +73,52 @@ public class PagesIndex
         return positionCount;
     }
 
+    /**
+     * Adds the page to the index and reserves the additional memory.
+     *
+     * @throws ExceededMemoryLimitException if the memory reservation was denied
+     */
     public void addPage(Page page)
+    {
+        if (!tryAddPage(page)) {
+            throw new ExceededMemoryLimitException(operatorContext.getMaxMemorySize());
+        }
+    }
+
+    /**
+     * Adds the page to the index and tries to reserve the additional memory.
+     * The page is indexed even when the reservation is denied, so the caller
+     * is expected to flush the index to disk and {@link #clear} it.
+     *
+     * @return false if the memory reservation was denied
+     */
+    public boolean tryAddPage(Page page)
     {
         positionCount += page.getPositionCount();
         Block[] blocks = page.getBlocks();
         for (int channel = 0; channel < indexes.length; channel++) {
-            indexes[channel].indexBlock((UncompressedBlock) blocks[channel]);
+            indexes[channel].indexBlock(toUncompressedBlock(blocks[channel]));
+        }
+
+        long newEstimatedSize = calculateEstimatedSize();
+        if (newEstimatedSize > estimatedSize) {
+            if (!operatorContext.reserveMemory(newEstimatedSize - estimatedSize)) {
+                return false;
+            }
+            estimatedSize = newEstimatedSize;
         }
+        return true;
+    }
 
-        estimatedSize = operatorContext.setMemoryReservation(calculateEstimatedSize());
+    /**
+     * Removes all positions from the index and releases the memory reserved for them.
+     */
+    public void clear()
+    {
+        createIndexes();
+        positionCount = 0;
+        operatorContext.freeMemory(estimatedSize);
+        estimatedSize = 0;
     }
 
     public DataSize getEstimatedSize()
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.BlockCursor;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Lookup source over a build side that was hash partitioned by its join channels and
+ * indexed by several builders in parallel. Each partition is a {@link JoinHash} over the
+ * rows whose join hash maps to that partition, so a probe row only needs to be looked up
+ * in a single partition. Join positions encode the partition in the low bits.
+ */
+public class PartitionedLookupSource
+        implements LookupSource
+{
+    private final JoinHash[] partitions;
+    private final int partitionBits;
+    private final int partitionMask;
+
+    public PartitionedLookupSource(List<JoinHash> partitions)
+    {
+        checkNotNull(partitions, "partitions is null");
+        checkArgument(!partitions.isEmpty(), "partitions is empty");
+        this.partitions = ImmutableList.copyOf(partitions).toArray(new JoinHash[partitions.size()]);
+
+        this.partitionBits = 32 - Integer.numberOfLeadingZeros(this.partitions.length - 1);
+        this.partitionMask = (1 << partitionBits) - 1;
+
+        int channelCount = this.partitions[0].getChannelCount();
+        for (JoinHash partition : this.partitions) {
+            checkArgument(partition.getChannelCount() == channelCount, "all partitions must have the same channel count");
+            checkArgument(partition.getPositionCount() <= (Integer.MAX_VALUE >>> partitionBits), "partition is too large");
+        }
+    }
+
+    /**
+     * Selects the partition for a row with the specified join hash.
+     */
+    public static int getPartition(int hash, int partitionCount)
+    {
+        return (hash & Integer.MAX_VALUE) % partitionCount;
+    }
+
+    @Override
+    public int getChannelCount()
+    {
+        return partitions[0].getChannelCount();
+    }
+
+    @Override
+    public void setProbeCursors(BlockCursor[] cursors, int[] probeJoinChannels)
+    {
+        for (JoinHash partition : partitions) {
+            partition.setProbeCursors(cursors, probeJoinChannels);
+        }
+    }
+
+    @Override
+    public int getJoinPosition()
+    {
+        int hash = partitions[0].hashCurrentRow();
+        int partition = getPartition(hash, partitions.length);
+        return encodePosition(partition, partitions[partition].getJoinPosition(hash));
+    }
+
+    @Override
+    public int getNextJoinPosition(int currentPosition)
+    {
+        int partition = currentPosition & partitionMask;
+        return encodePosition(partition, partitions[partition].getNextJoinPosition(currentPosition >>> partitionBits));
+    }
+
+    @Override
+    public void appendTupleTo(int position, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        partitions[position & partitionMask].appendTupleTo(position >>> partitionBits, pageBuilder, outputChannelOffset);
+    }
+
+    private int encodePosition(int partition, int position)
+    {
+        if (position < 0) {
+            return -1;
+        }
+        return (position << partitionBits) | partition;
+    }
+}
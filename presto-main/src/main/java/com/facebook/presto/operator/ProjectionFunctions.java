@@ -15,6 +15,7 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.spi.RecordCursor;
+import com.facebook.presto.spi.StringRecordCursor;
 import com.facebook.presto.sql.tree.Input;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleInfo.Type;
@@ -99,7 +100,12 @@ public final class ProjectionFunctions
                         output.append(cursor.getLong(channelIndex));
                         break;
                     case VARIABLE_BINARY:
-                        output.append(cursor.getString(channelIndex));
+                        if (cursor instanceof StringRecordCursor) {
+                            ((StringRecordCursor) cursor).appendString(channelIndex, output);
+                        }
+                        else {
+                            output.append(cursor.getString(channelIndex));
+                        }
                         break;
                     case DOUBLE:
                         output.append(cursor.getDouble(channelIndex));
@@ -17,6 +17,7 @@ import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.spi.ColumnType;
 import com.facebook.presto.spi.RecordCursor;
 import com.facebook.presto.spi.RecordSet;
+import com.facebook.presto.spi.StringRecordCursor;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleInfo.Type;
 import com.google.common.collect.ImmutableList;
@@ -35,6 +36,7 @@ public class RecordProjectOperator
     private static final int ROWS_PER_REQUEST = 16384;
     private final OperatorContext operatorContext;
     private final RecordCursor cursor;
+    private final StringRecordCursor stringCursor;
     private final List<TupleInfo> tupleInfos;
     private final PageBuilder pageBuilder;
     private boolean finishing;
@@ -49,6 +51,7 @@ public class RecordProjectOperator
     {
         this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
         this.cursor = checkNotNull(cursor, "cursor is null");
+        this.stringCursor = (cursor instanceof StringRecordCursor) ? (StringRecordCursor) cursor : null;
 
         ImmutableList.Builder<TupleInfo> tupleInfos = ImmutableList.builder();
         for (ColumnType columnType : columnTypes) {
@@ -145,7 +148,12 @@ public class RecordProjectOperator
                                 output.append(cursor.getDouble(column));
                                 break;
                             case VARIABLE_BINARY:
-                                output.append(cursor.getString(column));
+                                if (stringCursor != null) {
+                                    stringCursor.appendString(column, output);
+                                }
+                                else {
+                                    output.append(cursor.getString(column));
+                                }
                                 break;
                             default:
                                 throw new AssertionError("unimplemented type: " + type);
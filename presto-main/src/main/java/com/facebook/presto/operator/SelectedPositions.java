@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Reusable buffer for the positions of a page selected by a filter.
+ */
+@NotThreadSafe
+class SelectedPositions
+{
+    private int[] positions = new int[0];
+
+    public int[] get(int positionCount)
+    {
+        if (positions.length < positionCount) {
+            positions = new int[positionCount];
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.serde.PagesSerde;
+import com.facebook.presto.serde.PagesWriter;
+import com.google.common.base.Throwables;
+import io.airlift.slice.InputStreamSliceInput;
+import io.airlift.slice.OutputStreamSliceOutput;
+import io.airlift.slice.SliceOutput;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Temporary file holding pages written by an operator that ran out of memory.
+ * Pages are stored in the {@link PagesSerde} format, so every page appended to
+ * a file must have the same block encodings. The file is deleted on close; files
+ * left behind by a task that did not close its operators are removed with the
+ * task spill directory.
+ */
+@NotThreadSafe
+public class SpillFile
+        implements Closeable
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String FILE_PREFIX = "spill";
+    private static final String FILE_SUFFIX = ".pages";
+
+    private final File file;
+    private final List<InputStream> openInputs = new ArrayList<>();
+
+    private SliceOutput sliceOutput;
+    private PagesWriter pagesWriter;
+    private long spilledBytes;
+    private long spilledPositions;
+    private boolean closed;
+
+    public static SpillFile createSpillFile(File spillPath)
+    {
+        checkNotNull(spillPath, "spillPath is null");
+        try {
+            if (!spillPath.isDirectory() && !spillPath.mkdirs() && !spillPath.isDirectory()) {
+                throw new IOException("Could not create spill directory " + spillPath);
+            }
+            File file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, spillPath);
+            return new SpillFile(file);
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Deletes the spill files in a task spill directory, and the directory itself
+     * if nothing else is left in it.
+     */
+    public static void deleteSpillFiles(File taskSpillPath)
+    {
+        checkNotNull(taskSpillPath, "taskSpillPath is null");
+        File[] files = taskSpillPath.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isFile() && file.getName().startsWith(FILE_PREFIX) && file.getName().endsWith(FILE_SUFFIX)) {
+                file.delete();
+            }
+        }
+        taskSpillPath.delete();
+    }
+
+    /**
+     * Deletes the spill files of every task directory under the spill path, such as
+     * those left behind by a server that did not shut down cleanly.
+     */
+    public static void deleteAllSpillFiles(File spillPath)
+    {
+        checkNotNull(spillPath, "spillPath is null");
+        File[] taskSpillPaths = spillPath.listFiles();
+        if (taskSpillPaths == null) {
+            return;
+        }
+        for (File taskSpillPath : taskSpillPaths) {
+            if (taskSpillPath.isDirectory()) {
+                deleteSpillFiles(taskSpillPath);
+            }
+        }
+    }
+
+    private SpillFile(File file)
+    {
+        this.file = checkNotNull(file, "file is null");
+    }
+
+    public void writePage(Page page)
+    {
+        checkNotNull(page, "page is null");
+        checkState(!closed, "spill file is closed");
+        if (sliceOutput == null) {
+            try {
+                sliceOutput = new OutputStreamSliceOutput(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+            }
+            catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            pagesWriter = PagesSerde.createPagesWriter(sliceOutput);
+        }
+        pagesWriter.append(page);
+        spilledPositions += page.getPositionCount();
+    }
+
+    /**
+     * Flushes all written pages to disk. No pages may be written after this call.
+     */
+    public void finishWriting()
+    {
+        if (sliceOutput == null) {
+            return;
+        }
+        spilledBytes = sliceOutput.size();
+        try {
+            sliceOutput.close();
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        pagesWriter = null;
+        sliceOutput = null;
+    }
+
+    public Iterator<Page> readPages()
+    {
+        checkState(!closed, "spill file is closed");
+        checkState(sliceOutput == null, "spill file is still being written");
+        try {
+            InputStream input = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+            openInputs.add(input);
+            return PagesSerde.readPages(new InputStreamSliceInput(input));
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public long getSpilledBytes()
+    {
+        if (sliceOutput != null) {
+            return sliceOutput.size();
+        }
+        return spilledBytes;
+    }
+
+    public long getSpilledPositions()
+    {
+        return spilledPositions;
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (sliceOutput != null) {
+            closeQuietly(sliceOutput);
+            sliceOutput = null;
+        }
+        for (InputStream input : openInputs) {
+            closeQuietly(input);
+        }
+        openInputs.clear();
+        file.delete();
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        try {
+            closeable.close();
+        }
+        catch (IOException | RuntimeException e) {
+            // ignored
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.facebook.presto.execution.TaskState;
 import com.facebook.presto.execution.TaskStateMachine;
 import com.facebook.presto.sql.analyzer.Session;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import io.airlift.stats.CounterStat;
 import io.airlift.units.DataSize;
@@ -27,6 +28,7 @@ import org.joda.time.DateTime;
 
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
@@ -34,6 +36,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.facebook.presto.operator.PipelineContext.pipelineStatsGetter;
+import static com.facebook.presto.operator.SpillFile.deleteSpillFiles;
 import static com.facebook.presto.util.Threads.checkNotSameThreadExecutor;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -51,6 +54,7 @@ public class TaskContext
 
     private final long maxMemory;
     private final DataSize operatorPreAllocatedMemory;
+    private final Optional<File> spillPath;
 
     private final AtomicLong memoryReservation = new AtomicLong();
 
@@ -89,12 +93,26 @@ public class TaskContext
     }
 
     public TaskContext(TaskStateMachine taskStateMachine, Executor executor, Session session, DataSize maxMemory, DataSize operatorPreAllocatedMemory, boolean cpuTimerEnabled)
+    {
+        this(taskStateMachine, executor, session, maxMemory, operatorPreAllocatedMemory, cpuTimerEnabled, Optional.<File>absent());
+    }
+
+    public TaskContext(TaskStateMachine taskStateMachine,
+            Executor executor,
+            Session session,
+            DataSize maxMemory,
+            DataSize operatorPreAllocatedMemory,
+            boolean cpuTimerEnabled,
+            Optional<File> spillPath)
     {
         this.taskStateMachine = checkNotNull(taskStateMachine, "taskStateMachine is null");
         this.executor = checkNotNull(executor, "executor is null");
         this.session = session;
         this.maxMemory = checkNotNull(maxMemory, "maxMemory is null").toBytes();
         this.operatorPreAllocatedMemory = checkNotNull(operatorPreAllocatedMemory, "operatorPreAllocatedMemory is null");
+        // every task spills to its own directory, so the files it leaves behind can be removed when it is done
+        checkNotNull(spillPath, "spillPath is null");
+        this.spillPath = spillPath.isPresent() ? Optional.of(new File(spillPath.get(), taskStateMachine.getTaskId().toString())) : Optional.<File>absent();
 
         taskStateMachine.addStateChangeListener(new StateChangeListener<TaskState>()
         {
@@ -104,6 +122,9 @@ public class TaskContext
                 if (newValue.isDone()) {
                     executionEndTime.set(DateTime.now());
                     endNanos.set(System.nanoTime());
+                    if (TaskContext.this.spillPath.isPresent()) {
+                        deleteSpillFiles(TaskContext.this.spillPath.get());
+                    }
                 }
             }
         });
@@ -175,6 +196,21 @@ public class TaskContext
         return true;
     }
 
+    public synchronized void freeMemory(long bytes)
+    {
+        checkArgument(bytes >= 0, "bytes is negative");
+        checkArgument(bytes <= memoryReservation.get(), "tried to free more memory than is reserved");
+        memoryReservation.getAndAdd(-bytes);
+    }
+
+    /**
+     * Directory of this task operators may use to spill data to disk, or absent if spilling is disabled.
+     */
+    public Optional<File> getSpillPath()
+    {
+        return spillPath;
+    }
+
     public boolean isCpuTimerEnabled()
     {
         return cpuTimerEnabled;
@@ -22,7 +22,9 @@ import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ListenableFuture;
 import it.unimi.dsi.fastutil.ints.IntComparator;
 
+import java.io.Closeable;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import static com.facebook.presto.operator.SortOrder.ASC_NULLS_LAST;
@@ -30,7 +32,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 public class WindowOperator
-        implements Operator
+        implements Operator, Closeable
 {
     public static class WindowOperatorFactory
             implements OperatorFactory
@@ -111,15 +113,21 @@ public class WindowOperator
     private final int[] partitionChannels;
     private final int[] sortChannels;
     private final SortOrder[] sortOrder;
+    private final SortOrder[] partitionOrder;
+    private final List<TupleInfo> sourceTupleInfos;
+    private final int expectedPositions;
     private final List<TupleInfo> tupleInfos;
 
-    private final PagesIndex pageIndex;
+    private final ExternalSorter sorter;
+    private PagesIndex pageIndex;
+    private Iterator<Page> sortedPages;
 
     private final PageBuilder pageBuilder;
 
     private State state = State.NEEDS_INPUT;
 
     private int currentPosition;
+    private int positionCount;
 
     private IntComparator partitionComparator;
     private IntComparator orderComparator;
@@ -145,9 +153,19 @@ public class WindowOperator
         this.sortChannels = checkNotNull(sortChannels, "sortChannels is null");
         this.sortOrder = checkNotNull(sortOrder, "sortOrder is null").clone();
 
+        this.sourceTupleInfos = ImmutableList.copyOf(checkNotNull(sourceTupleInfos, "sourceTupleInfos is null"));
+        this.expectedPositions = expectedPositions;
+
         this.tupleInfos = toTupleInfos(sourceTupleInfos, outputChannels, windowFunctions);
 
-        this.pageIndex = new PagesIndex(sourceTupleInfos, expectedPositions, operatorContext);
+        this.partitionOrder = new SortOrder[partitionChannels.length];
+        Arrays.fill(partitionOrder, ASC_NULLS_LAST);
+
+        // sort by partition channels, then sort channels
+        int[] orderChannels = Ints.concat(partitionChannels, sortChannels);
+        SortOrder[] ordering = ObjectArrays.concat(partitionOrder, sortOrder, SortOrder.class);
+
+        this.sorter = new ExternalSorter(operatorContext, sourceTupleInfos, expectedPositions, orderChannels, ordering);
         this.pageBuilder = new PageBuilder(this.tupleInfos);
     }
 
@@ -169,23 +187,99 @@ public class WindowOperator
         if (state == State.NEEDS_INPUT) {
             state = State.HAS_OUTPUT;
 
-            // sort by partition channels, then sort channels
-            int[] orderChannels = Ints.concat(partitionChannels, sortChannels);
+            if (sorter.isSpilled()) {
+                // merge the sorted runs from disk and process them a few partitions at a time
+                sortedPages = sorter.mergeRuns();
+                loadNextPartitions();
+            }
+            else {
+                // sort the index
+                PagesIndex sortedIndex = sorter.sortInMemory();
+                setPageIndex(sortedIndex, sortedIndex.getPositionCount());
+            }
+        }
+    }
+
+    private void setPageIndex(PagesIndex pageIndex, int positionCount)
+    {
+        this.pageIndex = pageIndex;
+        this.positionCount = positionCount;
+
+        currentPosition = 0;
+        partitionEnd = 0;
+        peerGroupEnd = 0;
 
-            SortOrder[] partitionOrder = new SortOrder[partitionChannels.length];
-            Arrays.fill(partitionOrder, ASC_NULLS_LAST);
+        // create partition comparator
+        partitionComparator = new MultiSliceFieldOrderedTupleComparator(pageIndex, partitionChannels, partitionOrder);
 
-            SortOrder[] ordering = ObjectArrays.concat(partitionOrder, sortOrder, SortOrder.class);
+        // create order comparator
+        orderComparator = new MultiSliceFieldOrderedTupleComparator(pageIndex, sortChannels, sortOrder);
+    }
 
-            // sort the index
-            pageIndex.sort(orderChannels, ordering);
+    /**
+     * Loads the merged spill runs into a new index until it contains at least one
+     * complete partition. The positions of the last partition are held back, since
+     * that partition may continue in the next page, and carried over to the next index.
+     *
+     * @return false if all spilled positions have been processed
+     */
+    private boolean loadNextPartitions()
+    {
+        if (sortedPages == null) {
+            return false;
+        }
 
-            // create partition comparator
-            partitionComparator = new MultiSliceFieldOrderedTupleComparator(pageIndex, partitionChannels, partitionOrder);
+        List<Page> pendingPages = ImmutableList.of();
+        if (pageIndex != null) {
+            pendingPages = copyPositions(pageIndex, positionCount, pageIndex.getPositionCount());
+            pageIndex.clear();
+            pageIndex = null;
+        }
 
-            // create order comparator
-            orderComparator = new MultiSliceFieldOrderedTupleComparator(pageIndex, sortChannels, sortOrder);
+        PagesIndex partitions = new PagesIndex(sourceTupleInfos, expectedPositions, operatorContext);
+        for (Page page : pendingPages) {
+            partitions.addPage(page);
         }
+
+        IntComparator comparator = new MultiSliceFieldOrderedTupleComparator(partitions, partitionChannels, partitionOrder);
+        while (sortedPages.hasNext()) {
+            partitions.addPage(sortedPages.next());
+
+            int lastPosition = partitions.getPositionCount() - 1;
+            if (lastPosition > 0 && comparator.compare(0, lastPosition) != 0) {
+                int lastPartitionStart = lastPosition;
+                while (comparator.compare(lastPartitionStart - 1, lastPosition) == 0) {
+                    lastPartitionStart--;
+                }
+                setPageIndex(partitions, lastPartitionStart);
+                return true;
+            }
+        }
+
+        sortedPages = null;
+        if (partitions.getPositionCount() == 0) {
+            return false;
+        }
+        setPageIndex(partitions, partitions.getPositionCount());
+        return true;
+    }
+
+    private List<Page> copyPositions(PagesIndex pagesIndex, int start, int end)
+    {
+        ImmutableList.Builder<Page> pages = ImmutableList.builder();
+        PageBuilder pageBuilder = new PageBuilder(sourceTupleInfos);
+        int position = start;
+        while (position < end) {
+            pageBuilder.reset();
+            while (!pageBuilder.isFull() && position < end) {
+                for (int channel = 0; channel < sourceTupleInfos.size(); channel++) {
+                    pagesIndex.appendTupleTo(channel, position, pageBuilder.getBlockBuilder(channel));
+                }
+                position++;
+            }
+            pages.add(pageBuilder.build());
+        }
+        return pages.build();
     }
 
     @Override
@@ -212,7 +306,7 @@ public class WindowOperator
         checkState(state == State.NEEDS_INPUT, "Operator is already finishing");
         checkNotNull(page, "page is null");
 
-        pageIndex.addPage(page);
+        sorter.addPage(page);
     }
 
     @Override
@@ -222,20 +316,20 @@ public class WindowOperator
             return null;
         }
 
-        if (currentPosition >= pageIndex.getPositionCount()) {
+        if (currentPosition >= positionCount && !loadNextPartitions()) {
             state = State.FINISHED;
             return null;
         }
 
         // iterate through the positions sequentially until we have one full page
         pageBuilder.reset();
-        while (!pageBuilder.isFull() && currentPosition < pageIndex.getPositionCount()) {
+        while (!pageBuilder.isFull() && currentPosition < positionCount) {
             // check for new partition
             boolean newPartition = (currentPosition == 0) || (currentPosition == partitionEnd);
             if (newPartition) {
                 // find end of partition
                 partitionEnd++;
-                while ((partitionEnd < pageIndex.getPositionCount()) &&
+                while ((partitionEnd < positionCount) &&
                         (partitionComparator.compare(partitionEnd - 1, partitionEnd) == 0)) {
                     partitionEnd++;
                 }
@@ -284,6 +378,12 @@ public class WindowOperator
         return page;
     }
 
+    @Override
+    public void close()
+    {
+        sorter.close();
+    }
+
     private static List<TupleInfo> toTupleInfos(List<TupleInfo> sourceTupleInfos, int[] outputChannels, List<WindowFunction> windowFunctions)
     {
         ImmutableList.Builder<TupleInfo> tupleInfosBuilder = ImmutableList.builder();
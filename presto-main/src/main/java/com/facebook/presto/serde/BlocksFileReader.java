@@ -18,6 +18,7 @@ import com.facebook.presto.block.BlockIterable;
 import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
 import io.airlift.slice.SizeOf;
 import io.airlift.slice.Slice;
@@ -25,6 +26,7 @@ import io.airlift.slice.SliceInput;
 import io.airlift.units.DataSize;
 
 import java.util.Iterator;
+import java.util.List;
 
 public class BlocksFileReader
         implements BlockIterable
@@ -38,6 +40,7 @@ public class BlocksFileReader
     private final Slice blocksSlice;
     private final BlockIterable blockIterable;
     private final BlocksFileStats stats;
+    private final List<BlocksFileZone> zones;
 
     public BlocksFileReader(Slice slice)
     {
@@ -55,6 +58,14 @@ public class BlocksFileReader
         // read stats
         stats = BlocksFileStats.deserialize(input);
 
+        // read zones, which are not present in files written by older versions
+        if (input.isReadable()) {
+            zones = BlocksFileZone.deserialize(input);
+        }
+        else {
+            zones = ImmutableList.of();
+        }
+
         blocksSlice = slice.slice(0, footerOffset);
         blockIterable = new EncodedBlockIterable(blockEncoding, blocksSlice, Ints.checkedCast(stats.getRowCount()));
     }
@@ -87,6 +98,14 @@ public class BlocksFileReader
         return stats;
     }
 
+    /**
+     * Returns the zones of the file in row order, or an empty list if the file has no zones.
+     */
+    public List<BlocksFileZone> getZones()
+    {
+        return zones;
+    }
+
     @Override
     public Iterator<Block> iterator()
     {
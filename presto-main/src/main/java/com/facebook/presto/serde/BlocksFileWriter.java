@@ -15,6 +15,7 @@ package com.facebook.presto.serde;
 
 import com.facebook.presto.block.Block;
 import com.facebook.presto.tuple.Tuple;
+import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
@@ -27,6 +28,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import static com.facebook.presto.block.BlockUtils.toTupleIterable;
@@ -59,6 +61,7 @@ public class BlocksFileWriter
     private final BlocksFileEncoding encoding;
     private final OutputSupplier<? extends OutputStream> outputSupplier;
     private final StatsBuilder statsBuilder = new StatsBuilder();
+    private final ZonesBuilder zonesBuilder = new ZonesBuilder();
     private Encoder encoder;
     private SliceOutput sliceOutput;
     private boolean closed;
@@ -80,6 +83,7 @@ public class BlocksFileWriter
                 open();
             }
             statsBuilder.process(tuples);
+            zonesBuilder.process(tuples);
             encoder.append(tuples);
         }
         return this;
@@ -128,6 +132,9 @@ public class BlocksFileWriter
         // write stats
         BlocksFileStats.serialize(statsBuilder.build(), sliceOutput);
 
+        // write zones
+        BlocksFileZone.serialize(zonesBuilder.build(), sliceOutput);
+
         // write footer size
         int footerSize = sliceOutput.size() - startingIndex;
         checkState(footerSize > 0);
@@ -188,4 +195,110 @@ public class BlocksFileWriter
             return new BlocksFileStats(rowCount, runsCount + 1, rowCount / (runsCount + 1), (set.size() == MAX_UNIQUE_COUNT) ? Integer.MAX_VALUE : set.size());
         }
     }
+
+    private static class ZonesBuilder
+    {
+        // zones end at fixed row counts, so the zones of all columns in a shard line up
+        private static final int ZONE_ROW_COUNT = 16 * 1024;
+
+        private final ImmutableList.Builder<BlocksFileZone> zones = ImmutableList.builder();
+        private int rowCount;
+        private int nullCount;
+        private boolean hasValues;
+        private boolean valuesComparable = true;
+        private long minLong;
+        private long maxLong;
+        private double minDouble;
+        private double maxDouble;
+        private boolean minBoolean;
+        private boolean maxBoolean;
+        private TupleInfo.Type type;
+
+        public void process(Iterable<Tuple> tuples)
+        {
+            checkNotNull(tuples, "tuples is null");
+
+            for (Tuple tuple : tuples) {
+                if (type == null) {
+                    type = tuple.getTupleInfo().getType();
+                }
+
+                rowCount++;
+                if (tuple.isNull()) {
+                    nullCount++;
+                }
+                else {
+                    addValue(tuple);
+                }
+
+                if (rowCount == ZONE_ROW_COUNT) {
+                    finishZone();
+                }
+            }
+        }
+
+        private void addValue(Tuple tuple)
+        {
+            switch (type) {
+                case FIXED_INT_64:
+                    long longValue = tuple.getLong();
+                    minLong = hasValues ? Math.min(minLong, longValue) : longValue;
+                    maxLong = hasValues ? Math.max(maxLong, longValue) : longValue;
+                    break;
+                case DOUBLE:
+                    double doubleValue = tuple.getDouble();
+                    if (Double.isNaN(doubleValue)) {
+                        valuesComparable = false;
+                    }
+                    minDouble = hasValues ? Math.min(minDouble, doubleValue) : doubleValue;
+                    maxDouble = hasValues ? Math.max(maxDouble, doubleValue) : doubleValue;
+                    break;
+                case BOOLEAN:
+                    boolean booleanValue = tuple.getBoolean();
+                    minBoolean = hasValues ? minBoolean && booleanValue : booleanValue;
+                    maxBoolean = hasValues ? maxBoolean || booleanValue : booleanValue;
+                    break;
+                default:
+                    // min and max are not recorded for varchar
+                    valuesComparable = false;
+            }
+            hasValues = true;
+        }
+
+        private void finishZone()
+        {
+            Comparable<?> min = null;
+            Comparable<?> max = null;
+            if (hasValues && valuesComparable) {
+                switch (type) {
+                    case FIXED_INT_64:
+                        min = minLong;
+                        max = maxLong;
+                        break;
+                    case DOUBLE:
+                        min = minDouble;
+                        max = maxDouble;
+                        break;
+                    case BOOLEAN:
+                        min = minBoolean;
+                        max = maxBoolean;
+                        break;
+                }
+            }
+            zones.add(new BlocksFileZone(rowCount, nullCount, min, max));
+
+            rowCount = 0;
+            nullCount = 0;
+            hasValues = false;
+            valuesComparable = true;
+        }
+
+        public List<BlocksFileZone> build()
+        {
+            if (rowCount > 0) {
+                finishZone();
+            }
+            return zones.build();
+        }
+    }
 }
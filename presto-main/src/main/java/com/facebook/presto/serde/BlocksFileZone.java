@@ -0,0 +1,171 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.serde;
+
+import com.facebook.presto.spi.Domain;
+import com.facebook.presto.spi.Range;
+import com.facebook.presto.spi.SortedRangeSet;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Statistics for a contiguous range of rows in a blocks file.  The min and
+ * max values are only recorded for bigint, double and boolean columns, and
+ * are absent if the zone contains no non-null values.
+ */
+public class BlocksFileZone
+{
+    private static final byte NO_VALUES = 0;
+    private static final byte LONG_VALUES = 1;
+    private static final byte DOUBLE_VALUES = 2;
+    private static final byte BOOLEAN_VALUES = 3;
+
+    private final int rowCount;
+    private final int nullCount;
+    private final Comparable<?> min;
+    private final Comparable<?> max;
+
+    public BlocksFileZone(int rowCount, int nullCount, @Nullable Comparable<?> min, @Nullable Comparable<?> max)
+    {
+        checkArgument(rowCount > 0, "rowCount must be positive");
+        checkArgument(nullCount >= 0 && nullCount <= rowCount, "nullCount must be between 0 and rowCount");
+        checkArgument((min == null) == (max == null), "min and max must both be present or absent");
+        checkArgument(min == null || min.getClass() == max.getClass(), "min and max must be the same type");
+
+        this.rowCount = rowCount;
+        this.nullCount = nullCount;
+        this.min = min;
+        this.max = max;
+    }
+
+    public static void serialize(List<BlocksFileZone> zones, SliceOutput sliceOutput)
+    {
+        sliceOutput.writeInt(zones.size());
+        for (BlocksFileZone zone : zones) {
+            sliceOutput.writeInt(zone.getRowCount());
+            sliceOutput.writeInt(zone.getNullCount());
+
+            Comparable<?> min = zone.getMin();
+            if (min == null) {
+                sliceOutput.writeByte(NO_VALUES);
+            }
+            else if (min instanceof Long) {
+                sliceOutput.writeByte(LONG_VALUES);
+                sliceOutput.writeLong((Long) min);
+                sliceOutput.writeLong((Long) zone.getMax());
+            }
+            else if (min instanceof Double) {
+                sliceOutput.writeByte(DOUBLE_VALUES);
+                sliceOutput.writeDouble((Double) min);
+                sliceOutput.writeDouble((Double) zone.getMax());
+            }
+            else if (min instanceof Boolean) {
+                sliceOutput.writeByte(BOOLEAN_VALUES);
+                sliceOutput.writeByte((Boolean) min ? 1 : 0);
+                sliceOutput.writeByte((Boolean) zone.getMax() ? 1 : 0);
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported zone value type: " + min.getClass().getName());
+            }
+        }
+    }
+
+    public static List<BlocksFileZone> deserialize(SliceInput input)
+    {
+        int zoneCount = input.readInt();
+        ImmutableList.Builder<BlocksFileZone> zones = ImmutableList.builder();
+        for (int i = 0; i < zoneCount; i++) {
+            int rowCount = input.readInt();
+            int nullCount = input.readInt();
+
+            byte valuesType = input.readByte();
+            switch (valuesType) {
+                case NO_VALUES:
+                    zones.add(new BlocksFileZone(rowCount, nullCount, null, null));
+                    break;
+                case LONG_VALUES:
+                    zones.add(new BlocksFileZone(rowCount, nullCount, input.readLong(), input.readLong()));
+                    break;
+                case DOUBLE_VALUES:
+                    zones.add(new BlocksFileZone(rowCount, nullCount, input.readDouble(), input.readDouble()));
+                    break;
+                case BOOLEAN_VALUES:
+                    zones.add(new BlocksFileZone(rowCount, nullCount, input.readByte() != 0, input.readByte() != 0));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown zone values type: " + valuesType);
+            }
+        }
+        return zones.build();
+    }
+
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    public int getNullCount()
+    {
+        return nullCount;
+    }
+
+    @Nullable
+    public Comparable<?> getMin()
+    {
+        return min;
+    }
+
+    @Nullable
+    public Comparable<?> getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Returns false only if no row in this zone can be contained in the domain.
+     */
+    public boolean mayMatch(Domain domain)
+    {
+        if (domain.isNullAllowed() && nullCount > 0) {
+            return true;
+        }
+        if (nullCount == rowCount) {
+            return false;
+        }
+        if (min == null || domain.getType() != min.getClass()) {
+            return true;
+        }
+        Domain values = Domain.create(SortedRangeSet.of(Range.range(min, true, max, true)), false);
+        return domain.overlaps(values);
+    }
+
+    @Override
+    public String toString()
+    {
+        return Objects.toStringHelper(this)
+                .add("rowCount", rowCount)
+                .add("nullCount", nullCount)
+                .add("min", min)
+                .add("max", max)
+                .toString();
+    }
+}
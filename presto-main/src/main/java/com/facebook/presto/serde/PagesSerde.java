@@ -19,21 +19,36 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.io.InputSupplier;
+import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.SliceInput;
 import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+import org.iq80.snappy.Snappy;
 
 import java.io.IOException;
 import java.util.Iterator;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.Arrays.asList;
 
 public final class PagesSerde
 {
+    private static final byte RAW_FRAME = 0;
+    private static final byte SNAPPY_FRAME = 1;
+
     private PagesSerde()
     {
     }
 
+    /**
+     * Format: channel count (int), then for each page the position count (int) and
+     * for each channel a flag (boolean), the block encoding if the flag is set, and the
+     * block.  The encoding of a channel is written with the first page and again whenever
+     * a block can not be written with the previous encoding of its channel, such as a
+     * page from a shard with a different encoding or dictionary.
+     */
     public static PagesWriter createPagesWriter(final SliceOutput sliceOutput)
     {
         checkNotNull(sliceOutput, "sliceOutput is null");
@@ -46,21 +61,24 @@ public final class PagesSerde
             {
                 Preconditions.checkNotNull(page, "page is null");
 
+                Block[] blocks = page.getBlocks();
                 if (blockEncodings == null) {
-                    Block[] blocks = page.getBlocks();
                     blockEncodings = new BlockEncoding[blocks.length];
                     sliceOutput.writeInt(blocks.length);
-                    for (int i = 0; i < blocks.length; i++) {
-                        Block block = blocks[i];
-                        BlockEncoding blockEncoding = block.getEncoding();
-                        blockEncodings[i] = blockEncoding;
-                        BlockEncodings.writeBlockEncoding(sliceOutput, blockEncoding);
-                    }
                 }
+                checkArgument(blocks.length == blockEncodings.length, "Expected page with %s channels, but got %s channels", blockEncodings.length, blocks.length);
 
                 sliceOutput.writeInt(page.getPositionCount());
-                Block[] blocks = page.getBlocks();
                 for (int i = 0; i < blocks.length; i++) {
+                    BlockEncoding blockEncoding = blocks[i].getEncoding();
+                    if (blockEncodings[i] == null || !isSameEncoding(blockEncodings[i], blockEncoding)) {
+                        blockEncodings[i] = blockEncoding;
+                        sliceOutput.writeBoolean(true);
+                        BlockEncodings.writeBlockEncoding(sliceOutput, blockEncoding);
+                    }
+                    else {
+                        sliceOutput.writeBoolean(false);
+                    }
                     blockEncodings[i].writeBlock(sliceOutput, blocks[i]);
                 }
 
@@ -69,6 +87,20 @@ public final class PagesSerde
         };
     }
 
+    private static boolean isSameEncoding(BlockEncoding encoding, BlockEncoding other)
+    {
+        if (encoding.getClass() != other.getClass() || !encoding.getTupleInfo().equals(other.getTupleInfo())) {
+            return false;
+        }
+        if (encoding instanceof DictionaryBlockEncoding) {
+            DictionaryBlockEncoding dictionaryEncoding = (DictionaryBlockEncoding) encoding;
+            DictionaryBlockEncoding otherDictionaryEncoding = (DictionaryBlockEncoding) other;
+            return dictionaryEncoding.getDictionary() == otherDictionaryEncoding.getDictionary() &&
+                    isSameEncoding(dictionaryEncoding.getIdBlockEncoding(), otherDictionaryEncoding.getIdBlockEncoding());
+        }
+        return true;
+    }
+
     public static void writePages(SliceOutput sliceOutput, Page... pages)
     {
         writePages(sliceOutput, asList(pages).iterator());
@@ -87,6 +119,48 @@ public final class PagesSerde
         }
     }
 
+    /**
+     * Writes each page as a separate frame, Snappy compressed unless compression
+     * does not shrink the page, in which case the page is written raw.
+     * <p/>
+     * Frame format: codec (byte), uncompressed length (int), frame length (int), frame bytes.
+     * Each frame holds a single page in the {@link #writePages} format.
+     */
+    public static void writeSnappyPages(SliceOutput sliceOutput, Iterable<Page> pages)
+    {
+        checkNotNull(sliceOutput, "sliceOutput is null");
+        checkNotNull(pages, "pages is null");
+
+        for (Page page : pages) {
+            DynamicSliceOutput pageOutput = new DynamicSliceOutput((int) Math.min(page.getDataSize().toBytes() + 64, Integer.MAX_VALUE));
+            writePages(pageOutput, page);
+            byte[] uncompressed = pageOutput.slice().getBytes();
+
+            byte[] compressed = new byte[Snappy.maxCompressedLength(uncompressed.length)];
+            int compressedLength = Snappy.compress(uncompressed, 0, uncompressed.length, compressed, 0);
+
+            // don't make the receiver pay for decompression if the page did not shrink
+            if (compressedLength < uncompressed.length) {
+                sliceOutput.writeByte(SNAPPY_FRAME);
+                sliceOutput.writeInt(uncompressed.length);
+                sliceOutput.writeInt(compressedLength);
+                sliceOutput.writeBytes(compressed, 0, compressedLength);
+            }
+            else {
+                sliceOutput.writeByte(RAW_FRAME);
+                sliceOutput.writeInt(uncompressed.length);
+                sliceOutput.writeInt(uncompressed.length);
+                sliceOutput.writeBytes(uncompressed);
+            }
+        }
+    }
+
+    public static SnappyPagesReader readSnappyPages(SliceInput sliceInput)
+    {
+        Preconditions.checkNotNull(sliceInput, "sliceInput is null");
+        return new SnappyPagesReader(sliceInput);
+    }
+
     public Iterable<Page> readPages(final InputSupplier<SliceInput> sliceInputSupplier)
     {
         Preconditions.checkNotNull(sliceInputSupplier, "sliceInputSupplier is null");
@@ -128,11 +202,7 @@ public final class PagesSerde
             }
             else {
                 int channelCount = sliceInput.readInt();
-
                 blockEncodings = new BlockEncoding[channelCount];
-                for (int i = 0; i < blockEncodings.length; i++) {
-                    blockEncodings[i] = BlockEncodings.readBlockEncoding(sliceInput);
-                }
             }
         }
 
@@ -146,10 +216,73 @@ public final class PagesSerde
             int positions = sliceInput.readInt();
             Block[] blocks = new Block[blockEncodings.length];
             for (int i = 0; i < blocks.length; i++) {
+                if (sliceInput.readBoolean()) {
+                    blockEncodings[i] = BlockEncodings.readBlockEncoding(sliceInput);
+                }
                 blocks[i] = blockEncodings[i].readBlock(sliceInput);
             }
             Page page = new Page(positions, blocks);
             return page;
         }
     }
+
+    public static class SnappyPagesReader
+            extends AbstractIterator<Page>
+    {
+        private final SliceInput sliceInput;
+        private long compressedBytes;
+        private long uncompressedBytes;
+
+        private SnappyPagesReader(SliceInput sliceInput)
+        {
+            this.sliceInput = sliceInput;
+        }
+
+        /**
+         * Bytes read off the wire for the pages returned so far.
+         */
+        public long getCompressedBytes()
+        {
+            return compressedBytes;
+        }
+
+        /**
+         * Serialized size of the pages returned so far.
+         */
+        public long getUncompressedBytes()
+        {
+            return uncompressedBytes;
+        }
+
+        @Override
+        protected Page computeNext()
+        {
+            if (!sliceInput.isReadable()) {
+                return endOfData();
+            }
+
+            byte codec = sliceInput.readByte();
+            int uncompressedLength = sliceInput.readInt();
+            int frameLength = sliceInput.readInt();
+            byte[] frame = new byte[frameLength];
+            sliceInput.readBytes(frame);
+
+            byte[] uncompressed;
+            if (codec == SNAPPY_FRAME) {
+                uncompressed = new byte[uncompressedLength];
+                Snappy.uncompress(frame, 0, frameLength, uncompressed, 0);
+            }
+            else {
+                checkState(codec == RAW_FRAME, "Unknown page frame codec %s", codec);
+                uncompressed = frame;
+            }
+
+            compressedBytes += frameLength;
+            uncompressedBytes += uncompressedLength;
+
+            PagesReader pagesReader = new PagesReader(Slices.wrappedBuffer(uncompressed).getInput());
+            checkState(pagesReader.hasNext(), "Page frame is empty");
+            return pagesReader.next();
+        }
+    }
 }
@@ -16,6 +16,8 @@ package com.facebook.presto.split;
 import com.facebook.presto.spi.ColumnType;
 import com.facebook.presto.spi.RecordCursor;
 import com.facebook.presto.spi.RecordSet;
+import com.facebook.presto.spi.StringRecordCursor;
+import com.facebook.presto.spi.StringSink;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
@@ -57,7 +59,7 @@ public class MappedRecordSet
     }
 
     private static class MappedRecordCursor
-            implements RecordCursor
+            implements StringRecordCursor
     {
         private final RecordCursor delegate;
         private final List<Integer> userToSystemFieldIndex;
@@ -116,6 +118,18 @@ public class MappedRecordSet
             return delegate.getString(userFieldToSystemField(field));
         }
 
+        @Override
+        public void appendString(int field, StringSink sink)
+        {
+            if (delegate instanceof StringRecordCursor) {
+                ((StringRecordCursor) delegate).appendString(userFieldToSystemField(field), sink);
+            }
+            else {
+                byte[] value = delegate.getString(userFieldToSystemField(field));
+                sink.appendString(value, 0, value.length);
+            }
+        }
+
         @Override
         public boolean isNull(int field)
         {
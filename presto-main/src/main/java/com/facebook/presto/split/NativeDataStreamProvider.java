@@ -19,12 +19,22 @@ import com.facebook.presto.metadata.NativeColumnHandle;
 import com.facebook.presto.operator.AlignmentOperator;
 import com.facebook.presto.operator.Operator;
 import com.facebook.presto.operator.OperatorContext;
+import com.facebook.presto.serde.BlocksFileZone;
 import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.Domain;
 import com.facebook.presto.spi.Split;
+import com.facebook.presto.spi.TupleDomain;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
 import com.google.inject.Inject;
 
+import javax.annotation.Nullable;
+
 import java.util.List;
+import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -49,7 +59,41 @@ public class NativeDataStreamProvider
     @Override
     public Operator createNewDataStream(OperatorContext operatorContext, Split split, List<ColumnHandle> columns)
     {
-        return new AlignmentOperator(operatorContext, createChannels(split, columns));
+        return new AlignmentOperator(operatorContext, createChannels(split, columns), getSelectedRows((NativeSplit) split));
+    }
+
+    /**
+     * Returns the rows of the shard that may match the predicate of the split,
+     * based on the zones of the predicate columns, or null if all rows may match.
+     */
+    @Nullable
+    private RangeSet<Long> getSelectedRows(NativeSplit split)
+    {
+        TupleDomain predicate = split.getEffectivePredicate();
+        if (predicate.isNone()) {
+            return ImmutableRangeSet.of();
+        }
+
+        RangeSet<Long> selectedRows = null;
+        for (Map.Entry<ColumnHandle, Domain> entry : predicate.getDomains().entrySet()) {
+            if (!(entry.getKey() instanceof NativeColumnHandle)) {
+                continue;
+            }
+
+            long start = 0;
+            for (BlocksFileZone zone : storageManager.getZones(split.getShardUuid(), entry.getKey())) {
+                long end = start + zone.getRowCount();
+                if (!zone.mayMatch(entry.getValue())) {
+                    if (selectedRows == null) {
+                        selectedRows = TreeRangeSet.create();
+                        selectedRows.add(Range.atLeast(0L));
+                    }
+                    selectedRows.remove(Range.closedOpen(start, end));
+                }
+                start = end;
+            }
+        }
+        return selectedRows;
     }
 
     private List<BlockIterable> createChannels(Split split, List<ColumnHandle> columns)
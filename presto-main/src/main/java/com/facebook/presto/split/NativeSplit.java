@@ -15,6 +15,7 @@ package com.facebook.presto.split;
 
 import com.facebook.presto.spi.HostAddress;
 import com.facebook.presto.spi.Split;
+import com.facebook.presto.spi.TupleDomain;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
@@ -30,16 +31,26 @@ public class NativeSplit
 {
     private final UUID shardUuid;
     private final List<HostAddress> addresses;
+    private final TupleDomain effectivePredicate;
+
+    public NativeSplit(UUID shardUuid, List<HostAddress> addresses)
+    {
+        this(shardUuid, addresses, TupleDomain.all());
+    }
 
     @JsonCreator
     public NativeSplit(
             @JsonProperty("shardUuid") UUID shardUuid,
-            @JsonProperty("addresses") List<HostAddress> addresses)
+            @JsonProperty("addresses") List<HostAddress> addresses,
+            @JsonProperty("effectivePredicate") TupleDomain effectivePredicate)
     {
         this.shardUuid = checkNotNull(shardUuid, "shardUuid is null");
 
         checkNotNull(addresses, "addresses is null");
         this.addresses = ImmutableList.copyOf(addresses);
+
+        // splits from older coordinators do not have a predicate
+        this.effectivePredicate = Objects.firstNonNull(effectivePredicate, TupleDomain.all());
     }
 
     @Override
@@ -62,6 +73,12 @@ public class NativeSplit
         return shardUuid;
     }
 
+    @JsonProperty
+    public TupleDomain getEffectivePredicate()
+    {
+        return effectivePredicate;
+    }
+
     @Override
     public Object getInfo()
     {
@@ -110,7 +110,7 @@ public class NativeSplitManager
 
         log.debug("Partition key retrieval, native table %s (%d keys): %dms", tableHandle, allPartitionKeys.size(), partitionTimer.elapsed(TimeUnit.MILLISECONDS));
 
-        List<Partition> partitions = ImmutableList.copyOf(Collections2.transform(tablePartitions, new PartitionFunction(columnHandles, allPartitionKeys)));
+        List<Partition> partitions = ImmutableList.copyOf(Collections2.transform(tablePartitions, new PartitionFunction(columnHandles, allPartitionKeys, tupleDomain)));
 
         log.debug("Partition generation, native table %s (%d partitions): %dms", tableHandle, partitions.size(), partitionTimer.elapsed(TimeUnit.MILLISECONDS));
 
@@ -146,7 +146,7 @@ public class NativeSplitManager
             for (Map.Entry<UUID, Collection<String>> entry : shardNodes.build().asMap().entrySet()) {
                 List<HostAddress> addresses = getAddressesForNodes(nodesById, entry.getValue());
                 checkState(addresses.size() > 0, "no host for shard %s found", entry.getKey());
-                Split split = new NativeSplit(entry.getKey(), addresses);
+                Split split = new NativeSplit(entry.getKey(), addresses, nativePartition.getEffectivePredicate());
                 splits.add(split);
             }
         }
@@ -171,11 +171,18 @@ public class NativeSplitManager
     {
         private final long partitionId;
         private final TupleDomain tupleDomain;
+        private final TupleDomain effectivePredicate;
 
         public NativePartition(long partitionId, TupleDomain tupleDomain)
+        {
+            this(partitionId, tupleDomain, TupleDomain.all());
+        }
+
+        public NativePartition(long partitionId, TupleDomain tupleDomain, TupleDomain effectivePredicate)
         {
             this.partitionId = partitionId;
             this.tupleDomain = checkNotNull(tupleDomain, "tupleDomain is null");
+            this.effectivePredicate = checkNotNull(effectivePredicate, "effectivePredicate is null");
         }
 
         @Override
@@ -195,10 +202,18 @@ public class NativeSplitManager
             return tupleDomain;
         }
 
+        /**
+         * The predicate of the query, which is used by the workers to skip zones of the shards.
+         */
+        public TupleDomain getEffectivePredicate()
+        {
+            return effectivePredicate;
+        }
+
         @Override
         public int hashCode()
         {
-            return Objects.hashCode(partitionId, tupleDomain);
+            return Objects.hashCode(partitionId, tupleDomain, effectivePredicate);
         }
 
         @Override
@@ -212,7 +227,8 @@ public class NativeSplitManager
             }
             final NativePartition other = (NativePartition) obj;
             return this.partitionId == other.partitionId
-                    && Objects.equal(this.tupleDomain, other.tupleDomain);
+                    && Objects.equal(this.tupleDomain, other.tupleDomain)
+                    && Objects.equal(this.effectivePredicate, other.effectivePredicate);
         }
 
         @Override
@@ -221,6 +237,7 @@ public class NativeSplitManager
             return Objects.toStringHelper(this)
                     .add("partitionId", partitionId)
                     .add("tupleDomain", tupleDomain)
+                    .add("effectivePredicate", effectivePredicate)
                     .toString();
         }
     }
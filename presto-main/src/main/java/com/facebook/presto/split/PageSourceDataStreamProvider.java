@@ -0,0 +1,68 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.split;
+
+import com.facebook.presto.operator.Operator;
+import com.facebook.presto.operator.OperatorContext;
+import com.facebook.presto.operator.PageSourceOperator;
+import com.facebook.presto.operator.RecordProjectOperator;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.spi.ConnectorPageSourceProvider;
+import com.facebook.presto.spi.ConnectorRecordSetProvider;
+import com.facebook.presto.spi.Split;
+import com.google.common.base.Optional;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+public class PageSourceDataStreamProvider
+        implements ConnectorDataStreamProvider
+{
+    private final ConnectorPageSourceProvider pageSourceProvider;
+    private final Optional<ConnectorRecordSetProvider> recordSetProvider;
+
+    public PageSourceDataStreamProvider(ConnectorPageSourceProvider pageSourceProvider)
+    {
+        this(pageSourceProvider, Optional.<ConnectorRecordSetProvider>absent());
+    }
+
+    /**
+     * @param recordSetProvider reads the splits for which the page source provider does not return a page source
+     */
+    public PageSourceDataStreamProvider(ConnectorPageSourceProvider pageSourceProvider, Optional<ConnectorRecordSetProvider> recordSetProvider)
+    {
+        this.pageSourceProvider = checkNotNull(pageSourceProvider, "pageSourceProvider is null");
+        this.recordSetProvider = checkNotNull(recordSetProvider, "recordSetProvider is null");
+    }
+
+    @Override
+    public boolean canHandle(Split split)
+    {
+        return pageSourceProvider.canHandle(split);
+    }
+
+    @Override
+    public Operator createNewDataStream(OperatorContext operatorContext, Split split, List<ColumnHandle> columns)
+    {
+        ConnectorPageSource pageSource = pageSourceProvider.createPageSource(split, columns);
+        if (pageSource == null) {
+            checkState(recordSetProvider.isPresent(), "%s can not read split %s as pages and there is no record set provider", pageSourceProvider, split);
+            return new RecordProjectOperator(operatorContext, recordSetProvider.get().getRecordSet(split, columns));
+        }
+        return new PageSourceOperator(operatorContext, pageSource);
+    }
+}
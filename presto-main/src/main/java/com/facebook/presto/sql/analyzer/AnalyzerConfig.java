@@ -14,10 +14,12 @@
 package com.facebook.presto.sql.analyzer;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 
 public class AnalyzerConfig
 {
     private boolean experimentalSyntaxEnabled;
+    private boolean distributedJoinsEnabled;
 
     @Config("analyzer.experimental-syntax-enabled")
     public AnalyzerConfig setExperimentalSyntaxEnabled(boolean enabled)
@@ -30,4 +32,17 @@ public class AnalyzerConfig
     {
         return experimentalSyntaxEnabled;
     }
+
+    @Config("analyzer.distributed-joins-enabled")
+    @ConfigDescription("Hash partition both sides of a join instead of broadcasting the right side to every node")
+    public AnalyzerConfig setDistributedJoinsEnabled(boolean enabled)
+    {
+        distributedJoinsEnabled = enabled;
+        return this;
+    }
+
+    public boolean isDistributedJoinsEnabled()
+    {
+        return distributedJoinsEnabled;
+    }
 }
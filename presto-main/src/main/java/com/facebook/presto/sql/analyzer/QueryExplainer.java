@@ -35,16 +35,27 @@ public class QueryExplainer
     public final List<PlanOptimizer> planOptimizers;
     public final Metadata metadata;
     public final boolean experimentalSyntaxEnabled;
+    public final boolean distributedJoinsEnabled;
 
     public QueryExplainer(Session session,
             List<PlanOptimizer> planOptimizers,
             Metadata metadata,
             boolean experimentalSyntaxEnabled)
+    {
+        this(session, planOptimizers, metadata, experimentalSyntaxEnabled, false);
+    }
+
+    public QueryExplainer(Session session,
+            List<PlanOptimizer> planOptimizers,
+            Metadata metadata,
+            boolean experimentalSyntaxEnabled,
+            boolean distributedJoinsEnabled)
     {
         this.session = checkNotNull(session, "session is null");
         this.planOptimizers = checkNotNull(planOptimizers, "planOptimizers is null");
         this.metadata = checkNotNull(metadata, "metadata is null");
         this.experimentalSyntaxEnabled = experimentalSyntaxEnabled;
+        this.distributedJoinsEnabled = distributedJoinsEnabled;
     }
 
     public String getPlan(Statement statement, ExplainType.Type planType)
@@ -104,6 +115,6 @@ public class QueryExplainer
         LogicalPlanner logicalPlanner = new LogicalPlanner(session, planOptimizers, idAllocator, metadata);
         Plan plan = logicalPlanner.plan(analysis);
 
-        return new DistributedLogicalPlanner(metadata, idAllocator).createSubPlans(plan, false);
+        return new DistributedLogicalPlanner(metadata, idAllocator).createSubPlans(plan, false, distributedJoinsEnabled);
     }
 }
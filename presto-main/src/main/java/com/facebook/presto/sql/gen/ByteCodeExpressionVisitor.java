@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.sql.gen;
 
+import com.facebook.presto.block.RandomAccessBlock;
 import com.facebook.presto.byteCode.Block;
 import com.facebook.presto.byteCode.ByteCodeNode;
 import com.facebook.presto.byteCode.CompilerContext;
@@ -47,6 +48,7 @@ import com.facebook.presto.sql.tree.LikePredicate;
 import com.facebook.presto.sql.tree.LogicalBinaryExpression;
 import com.facebook.presto.sql.tree.LongLiteral;
 import com.facebook.presto.sql.tree.NegativeExpression;
+import com.facebook.presto.sql.tree.Node;
 import com.facebook.presto.sql.tree.NotExpression;
 import com.facebook.presto.sql.tree.NullIfExpression;
 import com.facebook.presto.sql.tree.NullLiteral;
@@ -92,6 +94,7 @@ import static com.facebook.presto.byteCode.instruction.JumpInstruction.jump;
 import static com.facebook.presto.sql.gen.SliceConstant.sliceConstant;
 import static com.facebook.presto.sql.gen.TypedByteCodeNode.typedByteCodeNode;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Predicates.not;
 import static com.google.common.collect.Iterables.transform;
@@ -104,14 +107,31 @@ public class ByteCodeExpressionVisitor
     private final BootstrapFunctionBinder bootstrapFunctionBinder;
     private final Map<Input, Type> inputTypes;
     private final ByteCodeNode getSessionByteCode;
-    private final boolean sourceIsCursor;
-
-    public ByteCodeExpressionVisitor(BootstrapFunctionBinder bootstrapFunctionBinder, Map<Input, Type> inputTypes, ByteCodeNode getSessionByteCode, boolean sourceIsCursor)
+    private final InputSource inputSource;
+    private final CommonSubexpressions commonSubexpressions;
+
+    public ByteCodeExpressionVisitor(
+            BootstrapFunctionBinder bootstrapFunctionBinder,
+            Map<Input, Type> inputTypes,
+            ByteCodeNode getSessionByteCode,
+            InputSource inputSource,
+            CommonSubexpressions commonSubexpressions)
     {
         this.bootstrapFunctionBinder = bootstrapFunctionBinder;
         this.inputTypes = inputTypes;
         this.getSessionByteCode = getSessionByteCode;
-        this.sourceIsCursor = sourceIsCursor;
+        this.inputSource = checkNotNull(inputSource, "inputSource is null");
+        this.commonSubexpressions = checkNotNull(commonSubexpressions, "commonSubexpressions is null");
+    }
+
+    @Override
+    public TypedByteCodeNode process(Node node, CompilerContext context)
+    {
+        TypedByteCodeNode value = super.process(node, context);
+        if (node instanceof Expression && commonSubexpressions.contains((Expression) node) && value.getType() != void.class) {
+            return commonSubexpressions.cache((Expression) node, value, context);
+        }
+        return value;
     }
 
     @Override
@@ -153,7 +173,11 @@ public class ByteCodeExpressionVisitor
         Type type = inputTypes.get(input);
         checkState(type != null, "No type for input %s", input);
 
-        if (sourceIsCursor) {
+        if (inputSource == InputSource.RANDOM_ACCESS_BLOCK) {
+            return visitBlockInputReference(channel, type, context);
+        }
+
+        if (inputSource == InputSource.RECORD_CURSOR) {
             Block isNullCheck = new Block(context)
                     .setDescription(format("cursor.get%s(%d)", type, channel))
                     .getVariable("cursor")
@@ -271,6 +295,51 @@ public class ByteCodeExpressionVisitor
         }
     }
 
+    private TypedByteCodeNode visitBlockInputReference(int channel, Type type, CompilerContext context)
+    {
+        String blockVariable = "block_" + channel;
+
+        Class<?> javaType;
+        String getter;
+        switch (type) {
+            case BOOLEAN:
+                javaType = boolean.class;
+                getter = "getBoolean";
+                break;
+            case BIGINT:
+                javaType = long.class;
+                getter = "getLong";
+                break;
+            case DOUBLE:
+                javaType = double.class;
+                getter = "getDouble";
+                break;
+            case VARCHAR:
+                javaType = Slice.class;
+                getter = "getSlice";
+                break;
+            default:
+                throw new UnsupportedOperationException("not yet implemented: " + type);
+        }
+
+        Block isNullCheck = new Block(context)
+                .setDescription(format("%s.%s(position)", blockVariable, getter))
+                .getVariable(blockVariable)
+                .getVariable("position")
+                .invokeInterface(RandomAccessBlock.class, "isNull", boolean.class, int.class);
+
+        Block isNull = new Block(context)
+                .putVariable("wasNull", true)
+                .pushJavaDefault(javaType);
+
+        Block isNotNull = new Block(context)
+                .getVariable(blockVariable)
+                .getVariable("position")
+                .invokeInterface(RandomAccessBlock.class, getter, javaType, int.class);
+
+        return typedByteCodeNode(new IfStatement(context, isNullCheck, isNull, isNotNull), javaType);
+    }
+
     @Override
     protected TypedByteCodeNode visitCurrentTime(CurrentTime node, CompilerContext context)
     {
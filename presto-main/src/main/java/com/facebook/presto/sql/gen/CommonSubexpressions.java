@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.facebook.presto.byteCode.Block;
+import com.facebook.presto.byteCode.ByteCodeNode;
+import com.facebook.presto.byteCode.ClassDefinition;
+import com.facebook.presto.byteCode.CompilerContext;
+import com.facebook.presto.byteCode.LocalVariableDefinition;
+import com.facebook.presto.byteCode.OpCodes;
+import com.facebook.presto.byteCode.ParameterizedType;
+import com.facebook.presto.byteCode.control.IfStatement;
+import com.facebook.presto.sql.tree.DefaultExpressionTraversalVisitor;
+import com.facebook.presto.sql.tree.Expression;
+import com.facebook.presto.sql.tree.InputReference;
+import com.facebook.presto.sql.tree.Literal;
+import com.facebook.presto.sql.tree.Node;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multiset;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.byteCode.Access.PRIVATE;
+import static com.facebook.presto.byteCode.Access.a;
+import static com.facebook.presto.byteCode.ParameterizedType.type;
+import static com.facebook.presto.sql.gen.TypedByteCodeNode.typedByteCodeNode;
+import static com.facebook.presto.sql.planner.DeterminismEvaluator.isDeterministic;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Deterministic subexpressions that occur more than once in the filter and
+ * projections of a generated class.  The value of each subexpression is cached
+ * in fields of the generated class, so it is computed at most once per row.
+ * Generated code must call {@link #nextRow} before evaluating a new row.
+ */
+public class CommonSubexpressions
+{
+    private static final String ROW_ID_FIELD = "rowId";
+
+    private final ClassDefinition classDefinition;
+    private final Map<Expression, Integer> subexpressions;
+    private final Map<Integer, Class<?>> valueTypes = new HashMap<>();
+    private int nextVariableId;
+
+    private CommonSubexpressions(ClassDefinition classDefinition, Map<Expression, Integer> subexpressions)
+    {
+        this.classDefinition = checkNotNull(classDefinition, "classDefinition is null");
+        this.subexpressions = ImmutableMap.copyOf(checkNotNull(subexpressions, "subexpressions is null"));
+
+        if (!subexpressions.isEmpty()) {
+            classDefinition.declareField(a(PRIVATE), ROW_ID_FIELD, long.class);
+        }
+    }
+
+    public static CommonSubexpressions extractCommonSubexpressions(ClassDefinition classDefinition, Expression filter, List<Expression> projections)
+    {
+        final Multiset<Expression> occurrences = HashMultiset.create();
+        DefaultExpressionTraversalVisitor<Void, Void> visitor = new DefaultExpressionTraversalVisitor<Void, Void>()
+        {
+            @Override
+            public Void process(Node node, Void context)
+            {
+                if (node instanceof Expression && !(node instanceof Literal) && !(node instanceof InputReference)) {
+                    occurrences.add((Expression) node);
+                }
+                return super.process(node, context);
+            }
+        };
+
+        visitor.process(filter, null);
+        for (Expression projection : projections) {
+            visitor.process(projection, null);
+        }
+
+        ImmutableMap.Builder<Expression, Integer> subexpressions = ImmutableMap.builder();
+        int id = 0;
+        for (Multiset.Entry<Expression> entry : occurrences.entrySet()) {
+            if (entry.getCount() > 1 && isDeterministic(entry.getElement())) {
+                subexpressions.put(entry.getElement(), id);
+                id++;
+            }
+        }
+        return new CommonSubexpressions(classDefinition, subexpressions.build());
+    }
+
+    public boolean contains(Expression expression)
+    {
+        return subexpressions.containsKey(expression);
+    }
+
+    /**
+     * Invalidates the cached values: rowId++
+     */
+    public ByteCodeNode nextRow(CompilerContext context)
+    {
+        Block block = new Block(context);
+        if (subexpressions.isEmpty()) {
+            return block;
+        }
+
+        ParameterizedType classType = classDefinition.getType();
+        return block.comment("rowId++;")
+                .pushThis()
+                .pushThis()
+                .getField(classType, ROW_ID_FIELD, type(long.class))
+                .push(1L)
+                .append(OpCodes.LADD)
+                .putField(classType, ROW_ID_FIELD, type(long.class));
+    }
+
+    /**
+     * Wraps the code for a subexpression so that it is only computed if there is no
+     * cached value for the current row.
+     */
+    public TypedByteCodeNode cache(Expression expression, TypedByteCodeNode value, CompilerContext context)
+    {
+        Integer id = subexpressions.get(expression);
+        checkArgument(id != null, "%s is not a common subexpression", expression);
+
+        Class<?> valueType = value.getType();
+        if (!valueTypes.containsKey(id)) {
+            valueTypes.put(id, valueType);
+            classDefinition.declareField(a(PRIVATE), valueField(id), valueType);
+            classDefinition.declareField(a(PRIVATE), isNullField(id), boolean.class);
+            classDefinition.declareField(a(PRIVATE), rowIdField(id), long.class);
+        }
+        checkState(valueTypes.get(id) == valueType, "Subexpression %s has type %s and %s", expression, valueTypes.get(id), valueType);
+
+        ParameterizedType classType = classDefinition.getType();
+        LocalVariableDefinition valueVariable = context.declareVariable(valueType, "cse_" + id + "_" + nextVariableId);
+        nextVariableId++;
+
+        Block isCached = new Block(context)
+                .setDescription("cached " + expression)
+                .pushThis()
+                .getField(classType, rowIdField(id), type(long.class))
+                .pushThis()
+                .getField(classType, ROW_ID_FIELD, type(long.class))
+                .invokeStatic(Operations.class, "equal", boolean.class, long.class, long.class);
+
+        Block loadCached = new Block(context)
+                .comment("wasNull = this.%s; this.%s", isNullField(id), valueField(id))
+                .pushThis()
+                .getField(classType, isNullField(id), type(boolean.class))
+                .putVariable("wasNull")
+                .pushThis()
+                .getField(classType, valueField(id), type(valueType));
+
+        Block computeAndCache = new Block(context)
+                .append(value.getNode())
+                .putVariable(valueVariable)
+                .comment("this.%s = value; this.%s = wasNull; this.%s = rowId", valueField(id), isNullField(id), rowIdField(id))
+                .pushThis()
+                .getVariable(valueVariable)
+                .putField(classType, valueField(id), type(valueType))
+                .pushThis()
+                .getVariable("wasNull")
+                .putField(classType, isNullField(id), type(boolean.class))
+                .pushThis()
+                .pushThis()
+                .getField(classType, ROW_ID_FIELD, type(long.class))
+                .putField(classType, rowIdField(id), type(long.class))
+                .getVariable(valueVariable);
+
+        return typedByteCodeNode(new IfStatement(context, isCached, loadCached, computeAndCache), valueType);
+    }
+
+    private static String valueField(int id)
+    {
+        return "cse_" + id + "_value";
+    }
+
+    private static String isNullField(int id)
+    {
+        return "cse_" + id + "_isNull";
+    }
+
+    private static String rowIdField(int id)
+    {
+        return "cse_" + id + "_rowId";
+    }
+}
@@ -15,6 +15,7 @@ package com.facebook.presto.sql.gen;
 
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.RandomAccessBlock;
 import com.facebook.presto.byteCode.Block;
 import com.facebook.presto.byteCode.ClassDefinition;
 import com.facebook.presto.byteCode.ClassInfoLoader;
@@ -48,8 +49,10 @@ import com.facebook.presto.split.DataStreamProvider;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.sql.analyzer.Type;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.facebook.presto.sql.tree.DefaultExpressionTraversalVisitor;
 import com.facebook.presto.sql.tree.Expression;
 import com.facebook.presto.sql.tree.Input;
+import com.facebook.presto.sql.tree.InputReference;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleReadable;
 import com.google.common.annotations.VisibleForTesting;
@@ -83,10 +86,12 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -96,14 +101,19 @@ import static com.facebook.presto.byteCode.Access.PUBLIC;
 import static com.facebook.presto.byteCode.Access.STATIC;
 import static com.facebook.presto.byteCode.Access.a;
 import static com.facebook.presto.byteCode.NamedParameterDefinition.arg;
+import static com.facebook.presto.byteCode.OpCodes.IALOAD;
+import static com.facebook.presto.byteCode.OpCodes.IASTORE;
 import static com.facebook.presto.byteCode.OpCodes.NOP;
 import static com.facebook.presto.byteCode.ParameterizedType.type;
 import static com.facebook.presto.byteCode.ParameterizedType.typeFromPathName;
 import static com.facebook.presto.byteCode.control.ForLoop.forLoopBuilder;
+import static com.facebook.presto.sql.gen.CommonSubexpressions.extractCommonSubexpressions;
+import static com.facebook.presto.sql.planner.DeterminismEvaluator.isDeterministic;
 import static com.google.common.base.Objects.toStringHelper;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.collect.Iterables.transform;
 import static java.util.Collections.nCopies;
 
@@ -217,7 +227,18 @@ public class ExpressionCompiler
 
     public OperatorFactory compileFilterAndProjectOperator(int operatorId, Expression filter, List<Expression> projections, Map<Input, Type> inputTypes, List<Type> outputTypes)
     {
-        return operatorFactories.getUnchecked(new OperatorCacheKey(filter, projections, inputTypes, outputTypes, null)).create(operatorId);
+        return compileFilterAndProjectOperator(operatorId, filter, projections, inputTypes, outputTypes, false);
+    }
+
+    public OperatorFactory compileFilterAndProjectOperator(
+            int operatorId,
+            Expression filter,
+            List<Expression> projections,
+            Map<Input, Type> inputTypes,
+            List<Type> outputTypes,
+            boolean columnar)
+    {
+        return operatorFactories.getUnchecked(new OperatorCacheKey(filter, projections, inputTypes, outputTypes, null)).create(operatorId, columnar);
     }
 
     private DynamicClassLoader createClassLoader()
@@ -239,7 +260,7 @@ public class ExpressionCompiler
 
         Constructor<? extends Operator> constructor;
         try {
-            constructor = typedOperatorClass.getOperatorClass().getConstructor(OperatorContext.class, Iterable.class);
+            constructor = typedOperatorClass.getOperatorClass().getConstructor(OperatorContext.class, Iterable.class, boolean.class);
         }
         catch (NoSuchMethodException e) {
             throw Throwables.propagate(e);
@@ -268,13 +289,15 @@ public class ExpressionCompiler
         classDefinition.declareConstructor(new CompilerContext(bootstrapMethod),
                 a(PUBLIC),
                 arg("operatorContext", OperatorContext.class),
-                arg("tupleInfos", type(Iterable.class, TupleInfo.class)))
+                arg("tupleInfos", type(Iterable.class, TupleInfo.class)),
+                arg("columnar", boolean.class))
                 .getBody()
-                .comment("super(operatorContext, tupleInfos);")
+                .comment("super(operatorContext, tupleInfos, columnar);")
                 .pushThis()
                 .getVariable("operatorContext")
                 .getVariable("tupleInfos")
-                .invokeConstructor(AbstractFilterAndProjectOperator.class, OperatorContext.class, Iterable.class)
+                .getVariable("columnar")
+                .invokeConstructor(AbstractFilterAndProjectOperator.class, OperatorContext.class, Iterable.class, boolean.class)
                 .comment("this.session = operatorContext.getSession();")
                 .pushThis()
                 .getVariable("operatorContext")
@@ -282,13 +305,19 @@ public class ExpressionCompiler
                 .putField(sessionField)
                 .ret();
 
-        generateFilterAndProjectRowOriented(classDefinition, projections, inputTypes);
+        CommonSubexpressions commonSubexpressions = extractCommonSubexpressions(classDefinition, filter, projections);
+
+        generateFilterAndProjectRowOriented(classDefinition, projections, inputTypes, commonSubexpressions);
+        generateFilterAndProjectColumnar(classDefinition, projections, inputTypes, commonSubexpressions);
+        generateIsDeterministicMethod(classDefinition, filter, projections);
+        generateGetSingleInputChannelMethod(classDefinition, filter, projections);
 
         //
         // filter method
         //
-        generateFilterMethod(classDefinition, filter, inputTypes, true);
-        generateFilterMethod(classDefinition, filter, inputTypes, false);
+        generateFilterMethod(classDefinition, filter, inputTypes, InputSource.RECORD_CURSOR, commonSubexpressions);
+        generateFilterMethod(classDefinition, filter, inputTypes, InputSource.TUPLE_READABLE, commonSubexpressions);
+        generateFilterMethod(classDefinition, filter, inputTypes, InputSource.RANDOM_ACCESS_BLOCK, commonSubexpressions);
 
         //
         // project methods
@@ -303,8 +332,9 @@ public class ExpressionCompiler
             // verify the compiled projection has the correct type
             Expression projection = projections.get(i);
 
-            Class<?> type = generateProjectMethod(classDefinition, "project_" + projectionIndex, projection, inputTypes, true);
-            generateProjectMethod(classDefinition, "project_" + projectionIndex, projection, inputTypes, false);
+            Class<?> type = generateProjectMethod(classDefinition, "project_" + projectionIndex, projection, inputTypes, InputSource.RECORD_CURSOR, commonSubexpressions);
+            generateProjectMethod(classDefinition, "project_" + projectionIndex, projection, inputTypes, InputSource.TUPLE_READABLE, commonSubexpressions);
+            generateProjectMethod(classDefinition, "project_" + projectionIndex, projection, inputTypes, InputSource.RANDOM_ACCESS_BLOCK, commonSubexpressions);
             if (type == boolean.class) {
                 checkState(outputType == Type.BOOLEAN);
             }
@@ -351,7 +381,21 @@ public class ExpressionCompiler
             Map<Input, Type> inputTypes,
             List<Type> outputTypes)
     {
-        return sourceOperatorFactories.getUnchecked(new OperatorCacheKey(filter, projections, inputTypes, outputTypes, sourceId)).create(operatorId, dataStreamProvider, columns);
+        return compileScanFilterAndProjectOperator(operatorId, sourceId, dataStreamProvider, columns, filter, projections, inputTypes, outputTypes, false);
+    }
+
+    public SourceOperatorFactory compileScanFilterAndProjectOperator(
+            int operatorId,
+            PlanNodeId sourceId,
+            DataStreamProvider dataStreamProvider,
+            List<ColumnHandle> columns,
+            Expression filter,
+            List<Expression> projections,
+            Map<Input, Type> inputTypes,
+            List<Type> outputTypes,
+            boolean columnar)
+    {
+        return sourceOperatorFactories.getUnchecked(new OperatorCacheKey(filter, projections, inputTypes, outputTypes, sourceId)).create(operatorId, dataStreamProvider, columns, columnar);
     }
 
     @VisibleForTesting
@@ -374,7 +418,8 @@ public class ExpressionCompiler
                     PlanNodeId.class,
                     DataStreamProvider.class,
                     Iterable.class,
-                    Iterable.class);
+                    Iterable.class,
+                    boolean.class);
         }
         catch (NoSuchMethodException e) {
             throw Throwables.propagate(e);
@@ -410,16 +455,18 @@ public class ExpressionCompiler
                 arg("sourceId", PlanNodeId.class),
                 arg("dataStreamProvider", DataStreamProvider.class),
                 arg("columns", type(Iterable.class, ColumnHandle.class)),
-                arg("tupleInfos", type(Iterable.class, TupleInfo.class)))
+                arg("tupleInfos", type(Iterable.class, TupleInfo.class)),
+                arg("columnar", boolean.class))
                 .getBody()
-                .comment("super(operatorContext, sourceId, dataStreamProvider, columns, tupleInfos);")
+                .comment("super(operatorContext, sourceId, dataStreamProvider, columns, tupleInfos, columnar);")
                 .pushThis()
                 .getVariable("operatorContext")
                 .getVariable("sourceId")
                 .getVariable("dataStreamProvider")
                 .getVariable("columns")
                 .getVariable("tupleInfos")
-                .invokeConstructor(AbstractScanFilterAndProjectOperator.class, OperatorContext.class, PlanNodeId.class, DataStreamProvider.class, Iterable.class, Iterable.class)
+                .getVariable("columnar")
+                .invokeConstructor(AbstractScanFilterAndProjectOperator.class, OperatorContext.class, PlanNodeId.class, DataStreamProvider.class, Iterable.class, Iterable.class, boolean.class)
                 .comment("this.session = operatorContext.getSession();")
                 .pushThis()
                 .getVariable("operatorContext")
@@ -427,14 +474,20 @@ public class ExpressionCompiler
                 .putField(sessionField)
                 .ret();
 
-        generateFilterAndProjectRowOriented(classDefinition, projections, inputTypes);
-        generateFilterAndProjectCursorMethod(classDefinition, projections);
+        CommonSubexpressions commonSubexpressions = extractCommonSubexpressions(classDefinition, filter, projections);
+
+        generateFilterAndProjectRowOriented(classDefinition, projections, inputTypes, commonSubexpressions);
+        generateFilterAndProjectColumnar(classDefinition, projections, inputTypes, commonSubexpressions);
+        generateIsDeterministicMethod(classDefinition, filter, projections);
+        generateGetSingleInputChannelMethod(classDefinition, filter, projections);
+        generateFilterAndProjectCursorMethod(classDefinition, projections, commonSubexpressions);
 
         //
         // filter method
         //
-        generateFilterMethod(classDefinition, filter, inputTypes, true);
-        generateFilterMethod(classDefinition, filter, inputTypes, false);
+        generateFilterMethod(classDefinition, filter, inputTypes, InputSource.RECORD_CURSOR, commonSubexpressions);
+        generateFilterMethod(classDefinition, filter, inputTypes, InputSource.TUPLE_READABLE, commonSubexpressions);
+        generateFilterMethod(classDefinition, filter, inputTypes, InputSource.RANDOM_ACCESS_BLOCK, commonSubexpressions);
 
         //
         // project methods
@@ -449,8 +502,9 @@ public class ExpressionCompiler
             // verify the compiled projection has the correct type
             Expression projection = projections.get(i);
 
-            Class<?> type = generateProjectMethod(classDefinition, "project_" + projectionIndex, projection, inputTypes, true);
-            generateProjectMethod(classDefinition, "project_" + projectionIndex, projection, inputTypes, false);
+            Class<?> type = generateProjectMethod(classDefinition, "project_" + projectionIndex, projection, inputTypes, InputSource.RECORD_CURSOR, commonSubexpressions);
+            generateProjectMethod(classDefinition, "project_" + projectionIndex, projection, inputTypes, InputSource.TUPLE_READABLE, commonSubexpressions);
+            generateProjectMethod(classDefinition, "project_" + projectionIndex, projection, inputTypes, InputSource.RANDOM_ACCESS_BLOCK, commonSubexpressions);
             if (type == boolean.class) {
                 checkState(outputType == Type.BOOLEAN);
             }
@@ -489,7 +543,8 @@ public class ExpressionCompiler
 
     private void generateFilterAndProjectRowOriented(ClassDefinition classDefinition,
             List<Expression> projections,
-            Map<Input, Type> inputTypes)
+            Map<Input, Type> inputTypes,
+            CommonSubexpressions commonSubexpressions)
     {
         MethodDefinition filterAndProjectMethod = classDefinition.declareMethod(new CompilerContext(bootstrapMethod),
                 a(PUBLIC),
@@ -547,6 +602,7 @@ public class ExpressionCompiler
                     .invokeInterface(BlockCursor.class, "advanceNextPosition", boolean.class)
                     .invokeStatic(Preconditions.class, "checkState", void.class, boolean.class);
         }
+        forLoopBody.append(commonSubexpressions.nextRow(compilerContext));
 
         IfStatementBuilder ifStatement = new IfStatementBuilder(compilerContext)
                 .comment("if (filter(cursors...)");
@@ -608,7 +664,191 @@ public class ExpressionCompiler
         filterAndProjectMethod.getBody().ret();
     }
 
-    private void generateFilterAndProjectCursorMethod(ClassDefinition classDefinition, List<Expression> projections)
+    private void generateFilterAndProjectColumnar(ClassDefinition classDefinition,
+            List<Expression> projections,
+            Map<Input, Type> inputTypes,
+            CommonSubexpressions commonSubexpressions)
+    {
+        MethodDefinition filterAndProjectMethod = classDefinition.declareMethod(new CompilerContext(bootstrapMethod),
+                a(PUBLIC),
+                "filterAndProjectColumnar",
+                type(int.class),
+                arg("page", com.facebook.presto.operator.Page.class),
+                arg("selectedPositions", int[].class),
+                arg("pageBuilder", PageBuilder.class));
+
+        CompilerContext compilerContext = filterAndProjectMethod.getCompilerContext();
+
+        LocalVariableDefinition positionVariable = compilerContext.declareVariable(int.class, "position");
+        LocalVariableDefinition selectedCountVariable = compilerContext.declareVariable(int.class, "selectedCount");
+        LocalVariableDefinition indexVariable = compilerContext.declareVariable(int.class, "index");
+
+        LocalVariableDefinition rowsVariable = compilerContext.declareVariable(int.class, "rows");
+        filterAndProjectMethod.getBody()
+                .comment("int rows = page.getPositionCount();")
+                .getVariable("page")
+                .invokeVirtual(com.facebook.presto.operator.Page.class, "getPositionCount", int.class)
+                .putVariable(rowsVariable)
+                .comment("int selectedCount = 0;")
+                .putVariable(selectedCountVariable, 0);
+
+        int channels = inputTypes.isEmpty() ? 0 : Ordering.natural().max(transform(inputTypes.keySet(), Input.channelGetter())) + 1;
+        for (int i = 0; i < channels; i++) {
+            LocalVariableDefinition blockVariable = compilerContext.declareVariable(RandomAccessBlock.class, "block_" + i);
+            filterAndProjectMethod.getBody()
+                    .comment("RandomAccessBlock %s = page.getBlock(%s).toRandomAccessBlock();", blockVariable.getName(), i)
+                    .getVariable("page")
+                    .push(i)
+                    .invokeVirtual(com.facebook.presto.operator.Page.class, "getBlock", com.facebook.presto.block.Block.class, int.class)
+                    .invokeInterface(com.facebook.presto.block.Block.class, "toRandomAccessBlock", RandomAccessBlock.class)
+                    .putVariable(blockVariable);
+        }
+
+        List<ParameterizedType> filterParameters = ImmutableList.<ParameterizedType>builder()
+                .add(type(int.class))
+                .addAll(nCopies(channels, type(RandomAccessBlock.class)))
+                .build();
+
+        //
+        // filter loop: evaluate the filter over every position and record the selected positions
+        //
+        IfStatementBuilder ifStatement = new IfStatementBuilder(compilerContext)
+                .comment("if (filter(position, blocks...)");
+        Block condition = new Block(compilerContext);
+        condition.append(commonSubexpressions.nextRow(compilerContext));
+        condition.pushThis();
+        condition.getVariable(positionVariable);
+        for (int channel = 0; channel < channels; channel++) {
+            condition.getVariable("block_" + channel);
+        }
+        condition.invokeVirtual(classDefinition.getType(), "filter", type(boolean.class), filterParameters);
+        ifStatement.condition(condition);
+
+        ifStatement.ifTrue(new Block(compilerContext)
+                .comment("selectedPositions[selectedCount++] = position;")
+                .getVariable("selectedPositions")
+                .getVariable(selectedCountVariable)
+                .getVariable(positionVariable)
+                .append(IASTORE)
+                .incrementVariable(selectedCountVariable, (byte) 1));
+
+        ForLoopBuilder filterLoop = forLoopBuilder(compilerContext)
+                .comment("for (position = 0; position < rows; position++)")
+                .initialize(new Block(compilerContext).putVariable(positionVariable, 0))
+                .condition(new Block(compilerContext)
+                        .getVariable(positionVariable)
+                        .getVariable(rowsVariable)
+                        .invokeStatic(Operations.class, "lessThan", boolean.class, int.class, int.class))
+                .update(new Block(compilerContext).incrementVariable(positionVariable, (byte) 1))
+                .body(ifStatement.build());
+
+        filterAndProjectMethod.getBody().append(filterLoop.build());
+
+        //
+        // projection loops: evaluate each projection over only the selected positions
+        //
+        if (projections.isEmpty()) {
+            filterAndProjectMethod.getBody().append(forLoopBuilder(compilerContext)
+                    .comment("for (index = 0; index < selectedCount; index++)")
+                    .initialize(new Block(compilerContext).putVariable(indexVariable, 0))
+                    .condition(new Block(compilerContext)
+                            .getVariable(indexVariable)
+                            .getVariable(selectedCountVariable)
+                            .invokeStatic(Operations.class, "lessThan", boolean.class, int.class, int.class))
+                    .update(new Block(compilerContext).incrementVariable(indexVariable, (byte) 1))
+                    .body(new Block(compilerContext)
+                            .comment("pageBuilder.declarePosition()")
+                            .getVariable("pageBuilder")
+                            .invokeVirtual(PageBuilder.class, "declarePosition", void.class))
+                    .build());
+        }
+        else {
+            LocalVariableDefinition outputVariable = compilerContext.declareVariable(BlockBuilder.class, "output");
+            List<ParameterizedType> projectParameters = ImmutableList.<ParameterizedType>builder()
+                    .addAll(filterParameters)
+                    .add(type(BlockBuilder.class))
+                    .build();
+
+            for (int projectionIndex = 0; projectionIndex < projections.size(); projectionIndex++) {
+                filterAndProjectMethod.getBody()
+                        .comment("output = pageBuilder.getBlockBuilder(%s)", projectionIndex)
+                        .getVariable("pageBuilder")
+                        .push(projectionIndex)
+                        .invokeVirtual(PageBuilder.class, "getBlockBuilder", BlockBuilder.class, int.class)
+                        .putVariable(outputVariable);
+
+                Block loopBody = new Block(compilerContext)
+                        .append(commonSubexpressions.nextRow(compilerContext))
+                        .comment("project_%s(selectedPositions[index], blocks..., output)", projectionIndex)
+                        .pushThis()
+                        .getVariable("selectedPositions")
+                        .getVariable(indexVariable)
+                        .append(IALOAD);
+                for (int channel = 0; channel < channels; channel++) {
+                    loopBody.getVariable("block_" + channel);
+                }
+                loopBody.getVariable(outputVariable)
+                        .invokeVirtual(classDefinition.getType(), "project_" + projectionIndex, type(void.class), projectParameters);
+
+                filterAndProjectMethod.getBody().append(forLoopBuilder(compilerContext)
+                        .comment("for (index = 0; index < selectedCount; index++)")
+                        .initialize(new Block(compilerContext).putVariable(indexVariable, 0))
+                        .condition(new Block(compilerContext)
+                                .getVariable(indexVariable)
+                                .getVariable(selectedCountVariable)
+                                .invokeStatic(Operations.class, "lessThan", boolean.class, int.class, int.class))
+                        .update(new Block(compilerContext).incrementVariable(indexVariable, (byte) 1))
+                        .body(loopBody)
+                        .build());
+            }
+        }
+
+        filterAndProjectMethod.getBody()
+                .comment("return selectedCount;")
+                .getVariable(selectedCountVariable)
+                .retInt();
+    }
+
+    private void generateGetSingleInputChannelMethod(ClassDefinition classDefinition, Expression filter, List<Expression> projections)
+    {
+        final Set<Integer> channels = new HashSet<>();
+        DefaultExpressionTraversalVisitor<Void, Void> visitor = new DefaultExpressionTraversalVisitor<Void, Void>()
+        {
+            @Override
+            public Void visitInputReference(InputReference node, Void context)
+            {
+                channels.add(node.getInput().getChannel());
+                return null;
+            }
+        };
+        visitor.process(filter, null);
+        for (Expression projection : projections) {
+            visitor.process(projection, null);
+        }
+        int channel = (channels.size() == 1) ? getOnlyElement(channels) : -1;
+
+        classDefinition.declareMethod(new CompilerContext(bootstrapMethod), a(PUBLIC), "getSingleInputChannel", type(int.class))
+                .getBody()
+                .comment("return %s;", channel)
+                .push(channel)
+                .retInt();
+    }
+
+    private void generateIsDeterministicMethod(ClassDefinition classDefinition, Expression filter, List<Expression> projections)
+    {
+        boolean deterministic = isDeterministic(filter);
+        for (Expression projection : projections) {
+            deterministic &= isDeterministic(projection);
+        }
+
+        classDefinition.declareMethod(new CompilerContext(bootstrapMethod), a(PUBLIC), "isDeterministic", type(boolean.class))
+                .getBody()
+                .comment("return %s;", deterministic)
+                .push(deterministic)
+                .retBoolean();
+    }
+
+    private void generateFilterAndProjectCursorMethod(ClassDefinition classDefinition, List<Expression> projections, CommonSubexpressions commonSubexpressions)
     {
         MethodDefinition filterAndProjectMethod = classDefinition.declareMethod(new CompilerContext(bootstrapMethod),
                 a(PUBLIC),
@@ -656,6 +896,8 @@ public class ExpressionCompiler
                         .invokeInterface(RecordCursor.class, "advanceNextPosition", boolean.class)
                         .ifFalseGoto(done));
 
+        forLoopBody.append(commonSubexpressions.nextRow(compilerContext));
+
         // if (filter(cursor))
         IfStatementBuilder ifStatement = new IfStatementBuilder(compilerContext);
         ifStatement.condition(new Block(compilerContext)
@@ -701,16 +943,24 @@ public class ExpressionCompiler
     private void generateFilterMethod(ClassDefinition classDefinition,
             Expression filter,
             Map<Input, Type> inputTypes,
-            boolean sourceIsCursor)
+            InputSource inputSource,
+            CommonSubexpressions commonSubexpressions)
     {
         MethodDefinition filterMethod;
-        if (sourceIsCursor) {
+        if (inputSource == InputSource.RECORD_CURSOR) {
             filterMethod = classDefinition.declareMethod(new CompilerContext(bootstrapMethod),
                     a(PUBLIC),
                     "filter",
                     type(boolean.class),
                     arg("cursor", RecordCursor.class));
         }
+        else if (inputSource == InputSource.RANDOM_ACCESS_BLOCK) {
+            filterMethod = classDefinition.declareMethod(new CompilerContext(bootstrapMethod),
+                    a(PUBLIC),
+                    "filter",
+                    type(boolean.class),
+                    toBlockParameters(inputTypes));
+        }
         else {
             filterMethod = classDefinition.declareMethod(new CompilerContext(bootstrapMethod),
                     a(PUBLIC),
@@ -723,7 +973,7 @@ public class ExpressionCompiler
 
         filterMethod.getCompilerContext().declareVariable(type(boolean.class), "wasNull");
         Block getSessionByteCode = new Block(filterMethod.getCompilerContext()).pushThis().getField(classDefinition.getType(), "session", type(Session.class));
-        TypedByteCodeNode body = new ByteCodeExpressionVisitor(bootstrapFunctionBinder, inputTypes, getSessionByteCode, sourceIsCursor).process(filter, filterMethod.getCompilerContext());
+        TypedByteCodeNode body = new ByteCodeExpressionVisitor(bootstrapFunctionBinder, inputTypes, getSessionByteCode, inputSource, commonSubexpressions).process(filter, filterMethod.getCompilerContext());
 
         if (body.getType() == void.class) {
             filterMethod
@@ -751,10 +1001,11 @@ public class ExpressionCompiler
             String methodName,
             Expression projection,
             Map<Input, Type> inputTypes,
-            boolean sourceIsCursor)
+            InputSource inputSource,
+            CommonSubexpressions commonSubexpressions)
     {
         MethodDefinition projectionMethod;
-        if (sourceIsCursor) {
+        if (inputSource == InputSource.RECORD_CURSOR) {
             projectionMethod = classDefinition.declareMethod(new CompilerContext(bootstrapMethod),
                     a(PUBLIC),
                     methodName,
@@ -762,6 +1013,17 @@ public class ExpressionCompiler
                     arg("cursor", RecordCursor.class),
                     arg("output", BlockBuilder.class));
         }
+        else if (inputSource == InputSource.RANDOM_ACCESS_BLOCK) {
+            ImmutableList.Builder<NamedParameterDefinition> parameters = ImmutableList.builder();
+            parameters.addAll(toBlockParameters(inputTypes));
+            parameters.add(arg("output", BlockBuilder.class));
+
+            projectionMethod = classDefinition.declareMethod(new CompilerContext(bootstrapMethod),
+                    a(PUBLIC),
+                    methodName,
+                    type(void.class),
+                    parameters.build());
+        }
         else {
             ImmutableList.Builder<NamedParameterDefinition> parameters = ImmutableList.builder();
             parameters.addAll(toTupleReaderParameters(inputTypes));
@@ -780,7 +1042,7 @@ public class ExpressionCompiler
         CompilerContext context = projectionMethod.getCompilerContext();
         context.declareVariable(type(boolean.class), "wasNull");
         Block getSessionByteCode = new Block(context).pushThis().getField(classDefinition.getType(), "session", type(Session.class));
-        TypedByteCodeNode body = new ByteCodeExpressionVisitor(bootstrapFunctionBinder, inputTypes, getSessionByteCode, sourceIsCursor).process(projection, context);
+        TypedByteCodeNode body = new ByteCodeExpressionVisitor(bootstrapFunctionBinder, inputTypes, getSessionByteCode, inputSource, commonSubexpressions).process(projection, context);
 
         if (body.getType() != void.class) {
             projectionMethod
@@ -874,6 +1136,17 @@ public class ExpressionCompiler
         return parameters.build();
     }
 
+    private List<NamedParameterDefinition> toBlockParameters(Map<Input, Type> inputTypes)
+    {
+        ImmutableList.Builder<NamedParameterDefinition> parameters = ImmutableList.builder();
+        parameters.add(arg("position", int.class));
+        int channels = inputTypes.isEmpty() ? 0 : Ordering.natural().max(transform(inputTypes.keySet(), Input.channelGetter())) + 1;
+        for (int i = 0; i < channels; i++) {
+            parameters.add(arg("block_" + i, RandomAccessBlock.class));
+        }
+        return parameters.build();
+    }
+
     private <T> Class<? extends T> defineClass(ClassDefinition classDefinition, Class<T> superType, DynamicClassLoader classLoader)
     {
         Class<?> clazz = defineClasses(ImmutableList.of(classDefinition), classLoader).values().iterator().next();
@@ -1019,7 +1292,12 @@ public class ExpressionCompiler
 
         public OperatorFactory create(int operatorId)
         {
-            return new FilterAndProjectOperatorFactory(constructor, operatorId, tupleInfos);
+            return create(operatorId, false);
+        }
+
+        public OperatorFactory create(int operatorId, boolean columnar)
+        {
+            return new FilterAndProjectOperatorFactory(constructor, operatorId, tupleInfos, columnar);
         }
     }
 
@@ -1029,16 +1307,19 @@ public class ExpressionCompiler
         private final Constructor<? extends Operator> constructor;
         private final int operatorId;
         private final List<TupleInfo> tupleInfos;
+        private final boolean columnar;
         private boolean closed;
 
         public FilterAndProjectOperatorFactory(
                 Constructor<? extends Operator> constructor,
                 int operatorId,
-                List<TupleInfo> tupleInfos)
+                List<TupleInfo> tupleInfos,
+                boolean columnar)
         {
             this.constructor = checkNotNull(constructor, "constructor is null");
             this.operatorId = operatorId;
             this.tupleInfos = ImmutableList.copyOf(checkNotNull(tupleInfos, "tupleInfos is null"));
+            this.columnar = columnar;
         }
 
         @Override
@@ -1053,7 +1334,7 @@ public class ExpressionCompiler
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, constructor.getDeclaringClass().getSimpleName());
             try {
-                return constructor.newInstance(operatorContext, tupleInfos);
+                return constructor.newInstance(operatorContext, tupleInfos, columnar);
             }
             catch (InvocationTargetException e) {
                 throw Throwables.propagate(e.getCause());
@@ -1088,7 +1369,12 @@ public class ExpressionCompiler
 
         public SourceOperatorFactory create(int operatorId, DataStreamProvider dataStreamProvider, List<ColumnHandle> columns)
         {
-            return new ScanFilterAndProjectOperatorFactory(constructor, operatorId, sourceId, dataStreamProvider, columns, tupleInfos);
+            return create(operatorId, dataStreamProvider, columns, false);
+        }
+
+        public SourceOperatorFactory create(int operatorId, DataStreamProvider dataStreamProvider, List<ColumnHandle> columns, boolean columnar)
+        {
+            return new ScanFilterAndProjectOperatorFactory(constructor, operatorId, sourceId, dataStreamProvider, columns, tupleInfos, columnar);
         }
     }
 
@@ -1101,6 +1387,7 @@ public class ExpressionCompiler
         private final DataStreamProvider dataStreamProvider;
         private final List<ColumnHandle> columns;
         private final List<TupleInfo> tupleInfos;
+        private final boolean columnar;
         private boolean closed;
 
         public ScanFilterAndProjectOperatorFactory(
@@ -1109,7 +1396,8 @@ public class ExpressionCompiler
                 PlanNodeId sourceId,
                 DataStreamProvider dataStreamProvider,
                 List<ColumnHandle> columns,
-                List<TupleInfo> tupleInfos)
+                List<TupleInfo> tupleInfos,
+                boolean columnar)
         {
             this.constructor = checkNotNull(constructor, "constructor is null");
             this.operatorId = operatorId;
@@ -1117,6 +1405,7 @@ public class ExpressionCompiler
             this.dataStreamProvider = checkNotNull(dataStreamProvider, "dataStreamProvider is null");
             this.columns = ImmutableList.copyOf(checkNotNull(columns, "columns is null"));
             this.tupleInfos = ImmutableList.copyOf(checkNotNull(tupleInfos, "tupleInfos is null"));
+            this.columnar = columnar;
         }
 
         @Override
@@ -1137,7 +1426,7 @@ public class ExpressionCompiler
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, constructor.getDeclaringClass().getSimpleName());
             try {
-                return constructor.newInstance(operatorContext, sourceId, dataStreamProvider, columns, tupleInfos);
+                return constructor.newInstance(operatorContext, sourceId, dataStreamProvider, columns, tupleInfos, columnar);
             }
             catch (InvocationTargetException e) {
                 throw Throwables.propagate(e.getCause());
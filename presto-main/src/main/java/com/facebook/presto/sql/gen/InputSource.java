@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+/**
+ * Where a compiled expression reads its input channels from.
+ */
+public enum InputSource
+{
+    /**
+     * A RecordCursor named {@code cursor}.
+     */
+    RECORD_CURSOR,
+    /**
+     * One TupleReadable per channel, named {@code channel_<n>}.
+     */
+    TUPLE_READABLE,
+    /**
+     * One RandomAccessBlock per channel, named {@code block_<n>}, read at the int {@code position}.
+     */
+    RANDOM_ACCESS_BLOCK
+}
@@ -17,6 +17,7 @@ import com.facebook.presto.metadata.FunctionInfo;
 import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.metadata.Signature;
 import com.facebook.presto.spi.OutputTableHandle;
+import com.facebook.presto.sql.analyzer.Type;
 import com.facebook.presto.sql.planner.PlanFragment.OutputPartitioning;
 import com.facebook.presto.sql.planner.PlanFragment.PlanDistribution;
 import com.facebook.presto.sql.planner.plan.AggregationNode;
@@ -79,7 +80,16 @@ public class DistributedLogicalPlanner
 
     public SubPlan createSubPlans(Plan plan, boolean createSingleNodePlan)
     {
-        Visitor visitor = new Visitor(plan.getSymbolAllocator(), createSingleNodePlan);
+        return createSubPlans(plan, createSingleNodePlan, false);
+    }
+
+    /**
+     * @param distributedJoins hash partition both sides of equi-joins on the join criteria instead of
+     * broadcasting the build side to every task of the probe side
+     */
+    public SubPlan createSubPlans(Plan plan, boolean createSingleNodePlan, boolean distributedJoins)
+    {
+        Visitor visitor = new Visitor(plan.getSymbolAllocator(), createSingleNodePlan, distributedJoins);
         SubPlanBuilder builder = plan.getRoot().accept(visitor, null);
 
         SubPlan subplan = builder.build();
@@ -95,11 +105,13 @@ public class DistributedLogicalPlanner
 
         private final SymbolAllocator allocator;
         private final boolean createSingleNodePlan;
+        private final boolean distributedJoins;
 
-        public Visitor(SymbolAllocator allocator, boolean createSingleNodePlan)
+        public Visitor(SymbolAllocator allocator, boolean createSingleNodePlan, boolean distributedJoins)
         {
             this.allocator = allocator;
             this.createSingleNodePlan = createSingleNodePlan;
+            this.distributedJoins = distributedJoins;
         }
 
         @Override
@@ -302,16 +314,18 @@ public class DistributedLogicalPlanner
         {
             SubPlanBuilder current = node.getSource().accept(this, context);
 
+            current.setRoot(new SortNode(node.getId(), current.getRoot(), node.getOrderBy(), node.getOrderings()));
+
             if (current.isDistributed()) {
+                // each task sorts its own rows, and a merging exchange combines the sorted streams
                 current.setRoot(new SinkNode(idAllocator.getNextId(), current.getRoot(), current.getRoot().getOutputSymbols()));
 
                 // create a new non-partitioned fragment
-                current = createSingleNodePlan(new ExchangeNode(idAllocator.getNextId(), current.getId(), current.getRoot().getOutputSymbols()))
+                ExchangeNode merge = new ExchangeNode(idAllocator.getNextId(), current.getId(), current.getRoot().getOutputSymbols(), node.getOrderBy(), node.getOrderings());
+                current = createSingleNodePlan(merge)
                         .addChild(current.build());
             }
 
-            current.setRoot(new SortNode(node.getId(), current.getRoot(), node.getOrderBy(), node.getOrderings()));
-
             return current;
         }
 
@@ -423,6 +437,10 @@ public class DistributedLogicalPlanner
             SubPlanBuilder right = node.getRight().accept(this, context);
 
             if (left.isDistributed() || right.isDistributed()) {
+                if (distributedJoins && canPartitionJoin(node)) {
+                    return addPartitionedJoin(node, left, right);
+                }
+
                 switch (node.getType()) {
                     case INNER:
                     case LEFT:
@@ -456,6 +474,49 @@ public class DistributedLogicalPlanner
             }
         }
 
+        private boolean canPartitionJoin(JoinNode node)
+        {
+            // cross joins have nothing to partition on
+            if (node.getCriteria().isEmpty()) {
+                return false;
+            }
+
+            // rows only hash to the same partition if the values have the same encoding on both sides
+            Map<Symbol, Type> types = allocator.getTypes();
+            for (JoinNode.EquiJoinClause clause : node.getCriteria()) {
+                if (types.get(clause.getLeft()) != types.get(clause.getRight())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private SubPlanBuilder addPartitionedJoin(JoinNode node, SubPlanBuilder left, SubPlanBuilder right)
+        {
+            ImmutableList.Builder<Symbol> leftPartitionBy = ImmutableList.builder();
+            ImmutableList.Builder<Symbol> rightPartitionBy = ImmutableList.builder();
+            for (JoinNode.EquiJoinClause clause : node.getCriteria()) {
+                leftPartitionBy.add(clause.getLeft());
+                rightPartitionBy.add(clause.getRight());
+            }
+
+            // repartition both sides on the join criteria, so each node only builds the hash for its own partition
+            left.setRoot(new SinkNode(idAllocator.getNextId(), left.getRoot(), left.getRoot().getOutputSymbols()))
+                    .setHashOutputPartitioning(leftPartitionBy.build());
+            right.setRoot(new SinkNode(idAllocator.getNextId(), right.getRoot(), right.getRoot().getOutputSymbols()))
+                    .setHashOutputPartitioning(rightPartitionBy.build());
+
+            JoinNode join = new JoinNode(node.getId(),
+                    node.getType(),
+                    new ExchangeNode(idAllocator.getNextId(), left.getId(), left.getRoot().getOutputSymbols()),
+                    new ExchangeNode(idAllocator.getNextId(), right.getId(), right.getRoot().getOutputSymbols()),
+                    node.getCriteria());
+
+            return createFixedDistributionPlan(join)
+                    .addChild(left.build())
+                    .addChild(right.build());
+        }
+
         @Override
         public SubPlanBuilder visitSemiJoin(SemiJoinNode node, Void context)
         {
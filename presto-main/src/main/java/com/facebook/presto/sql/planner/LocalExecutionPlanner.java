@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.sql.planner;
 
+import com.facebook.presto.execution.TaskManagerConfig;
 import com.facebook.presto.metadata.LocalStorageManager;
 import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.metadata.Signature;
@@ -35,6 +36,7 @@ import com.facebook.presto.operator.InMemoryExchangeSourceOperator.InMemoryExcha
 import com.facebook.presto.operator.LimitOperator.LimitOperatorFactory;
 import com.facebook.presto.operator.MarkDistinctOperator.MarkDistinctOperatorFactory;
 import com.facebook.presto.operator.MaterializeSampleOperator;
+import com.facebook.presto.operator.MergingExchangeOperator.MergingExchangeOperatorFactory;
 import com.facebook.presto.operator.OperatorFactory;
 import com.facebook.presto.operator.OrderByOperator.OrderByOperatorFactory;
 import com.facebook.presto.operator.OutputFactory;
@@ -144,6 +146,8 @@ public class LocalExecutionPlanner
     private final RecordSinkManager recordSinkManager;
     private final Supplier<ExchangeClient> exchangeClientSupplier;
     private final ExpressionCompiler compiler;
+    private final int hashBuildConcurrency;
+    private final boolean columnarProcessingEnabled;
 
     @Inject
     public LocalExecutionPlanner(NodeInfo nodeInfo,
@@ -152,7 +156,8 @@ public class LocalExecutionPlanner
             LocalStorageManager storageManager,
             RecordSinkManager recordSinkManager,
             Supplier<ExchangeClient> exchangeClientSupplier,
-            ExpressionCompiler compiler)
+            ExpressionCompiler compiler,
+            TaskManagerConfig taskManagerConfig)
     {
         this.nodeInfo = checkNotNull(nodeInfo, "nodeInfo is null");
         this.dataStreamProvider = dataStreamProvider;
@@ -161,6 +166,8 @@ public class LocalExecutionPlanner
         this.storageManager = checkNotNull(storageManager, "storageManager is null");
         this.recordSinkManager = checkNotNull(recordSinkManager, "recordSinkManager is null");
         this.compiler = checkNotNull(compiler, "compiler is null");
+        this.hashBuildConcurrency = checkNotNull(taskManagerConfig, "taskManagerConfig is null").getHashBuildConcurrency();
+        this.columnarProcessingEnabled = taskManagerConfig.isColumnarProcessingEnabled();
     }
 
     public LocalExecutionPlan plan(Session session,
@@ -269,8 +276,6 @@ public class LocalExecutionPlanner
         {
             List<TupleInfo> tupleInfos = getSourceOperatorTupleInfos(node, context.getTypes());
 
-            OperatorFactory operatorFactory = new ExchangeOperatorFactory(context.getNextOperatorId(), node.getId(), exchangeClientSupplier, tupleInfos);
-
             ImmutableMap.Builder<Symbol, Input> outputMappings = ImmutableMap.builder();
             int channel = 0;
             for (Symbol symbol : node.getOutputSymbols()) {
@@ -278,6 +283,26 @@ public class LocalExecutionPlanner
                 channel++;
             }
 
+            OperatorFactory operatorFactory;
+            if (node.getOrderBy().isEmpty()) {
+                operatorFactory = new ExchangeOperatorFactory(context.getNextOperatorId(), node.getId(), exchangeClientSupplier, tupleInfos);
+            }
+            else {
+                ImmutableList.Builder<Integer> sortChannels = ImmutableList.builder();
+                ImmutableList.Builder<SortOrder> sortOrders = ImmutableList.builder();
+                for (Symbol symbol : node.getOrderBy()) {
+                    sortChannels.add(node.getOutputSymbols().indexOf(symbol));
+                    sortOrders.add(node.getOrderings().get(symbol));
+                }
+                operatorFactory = new MergingExchangeOperatorFactory(
+                        context.getNextOperatorId(),
+                        node.getId(),
+                        exchangeClientSupplier,
+                        tupleInfos,
+                        sortChannels.build(),
+                        sortOrders.build());
+            }
+
             return new PhysicalOperation(operatorFactory, outputMappings.build());
         }
 
@@ -408,6 +433,11 @@ public class LocalExecutionPlanner
         {
             PhysicalOperation source = node.getSource().accept(this, context);
 
+            // a table scan runs one driver per split, but a sort must see all rows of the task
+            if (isTableScan(source)) {
+                source = gatherInMemory(source, context);
+            }
+
             List<Symbol> orderBySymbols = node.getOrderBy();
 
             int[] orderByChannels = Ints.toArray(getChannelsForSymbols(orderBySymbols, source.getLayout()));
@@ -640,7 +670,8 @@ public class LocalExecutionPlanner
                             rewrittenFilter,
                             rewrittenProjections,
                             sourceTypes,
-                            outputTypes);
+                            outputTypes,
+                            columnarProcessingEnabled);
 
                     return new PhysicalOperation(operatorFactory, outputMappings);
                 }
@@ -650,7 +681,8 @@ public class LocalExecutionPlanner
                             rewrittenFilter,
                             rewrittenProjections,
                             sourceTypes,
-                            outputTypes);
+                            outputTypes,
+                            columnarProcessingEnabled);
                     return new PhysicalOperation(operatorFactory, outputMappings, source);
                 }
             }
@@ -816,20 +848,26 @@ public class LocalExecutionPlanner
             PhysicalOperation buildSource = buildNode.accept(this, buildContext);
             List<Integer> buildChannels = ImmutableList.copyOf(getChannelsForSymbols(buildSymbols, buildSource.getLayout()));
 
-            HashBuilderOperatorFactory hashBuilderOperatorFactory = new HashBuilderOperatorFactory(
-                    buildContext.getNextOperatorId(),
-                    buildSource.getTupleInfos(),
-                    buildChannels,
-                    100_000);
-            HashSupplier hashSupplier = hashBuilderOperatorFactory.getHashSupplier();
-            DriverFactory buildDriverFactory = new DriverFactory(
-                    buildContext.isInputDriver(),
-                    false,
-                    ImmutableList.<OperatorFactory>builder()
-                            .addAll(buildSource.getOperatorFactories())
-                            .add(hashBuilderOperatorFactory)
-                            .build());
-            context.addDriverFactory(buildDriverFactory);
+            HashSupplier hashSupplier;
+            if (hashBuildConcurrency == 1) {
+                HashBuilderOperatorFactory hashBuilderOperatorFactory = new HashBuilderOperatorFactory(
+                        buildContext.getNextOperatorId(),
+                        buildSource.getTupleInfos(),
+                        buildChannels,
+                        100_000);
+                hashSupplier = hashBuilderOperatorFactory.getHashSupplier();
+                DriverFactory buildDriverFactory = new DriverFactory(
+                        buildContext.isInputDriver(),
+                        false,
+                        ImmutableList.<OperatorFactory>builder()
+                                .addAll(buildSource.getOperatorFactories())
+                                .add(hashBuilderOperatorFactory)
+                                .build());
+                context.addDriverFactory(buildDriverFactory);
+            }
+            else {
+                hashSupplier = createParallelHashBuild(buildSource, buildChannels, buildContext, context);
+            }
 
             ImmutableMap.Builder<Symbol, Input> outputMappings = ImmutableMap.builder();
             outputMappings.putAll(probeSource.getLayout());
@@ -846,6 +884,42 @@ public class LocalExecutionPlanner
             return new PhysicalOperation(operator, outputMappings.build(), probeSource);
         }
 
+        /**
+         * Fans the build side out through an in-memory exchange to several hash builder
+         * drivers, each of which indexes one hash partition of the build side.
+         */
+        private HashSupplier createParallelHashBuild(
+                PhysicalOperation buildSource,
+                List<Integer> buildChannels,
+                LocalExecutionPlanContext buildContext,
+                LocalExecutionPlanContext context)
+        {
+            InMemoryExchange exchange = new InMemoryExchange(buildSource.getTupleInfos());
+
+            // create exchange sink
+            List<OperatorFactory> factories = ImmutableList.<OperatorFactory>builder()
+                    .addAll(buildSource.getOperatorFactories())
+                    .add(exchange.createSinkFactory(buildContext.getNextOperatorId()))
+                    .build();
+            context.addDriverFactory(new DriverFactory(buildContext.isInputDriver(), false, factories));
+            exchange.noMoreSinkFactories();
+
+            // create the builders
+            LocalExecutionPlanContext builderContext = context.createSubContext();
+            HashBuilderOperatorFactory hashBuilderOperatorFactory = new HashBuilderOperatorFactory(
+                    builderContext.getNextOperatorId(),
+                    buildSource.getTupleInfos(),
+                    buildChannels,
+                    100_000,
+                    hashBuildConcurrency);
+            List<OperatorFactory> builderFactories = ImmutableList.of(
+                    new InMemoryExchangeSourceOperatorFactory(builderContext.getNextOperatorId(), exchange),
+                    hashBuilderOperatorFactory);
+            context.addDriverFactory(new DriverFactory(false, false, builderFactories, hashBuildConcurrency));
+
+            return hashBuilderOperatorFactory.getHashSupplier();
+        }
+
         private HashJoinOperatorFactory createJoinOperator(
                 JoinNode.Type type,
                 HashSupplier hashSupplier,
@@ -952,6 +1026,34 @@ public class LocalExecutionPlanner
             return new PhysicalOperation(operatorFactory, layout, exchange);
         }
 
+        private boolean isTableScan(PhysicalOperation operation)
+        {
+            OperatorFactory first = operation.getOperatorFactories().get(0);
+            return first instanceof SourceOperatorFactory && !(first instanceof ExchangeOperatorFactory) && !(first instanceof MergingExchangeOperatorFactory);
+        }
+
+        /**
+         * Moves the source operators into a separate pipeline that feeds the current
+         * pipeline through an in-memory exchange, keeping the layout of the source.
+         */
+        private PhysicalOperation gatherInMemory(PhysicalOperation source, LocalExecutionPlanContext context)
+        {
+            InMemoryExchange exchange = new InMemoryExchange(source.getTupleInfos());
+
+            List<OperatorFactory> factories = ImmutableList.<OperatorFactory>builder()
+                    .addAll(source.getOperatorFactories())
+                    .add(exchange.createSinkFactory(context.getNextOperatorId()))
+                    .build();
+            context.addDriverFactory(new DriverFactory(context.isInputDriver(), false, factories));
+            exchange.noMoreSinkFactories();
+
+            // the current driver is not an input: the source is the input for the plan
+            context.setInputDriver(false);
+
+            OperatorFactory factory = new InMemoryExchangeSourceOperatorFactory(context.getNextOperatorId(), exchange);
+            return new PhysicalOperation(factory, source.getLayout());
+        }
+
         private PhysicalOperation createInMemoryExchange(TableWriterNode node, LocalExecutionPlanContext context)
         {
             LocalExecutionPlanContext subContext = context.createSubContext();
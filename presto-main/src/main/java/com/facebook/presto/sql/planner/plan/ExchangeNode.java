@@ -13,16 +13,19 @@
  */
 package com.facebook.presto.sql.planner.plan;
 
+import com.facebook.presto.operator.SortOrder;
 import com.facebook.presto.sql.planner.Symbol;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import javax.annotation.concurrent.Immutable;
 
 import java.util.List;
+import java.util.Map;
 
 @Immutable
 public class ExchangeNode
@@ -31,17 +34,34 @@ public class ExchangeNode
     private final List<PlanFragmentId> sourceFragmentIds;
     private final List<Symbol> outputs;
 
+    // when not empty, every source produces rows in this order and the exchange merges them
+    private final List<Symbol> orderBy;
+    private final Map<Symbol, SortOrder> orderings;
+
     @JsonCreator
     public ExchangeNode(@JsonProperty("id") PlanNodeId id,
             @JsonProperty("sourceFragmentIds") List<PlanFragmentId> sourceFragmentIds,
-            @JsonProperty("outputs") List<Symbol> outputs)
+            @JsonProperty("outputs") List<Symbol> outputs,
+            @JsonProperty("orderBy") List<Symbol> orderBy,
+            @JsonProperty("orderings") Map<Symbol, SortOrder> orderings)
     {
         super(id);
 
         Preconditions.checkNotNull(outputs, "outputs is null");
+        Preconditions.checkNotNull(orderBy, "orderBy is null");
+        Preconditions.checkNotNull(orderings, "orderings is null");
+        Preconditions.checkArgument(orderings.size() == orderBy.size(), "orderBy and orderings sizes don't match");
+        Preconditions.checkArgument(outputs.containsAll(orderBy), "orderBy symbols must be outputs of the exchange");
 
         this.sourceFragmentIds = sourceFragmentIds;
         this.outputs = ImmutableList.copyOf(outputs);
+        this.orderBy = ImmutableList.copyOf(orderBy);
+        this.orderings = ImmutableMap.copyOf(orderings);
+    }
+
+    public ExchangeNode(PlanNodeId id, List<PlanFragmentId> sourceFragmentIds, List<Symbol> outputs)
+    {
+        this(id, sourceFragmentIds, outputs, ImmutableList.<Symbol>of(), ImmutableMap.<Symbol, SortOrder>of());
     }
 
     public ExchangeNode(PlanNodeId id, PlanFragmentId sourceFragmentId, List<Symbol> outputs)
@@ -49,6 +69,14 @@ public class ExchangeNode
         this(id, ImmutableList.of(sourceFragmentId), outputs);
     }
 
+    /**
+     * Creates an exchange that merges sources which are each sorted on the specified symbols.
+     */
+    public ExchangeNode(PlanNodeId id, PlanFragmentId sourceFragmentId, List<Symbol> outputs, List<Symbol> orderBy, Map<Symbol, SortOrder> orderings)
+    {
+        this(id, ImmutableList.of(sourceFragmentId), outputs, orderBy, orderings);
+    }
+
     @Override
     public List<PlanNode> getSources()
     {
@@ -67,6 +95,18 @@ public class ExchangeNode
         return sourceFragmentIds;
     }
 
+    @JsonProperty("orderBy")
+    public List<Symbol> getOrderBy()
+    {
+        return orderBy;
+    }
+
+    @JsonProperty("orderings")
+    public Map<Symbol, SortOrder> getOrderings()
+    {
+        return orderings;
+    }
+
     @Override
     public <C, R> R accept(PlanVisitor<C, R> visitor, C context)
     {
@@ -56,7 +56,7 @@ public class FieldOrderedTupleComparator
             boolean rightIsNull = right.isNull();
 
             if (leftIsNull && rightIsNull) {
-                return 0;
+                continue;
             }
 
             if (leftIsNull) {
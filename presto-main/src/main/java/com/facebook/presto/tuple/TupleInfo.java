@@ -442,6 +442,17 @@ public class TupleInfo
             return this;
         }
 
+        public Builder append(byte[] value, int offset, int length)
+        {
+            checkState(TupleInfo.this.type == VARIABLE_BINARY, "Cannot append binary to type %s", TupleInfo.this.type);
+
+            sliceOutput.writeByte(0);
+            sliceOutput.writeInt(length + SIZE_OF_BYTE + SIZE_OF_INT);
+            sliceOutput.writeBytes(value, offset, length);
+
+            return this;
+        }
+
         public Builder appendNull()
         {
             sliceOutput.writeByte(1);
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto;
+
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.operator.Page;
+import com.facebook.presto.operator.RowPageBuilder;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.operator.RowPageBuilder.rowPageBuilder;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
+import static org.testng.Assert.assertEquals;
+
+public class TestHashPagePartitionFunction
+{
+    private static final int PARTITION_COUNT = 4;
+
+    @Test
+    public void testPartition()
+    {
+        RowPageBuilder pageBuilder = rowPageBuilder(SINGLE_VARBINARY, SINGLE_LONG);
+        for (int i = 0; i < 1000; i++) {
+            pageBuilder.row(String.valueOf(i % 10), (long) (i % 20));
+        }
+        List<Page> pages = ImmutableList.of(pageBuilder.build());
+
+        // every row goes to exactly one partition, and equal keys go to the same partition
+        Map<String, Integer> keyPartitions = new HashMap<>();
+        int totalPositions = 0;
+        for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+            HashPagePartitionFunction partitionFunction = new HashPagePartitionFunction(partition, PARTITION_COUNT, ImmutableList.of(0, 1));
+            for (Page page : partitionFunction.partition(pages)) {
+                BlockCursor stringCursor = page.getBlock(0).cursor();
+                BlockCursor longCursor = page.getBlock(1).cursor();
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    stringCursor.advanceNextPosition();
+                    longCursor.advanceNextPosition();
+                    String key = stringCursor.getSlice().toStringUtf8() + "," + longCursor.getLong();
+                    Integer keyPartition = keyPartitions.get(key);
+                    if (keyPartition == null) {
+                        keyPartitions.put(key, partition);
+                    }
+                    else {
+                        assertEquals(keyPartition.intValue(), partition);
+                    }
+                }
+                totalPositions += page.getPositionCount();
+            }
+        }
+        assertEquals(totalPositions, 1000);
+        assertEquals(keyPartitions.size(), 20);
+    }
+
+    @Test
+    public void testEmptyPages()
+    {
+        HashPagePartitionFunction partitionFunction = new HashPagePartitionFunction(0, PARTITION_COUNT, ImmutableList.of(0));
+        assertEquals(partitionFunction.partition(ImmutableList.<Page>of()), ImmutableList.of());
+    }
+}
@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.benchmark;
 
+import com.facebook.presto.execution.TaskManagerConfig;
 import com.facebook.presto.operator.Driver;
 import com.facebook.presto.operator.NullOutputOperator.NullOutputFactory;
 import com.facebook.presto.operator.TaskContext;
@@ -26,6 +27,7 @@ public abstract class AbstractSqlBenchmark
 {
     @Language("SQL")
     private final String query;
+    private final TaskManagerConfig taskManagerConfig;
 
     protected AbstractSqlBenchmark(
             LocalQueryRunner localQueryRunner,
@@ -33,14 +35,26 @@ public abstract class AbstractSqlBenchmark
             int warmupIterations,
             int measuredIterations,
             @Language("SQL") String query)
+    {
+        this(localQueryRunner, benchmarkName, warmupIterations, measuredIterations, query, new TaskManagerConfig());
+    }
+
+    protected AbstractSqlBenchmark(
+            LocalQueryRunner localQueryRunner,
+            String benchmarkName,
+            int warmupIterations,
+            int measuredIterations,
+            @Language("SQL") String query,
+            TaskManagerConfig taskManagerConfig)
     {
         super(localQueryRunner, benchmarkName, warmupIterations, measuredIterations);
         this.query = query;
+        this.taskManagerConfig = taskManagerConfig;
     }
 
     @Override
     protected List<Driver> createDrivers(TaskContext taskContext)
     {
-        return localQueryRunner.createDrivers(query, new NullOutputFactory(), taskContext);
+        return localQueryRunner.createDrivers(query, new NullOutputFactory(), taskContext, taskManagerConfig);
     }
 }
@@ -46,6 +46,8 @@ public class BenchmarkSuite
                 new CountAggregationBenchmark(localQueryRunner),
                 new DoubleSumAggregationBenchmark(localQueryRunner),
                 new HashAggregationBenchmark(localQueryRunner),
+                new BigintHashAggregationBenchmark(localQueryRunner),
+                new MultiChannelHashAggregationBenchmark(localQueryRunner),
                 new PredicateFilterBenchmark(localQueryRunner),
                 new RawStreamingBenchmark(localQueryRunner),
                 new Top100Benchmark(localQueryRunner),
@@ -55,6 +57,9 @@ public class BenchmarkSuite
                 new HashBuildAndJoinBenchmark(localQueryRunner),
                 new HandTpchQuery1(localQueryRunner),
                 new HandTpchQuery6(localQueryRunner),
+                new SplitDispatchBenchmark(1),
+                new SplitDispatchBenchmark(8),
+                new SplitDispatchBenchmark(48),
 
                 // sql benchmarks
                 new GroupBySumWithArithmeticSqlBenchmark(localQueryRunner),
@@ -63,6 +68,7 @@ public class BenchmarkSuite
                 new CountWithFilterSqlBenchmark(localQueryRunner),
                 new GroupByAggregationSqlBenchmark(localQueryRunner),
                 new PredicateFilterSqlBenchmark(localQueryRunner),
+                new PredicateFilterSqlBenchmark(localQueryRunner, true),
                 new RawStreamingSqlBenchmark(localQueryRunner),
                 new Top100SqlBenchmark(localQueryRunner),
                 new SqlHashJoinBenchmark(localQueryRunner),
@@ -76,8 +82,10 @@ public class BenchmarkSuite
                 new SqlInBenchmark(localQueryRunner),
                 new SqlSemiJoinInPredicateBenchmark(localQueryRunner),
                 new SqlRegexpLikeBenchmark(localQueryRunner),
+                new SqlCommonSubexpressionBenchmark(localQueryRunner),
                 new SqlApproximatePercentileBenchmark(localQueryRunner),
                 new SqlBetweenBenchmark(localQueryRunner),
+                new SqlBetweenBenchmark(localQueryRunner, true),
 
                 // Sampled sql benchmarks
                 new RenamingBenchmark("sampled_", new GroupBySumWithArithmeticSqlBenchmark(localSampledQueryRunner)),
@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.benchmark;
 
+import com.facebook.presto.execution.TaskManagerConfig;
 import com.facebook.presto.util.LocalQueryRunner;
 
 import java.util.concurrent.ExecutorService;
@@ -26,12 +27,24 @@ public class PredicateFilterSqlBenchmark
 {
     public PredicateFilterSqlBenchmark(LocalQueryRunner localQueryRunner)
     {
-        super(localQueryRunner, "sql_predicate_filter", 5, 50, "select totalprice from orders where totalprice > 50000");
+        this(localQueryRunner, false);
+    }
+
+    public PredicateFilterSqlBenchmark(LocalQueryRunner localQueryRunner, boolean columnar)
+    {
+        super(localQueryRunner,
+                columnar ? "sql_predicate_filter_columnar" : "sql_predicate_filter",
+                5,
+                50,
+                "select totalprice from orders where totalprice > 50000",
+                new TaskManagerConfig().setColumnarProcessingEnabled(columnar));
     }
 
     public static void main(String[] args)
     {
         ExecutorService executor = newCachedThreadPool(daemonThreadsNamed("test"));
-        new PredicateFilterSqlBenchmark(createLocalQueryRunner(executor)).runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
+        LocalQueryRunner localQueryRunner = createLocalQueryRunner(executor);
+        new PredicateFilterSqlBenchmark(localQueryRunner).runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
+        new PredicateFilterSqlBenchmark(localQueryRunner, true).runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
     }
 }
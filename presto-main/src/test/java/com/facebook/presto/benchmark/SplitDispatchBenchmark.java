@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.benchmark;
+
+import com.facebook.presto.execution.SplitRunner;
+import com.facebook.presto.execution.TaskExecutor;
+import com.facebook.presto.execution.TaskExecutor.TaskHandle;
+import com.facebook.presto.execution.TaskId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.Duration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Measures how fast the task executor dispatches very short split quanta,
+ * which is dominated by the cost of queueing and taking splits.
+ */
+public class SplitDispatchBenchmark
+        extends AbstractBenchmark
+{
+    private static final int SPLITS_PER_THREAD = 4;
+    private static final int QUANTA_PER_SPLIT = 2_000;
+
+    private final int runnerThreads;
+
+    public SplitDispatchBenchmark(int runnerThreads)
+    {
+        super("split_dispatch_" + runnerThreads + "_threads", 5, 20);
+        checkArgument(runnerThreads > 0, "runnerThreads must be at least 1");
+        this.runnerThreads = runnerThreads;
+    }
+
+    @Override
+    protected Map<String, Long> runOnce()
+    {
+        TaskExecutor taskExecutor = new TaskExecutor(runnerThreads);
+        taskExecutor.start();
+        try {
+            TaskHandle taskHandle = taskExecutor.addTask(new TaskId("query", "stage", "task"));
+
+            AtomicLong quanta = new AtomicLong();
+            ImmutableList.Builder<NoOpSplitRunner> splits = ImmutableList.builder();
+            for (int i = 0; i < runnerThreads * SPLITS_PER_THREAD; i++) {
+                splits.add(new NoOpSplitRunner(QUANTA_PER_SPLIT, quanta));
+            }
+
+            long start = System.nanoTime();
+            List<ListenableFuture<?>> finishedFutures = taskExecutor.enqueueSplits(taskHandle, true, splits.build());
+            Futures.allAsList(finishedFutures).get();
+            long elapsedNanos = System.nanoTime() - start;
+
+            taskExecutor.removeTask(taskHandle);
+
+            // the work is done on the runner threads, so report wall time as the cost of the benchmark
+            return ImmutableMap.<String, Long>builder()
+                    .put("elapsed_millis", NANOSECONDS.toMillis(elapsedNanos))
+                    .put("input_rows_per_second", quanta.get() * SECONDS.toNanos(1) / elapsedNanos)
+                    .put("output_rows_per_second", quanta.get() * SECONDS.toNanos(1) / elapsedNanos)
+                    .put("wall_nanos", elapsedNanos)
+                    .put("cpu_nanos", elapsedNanos)
+                    .put("input_rows", quanta.get())
+                    .put("input_bytes", 0L)
+                    .put("output_rows", quanta.get())
+                    .put("output_bytes", 0L)
+                    .build();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            taskExecutor.stop();
+        }
+    }
+
+    private static class NoOpSplitRunner
+            implements SplitRunner
+    {
+        private final int requiredQuanta;
+        private final AtomicLong totalQuanta;
+        private int completedQuanta;
+
+        private NoOpSplitRunner(int requiredQuanta, AtomicLong totalQuanta)
+        {
+            this.requiredQuanta = requiredQuanta;
+            this.totalQuanta = totalQuanta;
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+        {
+            completedQuanta++;
+            totalQuanta.incrementAndGet();
+            return Futures.immediateFuture(null);
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return completedQuanta >= requiredQuanta;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        for (int runnerThreads : new int[] {1, 4, 16, 48}) {
+            new SplitDispatchBenchmark(runnerThreads).runBenchmark(
+                    new SimpleLineBenchmarkResultWriter(System.out)
+            );
+        }
+    }
+}
@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.benchmark;
 
+import com.facebook.presto.execution.TaskManagerConfig;
 import com.facebook.presto.util.LocalQueryRunner;
 
 import java.util.concurrent.ExecutorService;
@@ -26,12 +27,24 @@ public class SqlBetweenBenchmark
 {
     public SqlBetweenBenchmark(LocalQueryRunner localQueryRunner)
     {
-        super(localQueryRunner, "sql_between_long", 10, 30, "SELECT COUNT(*) FROM orders WHERE custkey BETWEEN 10000 AND 20000 OR custkey BETWEEN 30000 AND 35000 OR custkey BETWEEN 50000 AND 51000");
+        this(localQueryRunner, false);
+    }
+
+    public SqlBetweenBenchmark(LocalQueryRunner localQueryRunner, boolean columnar)
+    {
+        super(localQueryRunner,
+                columnar ? "sql_between_long_columnar" : "sql_between_long",
+                10,
+                30,
+                "SELECT COUNT(*) FROM orders WHERE custkey BETWEEN 10000 AND 20000 OR custkey BETWEEN 30000 AND 35000 OR custkey BETWEEN 50000 AND 51000",
+                new TaskManagerConfig().setColumnarProcessingEnabled(columnar));
     }
 
     public static void main(String[] args)
     {
         ExecutorService executor = newCachedThreadPool(daemonThreadsNamed("test"));
-        new SqlBetweenBenchmark(createLocalQueryRunner(executor)).runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
+        LocalQueryRunner localQueryRunner = createLocalQueryRunner(executor);
+        new SqlBetweenBenchmark(localQueryRunner).runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
+        new SqlBetweenBenchmark(localQueryRunner, true).runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
     }
 }
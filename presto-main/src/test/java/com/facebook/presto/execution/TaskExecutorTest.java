@@ -14,18 +14,35 @@
 package com.facebook.presto.execution;
 
 import com.facebook.presto.execution.TaskExecutor.TaskHandle;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.collect.Iterables.getOnlyElement;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 public class TaskExecutorTest
 {
@@ -113,6 +130,349 @@ public class TaskExecutorTest
         }
     }
 
+    @Test
+    public void testStealFromBusyRunner()
+            throws Exception
+    {
+        TaskExecutor taskExecutor = new TaskExecutor(2, new Duration(1, MILLISECONDS), 2.0, ImmutableMap.<String, Integer>of(), new TestingTicker());
+        taskExecutor.start();
+
+        BlockingSplit hog1 = new BlockingSplit();
+        BlockingSplit hog2 = new BlockingSplit();
+        try {
+            // occupy both runners
+            TaskHandle hogTask = taskExecutor.addTask(new TaskId("hog", "0", "0"));
+            taskExecutor.enqueueSplits(hogTask, true, ImmutableList.of(hog1, hog2));
+            hog1.awaitStarted();
+            hog2.awaitStarted();
+
+            // no runner is idle, so the splits are spread round robin over both runner queues
+            TaskHandle taskHandle = taskExecutor.addTask(new TaskId("query", "0", "0"));
+            ImmutableList.Builder<TestingSplit> builder = ImmutableList.builder();
+            for (int i = 0; i < 4; i++) {
+                builder.add(new TestingSplit(null, 0, 10));
+            }
+            List<TestingSplit> splits = builder.build();
+            List<ListenableFuture<?>> futures = taskExecutor.enqueueSplits(taskHandle, true, splits);
+
+            // the splits queued for the runner of the remaining hog only finish if they are stolen
+            hog1.release();
+            for (ListenableFuture<?> future : futures) {
+                future.get(10, SECONDS);
+            }
+            assertFalse(hog2.isFinished());
+
+            // so all of them ran on the runner that became idle
+            for (TestingSplit split : splits) {
+                assertEquals(split.getThreads(), ImmutableSet.of(hog1.getThread()));
+            }
+        }
+        finally {
+            hog1.release();
+            hog2.release();
+            taskExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testBlockedSplitWakesWaitingRunner()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(2, new Duration(1, MILLISECONDS), 2.0, ImmutableMap.<String, Integer>of(), ticker);
+        taskExecutor.start();
+
+        TaskHandle taskHandle = taskExecutor.addTask(new TaskId("query", "0", "0"));
+        UnblockableSplit split = new UnblockableSplit(ticker);
+        try {
+            ListenableFuture<?> future = getOnlyElement(taskExecutor.enqueueSplits(taskHandle, true, ImmutableList.of(split)));
+
+            // the split is blocked after its first quantum, and both runners wait for a split
+            long deadline = System.nanoTime() + SECONDS.toNanos(10);
+            while (taskExecutor.getBlockedSplits() != 1 || taskExecutor.getIdleRunnerThreads() != 2) {
+                assertTrue(System.nanoTime() < deadline, "runners did not wait for the blocked split");
+                Thread.sleep(1);
+            }
+            assertFalse(future.isDone());
+
+            // unblocking the split on a thread that is not a runner queues it and wakes a runner
+            split.unblock();
+            future.get(10, SECONDS);
+            assertEquals(split.getCompletedQuanta(), 2);
+            assertEquals(taskExecutor.getBlockedSplits(), 0);
+        }
+        finally {
+            split.unblock();
+            taskExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testLevelFairnessAfterSteal()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(2, new Duration(1, MILLISECONDS), 2.0, ImmutableMap.<String, Integer>of(), ticker);
+        taskExecutor.start();
+
+        BlockingSplit hog = new BlockingSplit();
+        try {
+            // occupy one runner
+            TaskHandle hogTask = taskExecutor.addTask(new TaskId("hog", "0", "0"));
+            taskExecutor.enqueueSplits(hogTask, true, ImmutableList.of(hog));
+            hog.awaitStarted();
+
+            // a long query keeps the queue of the other runner busy above level 0
+            TaskHandle longTask = taskExecutor.addTask(new TaskId("long", "0", "0"));
+            TestingSplit longSplit = new TestingSplit(ticker, SECONDS.toNanos(1), Integer.MAX_VALUE);
+            taskExecutor.enqueueSplits(longTask, true, ImmutableList.of(longSplit));
+            longSplit.awaitQuanta(2);
+
+            // one of the splits of the short query is queued for the runner of the hog,
+            // and level 0 must be served by stealing it rather than by running the long query
+            TaskHandle shortTask = taskExecutor.addTask(new TaskId("short", "0", "0"));
+            List<ListenableFuture<?>> futures = taskExecutor.enqueueSplits(shortTask, true, ImmutableList.of(
+                    new TestingSplit(ticker, MILLISECONDS.toNanos(1), 1),
+                    new TestingSplit(ticker, MILLISECONDS.toNanos(1), 1)));
+            for (ListenableFuture<?> future : futures) {
+                future.get(10, SECONDS);
+            }
+            assertFalse(hog.isFinished());
+        }
+        finally {
+            hog.release();
+            taskExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testLevelTimeSharesAfterSteal()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(2, new Duration(1, MILLISECONDS), 2.0, ImmutableMap.<String, Integer>of(), ticker);
+        taskExecutor.start();
+
+        BlockingSplit hog1 = new BlockingSplit();
+        BlockingSplit hog2 = new BlockingSplit();
+        try {
+            // move one query to level 2 and another to level 1
+            TaskHandle level2Task = taskExecutor.addTask(new TaskId("level2", "0", "0"));
+            runSplit(taskExecutor, level2Task, new TestingSplit(ticker, SECONDS.toNanos(1), 10));
+            TaskHandle level1Task = taskExecutor.addTask(new TaskId("level1", "0", "0"));
+            runSplit(taskExecutor, level1Task, new TestingSplit(ticker, SECONDS.toNanos(1), 1));
+
+            // occupy both runners, so the splits of the two queries go to different runner queues
+            TaskHandle hogTask = taskExecutor.addTask(new TaskId("hog", "0", "0"));
+            taskExecutor.enqueueSplits(hogTask, true, ImmutableList.of(hog1, hog2));
+            hog1.awaitStarted();
+            hog2.awaitStarted();
+
+            TestingSplit level2Split = new TestingSplit(ticker, MILLISECONDS.toNanos(10), 1000);
+            TestingSplit level1Split = new TestingSplit(ticker, MILLISECONDS.toNanos(10), 600);
+            List<ListenableFuture<?>> futures = ImmutableList.<ListenableFuture<?>>builder()
+                    .addAll(taskExecutor.enqueueSplits(level2Task, true, ImmutableList.of(level2Split)))
+                    .addAll(taskExecutor.enqueueSplits(level1Task, true, ImmutableList.of(level1Split)))
+                    .build();
+
+            // the runner that becomes idle has to steal one of the splits from the queue of the other hog,
+            // and the stolen split is charged to its level like any other
+            hog1.release();
+            for (ListenableFuture<?> future : futures) {
+                future.get(10, SECONDS);
+            }
+            assertFalse(hog2.isFinished());
+            assertEquals(level2Split.getThreads(), ImmutableSet.of(hog1.getThread()));
+            assertEquals(level1Split.getThreads(), ImmutableSet.of(hog1.getThread()));
+
+            // each level gets half the time of the level above it
+            int level2Quanta = level2Split.getQuantaBefore(level1Split.getLastQuantum());
+            assertTrue(level2Quanta >= 240 && level2Quanta <= 360, "level 2 ran " + level2Quanta + " quanta while level 1 ran 600");
+        }
+        finally {
+            hog1.release();
+            hog2.release();
+            taskExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testShutdownWhileStealing()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(4, new Duration(1, MILLISECONDS), 2.0, ImmutableMap.<String, Integer>of(), ticker);
+        taskExecutor.start();
+
+        // short quanta keep the runners moving splits between their queues
+        TaskHandle taskHandle = taskExecutor.addTask(new TaskId("query", "0", "0"));
+        ImmutableList.Builder<TestingSplit> builder = ImmutableList.builder();
+        for (int i = 0; i < 16; i++) {
+            builder.add(new TestingSplit(ticker, MILLISECONDS.toNanos(1), Integer.MAX_VALUE));
+        }
+        List<TestingSplit> splits = builder.build();
+        taskExecutor.enqueueSplits(taskHandle, true, splits);
+        for (TestingSplit split : splits) {
+            split.awaitQuanta(10);
+        }
+
+        taskExecutor.stop();
+
+        for (TestingSplit split : splits) {
+            for (Thread thread : split.getThreads()) {
+                thread.join(SECONDS.toMillis(10));
+                assertFalse(thread.isAlive(), "runner thread did not exit");
+            }
+        }
+    }
+
+    @Test
+    public void testLevelDemotion()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(1, new Duration(1, MILLISECONDS), 2.0, ImmutableMap.<String, Integer>of(), ticker);
+        taskExecutor.start();
+
+        try {
+            TaskHandle taskHandle = taskExecutor.addTask(new TaskId("query", "0", "0"));
+
+            // the task starts in level 0
+            runSplit(taskExecutor, taskHandle, new TestingSplit(ticker, MILLISECONDS.toNanos(500), 1));
+            assertRunningTasksPerLevel(taskExecutor, 1, 0, 0);
+
+            // and moves to the next level when its thread usage passes each threshold
+            runSplit(taskExecutor, taskHandle, new TestingSplit(ticker, SECONDS.toNanos(1), 2));
+            assertRunningTasksPerLevel(taskExecutor, 0, 1, 0);
+
+            runSplit(taskExecutor, taskHandle, new TestingSplit(ticker, SECONDS.toNanos(1), 8));
+            assertRunningTasksPerLevel(taskExecutor, 0, 0, 1);
+
+            // a new query starts over in level 0
+            TaskHandle newTaskHandle = taskExecutor.addTask(new TaskId("new", "0", "0"));
+            runSplit(taskExecutor, newTaskHandle, new TestingSplit(ticker, MILLISECONDS.toNanos(1), 1));
+            assertRunningTasksPerLevel(taskExecutor, 1, 0, 1);
+
+            // a removed task is counted in the level it finished in
+            taskExecutor.removeTask(taskHandle);
+            taskExecutor.removeTask(newTaskHandle);
+            assertRunningTasksPerLevel(taskExecutor, 0, 0, 0);
+            assertEquals(taskExecutor.getCompletedTasksLevel0(), 1);
+            assertEquals(taskExecutor.getCompletedTasksLevel1(), 0);
+            assertEquals(taskExecutor.getCompletedTasksLevel2(), 1);
+        }
+        finally {
+            taskExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testLevelTimeShares()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(1, new Duration(1, MILLISECONDS), 2.0, ImmutableMap.<String, Integer>of(), ticker);
+        taskExecutor.start();
+
+        BlockingSplit hog = new BlockingSplit();
+        try {
+            // move one query to level 2 and another to level 1
+            TaskHandle level2Task = taskExecutor.addTask(new TaskId("level2", "0", "0"));
+            runSplit(taskExecutor, level2Task, new TestingSplit(ticker, SECONDS.toNanos(1), 10));
+            TaskHandle level1Task = taskExecutor.addTask(new TaskId("level1", "0", "0"));
+            runSplit(taskExecutor, level1Task, new TestingSplit(ticker, SECONDS.toNanos(1), 1));
+
+            // queue both queries behind a hog so they start competing at the same time
+            TaskHandle hogTask = taskExecutor.addTask(new TaskId("hog", "0", "0"));
+            taskExecutor.enqueueSplits(hogTask, true, ImmutableList.of(hog));
+            hog.awaitStarted();
+
+            // neither query leaves its level while they compete
+            TestingSplit level2Split = new TestingSplit(ticker, MILLISECONDS.toNanos(10), 1000);
+            TestingSplit level1Split = new TestingSplit(ticker, MILLISECONDS.toNanos(10), 600);
+            List<ListenableFuture<?>> futures = ImmutableList.<ListenableFuture<?>>builder()
+                    .addAll(taskExecutor.enqueueSplits(level2Task, true, ImmutableList.of(level2Split)))
+                    .addAll(taskExecutor.enqueueSplits(level1Task, true, ImmutableList.of(level1Split)))
+                    .build();
+            hog.release();
+            for (ListenableFuture<?> future : futures) {
+                future.get(10, SECONDS);
+            }
+
+            // each level gets half the time of the level above it
+            int level2Quanta = level2Split.getQuantaBefore(level1Split.getLastQuantum());
+            assertTrue(level2Quanta >= 240 && level2Quanta <= 360, "level 2 ran " + level2Quanta + " quanta while level 1 ran 600");
+        }
+        finally {
+            hog.release();
+            taskExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testPerQueryAccounting()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(1, new Duration(1, MILLISECONDS), 2.0, ImmutableMap.<String, Integer>of(), ticker);
+        taskExecutor.start();
+
+        BlockingSplit hog = new BlockingSplit();
+        try {
+            // the first task of the query uses enough time to move the query to level 2
+            TaskHandle firstTask = taskExecutor.addTask(new TaskId("busy", "0", "0"));
+            runSplit(taskExecutor, firstTask, new TestingSplit(ticker, SECONDS.toNanos(1), 12));
+
+            TaskHandle hogTask = taskExecutor.addTask(new TaskId("hog", "0", "0"));
+            taskExecutor.enqueueSplits(hogTask, true, ImmutableList.of(hog));
+            hog.awaitStarted();
+
+            // a new task of the busy query is charged for the time of the whole query,
+            // so the split of a fresh query runs first even though it was queued later
+            TaskHandle secondTask = taskExecutor.addTask(new TaskId("busy", "1", "0"));
+            TestingSplit busySplit = new TestingSplit(ticker, MILLISECONDS.toNanos(1), 1);
+            ListenableFuture<?> busyFuture = getOnlyElement(taskExecutor.enqueueSplits(secondTask, true, ImmutableList.of(busySplit)));
+            TaskHandle freshTask = taskExecutor.addTask(new TaskId("fresh", "0", "0"));
+            TestingSplit freshSplit = new TestingSplit(ticker, MILLISECONDS.toNanos(1), 1);
+            ListenableFuture<?> freshFuture = getOnlyElement(taskExecutor.enqueueSplits(freshTask, true, ImmutableList.of(freshSplit)));
+
+            hog.release();
+            busyFuture.get(10, SECONDS);
+            freshFuture.get(10, SECONDS);
+            assertTrue(freshSplit.getFirstQuantum() < busySplit.getFirstQuantum(), "split of the busy query ran first");
+        }
+        finally {
+            hog.release();
+            taskExecutor.stop();
+        }
+    }
+
+    private static void runSplit(TaskExecutor taskExecutor, TaskHandle taskHandle, TestingSplit split)
+            throws Exception
+    {
+        getOnlyElement(taskExecutor.enqueueSplits(taskHandle, true, ImmutableList.of(split))).get(10, SECONDS);
+    }
+
+    private static void assertRunningTasksPerLevel(TaskExecutor taskExecutor, int level0, int level1, int level2)
+    {
+        assertEquals(taskExecutor.getRunningTasksLevel0(), level0);
+        assertEquals(taskExecutor.getRunningTasksLevel1(), level1);
+        assertEquals(taskExecutor.getRunningTasksLevel2(), level2);
+    }
+
+    @Test
+    public void testParseResourceGroupWeights()
+    {
+        assertEquals(TaskExecutor.parseResourceGroupWeights(""), ImmutableMap.of());
+        assertEquals(TaskExecutor.parseResourceGroupWeights("dashboard:4, etl : 1"), ImmutableMap.of("dashboard", 4, "etl", 1));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testParseInvalidResourceGroupWeight()
+    {
+        TaskExecutor.parseResourceGroupWeights("dashboard:0");
+    }
+
     private static class TestingJob
             implements SplitRunner
     {
@@ -176,4 +536,206 @@ public class TaskExecutorTest
         {
         }
     }
+
+    private static class TestingTicker
+            extends Ticker
+    {
+        private final AtomicLong time = new AtomicLong();
+
+        @Override
+        public long read()
+        {
+            return time.get();
+        }
+
+        public void increment(long nanos)
+        {
+            time.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * Split that advances the ticker by a fixed amount in every quantum, and records
+     * the position of each of its quanta among the quanta of all testing splits
+     */
+    private static class TestingSplit
+            implements SplitRunner
+    {
+        private static final AtomicLong NEXT_QUANTUM = new AtomicLong();
+
+        private final TestingTicker ticker;
+        private final long quantumNanos;
+        private final int requiredQuanta;
+        private final AtomicInteger completedQuanta = new AtomicInteger();
+        private final Set<Thread> threads = Sets.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        private final Queue<Long> quanta = new ConcurrentLinkedQueue<>();
+
+        private TestingSplit(TestingTicker ticker, long quantumNanos, int requiredQuanta)
+        {
+            this.ticker = ticker;
+            this.quantumNanos = quantumNanos;
+            this.requiredQuanta = requiredQuanta;
+        }
+
+        private Set<Thread> getThreads()
+        {
+            return threads;
+        }
+
+        private long getFirstQuantum()
+        {
+            Long quantum = quanta.peek();
+            assertNotNull(quantum, "split did not run");
+            return quantum;
+        }
+
+        private long getLastQuantum()
+        {
+            long lastQuantum = getFirstQuantum();
+            for (long quantum : quanta) {
+                lastQuantum = Math.max(lastQuantum, quantum);
+            }
+            return lastQuantum;
+        }
+
+        private int getQuantaBefore(long sequence)
+        {
+            int count = 0;
+            for (long quantum : quanta) {
+                if (quantum < sequence) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void awaitQuanta(int count)
+                throws InterruptedException
+        {
+            long deadline = System.nanoTime() + SECONDS.toNanos(10);
+            while (completedQuanta.get() < count) {
+                assertTrue(System.nanoTime() < deadline, "split did not run");
+                Thread.sleep(1);
+            }
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+        {
+            threads.add(Thread.currentThread());
+            quanta.add(NEXT_QUANTUM.getAndIncrement());
+            if (ticker != null) {
+                ticker.increment(quantumNanos);
+            }
+            completedQuanta.incrementAndGet();
+            return Futures.immediateFuture(null);
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return completedQuanta.get() >= requiredQuanta;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    /**
+     * Split that occupies its runner until it is released
+     */
+    private static class BlockingSplit
+            implements SplitRunner
+    {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile Thread thread;
+
+        private Thread getThread()
+        {
+            return thread;
+        }
+
+        private void awaitStarted()
+                throws InterruptedException
+        {
+            assertTrue(started.await(10, SECONDS), "split did not start");
+        }
+
+        private void release()
+        {
+            released.countDown();
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+                throws InterruptedException
+        {
+            thread = Thread.currentThread();
+            started.countDown();
+            released.await();
+            return Futures.immediateFuture(null);
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return released.getCount() == 0;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    /**
+     * Split that is blocked after its first quantum until it is unblocked, and finishes
+     * in its second quantum
+     */
+    private static class UnblockableSplit
+            implements SplitRunner
+    {
+        private final TestingTicker ticker;
+        private final SettableFuture<?> blocked = SettableFuture.create();
+        private final AtomicInteger completedQuanta = new AtomicInteger();
+
+        private UnblockableSplit(TestingTicker ticker)
+        {
+            this.ticker = ticker;
+        }
+
+        private int getCompletedQuanta()
+        {
+            return completedQuanta.get();
+        }
+
+        private void unblock()
+        {
+            blocked.set(null);
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+        {
+            ticker.increment(MILLISECONDS.toNanos(1));
+            if (completedQuanta.getAndIncrement() == 0) {
+                return blocked;
+            }
+            return Futures.immediateFuture(null);
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return completedQuanta.get() >= 2;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
 }
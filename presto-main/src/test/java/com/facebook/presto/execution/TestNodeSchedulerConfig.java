@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.execution.NodeSchedulerConfig.AssignmentPolicy;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+
+public class TestNodeSchedulerConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(NodeSchedulerConfig.class)
+                .setMinCandidates(10)
+                .setAssignmentPolicy(AssignmentPolicy.QUEUED_SPLITS)
+                .setRemoteSplitPenalty(0.5)
+                .setStragglerThroughputRatio(0.1));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = new ImmutableMap.Builder<String, String>()
+                .put("node-scheduler.min-candidates", "11")
+                .put("node-scheduler.assignment-policy", "THROUGHPUT")
+                .put("node-scheduler.remote-split-penalty", "2.5")
+                .put("node-scheduler.straggler-throughput-ratio", "0.3")
+                .build();
+
+        NodeSchedulerConfig expected = new NodeSchedulerConfig()
+                .setMinCandidates(11)
+                .setAssignmentPolicy(AssignmentPolicy.THROUGHPUT)
+                .setRemoteSplitPenalty(2.5)
+                .setStragglerThroughputRatio(0.3);
+
+        assertFullMapping(properties, expected);
+    }
+}
@@ -35,7 +35,8 @@ public class TestQueryManagerConfig
                 .setInitialHashPartitions(8)
                 .setQueryManagerExecutorPoolSize(5)
                 .setRemoteTaskMaxConsecutiveErrorCount(10)
-                .setRemoteTaskMinErrorDuration(new Duration(2, TimeUnit.MINUTES)));
+                .setRemoteTaskMinErrorDuration(new Duration(2, TimeUnit.MINUTES))
+                .setRemoteTaskCompressionEnabled(false));
     }
 
     @Test
@@ -51,6 +52,7 @@ public class TestQueryManagerConfig
                 .put("query.manager-executor-pool-size", "11")
                 .put("query.remote-task.max-consecutive-error-count", "300")
                 .put("query.remote-task.min-error-duration", "30s")
+                .put("query.remote-task.compression-enabled", "true")
                 .build();
 
         QueryManagerConfig expected = new QueryManagerConfig()
@@ -62,7 +64,8 @@ public class TestQueryManagerConfig
                 .setInitialHashPartitions(16)
                 .setQueryManagerExecutorPoolSize(11)
                 .setRemoteTaskMaxConsecutiveErrorCount(300)
-                .setRemoteTaskMinErrorDuration(new Duration(30, TimeUnit.SECONDS));
+                .setRemoteTaskMinErrorDuration(new Duration(30, TimeUnit.SECONDS))
+                .setRemoteTaskCompressionEnabled(true);
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
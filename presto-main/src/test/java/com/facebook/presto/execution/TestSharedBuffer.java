@@ -28,14 +28,17 @@ import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -642,6 +645,59 @@ public class TestSharedBuffer
         addPagesJob.waitForFinished();
     }
 
+    @Test
+    public void testConcurrentConsumers()
+            throws Exception
+    {
+        int pageCount = 200;
+        List<String> queueIds = ImmutableList.of("first", "second", "third");
+
+        OutputBuffers outputBuffers = INITIAL_EMPTY_OUTPUT_BUFFERS;
+        for (String queueId : queueIds) {
+            outputBuffers = outputBuffers.withBuffer(queueId, new UnpartitionedPagePartitionFunction());
+        }
+        final SharedBuffer sharedBuffer = new SharedBuffer(TASK_ID, executor, sizeOfPages(3), outputBuffers.withNoMoreBufferIds());
+
+        // each consumer reads at its own pace, one page at a time
+        List<Future<List<Page>>> consumers = new ArrayList<>();
+        for (final String queueId : queueIds) {
+            consumers.add(executor.submit(new Callable<List<Page>>()
+            {
+                @Override
+                public List<Page> call()
+                        throws Exception
+                {
+                    ImmutableList.Builder<Page> pages = ImmutableList.builder();
+                    long sequenceId = 0;
+                    while (true) {
+                        BufferResult result = sharedBuffer.get(queueId, sequenceId, sizeOfPages(1), MAX_WAIT);
+                        if (result.isBufferClosed()) {
+                            return pages.build();
+                        }
+                        pages.addAll(result.getPages());
+                        sequenceId += result.getPages().size();
+                    }
+                }
+            }));
+        }
+
+        // the producer is blocked whenever the slowest consumer falls behind
+        for (int i = 0; i < pageCount; i++) {
+            sharedBuffer.enqueue(createPage(i)).get(10, TimeUnit.SECONDS);
+        }
+        sharedBuffer.finish();
+
+        for (Future<List<Page>> consumer : consumers) {
+            List<Page> pages = consumer.get(10, TimeUnit.SECONDS);
+            assertEquals(pages.size(), pageCount);
+            for (int i = 0; i < pageCount; i++) {
+                assertBlockEquals(pages.get(i).getBlock(0), createPage(i).getBlock(0));
+            }
+        }
+        assertFinished(sharedBuffer);
+        assertEquals(sharedBuffer.getInfo().getPagesAdded(), pageCount);
+    }
+
     private ListenableFuture<?> enqueuePage(SharedBuffer sharedBuffer, Page page)
     {
         ListenableFuture<?> future = sharedBuffer.enqueue(page);
@@ -141,6 +141,61 @@ public class TestSqlStageExecution
         }
     }
 
+    @Test
+    public void testThroughputSplitAssignment()
+            throws Exception
+    {
+        InMemoryNodeManager nodeManager = new InMemoryNodeManager();
+        ImmutableList.Builder<Node> nodeBuilder = ImmutableList.builder();
+        nodeBuilder.add(new PrestoNode("other1", URI.create("http://127.0.0.1:11"), NodeVersion.UNKNOWN));
+        nodeBuilder.add(new PrestoNode("other2", URI.create("http://127.0.0.1:12"), NodeVersion.UNKNOWN));
+        nodeBuilder.add(new PrestoNode("other3", URI.create("http://127.0.0.1:13"), NodeVersion.UNKNOWN));
+        ImmutableList<Node> nodes = nodeBuilder.build();
+        nodeManager.addNode("foo", nodes);
+        NodeSchedulerConfig config = new NodeSchedulerConfig().setAssignmentPolicy(NodeSchedulerConfig.AssignmentPolicy.THROUGHPUT);
+        NodeScheduler nodeScheduler = new NodeScheduler(nodeManager, config);
+
+        // without statistics all nodes are expected to be equally fast
+        SqlStageExecution sqlStageExecution = createSqlStageExecution(nodeScheduler, 2, 20);
+        Future future = sqlStageExecution.start();
+        future.get(1, TimeUnit.SECONDS);
+        Map<Node, RemoteTask> tasks = sqlStageExecution.getTasks();
+        for (Map.Entry<Node, RemoteTask> entry : tasks.entrySet()) {
+            assertEquals(entry.getValue().getQueuedSplits(), 5);
+        }
+    }
+
+    @Test
+    public void testThroughputSplitAssignmentWithRates()
+            throws Exception
+    {
+        InMemoryNodeManager nodeManager = new InMemoryNodeManager();
+        Node fast = new PrestoNode("fast", URI.create("http://127.0.0.1:11"), NodeVersion.UNKNOWN);
+        Node slow = new PrestoNode("slow", URI.create("http://127.0.0.1:12"), NodeVersion.UNKNOWN);
+        Node fresh = new PrestoNode("fresh", URI.create("http://127.0.0.1:13"), NodeVersion.UNKNOWN);
+        nodeManager.addNode("foo", fast, slow, fresh);
+        NodeSchedulerConfig config = new NodeSchedulerConfig().setAssignmentPolicy(NodeSchedulerConfig.AssignmentPolicy.THROUGHPUT);
+        NodeScheduler nodeScheduler = new NodeScheduler(nodeManager, config);
+
+        // the fast node processes four times as many bytes per second of driver time as the
+        // other nodes, and the fresh node is as fast as the slow node but has run a single split
+        Map<Node, RemoteTask> taskMap = ImmutableMap.<Node, RemoteTask>of(
+                fast, new TestingRemoteTask("fast", 0, 40, 40_000, new Duration(10, TimeUnit.SECONDS)),
+                slow, new TestingRemoteTask("slow", 0, 10, 10_000, new Duration(10, TimeUnit.SECONDS)),
+                fresh, new TestingRemoteTask("fresh", 0, 1, 1_000, new Duration(1, TimeUnit.SECONDS)));
+
+        ImmutableSet.Builder<Split> splits = ImmutableSet.builder();
+        for (int i = 0; i < 30; i++) {
+            splits.add(new DualSplit(HostAddress.fromString("127.0.0.1")));
+        }
+        Multimap<Node, Split> assignments = nodeScheduler.createNodeSelector("foo", taskMap, 100).computeAssignments(splits.build());
+
+        assertEquals(assignments.size(), 30);
+        assertEquals(assignments.get(fast).size(), 20);
+        assertEquals(assignments.get(slow).size(), 5);
+        assertEquals(assignments.get(fresh).size(), 5);
+    }
+
     @Test
     public void testSplitAssignmentBatchSizeGreaterThanMaxPending()
             throws Exception
@@ -112,7 +112,8 @@ public class TestSqlTaskExecution
                 new MockLocalStorageManager(new File("target/temp")),
                 new RecordSinkManager(),
                 new MockExchangeClientSupplier(),
-                new ExpressionCompiler(metadata));
+                new ExpressionCompiler(metadata),
+                new TaskManagerConfig());
 
         taskExecutor = new TaskExecutor(8);
         taskExecutor.start();
@@ -153,6 +154,7 @@ public class TestSqlTaskExecution
                 taskNotificationExecutor,
                 new DataSize(256, Unit.MEGABYTE),
                 new DataSize(8, Unit.MEGABYTE),
+                Optional.<File>absent(),
                 new QueryMonitor(new ObjectMapperProvider().get(), new NullEventClient(), new NodeInfo("test")),
                 false);
     }
@@ -118,7 +118,8 @@ public class TestSqlTaskManager
                 new MockLocalStorageManager(new File("target/temp")),
                 new RecordSinkManager(),
                 new MockExchangeClientSupplier(),
-                new ExpressionCompiler(metadata));
+                new ExpressionCompiler(metadata),
+                new TaskManagerConfig());
 
         taskExecutor = new TaskExecutor(8);
         taskExecutor.start();
@@ -164,7 +165,7 @@ public class TestSqlTaskManager
     {
         TaskInfo taskInfo = sqlTaskManager.updateTask(session,
                 taskId,
-                testFragment,
+                Optional.of(testFragment),
                 ImmutableList.<TaskSource>of(),
                 INITIAL_EMPTY_OUTPUT_BUFFERS);
         assertEquals(taskInfo.getState(), TaskState.RUNNING);
@@ -174,7 +175,7 @@ public class TestSqlTaskManager
 
         taskInfo = sqlTaskManager.updateTask(session,
                 taskId,
-                testFragment,
+                Optional.of(testFragment),
                 ImmutableList.<TaskSource>of(new TaskSource(tableScanNodeId, ImmutableSet.<ScheduledSplit>of(), true)),
                 INITIAL_EMPTY_OUTPUT_BUFFERS.withNoMoreBufferIds());
         assertEquals(taskInfo.getState(), TaskState.FINISHED);
@@ -189,7 +190,7 @@ public class TestSqlTaskManager
     {
         TaskInfo taskInfo = sqlTaskManager.updateTask(session,
                 taskId,
-                testFragment,
+                Optional.of(testFragment),
                 ImmutableList.<TaskSource>of(new TaskSource(tableScanNodeId, ImmutableSet.of(new ScheduledSplit(0, split)), true)),
                 INITIAL_EMPTY_OUTPUT_BUFFERS.withBuffer("out", new UnpartitionedPagePartitionFunction()).withNoMoreBufferIds());
         assertEquals(taskInfo.getState(), TaskState.RUNNING);
@@ -220,7 +221,7 @@ public class TestSqlTaskManager
     {
         TaskInfo taskInfo = sqlTaskManager.updateTask(session,
                 taskId,
-                testFragment,
+                Optional.of(testFragment),
                 ImmutableList.<TaskSource>of(),
                 INITIAL_EMPTY_OUTPUT_BUFFERS);
         assertEquals(taskInfo.getState(), TaskState.RUNNING);
@@ -245,7 +246,7 @@ public class TestSqlTaskManager
     {
         TaskInfo taskInfo = sqlTaskManager.updateTask(session,
                 taskId,
-                testFragment,
+                Optional.of(testFragment),
                 ImmutableList.<TaskSource>of(new TaskSource(tableScanNodeId, ImmutableSet.of(new ScheduledSplit(0, split)), true)),
                 INITIAL_EMPTY_OUTPUT_BUFFERS.withBuffer("out", new UnpartitionedPagePartitionFunction()).withNoMoreBufferIds());
         assertEquals(taskInfo.getState(), TaskState.RUNNING);
@@ -276,7 +277,7 @@ public class TestSqlTaskManager
 
         TaskInfo taskInfo = sqlTaskManager.updateTask(session,
                 taskId,
-                testFragment,
+                Optional.of(testFragment),
                 ImmutableList.<TaskSource>of(),
                 INITIAL_EMPTY_OUTPUT_BUFFERS);
         assertEquals(taskInfo.getState(), TaskState.RUNNING);
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.metadata.NodeVersion;
+import com.facebook.presto.metadata.PrestoNode;
+import com.facebook.presto.spi.Node;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.Duration;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Map;
+
+import static com.facebook.presto.execution.StragglerDetector.findStragglers;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+
+public class TestStragglerDetector
+{
+    private static final double THROUGHPUT_RATIO = 0.5;
+
+    private static final Node NODE_1 = new PrestoNode("node1", URI.create("http://127.0.0.1:11"), NodeVersion.UNKNOWN);
+    private static final Node NODE_2 = new PrestoNode("node2", URI.create("http://127.0.0.1:12"), NodeVersion.UNKNOWN);
+    private static final Node NODE_3 = new PrestoNode("node3", URI.create("http://127.0.0.1:13"), NodeVersion.UNKNOWN);
+    private static final Node NODE_4 = new PrestoNode("node4", URI.create("http://127.0.0.1:14"), NodeVersion.UNKNOWN);
+
+    @Test
+    public void testNoTasks()
+    {
+        assertEquals(findStragglers(ImmutableMap.<Node, RemoteTask>of(), THROUGHPUT_RATIO), ImmutableSet.of());
+    }
+
+    @Test
+    public void testSingleTask()
+    {
+        // there is nothing to compare a single task with, even if it is very slow
+        Map<Node, RemoteTask> taskMap = ImmutableMap.of(NODE_1, task(NODE_1, 1));
+        assertEquals(findStragglers(taskMap, THROUGHPUT_RATIO), ImmutableSet.of());
+    }
+
+    @Test
+    public void testAllTasksEqual()
+    {
+        Map<Node, RemoteTask> taskMap = ImmutableMap.of(
+                NODE_1, task(NODE_1, 1000),
+                NODE_2, task(NODE_2, 1000),
+                NODE_3, task(NODE_3, 1000),
+                NODE_4, task(NODE_4, 1000));
+        assertEquals(findStragglers(taskMap, THROUGHPUT_RATIO), ImmutableSet.of());
+    }
+
+    @Test
+    public void testOneSlowTask()
+    {
+        Map<Node, RemoteTask> taskMap = ImmutableMap.of(
+                NODE_1, task(NODE_1, 1000),
+                NODE_2, task(NODE_2, 900),
+                NODE_3, task(NODE_3, 1100),
+                NODE_4, task(NODE_4, 100));
+        assertEquals(findStragglers(taskMap, THROUGHPUT_RATIO), ImmutableSet.of(NODE_4));
+
+        // a ratio of zero disables the detection
+        assertEquals(findStragglers(taskMap, 0), ImmutableSet.of());
+    }
+
+    @Test
+    public void testTasksWithoutProgress()
+    {
+        // tasks that have not processed any input have no throughput, so they are neither stragglers nor part of the median
+        Map<Node, RemoteTask> taskMap = ImmutableMap.of(
+                NODE_1, task(NODE_1, 1000),
+                NODE_2, task(NODE_2, 100),
+                NODE_3, idleTask(NODE_3),
+                NODE_4, idleTask(NODE_4));
+        assertEquals(findStragglers(taskMap, THROUGHPUT_RATIO), ImmutableSet.of());
+
+        taskMap = ImmutableMap.of(
+                NODE_1, idleTask(NODE_1),
+                NODE_2, idleTask(NODE_2),
+                NODE_3, idleTask(NODE_3),
+                NODE_4, idleTask(NODE_4));
+        assertEquals(findStragglers(taskMap, THROUGHPUT_RATIO), ImmutableSet.of());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidRatio()
+    {
+        findStragglers(ImmutableMap.<Node, RemoteTask>of(), 1.5);
+    }
+
+    private static RemoteTask task(Node node, long bytesPerSecond)
+    {
+        return new TestingRemoteTask(node.getNodeIdentifier(), 0, 10, bytesPerSecond * 10, new Duration(10, SECONDS));
+    }
+
+    private static RemoteTask idleTask(Node node)
+    {
+        return new TestingRemoteTask(node.getNodeIdentifier(), 10, 0, 0, new Duration(0, SECONDS));
+    }
+}
@@ -18,6 +18,7 @@ import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -34,10 +35,17 @@ public class TestTaskManagerConfig
         assertRecordedDefaults(recordDefaults(TaskManagerConfig.class)
                 .setTaskCpuTimerEnabled(true)
                 .setMaxShardProcessorThreads(Runtime.getRuntime().availableProcessors() * 4)
+                .setSplitRunQuanta(new Duration(1, TimeUnit.SECONDS))
+                .setLevelTimeMultiplier(2.0)
+                .setResourceGroupWeights("")
                 .setInfoMaxAge(new Duration(15, TimeUnit.MINUTES))
                 .setClientTimeout(new Duration(5, TimeUnit.MINUTES))
                 .setMaxTaskMemoryUsage(new DataSize(256, Unit.MEGABYTE))
                 .setOperatorPreAllocatedMemory(new DataSize(16, Unit.MEGABYTE))
+                .setSpillEnabled(false)
+                .setSpillPath(new File("var/spill"))
+                .setHashBuildConcurrency(1)
+                .setColumnarProcessingEnabled(false)
                 .setSinkMaxBufferSize(new DataSize(32, Unit.MEGABYTE)));
     }
 
@@ -49,6 +57,13 @@ public class TestTaskManagerConfig
                 .put("task.max-memory", "2GB")
                 .put("task.operator-pre-allocated-memory", "2MB")
                 .put("task.shard.max-threads", "3")
+                .put("task.split-run-quanta", "250ms")
+                .put("task.level-time-multiplier", "4")
+                .put("task.resource-group-weights", "dashboard:4,etl:1")
+                .put("task.spill-enabled", "true")
+                .put("task.spill-path", "/tmp/spill")
+                .put("task.hash-build-concurrency", "4")
+                .put("task.columnar-processing-enabled", "true")
                 .put("task.info.max-age", "22m")
                 .put("task.client.timeout", "10s")
                 .put("sink.max-buffer-size", "42MB")
@@ -59,6 +74,13 @@ public class TestTaskManagerConfig
                 .setMaxTaskMemoryUsage(new DataSize(2, Unit.GIGABYTE))
                 .setOperatorPreAllocatedMemory(new DataSize(2, Unit.MEGABYTE))
                 .setMaxShardProcessorThreads(3)
+                .setSplitRunQuanta(new Duration(250, TimeUnit.MILLISECONDS))
+                .setLevelTimeMultiplier(4.0)
+                .setResourceGroupWeights("dashboard:4,etl:1")
+                .setSpillEnabled(true)
+                .setSpillPath(new File("/tmp/spill"))
+                .setHashBuildConcurrency(4)
+                .setColumnarProcessingEnabled(true)
                 .setInfoMaxAge(new Duration(22, TimeUnit.MINUTES))
                 .setClientTimeout(new Duration(10, TimeUnit.SECONDS))
                 .setSinkMaxBufferSize(new DataSize(42, Unit.MEGABYTE));
@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.OutputBuffers;
+import com.facebook.presto.client.FailureInfo;
+import com.facebook.presto.execution.SharedBuffer.QueueState;
+import com.facebook.presto.execution.StateMachine.StateChangeListener;
+import com.facebook.presto.operator.PipelineStats;
+import com.facebook.presto.operator.TaskStats;
+import com.facebook.presto.spi.Split;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.joda.time.DateTime;
+
+import java.net.URI;
+
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Running task that only reports the input statistics it was created with
+ */
+public class TestingRemoteTask
+        implements RemoteTask
+{
+    private final TaskId taskId;
+    private final String nodeId;
+    private final int queuedSplits;
+    private final int completedDrivers;
+    private final long rawInputBytes;
+    private final Duration scheduledTime;
+
+    public TestingRemoteTask(String nodeId, int queuedSplits, int completedDrivers, long rawInputBytes, Duration scheduledTime)
+    {
+        this.taskId = new TaskId("query", "stage", nodeId);
+        this.nodeId = nodeId;
+        this.queuedSplits = queuedSplits;
+        this.completedDrivers = completedDrivers;
+        this.rawInputBytes = rawInputBytes;
+        this.scheduledTime = scheduledTime;
+    }
+
+    @Override
+    public String getNodeId()
+    {
+        return nodeId;
+    }
+
+    @Override
+    public TaskInfo getTaskInfo()
+    {
+        TaskStats stats = new TaskStats(
+                new DateTime(0),
+                new DateTime(0),
+                new DateTime(0),
+                null,
+                scheduledTime,
+                new Duration(0, MILLISECONDS),
+                completedDrivers + queuedSplits,
+                queuedSplits,
+                0,
+                completedDrivers,
+                new DataSize(0, BYTE),
+                scheduledTime,
+                scheduledTime,
+                scheduledTime,
+                new Duration(0, MILLISECONDS),
+                new DataSize(rawInputBytes, BYTE),
+                0,
+                new DataSize(rawInputBytes, BYTE),
+                0,
+                new DataSize(0, BYTE),
+                0,
+                ImmutableList.<PipelineStats>of());
+
+        return new TaskInfo(
+                taskId,
+                TaskInfo.STARTING_VERSION,
+                TaskState.RUNNING,
+                URI.create("fake://task/" + taskId),
+                DateTime.now(),
+                new SharedBufferInfo(QueueState.OPEN, 0, 0, ImmutableList.<BufferInfo>of()),
+                ImmutableSet.<PlanNodeId>of(),
+                stats,
+                ImmutableList.<FailureInfo>of());
+    }
+
+    @Override
+    public void start()
+    {
+    }
+
+    @Override
+    public void addSplits(PlanNodeId sourceId, Iterable<? extends Split> splits)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void noMoreSplits(PlanNodeId sourceId)
+    {
+    }
+
+    @Override
+    public void setOutputBuffers(OutputBuffers outputBuffers)
+    {
+    }
+
+    @Override
+    public void addStateChangeListener(StateChangeListener<TaskInfo> stateChangeListener)
+    {
+    }
+
+    @Override
+    public void cancel()
+    {
+    }
+
+    @Override
+    public int getQueuedSplits()
+    {
+        return queuedSplits;
+    }
+
+    @Override
+    public Duration waitForTaskToFinish(Duration maxWait)
+    {
+        return maxWait;
+    }
+}
@@ -15,6 +15,7 @@ package com.facebook.presto.metadata;
 
 import com.facebook.presto.block.BlockIterable;
 import com.facebook.presto.metadata.ColumnFileHandle.Builder;
+import com.facebook.presto.serde.BlocksFileZone;
 import com.facebook.presto.spi.ColumnHandle;
 import com.google.common.base.Throwables;
 import com.google.common.io.Files;
@@ -59,6 +60,12 @@ public class MockLocalStorageManager
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public List<BlocksFileZone> getZones(UUID shardUuid, ColumnHandle columnHandle)
+    {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean shardExists(UUID shardUuid)
     {
@@ -13,20 +13,30 @@
  */
 package com.facebook.presto.metadata;
 
+import com.facebook.presto.block.Block;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.operator.AlignmentOperator.AlignmentOperatorFactory;
 import com.facebook.presto.operator.DriverContext;
 import com.facebook.presto.operator.Operator;
 import com.facebook.presto.operator.OperatorAssertion;
 import com.facebook.presto.operator.Page;
+import com.facebook.presto.operator.RowPagesBuilder;
 import com.facebook.presto.operator.TaskContext;
+import com.facebook.presto.serde.BlocksFileEncoding;
+import com.facebook.presto.serde.BlocksFileReader;
+import com.facebook.presto.serde.BlocksFileWriter;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.util.MaterializedResult;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
+import com.google.common.io.OutputSupplier;
+import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.testing.FileUtils;
+import io.airlift.units.DataSize;
+import io.airlift.units.DataSize.Unit;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
@@ -36,7 +46,9 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 
@@ -144,6 +156,129 @@ public class TestDatabaseLocalStorageManager
         assertTrue(Iterables.isEmpty(storageManager.getBlocks(shardUuid, columnHandles.get(0))));
     }
 
+    @Test
+    public void testMappedFileCacheIsBounded()
+            throws IOException
+    {
+        IDBI dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
+        Handle handle = dbi.open();
+        try {
+            DatabaseLocalStorageManagerConfig config = new DatabaseLocalStorageManagerConfig()
+                    .setDataDirectory(dataDir)
+                    .setMaxMappedSize(new DataSize(1, Unit.BYTE))
+                    .setOptimizeEncodings(false);
+            DatabaseLocalStorageManager storageManager = new DatabaseLocalStorageManager(dbi, config);
+
+            UUID shardUuid = UUID.randomUUID();
+            List<ColumnHandle> columnHandles = ImmutableList.<ColumnHandle>of(new NativeColumnHandle("column_7", 7L));
+            List<Page> pages = rowPagesBuilder(SINGLE_LONG)
+                    .row(1)
+                    .row(2)
+                    .build();
+
+            ColumnFileHandle fileHandles = storageManager.createStagingFileHandles(shardUuid, columnHandles);
+            for (Page page : pages) {
+                fileHandles.append(page);
+            }
+            storageManager.commit(fileHandles);
+
+            // evicted files can still be read
+            for (int i = 0; i < 2; i++) {
+                Operator operator = new AlignmentOperatorFactory(0, storageManager.getBlocks(shardUuid, columnHandles.get(0))).createOperator(driverContext);
+                OperatorAssertion.assertOperatorEquals(operator, toMaterializedResult(operator.getTupleInfos(), pages));
+            }
+
+            assertEquals(storageManager.getMappedBytes(), 0);
+            assertEquals(storageManager.getMappedFiles(), 0);
+            assertTrue(storageManager.getMappedFileCacheEvictionCount() > 0);
+        }
+        finally {
+            handle.close();
+        }
+    }
+
+    @Test
+    public void testOptimizeEncodings()
+            throws Exception
+    {
+        UUID shardUuid = UUID.randomUUID();
+        List<ColumnHandle> columnHandles = ImmutableList.<ColumnHandle>of(new NativeColumnHandle("column_7", 7L));
+
+        // long runs of a few distinct values
+        RowPagesBuilder pagesBuilder = rowPagesBuilder(SINGLE_LONG);
+        for (int i = 0; i < 10_000; i++) {
+            pagesBuilder.row(i / 1000);
+        }
+        List<Page> pages = pagesBuilder.build();
+
+        ColumnFileHandle fileHandles = storageManager.createStagingFileHandles(shardUuid, columnHandles);
+        for (Page page : pages) {
+            fileHandles.append(page);
+        }
+        storageManager.commit(fileHandles);
+
+        // the shard can be read while the columns are re-encoded
+        Operator operator = new AlignmentOperatorFactory(0, storageManager.getBlocks(shardUuid, columnHandles.get(0))).createOperator(driverContext);
+        OperatorAssertion.assertOperatorEquals(operator, toMaterializedResult(operator.getTupleInfos(), pages));
+
+        while (storageManager.isShardActive(shardUuid)) {
+            Thread.sleep(10);
+        }
+
+        DatabaseLocalStorageManager databaseStorageManager = (DatabaseLocalStorageManager) storageManager;
+        assertEquals(databaseStorageManager.getReencodedColumns(), 1);
+        assertTrue(databaseStorageManager.getReencodingSavedBytes() > 0);
+
+        // the raw file was replaced with a run length encoded file
+        String[] files = getShardPath(new File(dataDir, "storage"), shardUuid).list();
+        assertEquals(files.length, 1);
+        assertTrue(ImmutableSet.of("7.rle.column", "7.dic-rle.column").contains(files[0]), files[0]);
+
+        operator = new AlignmentOperatorFactory(0, storageManager.getBlocks(shardUuid, columnHandles.get(0))).createOperator(driverContext);
+        OperatorAssertion.assertOperatorEquals(operator, toMaterializedResult(operator.getTupleInfos(), pages));
+    }
+
+    @Test
+    public void testChooseEncodingIsDeterministic()
+    {
+        Random random = new Random(42);
+        RowPagesBuilder randomValues = rowPagesBuilder(SINGLE_LONG);
+        RowPagesBuilder runs = rowPagesBuilder(SINGLE_LONG);
+        RowPagesBuilder fewValues = rowPagesBuilder(SINGLE_VARBINARY);
+        for (int i = 0; i < 10_000; i++) {
+            randomValues.row(random.nextLong());
+            runs.row(i / 1000);
+            fewValues.row("value" + (i % 7));
+        }
+
+        assertEquals(chooseEncoding(randomValues.build()), BlocksFileEncoding.RAW);
+        assertEquals(chooseEncoding(runs.build()), BlocksFileEncoding.RLE);
+
+        BlocksFileEncoding encoding = chooseEncoding(fewValues.build());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(chooseEncoding(fewValues.build()), encoding);
+        }
+    }
+
+    private static BlocksFileEncoding chooseEncoding(List<Page> pages)
+    {
+        List<Block> blocks = new ArrayList<>();
+        for (Page page : pages) {
+            blocks.add(page.getBlock(0));
+        }
+
+        final DynamicSliceOutput output = new DynamicSliceOutput(1024);
+        BlocksFileWriter.writeBlocks(BlocksFileEncoding.RAW, new OutputSupplier<DynamicSliceOutput>()
+        {
+            @Override
+            public DynamicSliceOutput getOutput()
+            {
+                return output;
+            }
+        }, blocks);
+        return DatabaseLocalStorageManager.chooseEncoding(BlocksFileReader.readBlocks(output.slice()));
+    }
+
     @Test
     public void testShardPath()
     {
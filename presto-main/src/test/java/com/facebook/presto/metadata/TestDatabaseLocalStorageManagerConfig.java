@@ -15,6 +15,8 @@ package com.facebook.presto.metadata;
 
 import com.google.common.collect.ImmutableMap;
 import io.airlift.configuration.testing.ConfigAssertions;
+import io.airlift.units.DataSize;
+import io.airlift.units.DataSize.Unit;
 import org.testng.annotations.Test;
 
 import javax.validation.constraints.NotNull;
@@ -32,6 +34,8 @@ public class TestDatabaseLocalStorageManagerConfig
         ConfigAssertions.assertRecordedDefaults(ConfigAssertions.recordDefaults(DatabaseLocalStorageManagerConfig.class)
                 .setDataDirectory(new File("var/data"))
                 .setTasksPerNode(32)
+                .setMaxMappedSize(new DataSize(4, Unit.GIGABYTE))
+                .setOptimizeEncodings(true)
                 .setCompressed(true));
     }
 
@@ -41,12 +45,16 @@ public class TestDatabaseLocalStorageManagerConfig
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("storage-manager.data-directory", "/data")
                 .put("storage-manager.tasks-per-node", "16")
+                .put("storage-manager.max-mapped-size", "100MB")
+                .put("storage-manager.optimize-encodings", "false")
                 .put("storage-manager.compress", "false")
                 .build();
 
         DatabaseLocalStorageManagerConfig expected = new DatabaseLocalStorageManagerConfig()
                 .setDataDirectory(new File("/data"))
                 .setTasksPerNode(16)
+                .setMaxMappedSize(new DataSize(100, Unit.MEGABYTE))
+                .setOptimizeEncodings(false)
                 .setCompressed(false);
 
         ConfigAssertions.assertFullMapping(properties, expected);
@@ -0,0 +1,206 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.metadata;
+
+import com.facebook.presto.connector.NativeConnectorFactory;
+import com.facebook.presto.operator.Page;
+import com.facebook.presto.operator.RowPagesBuilder;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.ColumnMetadata;
+import com.facebook.presto.spi.ConnectorTableMetadata;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.split.NativeDataStreamProvider;
+import com.facebook.presto.split.NativeSplitManager;
+import com.facebook.presto.sql.analyzer.Session;
+import com.facebook.presto.util.LocalQueryRunner;
+import com.facebook.presto.util.MaterializedResult;
+import com.facebook.presto.util.MaterializedTuple;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import io.airlift.testing.FileUtils;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.presto.metadata.MetadataUtil.TableMetadataBuilder.tableMetadataBuilder;
+import static com.facebook.presto.operator.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.spi.ColumnType.LONG;
+import static com.facebook.presto.spi.ColumnType.STRING;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
+import static com.facebook.presto.tuple.TupleInfo.Type.FIXED_INT_64;
+import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
+import static com.facebook.presto.util.MaterializedResult.DEFAULT_PRECISION;
+import static com.facebook.presto.util.MaterializedResult.resultBuilder;
+import static com.facebook.presto.util.Threads.daemonThreadsNamed;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Queries over native tables whose columns were re-encoded, so the table scans
+ * produce run length and dictionary encoded blocks.
+ */
+@Test(singleThreaded = true)
+public class TestEncodedNativeQueries
+{
+    private static final int ORDERS = 10_000;
+    private static final int CUSTOMERS = 100;
+    private static final ImmutableList<String> STATUSES = ImmutableList.of("F", "O", "P");
+
+    private Handle dummyHandle;
+    private File dataDir;
+    private ExecutorService executor;
+    private DatabaseLocalStorageManager storageManager;
+    private DatabaseShardManager shardManager;
+    private NativeMetadata metadata;
+    private LocalQueryRunner queryRunner;
+
+    @BeforeClass
+    public void setup()
+            throws Exception
+    {
+        IDBI dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
+        dummyHandle = dbi.open();
+        dataDir = Files.createTempDir();
+        executor = newCachedThreadPool(daemonThreadsNamed("test"));
+
+        storageManager = new DatabaseLocalStorageManager(dbi, new DatabaseLocalStorageManagerConfig().setDataDirectory(dataDir));
+        shardManager = new DatabaseShardManager(dbi);
+        metadata = new NativeMetadata(new NativeConnectorId("native"), dbi, shardManager);
+
+        Session session = new Session("user", "test", "native", "default", null, null);
+        queryRunner = new LocalQueryRunner(session, executor);
+        queryRunner.createCatalog("native", new NativeConnectorFactory(
+                metadata,
+                new NativeSplitManager(queryRunner.getNodeManager(), shardManager, metadata),
+                new NativeDataStreamProvider(storageManager),
+                new NativeRecordSinkProvider(storageManager, "local")),
+                ImmutableMap.<String, String>of());
+
+        // custkey and status have long runs, so they are re-encoded
+        RowPagesBuilder orders = rowPagesBuilder(SINGLE_LONG, SINGLE_LONG, SINGLE_VARBINARY);
+        for (int orderKey = 0; orderKey < ORDERS; orderKey++) {
+            orders.row(orderKey, orderKey / CUSTOMERS, getStatus(orderKey));
+        }
+        createTable(tableMetadataBuilder("default", "orders")
+                .column("orderkey", LONG)
+                .column("custkey", LONG)
+                .column("status", STRING)
+                .build(), orders.build());
+
+        // nation has long runs, so it is re-encoded
+        RowPagesBuilder customers = rowPagesBuilder(SINGLE_LONG, SINGLE_LONG);
+        for (int custKey = 0; custKey < CUSTOMERS; custKey++) {
+            customers.row(custKey, custKey / 25);
+        }
+        createTable(tableMetadataBuilder("default", "customers")
+                .column("custkey", LONG)
+                .column("nation", LONG)
+                .build(), customers.build());
+
+        assertTrue(storageManager.getReencodedColumns() >= 3, "expected the columns with long runs to be re-encoded");
+    }
+
+    @AfterClass
+    public void tearDown()
+    {
+        dummyHandle.close();
+        FileUtils.deleteRecursively(dataDir);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrderBy()
+    {
+        MaterializedResult actual = queryRunner.execute("SELECT status, orderkey FROM orders ORDER BY status DESC, orderkey");
+
+        MaterializedResult.Builder expected = resultBuilder(VARIABLE_BINARY, FIXED_INT_64);
+        for (String status : STATUSES.reverse()) {
+            for (int orderKey = 0; orderKey < ORDERS; orderKey++) {
+                if (getStatus(orderKey).equals(status)) {
+                    expected.row(status, (long) orderKey);
+                }
+            }
+        }
+        assertEquals(actual.getMaterializedTuples(), expected.build().getMaterializedTuples());
+    }
+
+    @Test
+    public void testJoin()
+    {
+        // orders is the build side of the join
+        MaterializedResult actual = queryRunner.execute("" +
+                "SELECT c.nation, count(*) " +
+                "FROM customers c JOIN orders o ON c.custkey = o.custkey " +
+                "GROUP BY c.nation");
+
+        List<MaterializedTuple> expected = new ArrayList<>();
+        for (long nation = 0; nation < 4; nation++) {
+            expected.add(new MaterializedTuple(DEFAULT_PRECISION, nation, (long) ORDERS / 4));
+        }
+        assertEquals(ImmutableSet.copyOf(actual.getMaterializedTuples()), ImmutableSet.copyOf(expected));
+    }
+
+    @Test
+    public void testIn()
+    {
+        // the probe side of the semi join is encoded
+        MaterializedResult actual = queryRunner.execute("SELECT count(*) FROM orders WHERE custkey IN (SELECT custkey FROM customers WHERE nation = 1)");
+        assertEquals(actual.getMaterializedTuples(), ImmutableList.of(new MaterializedTuple(DEFAULT_PRECISION, (long) ORDERS / 4)));
+
+        // the set of the semi join is built from an encoded column
+        actual = queryRunner.execute("SELECT count(*) FROM customers WHERE custkey IN (SELECT custkey FROM orders)");
+        assertEquals(actual.getMaterializedTuples(), ImmutableList.of(new MaterializedTuple(DEFAULT_PRECISION, (long) CUSTOMERS)));
+    }
+
+    private void createTable(ConnectorTableMetadata tableMetadata, List<Page> pages)
+            throws Exception
+    {
+        TableHandle tableHandle = metadata.createTable(tableMetadata);
+
+        List<ColumnHandle> columnHandles = new ArrayList<>();
+        for (ColumnMetadata column : tableMetadata.getColumns()) {
+            columnHandles.add(metadata.getColumnHandle(tableHandle, column.getName()));
+        }
+
+        UUID shardUuid = UUID.randomUUID();
+        ColumnFileHandle fileHandles = storageManager.createStagingFileHandles(shardUuid, columnHandles);
+        for (Page page : pages) {
+            fileHandles.append(page);
+        }
+        storageManager.commit(fileHandles);
+        shardManager.commitUnpartitionedTable(tableHandle, ImmutableMap.of(shardUuid, "local"));
+
+        while (storageManager.isShardActive(shardUuid)) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static String getStatus(int orderKey)
+    {
+        return STATUSES.get((orderKey / 500) % STATUSES.size());
+    }
+}
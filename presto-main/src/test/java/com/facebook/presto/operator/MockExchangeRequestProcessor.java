@@ -88,7 +88,9 @@ public class MockExchangeRequestProcessor
         URI location = requestLocation.getLocation();
 
         BlockingQueue<Page> pages = pagesByLocation.get(location);
-        long token = tokenByLocation.get(location);
+        // locations without pages have not been assigned a token yet
+        Long currentToken = tokenByLocation.get(location);
+        long token = currentToken == null ? 0 : currentToken;
         // if location is complete return GONE
         if (completeByLocation.get(location) == Boolean.TRUE && (pages == null || pages.isEmpty())) {
             return new TestingResponse(HttpStatus.GONE, ImmutableListMultimap.of(
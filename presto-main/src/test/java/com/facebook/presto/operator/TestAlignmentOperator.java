@@ -17,6 +17,10 @@ import com.facebook.presto.block.BlockIterable;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.operator.AlignmentOperator.AlignmentOperatorFactory;
 import com.facebook.presto.sql.analyzer.Session;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -128,7 +132,63 @@ public class TestAlignmentOperator
         assertEquals(operator.getOutput(), null);
     }
 
+    @Test
+    public void testSelectedRows()
+            throws Exception
+    {
+        RangeSet<Long> selectedRows = TreeRangeSet.create();
+        selectedRows.add(Range.closedOpen(1L, 3L));
+        selectedRows.add(Range.closedOpen(5L, 10L));
+        Operator operator = new AlignmentOperator(driverContext.addOperatorContext(0, "test"), createChannels(), selectedRows);
+
+        List<Page> expected = rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG)
+                .row("bob", 1)
+                .row("charlie", 2)
+                .pageBreak()
+                .row("bob", 5)
+                .row("charlie", 6)
+                .row("dave", 7)
+                .pageBreak()
+                .row("alice", 8)
+                .row("bob", 9)
+                .build();
+
+        assertOperatorEquals(operator, expected);
+    }
+
+    @Test
+    public void testSkipBlocks()
+            throws Exception
+    {
+        RangeSet<Long> selectedRows = TreeRangeSet.create();
+        selectedRows.add(Range.atLeast(9L));
+        Operator operator = new AlignmentOperator(driverContext.addOperatorContext(0, "test"), createChannels(), selectedRows);
+
+        List<Page> expected = rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG)
+                .row("bob", 9)
+                .row("charlie", 10)
+                .row("dave", 11)
+                .build();
+
+        assertOperatorEquals(operator, expected);
+    }
+
+    @Test
+    public void testNoSelectedRows()
+            throws Exception
+    {
+        Operator operator = new AlignmentOperator(driverContext.addOperatorContext(0, "test"), createChannels(), TreeRangeSet.<Long>create());
+
+        assertEquals(operator.getOutput(), null);
+        assertEquals(operator.isFinished(), true);
+    }
+
     private Operator createAlignmentOperator()
+    {
+        return new AlignmentOperatorFactory(0, createChannels()).createOperator(driverContext);
+    }
+
+    private static List<BlockIterable> createChannels()
     {
         BlockIterable channel0 = blockIterableBuilder(VARIABLE_BINARY)
                 .append("alice")
@@ -162,6 +222,6 @@ public class TestAlignmentOperator
                 .append(11)
                 .build();
 
-        return new AlignmentOperatorFactory(0, channel0, channel1).createOperator(driverContext);
+        return ImmutableList.of(channel0, channel1);
     }
 }
@@ -31,7 +31,8 @@ public class TestExchangeClientConfig
     {
         assertRecordedDefaults(recordDefaults(ExchangeClientConfig.class)
                 .setExchangeMaxBufferSize(new DataSize(32, Unit.MEGABYTE))
-                .setExchangeConcurrentRequestMultiplier(3));
+                .setExchangeConcurrentRequestMultiplier(3)
+                .setExchangeCompressionEnabled(false));
     }
 
     @Test
@@ -40,11 +41,13 @@ public class TestExchangeClientConfig
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("exchange.max-buffer-size", "1GB")
                 .put("exchange.concurrent-request-multiplier", "13")
+                .put("exchange.compression-enabled", "true")
                 .build();
 
         ExchangeClientConfig expected = new ExchangeClientConfig()
                 .setExchangeMaxBufferSize(new DataSize(1, Unit.GIGABYTE))
-                .setExchangeConcurrentRequestMultiplier(13);
+                .setExchangeConcurrentRequestMultiplier(13)
+                .setExchangeCompressionEnabled(true);
 
         assertFullMapping(properties, expected);
     }
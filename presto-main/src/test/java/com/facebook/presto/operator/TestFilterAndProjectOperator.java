@@ -14,14 +14,27 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.dictionary.Dictionary;
+import com.facebook.presto.block.dictionary.DictionaryEncodedBlock;
+import com.facebook.presto.block.rle.RunLengthEncodedBlock;
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.operator.FilterAndProjectOperator.FilterAndProjectOperatorFactory;
 import com.facebook.presto.spi.RecordCursor;
 import com.facebook.presto.sql.analyzer.Session;
+import com.facebook.presto.sql.analyzer.Type;
+import com.facebook.presto.sql.gen.ExpressionCompiler;
+import com.facebook.presto.sql.tree.ArithmeticExpression;
+import com.facebook.presto.sql.tree.ComparisonExpression;
+import com.facebook.presto.sql.tree.Expression;
+import com.facebook.presto.sql.tree.Input;
+import com.facebook.presto.sql.tree.InputReference;
+import com.facebook.presto.sql.tree.LongLiteral;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleReadable;
 import com.facebook.presto.util.MaterializedResult;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -29,6 +42,8 @@ import org.testng.annotations.Test;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
 import static com.facebook.presto.operator.ProjectionFunctions.singleColumn;
 import static com.facebook.presto.operator.RowPagesBuilder.rowPagesBuilder;
@@ -36,6 +51,7 @@ import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
 import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
 import static com.facebook.presto.tuple.TupleInfo.Type.FIXED_INT_64;
 import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
+import static com.facebook.presto.tuple.Tuples.createTuple;
 import static com.facebook.presto.util.Threads.daemonThreadsNamed;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 
@@ -106,6 +122,106 @@ public class TestFilterAndProjectOperator
         assertOperatorEquals(operator, input, expected);
     }
 
+    @Test
+    public void testCompiledDictionaryEncodedInput()
+            throws Exception
+    {
+        Dictionary dictionary = new Dictionary(SINGLE_LONG,
+                createTuple(10L).getTupleSlice(),
+                createTuple(20L).getTupleSlice(),
+                createTuple(30L).getTupleSlice());
+
+        List<Page> input = ImmutableList.of(
+                new Page(new DictionaryEncodedBlock(dictionary, createLongsBlock(0, 1, 2, 2, 1, 0))),
+                new Page(new DictionaryEncodedBlock(dictionary, createLongsBlock(2, 0, 1))));
+
+        MaterializedResult expected = MaterializedResult.resultBuilder(FIXED_INT_64)
+                .row(25)
+                .row(35)
+                .row(35)
+                .row(25)
+                .row(35)
+                .row(25)
+                .build();
+
+        assertOperatorEquals(compileAtLeast20Add5(false).createOperator(driverContext), input, expected);
+        assertOperatorEquals(compileAtLeast20Add5(true).createOperator(driverContext), input, expected);
+    }
+
+    @Test
+    public void testCompiledDictionaryEncodedChannelOfMultiColumnInput()
+            throws Exception
+    {
+        Dictionary dictionary = new Dictionary(SINGLE_LONG,
+                createTuple(10L).getTupleSlice(),
+                createTuple(20L).getTupleSlice(),
+                createTuple(30L).getTupleSlice());
+
+        // only the channel read by the expressions is encoded
+        List<Page> input = ImmutableList.of(
+                new Page(
+                        createStringsBlock("a", "b", "c", "d", "e", "f"),
+                        new DictionaryEncodedBlock(dictionary, createLongsBlock(0, 1, 2, 2, 1, 0))),
+                new Page(
+                        new RunLengthEncodedBlock(createTuple("g"), 3),
+                        new DictionaryEncodedBlock(dictionary, createLongsBlock(2, 0, 1))),
+                new Page(
+                        createStringsBlock("h", "i"),
+                        new RunLengthEncodedBlock(createTuple(30L), 2)));
+
+        MaterializedResult expected = MaterializedResult.resultBuilder(FIXED_INT_64)
+                .row(25)
+                .row(35)
+                .row(35)
+                .row(25)
+                .row(35)
+                .row(25)
+                .row(35)
+                .row(35)
+                .build();
+
+        assertOperatorEquals(compileAtLeast20Add5(false, 1).createOperator(driverContext), input, expected);
+        assertOperatorEquals(compileAtLeast20Add5(true, 1).createOperator(driverContext), input, expected);
+    }
+
+    @Test
+    public void testCompiledRunLengthEncodedInput()
+            throws Exception
+    {
+        List<Page> input = ImmutableList.of(
+                new Page(new RunLengthEncodedBlock(createTuple(30L), 3)),
+                new Page(new RunLengthEncodedBlock(createTuple(10L), 4)),
+                new Page(new RunLengthEncodedBlock(createTuple(20L), 2)));
+
+        MaterializedResult expected = MaterializedResult.resultBuilder(FIXED_INT_64)
+                .row(35)
+                .row(35)
+                .row(35)
+                .row(25)
+                .row(25)
+                .build();
+
+        assertOperatorEquals(compileAtLeast20Add5(false).createOperator(driverContext), input, expected);
+        assertOperatorEquals(compileAtLeast20Add5(true).createOperator(driverContext), input, expected);
+    }
+
+    private static OperatorFactory compileAtLeast20Add5(boolean columnar)
+    {
+        return compileAtLeast20Add5(columnar, 0);
+    }
+
+    private static OperatorFactory compileAtLeast20Add5(boolean columnar, int channel)
+    {
+        Expression value = new InputReference(new Input(channel));
+        return new ExpressionCompiler(new MetadataManager()).compileFilterAndProjectOperator(
+                0,
+                new ComparisonExpression(ComparisonExpression.Type.GREATER_THAN_OR_EQUAL, value, new LongLiteral("20")),
+                ImmutableList.<Expression>of(new ArithmeticExpression(ArithmeticExpression.Type.ADD, value, new LongLiteral("5"))),
+                ImmutableMap.of(new Input(channel), Type.BIGINT),
+                ImmutableList.of(Type.BIGINT),
+                columnar);
+    }
+
     private static class Add5Projection
             implements ProjectionFunction
     {
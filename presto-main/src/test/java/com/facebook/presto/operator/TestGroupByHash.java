@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.tuple.TupleInfo.Type;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.operator.GroupByHashes.createGroupByHash;
+import static com.facebook.presto.operator.RowPageBuilder.rowPageBuilder;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestGroupByHash
+{
+    @Test
+    public void testBigint()
+    {
+        GroupByHash groupByHash = createGroupByHash(ImmutableList.of(Type.FIXED_INT_64), new int[] {0}, 10);
+        assertTrue(groupByHash instanceof BigintGroupByHash);
+
+        // enough values to force several rehashes
+        RowPageBuilder pageBuilder = rowPageBuilder(SINGLE_LONG);
+        for (int i = 0; i < 10_000; i++) {
+            pageBuilder.row(i * 7L);
+        }
+        pageBuilder.row((Object) null);
+        GroupByIdBlock groupIds = groupByHash.getGroupIds(pageBuilder.build());
+        assertEquals(groupByHash.getGroupCount(), 10_001);
+        for (int i = 0; i < 10_001; i++) {
+            assertEquals(groupIds.getGroupId(i), i);
+        }
+
+        // same values in a different order map to the existing groups
+        groupIds = groupByHash.getGroupIds(rowPageBuilder(SINGLE_LONG)
+                .row((Object) null)
+                .row(7L)
+                .row(0L)
+                .row(-1L)
+                .build());
+        assertEquals(groupIds.getGroupId(0), 10_000);
+        assertEquals(groupIds.getGroupId(1), 1);
+        assertEquals(groupIds.getGroupId(2), 0);
+        assertEquals(groupIds.getGroupId(3), 10_001);
+        assertEquals(groupByHash.getGroupCount(), 10_002);
+
+        BlockCursor cursor = appendValues(groupByHash, SINGLE_LONG, 1, 10_000, 10_001);
+        assertEquals(cursor.getLong(), 7L);
+        assertTrue(cursor.advanceNextPosition());
+        assertTrue(cursor.isNull());
+        assertTrue(cursor.advanceNextPosition());
+        assertEquals(cursor.getLong(), -1L);
+    }
+
+    @Test
+    public void testMultiChannel()
+    {
+        TupleInfo[] tupleInfos = {SINGLE_VARBINARY, SINGLE_LONG};
+        GroupByHash groupByHash = createGroupByHash(ImmutableList.of(Type.VARIABLE_BINARY, Type.FIXED_INT_64), new int[] {0, 1}, 10);
+        assertTrue(groupByHash instanceof MultiChannelGroupByHash);
+
+        RowPageBuilder pageBuilder = rowPageBuilder(tupleInfos);
+        for (int i = 0; i < 10_000; i++) {
+            pageBuilder.row(String.valueOf(i % 100), (long) i);
+        }
+        GroupByIdBlock groupIds = groupByHash.getGroupIds(pageBuilder.build());
+        assertEquals(groupByHash.getGroupCount(), 10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(groupIds.getGroupId(i), i);
+        }
+
+        groupIds = groupByHash.getGroupIds(rowPageBuilder(tupleInfos)
+                .row("42", 142L)
+                .row("42", 143L)
+                .row(null, 142L)
+                .row(null, 142L)
+                .build());
+        assertEquals(groupIds.getGroupId(0), 142);
+        assertEquals(groupIds.getGroupId(1), 10_000);
+        assertEquals(groupIds.getGroupId(2), 10_001);
+        assertEquals(groupIds.getGroupId(3), 10_001);
+        assertEquals(groupByHash.getGroupCount(), 10_002);
+
+        BlockBuilder[] builders = {new BlockBuilder(SINGLE_VARBINARY), new BlockBuilder(SINGLE_LONG)};
+        groupByHash.appendValuesTo(10_001, builders);
+        BlockCursor keyCursor = builders[0].build().cursor();
+        assertTrue(keyCursor.advanceNextPosition());
+        assertTrue(keyCursor.isNull());
+        BlockCursor valueCursor = builders[1].build().cursor();
+        assertTrue(valueCursor.advanceNextPosition());
+        assertEquals(valueCursor.getLong(), 142L);
+    }
+
+    @Test
+    public void testHashGroupIsStableAcrossInstances()
+    {
+        GroupByHash first = createGroupByHash(ImmutableList.of(Type.FIXED_INT_64), new int[] {0}, 10);
+        GroupByHash second = createGroupByHash(ImmutableList.of(Type.FIXED_INT_64), new int[] {0}, 10);
+        first.getGroupIds(rowPageBuilder(SINGLE_LONG).row(1L).row(2L).row((Object) null).build());
+        second.getGroupIds(rowPageBuilder(SINGLE_LONG).row((Object) null).row(2L).row(1L).build());
+        assertEquals(first.hashGroup(0), second.hashGroup(2));
+        assertEquals(first.hashGroup(1), second.hashGroup(1));
+        assertEquals(first.hashGroup(2), second.hashGroup(0));
+        assertFalse(first.hashGroup(0) == first.hashGroup(1));
+
+        first = createGroupByHash(ImmutableList.of(Type.VARIABLE_BINARY), new int[] {0}, 10);
+        second = createGroupByHash(ImmutableList.of(Type.VARIABLE_BINARY), new int[] {0}, 10);
+        first.getGroupIds(rowPageBuilder(SINGLE_VARBINARY).row("a").row("b").build());
+        second.getGroupIds(rowPageBuilder(SINGLE_VARBINARY).row("b").row("a").build());
+        assertEquals(first.hashGroup(0), second.hashGroup(1));
+        assertEquals(first.hashGroup(1), second.hashGroup(0));
+    }
+
+    private static BlockCursor appendValues(GroupByHash groupByHash, TupleInfo tupleInfo, int... groupIds)
+    {
+        BlockBuilder[] builders = {new BlockBuilder(tupleInfo)};
+        for (int groupId : groupIds) {
+            groupByHash.appendValuesTo(groupId, builders);
+        }
+        BlockCursor cursor = builders[0].build().cursor();
+        assertTrue(cursor.advanceNextPosition());
+        return cursor;
+    }
+}
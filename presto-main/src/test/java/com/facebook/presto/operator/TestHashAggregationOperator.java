@@ -15,6 +15,7 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskStateMachine;
 import com.facebook.presto.operator.HashAggregationOperator.HashAggregationOperatorFactory;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.sql.planner.plan.AggregationNode.Step;
@@ -22,6 +23,7 @@ import com.facebook.presto.sql.tree.Input;
 import com.facebook.presto.util.MaterializedResult;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import com.google.common.primitives.Ints;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
@@ -29,8 +31,10 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static com.facebook.presto.operator.AggregationFunctionDefinition.aggregation;
 import static com.facebook.presto.operator.OperatorAssertion.appendSampleWeight;
@@ -52,6 +56,7 @@ import static com.facebook.presto.tuple.TupleInfo.Type.FIXED_INT_64;
 import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
 import static com.facebook.presto.util.MaterializedResult.resultBuilder;
 import static com.facebook.presto.util.Threads.daemonThreadsNamed;
+import static io.airlift.testing.FileUtils.deleteRecursively;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static org.testng.Assert.assertEquals;
 
@@ -191,6 +196,104 @@ public class TestHashAggregationOperator
         toPages(operator, input);
     }
 
+    @Test
+    public void testSpillToDisk()
+            throws Exception
+    {
+        int groupCount = 100_000;
+        List<Page> input = rowPagesBuilder(SINGLE_LONG)
+                .addSequencePage(groupCount, 0)
+                .addSequencePage(groupCount, 0)
+                .build();
+
+        File spillPath = Files.createTempDir();
+        try {
+            // the hash for all groups needs several megabytes, but one spill partition fits in the limit
+            Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+            TaskStateMachine taskStateMachine = new TaskStateMachine(new TaskId("query", "stage", "task"), executor);
+            DriverContext driverContext = new TaskContext(taskStateMachine, executor, session, new DataSize(512, Unit.KILOBYTE), new DataSize(0, Unit.BYTE), true, Optional.of(spillPath))
+                    .addPipelineContext(true, true)
+                    .addDriverContext();
+
+            HashAggregationOperatorFactory operatorFactory = new HashAggregationOperatorFactory(
+                    0,
+                    ImmutableList.of(SINGLE_LONG),
+                    Ints.asList(0),
+                    Step.SINGLE,
+                    ImmutableList.of(aggregation(COUNT, ImmutableList.of(new Input(0)), Optional.<Input>absent(), Optional.<Input>absent(), 1.0),
+                            aggregation(LONG_SUM, ImmutableList.of(new Input(0)), Optional.<Input>absent(), Optional.<Input>absent(), 1.0)),
+                    10);
+
+            HashAggregationOperator operator = (HashAggregationOperator) operatorFactory.createOperator(driverContext);
+
+            MaterializedResult.Builder expected = resultBuilder(FIXED_INT_64, FIXED_INT_64, FIXED_INT_64);
+            for (int i = 0; i < groupCount; i++) {
+                expected.row(i, 2, 2 * i);
+            }
+
+            assertOperatorEqualsIgnoreOrder(operator, input, expected.build());
+            operator.close();
+
+            // all spill files are removed once they have been merged
+            assertEquals(driverContext.getSpillPath().get().list().length, 0);
+        }
+        finally {
+            deleteRecursively(spillPath);
+        }
+    }
+
+    @Test
+    public void testRepartitionOversizedSpillPartition()
+            throws Exception
+    {
+        int groupCount = 100_000;
+        List<Page> input = rowPagesBuilder(SINGLE_LONG)
+                .addSequencePage(groupCount, 0)
+                .addSequencePage(groupCount, 0)
+                .build();
+
+        File spillPath = Files.createTempDir();
+        try {
+            // not even one spill partition fits in the limit, so the partitions must be split again
+            Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+            TaskStateMachine taskStateMachine = new TaskStateMachine(new TaskId("query", "stage", "task"), executor);
+            DriverContext driverContext = new TaskContext(taskStateMachine, executor, session, new DataSize(64, Unit.KILOBYTE), new DataSize(0, Unit.BYTE), true, Optional.of(spillPath))
+                    .addPipelineContext(true, true)
+                    .addDriverContext();
+
+            HashAggregationOperatorFactory operatorFactory = new HashAggregationOperatorFactory(
+                    0,
+                    ImmutableList.of(SINGLE_LONG),
+                    Ints.asList(0),
+                    Step.SINGLE,
+                    ImmutableList.of(aggregation(COUNT, ImmutableList.of(new Input(0)), Optional.<Input>absent(), Optional.<Input>absent(), 1.0),
+                            aggregation(LONG_SUM, ImmutableList.of(new Input(0)), Optional.<Input>absent(), Optional.<Input>absent(), 1.0)),
+                    10);
+
+            HashAggregationOperator operator = (HashAggregationOperator) operatorFactory.createOperator(driverContext);
+
+            MaterializedResult.Builder expected = resultBuilder(FIXED_INT_64, FIXED_INT_64, FIXED_INT_64);
+            for (int i = 0; i < groupCount; i++) {
+                expected.row(i, 2, 2 * i);
+            }
+
+            assertOperatorEqualsIgnoreOrder(operator, input, expected.build());
+            operator.close();
+            assertEquals(driverContext.getSpillPath().get().list().length, 0);
+
+            // the task spill directory is removed when the task is done
+            taskStateMachine.finished();
+            long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (spillPath.list().length > 0 && System.nanoTime() < endTime) {
+                Thread.sleep(10);
+            }
+            assertEquals(spillPath.list().length, 0);
+        }
+        finally {
+            deleteRecursively(spillPath);
+        }
+    }
+
     @Test
     public void testMultiSliceAggregationOutput()
     {
@@ -26,10 +26,12 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEqualsIgnoreOrder;
 import static com.facebook.presto.operator.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
 import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
@@ -38,6 +40,8 @@ import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
 import static com.facebook.presto.util.Threads.daemonThreadsNamed;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestHashJoinOperator
@@ -112,6 +116,117 @@ public class TestHashJoinOperator
         assertOperatorEquals(joinOperator, probeInput, expected);
     }
 
+    @Test
+    public void testParallelBuild()
+            throws Exception
+    {
+        // build: each builder receives a different share of the build side, and keys 25 to 29 appear twice
+        List<List<Page>> buildInputs = ImmutableList.of(
+                rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG, SINGLE_LONG).addSequencePage(10, 20, 30, 40).build(),
+                rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG, SINGLE_LONG).addSequencePage(10, 30, 50, 60).build(),
+                rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG, SINGLE_LONG).addSequencePage(5, 25, 70, 80).build());
+
+        PipelineContext buildPipeline = taskContext.addPipelineContext(true, false);
+        HashBuilderOperatorFactory hashBuilderOperatorFactory = new HashBuilderOperatorFactory(
+                1,
+                ImmutableList.of(SINGLE_VARBINARY, SINGLE_LONG, SINGLE_LONG),
+                Ints.asList(0),
+                100,
+                buildInputs.size());
+
+        List<Driver> buildDrivers = new ArrayList<>();
+        for (List<Page> buildInput : buildInputs) {
+            DriverContext driverContext = buildPipeline.addDriverContext();
+            Operator buildOperator = new ValuesOperator(driverContext.addOperatorContext(0, ValuesOperator.class.getSimpleName()), buildInput);
+            buildDrivers.add(new Driver(driverContext, buildOperator, hashBuilderOperatorFactory.createOperator(driverContext)));
+        }
+
+        // the builders wait for each other, so run them round robin
+        boolean finished = false;
+        while (!finished) {
+            finished = true;
+            for (Driver buildDriver : buildDrivers) {
+                if (!buildDriver.isFinished()) {
+                    buildDriver.process();
+                    finished = false;
+                }
+            }
+        }
+
+        // probe
+        List<Page> probeInput = rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG, SINGLE_LONG)
+                .addSequencePage(30, 15, 1000, 2000)
+                .build();
+        HashJoinOperatorFactory joinOperatorFactory = HashJoinOperator.innerJoin(
+                0,
+                hashBuilderOperatorFactory.getHashSupplier(),
+                ImmutableList.of(SINGLE_VARBINARY, SINGLE_LONG, SINGLE_LONG),
+                Ints.asList(0));
+
+        Operator joinOperator = joinOperatorFactory.createOperator(taskContext.addPipelineContext(true, true).addDriverContext());
+
+        // expected
+        MaterializedResult.Builder expected = MaterializedResult.resultBuilder(VARIABLE_BINARY,
+                FIXED_INT_64,
+                FIXED_INT_64,
+                VARIABLE_BINARY,
+                FIXED_INT_64,
+                FIXED_INT_64);
+        for (int key = 20; key < 30; key++) {
+            expected.row(String.valueOf(key), 985 + key, 1985 + key, String.valueOf(key), 10 + key, 20 + key);
+        }
+        for (int key = 30; key < 40; key++) {
+            expected.row(String.valueOf(key), 985 + key, 1985 + key, String.valueOf(key), 20 + key, 30 + key);
+        }
+        for (int key = 25; key < 30; key++) {
+            expected.row(String.valueOf(key), 985 + key, 1985 + key, String.valueOf(key), 45 + key, 55 + key);
+        }
+
+        assertOperatorEqualsIgnoreOrder(joinOperator, probeInput, expected.build());
+    }
+
+    @Test
+    public void testParallelBuildMemoryReservation()
+            throws Exception
+    {
+        List<List<Page>> buildInputs = ImmutableList.of(
+                rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG).addSequencePage(1000, 0, 0).build(),
+                rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG).addSequencePage(1000, 1000, 0).build(),
+                rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG).addSequencePage(1000, 2000, 0).build());
+
+        PipelineContext buildPipeline = taskContext.addPipelineContext(true, false);
+        HashBuilderOperatorFactory hashBuilderOperatorFactory = new HashBuilderOperatorFactory(
+                1,
+                ImmutableList.of(SINGLE_VARBINARY, SINGLE_LONG),
+                Ints.asList(0),
+                100,
+                buildInputs.size());
+
+        List<Driver> buildDrivers = new ArrayList<>();
+        for (List<Page> buildInput : buildInputs) {
+            DriverContext driverContext = buildPipeline.addDriverContext();
+            Operator buildOperator = new ValuesOperator(driverContext.addOperatorContext(0, ValuesOperator.class.getSimpleName()), buildInput);
+            buildDrivers.add(new Driver(driverContext, buildOperator, hashBuilderOperatorFactory.createOperator(driverContext)));
+        }
+
+        boolean finished = false;
+        while (!finished) {
+            finished = true;
+            for (Driver buildDriver : buildDrivers) {
+                if (!buildDriver.isFinished()) {
+                    buildDriver.process();
+                    finished = false;
+                }
+            }
+        }
+
+        // the pages routed between the builders are released once they are indexed,
+        // so the task only holds the memory of the partition indexes
+        long hashSize = hashBuilderOperatorFactory.getHashSupplier().getEstimatedSize();
+        assertTrue(hashSize > 0);
+        assertEquals(taskContext.getTaskStats().getMemoryReservation().toBytes(), hashSize);
+    }
+
     @Test
     public void testInnerJoinWithNullProbe()
             throws Exception
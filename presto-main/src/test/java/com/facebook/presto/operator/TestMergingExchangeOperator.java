@@ -0,0 +1,245 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.operator.MergingExchangeOperator.MergingExchangeOperatorFactory;
+import com.facebook.presto.split.RemoteSplit;
+import com.facebook.presto.sql.analyzer.Session;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.util.MaterializedResult;
+import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import io.airlift.http.client.AsyncHttpClient;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.units.DataSize;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
+import static com.facebook.presto.operator.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
+import static com.facebook.presto.tuple.TupleInfo.Type.FIXED_INT_64;
+import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
+import static com.facebook.presto.util.Threads.daemonThreadsNamed;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestMergingExchangeOperator
+{
+    private static final List<TupleInfo> TUPLE_INFOS = ImmutableList.of(SINGLE_LONG, SINGLE_VARBINARY);
+
+    private static final URI LOCATION_1 = URI.create("http://localhost:8081/task1");
+    private static final URI LOCATION_2 = URI.create("http://localhost:8082/task2");
+    private static final URI LOCATION_3 = URI.create("http://localhost:8083/task3");
+
+    private ExecutorService executor;
+    private MockExchangeRequestProcessor processor;
+    private AsyncHttpClient httpClient;
+    private Supplier<ExchangeClient> exchangeClientSupplier;
+    private List<ExchangeClient> exchangeClients;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test-%s"));
+        // each stream requests at most a page at a time
+        processor = new MockExchangeRequestProcessor(PageBuilder.DEFAULT_MAX_PAGE_SIZE);
+        httpClient = new TestingHttpClient(processor, executor);
+        exchangeClients = new CopyOnWriteArrayList<>();
+        exchangeClientSupplier = new Supplier<ExchangeClient>()
+        {
+            @Override
+            public ExchangeClient get()
+            {
+                ExchangeClient exchangeClient = new ExchangeClient(new DataSize(32, MEGABYTE), new DataSize(10, MEGABYTE), 1, httpClient, executor);
+                exchangeClients.add(exchangeClient);
+                return exchangeClient;
+            }
+        };
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        httpClient.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMergeSortedStreams()
+            throws Exception
+    {
+        // every location is sorted, and location 3 has no rows
+        addSortedPages(LOCATION_1, 0, 2, 100);
+        addSortedPages(LOCATION_2, 1, 2, 100);
+        processor.setComplete(LOCATION_1);
+        processor.setComplete(LOCATION_2);
+        processor.setComplete(LOCATION_3);
+
+        SourceOperator operator = createMergingExchangeOperator();
+        operator.addSplit(new RemoteSplit(LOCATION_1, TUPLE_INFOS));
+        operator.addSplit(new RemoteSplit(LOCATION_2, TUPLE_INFOS));
+        operator.addSplit(new RemoteSplit(LOCATION_3, TUPLE_INFOS));
+        operator.noMoreSplits();
+
+        MaterializedResult.Builder expected = MaterializedResult.resultBuilder(FIXED_INT_64, VARIABLE_BINARY);
+        for (int value = 0; value < 200; value++) {
+            expected.row(value, String.valueOf(value));
+        }
+        assertEquals(readAll(operator), expected.build());
+    }
+
+    @Test
+    public void testWaitForSlowStream()
+            throws Exception
+    {
+        SourceOperator operator = createMergingExchangeOperator();
+        operator.addSplit(new RemoteSplit(LOCATION_1, TUPLE_INFOS));
+        operator.addSplit(new RemoteSplit(LOCATION_2, TUPLE_INFOS));
+
+        // no output until all splits are known
+        assertFalse(operator.isBlocked().isDone());
+        operator.noMoreSplits();
+
+        // only one stream has data, so nothing can be merged yet
+        addSortedPages(LOCATION_1, 0, 2, 10);
+        processor.setComplete(LOCATION_1);
+        Thread.sleep(100);
+        assertNull(operator.getOutput());
+        assertFalse(operator.isFinished());
+
+        addSortedPages(LOCATION_2, 1, 2, 10);
+        processor.setComplete(LOCATION_2);
+
+        MaterializedResult.Builder expected = MaterializedResult.resultBuilder(FIXED_INT_64, VARIABLE_BINARY);
+        for (int value = 0; value < 20; value++) {
+            expected.row(value, String.valueOf(value));
+        }
+        assertEquals(readAll(operator), expected.build());
+    }
+
+    @Test
+    public void testManyStreamsBufferAboutOnePageEach()
+            throws Exception
+    {
+        // every location has 4MB of rows, which would all fit in a full exchange buffer
+        int streamCount = 16;
+        int rows = 400;
+        int width = 10_000;
+
+        SourceOperator operator = createMergingExchangeOperator();
+        for (int stream = 0; stream < streamCount; stream++) {
+            URI location = URI.create("http://localhost:8080/task" + stream);
+            addSortedPages(location, stream, streamCount, rows, width);
+            processor.setComplete(location);
+            operator.addSplit(new RemoteSplit(location, TUPLE_INFOS));
+        }
+        operator.noMoreSplits();
+
+        // let the clients fill their buffers before anything is merged
+        Thread.sleep(500);
+        assertEquals(exchangeClients.size(), streamCount);
+        long maxPageSize = PageBuilder.DEFAULT_MAX_PAGE_SIZE.toBytes();
+        for (ExchangeClient exchangeClient : exchangeClients) {
+            long bufferedBytes = exchangeClient.getStatus().getBufferedBytes();
+            assertTrue(bufferedBytes > 0, "stream has no buffered data");
+            // one page buffered, plus at most one response that was already in flight
+            assertTrue(bufferedBytes <= 3 * maxPageSize, "stream buffered " + bufferedBytes + " bytes");
+        }
+
+        MaterializedResult.Builder expected = MaterializedResult.resultBuilder(FIXED_INT_64, VARIABLE_BINARY);
+        for (int value = 0; value < streamCount * rows; value++) {
+            expected.row(value, rowValue(value, width));
+        }
+        assertEquals(readAll(operator), expected.build());
+    }
+
+    private void addSortedPages(URI location, int start, int step, int rows)
+    {
+        addSortedPages(location, start, step, rows, 0);
+    }
+
+    private void addSortedPages(URI location, int start, int step, int rows, int width)
+    {
+        RowPagesBuilder pages = rowPagesBuilder(TUPLE_INFOS);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0 && i % 7 == 0) {
+                pages.pageBreak();
+            }
+            long value = start + i * step;
+            pages.row(value, rowValue(value, width));
+        }
+        for (Page page : pages.build()) {
+            processor.addPage(location, page);
+        }
+    }
+
+    private static String rowValue(long value, int width)
+    {
+        return Strings.padStart(String.valueOf(value), width, '0');
+    }
+
+    private SourceOperator createMergingExchangeOperator()
+    {
+        MergingExchangeOperatorFactory operatorFactory = new MergingExchangeOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                exchangeClientSupplier,
+                TUPLE_INFOS,
+                ImmutableList.of(0),
+                ImmutableList.of(SortOrder.ASC_NULLS_LAST));
+
+        Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+        DriverContext driverContext = new TaskContext(new TaskId("query", "stage", "task"), executor, session)
+                .addPipelineContext(true, true)
+                .addDriverContext();
+
+        return operatorFactory.createOperator(driverContext);
+    }
+
+    private static MaterializedResult readAll(Operator operator)
+            throws Exception
+    {
+        List<Page> pages = new ArrayList<>();
+        long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!operator.isFinished() && System.nanoTime() < endTime) {
+            assertEquals(operator.needsInput(), false);
+            operator.isBlocked().get(1, TimeUnit.SECONDS);
+            Page page = operator.getOutput();
+            if (page != null) {
+                pages.add(page);
+            }
+        }
+        assertEquals(operator.isFinished(), true);
+        assertNull(operator.getOutput());
+        return toMaterializedResult(TUPLE_INFOS, pages);
+    }
+}
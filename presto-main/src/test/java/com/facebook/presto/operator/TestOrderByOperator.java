@@ -15,16 +15,20 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskStateMachine;
 import com.facebook.presto.operator.OrderByOperator.OrderByOperatorFactory;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.util.MaterializedResult;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
@@ -39,7 +43,10 @@ import static com.facebook.presto.tuple.TupleInfo.Type.FIXED_INT_64;
 import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
 import static com.facebook.presto.util.MaterializedResult.resultBuilder;
 import static com.facebook.presto.util.Threads.daemonThreadsNamed;
+import static io.airlift.testing.FileUtils.deleteRecursively;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestOrderByOperator
@@ -158,6 +165,57 @@ public class TestOrderByOperator
         assertOperatorEquals(operator, input, expected);
     }
 
+    @Test
+    public void testSpillToDisk()
+            throws Exception
+    {
+        // pages arrive in descending order, so every run overlaps with the others
+        int pageCount = 4;
+        int pageSize = 10_000;
+        RowPagesBuilder inputBuilder = rowPagesBuilder(SINGLE_LONG, SINGLE_DOUBLE);
+        for (int page = pageCount - 1; page >= 0; page--) {
+            inputBuilder.addSequencePage(pageSize, page * pageSize, page * pageSize);
+        }
+        List<Page> input = inputBuilder.build();
+
+        File spillPath = Files.createTempDir();
+        try {
+            // one page fits in the limit, but the whole input does not
+            Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+            TaskStateMachine taskStateMachine = new TaskStateMachine(new TaskId("query", "stage", "task"), executor);
+            DriverContext driverContext = new TaskContext(taskStateMachine, executor, session, new DataSize(512, Unit.KILOBYTE), new DataSize(0, Unit.BYTE), true, Optional.of(spillPath))
+                    .addPipelineContext(true, true)
+                    .addDriverContext();
+
+            OrderByOperatorFactory operatorFactory = new OrderByOperatorFactory(
+                    0,
+                    ImmutableList.of(SINGLE_LONG, SINGLE_DOUBLE),
+                    new int[] {0},
+                    new int[] {1, 0},
+                    10);
+
+            OrderByOperator operator = (OrderByOperator) operatorFactory.createOperator(driverContext);
+
+            MaterializedResult.Builder expected = resultBuilder(DOUBLE, FIXED_INT_64);
+            for (int i = 0; i < pageCount * pageSize; i++) {
+                expected.row((double) i, i);
+            }
+
+            assertOperatorEquals(operator, input, expected.build());
+
+            OperatorStats stats = operator.getOperatorContext().getOperatorStats();
+            assertTrue(stats.getSpilledRuns() > 1);
+            assertTrue(stats.getSpilledDataSize().toBytes() > 0);
+
+            // all runs are removed once the operator is closed
+            operator.close();
+            assertEquals(driverContext.getSpillPath().get().list().length, 0);
+        }
+        finally {
+            deleteRecursively(spillPath);
+        }
+    }
+
     @Test(expectedExceptions = ExceededMemoryLimitException.class, expectedExceptionsMessageRegExp = "Task exceeded max memory size of 10B")
     public void testMemoryLimit()
             throws Exception
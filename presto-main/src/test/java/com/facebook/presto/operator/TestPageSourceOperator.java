@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.spi.ColumnType;
+import com.facebook.presto.spi.ColumnVector;
+import com.facebook.presto.spi.ColumnarPage;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.sql.analyzer.Session;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_BOOLEAN;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_DOUBLE;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
+import static com.facebook.presto.util.Threads.daemonThreadsNamed;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestPageSourceOperator
+{
+    private ExecutorService executor;
+    private DriverContext driverContext;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test"));
+        Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+        driverContext = new TaskContext(new TaskId("query", "stage", "task"), executor, session)
+                .addPipelineContext(true, true)
+                .addDriverContext();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPageSource()
+            throws Exception
+    {
+        byte[] strings = "alicebob".getBytes(UTF_8);
+        ColumnarPage page = new ColumnarPage(3, ImmutableList.of(
+                ColumnVector.stringVector(3, new boolean[] {false, true, false}, strings, new int[] {0, 5, 5, 8}),
+                ColumnVector.longVector(3, null, new long[] {1, 2, 3}),
+                ColumnVector.doubleVector(3, new boolean[] {false, false, true}, new double[] {0.5, 1.5, 0}),
+                ColumnVector.booleanVector(3, null, new boolean[] {true, false, true})));
+
+        TestingPageSource pageSource = new TestingPageSource(ImmutableList.of(page, page));
+        PageSourceOperator operator = new PageSourceOperator(driverContext.addOperatorContext(0, "test"), pageSource);
+
+        List<Page> expected = rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG, SINGLE_DOUBLE, SINGLE_BOOLEAN)
+                .row("alice", 1, 0.5, true)
+                .row(null, 2, 1.5, false)
+                .row("bob", 3, null, true)
+                .pageBreak()
+                .row("alice", 1, 0.5, true)
+                .row(null, 2, 1.5, false)
+                .row("bob", 3, null, true)
+                .build();
+
+        assertOperatorEquals(operator, expected);
+        assertTrue(operator.isFinished());
+        assertTrue(pageSource.isClosed());
+    }
+
+    @Test
+    public void testFinish()
+            throws Exception
+    {
+        ColumnarPage page = new ColumnarPage(1, ImmutableList.of(ColumnVector.longVector(1, null, new long[] {42})));
+        TestingPageSource pageSource = new TestingPageSource(ImmutableList.of(page, page));
+        PageSourceOperator operator = new PageSourceOperator(driverContext.addOperatorContext(0, "test"), pageSource);
+
+        assertEquals(operator.getOutput().getPositionCount(), 1);
+        assertEquals(operator.isFinished(), false);
+
+        operator.finish();
+        assertEquals(operator.isFinished(), true);
+        assertEquals(operator.getOutput(), null);
+        assertTrue(pageSource.isClosed());
+    }
+
+    private static class TestingPageSource
+            implements ConnectorPageSource
+    {
+        private final List<ColumnType> columnTypes;
+        private final Iterator<ColumnarPage> pages;
+        private boolean closed;
+
+        private TestingPageSource(List<ColumnarPage> pages)
+        {
+            ImmutableList.Builder<ColumnType> columnTypes = ImmutableList.builder();
+            for (ColumnVector column : pages.get(0).getColumns()) {
+                columnTypes.add(column.getType());
+            }
+            this.columnTypes = columnTypes.build();
+            this.pages = pages.iterator();
+        }
+
+        @Override
+        public List<ColumnType> getColumnTypes()
+        {
+            return columnTypes;
+        }
+
+        @Override
+        public long getTotalBytes()
+        {
+            return 0;
+        }
+
+        @Override
+        public long getCompletedBytes()
+        {
+            return 0;
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return closed || !pages.hasNext();
+        }
+
+        @Override
+        public ColumnarPage getNextPage()
+        {
+            return isFinished() ? null : pages.next();
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+
+        public boolean isClosed()
+        {
+            return closed;
+        }
+    }
+}
@@ -15,6 +15,7 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.spi.InMemoryRecordSet;
+import com.facebook.presto.split.MappedRecordSet;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.util.InfiniteRecordSet;
 import com.facebook.presto.util.MaterializedResult;
@@ -99,6 +100,28 @@ public class TestRecordProjectOperator
         OperatorAssertion.assertOperatorEquals(operator, expected);
     }
 
+    @Test
+    public void testStringRecordCursor()
+            throws Exception
+    {
+        InMemoryRecordSet records = new InMemoryRecordSet(ImmutableList.of(STRING, LONG), ImmutableList.of(
+                ImmutableList.of("abc", 1L),
+                ImmutableList.of("", 2L),
+                ImmutableList.of("g", 0L)));
+
+        // the mapped record cursor passes strings to the block builder without copying them to a new array
+        OperatorContext operatorContext = driverContext.addOperatorContext(0, RecordProjectOperator.class.getSimpleName());
+        Operator operator = new RecordProjectOperator(operatorContext, new MappedRecordSet(records, ImmutableList.of(1, 0)));
+
+        MaterializedResult expected = resultBuilder(FIXED_INT_64, VARIABLE_BINARY)
+                .row(1, "abc")
+                .row(2, "")
+                .row(0, "g")
+                .build();
+
+        OperatorAssertion.assertOperatorEquals(operator, expected);
+    }
+
     @Test
     public void testFinish()
             throws Exception
@@ -15,18 +15,22 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskStateMachine;
 import com.facebook.presto.operator.WindowOperator.WindowOperatorFactory;
 import com.facebook.presto.operator.window.RowNumberFunction;
 import com.facebook.presto.operator.window.WindowFunction;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.util.MaterializedResult;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
@@ -43,7 +47,10 @@ import static com.facebook.presto.tuple.TupleInfo.Type.FIXED_INT_64;
 import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
 import static com.facebook.presto.util.MaterializedResult.resultBuilder;
 import static com.facebook.presto.util.Threads.daemonThreadsNamed;
+import static io.airlift.testing.FileUtils.deleteRecursively;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestWindowOperator
@@ -182,6 +189,64 @@ public class TestWindowOperator
         assertOperatorEquals(operator, input, expected);
     }
 
+    @Test
+    public void testSpillToDisk()
+            throws Exception
+    {
+        int partitionCount = 1000;
+        int positionCount = 160_000;
+        RowPagesBuilder inputBuilder = rowPagesBuilder(SINGLE_LONG, SINGLE_LONG);
+        for (int position = positionCount - 1; position >= 0; position--) {
+            inputBuilder.row(position % partitionCount, position);
+            if (position % 10_000 == 0) {
+                inputBuilder.pageBreak();
+            }
+        }
+        List<Page> input = inputBuilder.build();
+
+        File spillPath = Files.createTempDir();
+        try {
+            // a merged page and its partitions fit in the limit, but the whole input does not
+            Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+            TaskStateMachine taskStateMachine = new TaskStateMachine(new TaskId("query", "stage", "task"), executor);
+            DriverContext driverContext = new TaskContext(taskStateMachine, executor, session, new DataSize(4, Unit.MEGABYTE), new DataSize(0, Unit.BYTE), true, Optional.of(spillPath))
+                    .addPipelineContext(true, true)
+                    .addDriverContext();
+
+            WindowOperatorFactory operatorFactory = new WindowOperatorFactory(
+                    0,
+                    ImmutableList.of(SINGLE_LONG, SINGLE_LONG),
+                    ints(0, 1),
+                    ROW_NUMBER,
+                    ints(0),
+                    ints(1),
+                    sortOrder(SortOrder.ASC_NULLS_LAST),
+                    10);
+
+            WindowOperator operator = (WindowOperator) operatorFactory.createOperator(driverContext);
+
+            MaterializedResult.Builder expected = resultBuilder(FIXED_INT_64, FIXED_INT_64, FIXED_INT_64);
+            for (int partition = 0; partition < partitionCount; partition++) {
+                for (int rowNumber = 1; rowNumber <= positionCount / partitionCount; rowNumber++) {
+                    expected.row(partition, partition + (rowNumber - 1) * partitionCount, rowNumber);
+                }
+            }
+
+            assertOperatorEquals(operator, input, expected.build());
+
+            OperatorStats stats = operator.getOperatorContext().getOperatorStats();
+            assertTrue(stats.getSpilledRuns() > 1);
+            assertTrue(stats.getSpilledDataSize().toBytes() > 0);
+
+            // all runs are removed once the operator is closed
+            operator.close();
+            assertEquals(driverContext.getSpillPath().get().list().length, 0);
+        }
+        finally {
+            deleteRecursively(spillPath);
+        }
+    }
+
     @Test(expectedExceptions = ExceededMemoryLimitException.class, expectedExceptionsMessageRegExp = "Task exceeded max memory size of 10B")
     public void testMemoryLimit()
             throws Exception
@@ -207,20 +207,28 @@ public final class FunctionAssertions
         List<Object> results = new ArrayList<>();
 
         // execute as standalone operator
-        OperatorFactory operatorFactory = compileFilterProject(TRUE_LITERAL, projectionExpression);
+        OperatorFactory operatorFactory = compileFilterProject(TRUE_LITERAL, projectionExpression, false);
         Type expressionType = Type.fromRaw(operatorFactory.getTupleInfos().get(0).getType());
         Object directOperatorValue = selectSingleValue(operatorFactory, session);
         results.add(directOperatorValue);
 
+        // execute as standalone columnar operator
+        Object columnarOperatorValue = selectSingleValue(compileFilterProject(TRUE_LITERAL, projectionExpression, true), session);
+        results.add(columnarOperatorValue);
+
         // interpret
         Object interpretedValue = selectSingleValue(interpretedFilterProject(TRUE_LITERAL, projectionExpression, expressionType, session));
         results.add(interpretedValue);
 
         // execute over normal operator
-        SourceOperatorFactory scanProjectOperatorFactory = compileScanFilterProject(TRUE_LITERAL, projectionExpression);
+        SourceOperatorFactory scanProjectOperatorFactory = compileScanFilterProject(TRUE_LITERAL, projectionExpression, false);
         Object scanOperatorValue = selectSingleValue(scanProjectOperatorFactory, createNormalSplit(), session);
         results.add(scanOperatorValue);
 
+        // execute over normal columnar operator
+        Object columnarScanOperatorValue = selectSingleValue(compileScanFilterProject(TRUE_LITERAL, projectionExpression, true), createNormalSplit(), session);
+        results.add(columnarScanOperatorValue);
+
         // execute over record set
         Object recordValue = selectSingleValue(scanProjectOperatorFactory, createRecordSetSplit(), session);
         results.add(recordValue);
@@ -299,13 +307,20 @@ public final class FunctionAssertions
         List<Boolean> results = new ArrayList<>();
 
         // execute as standalone operator
-        OperatorFactory operatorFactory = compileFilterProject(filterExpression, TRUE_LITERAL);
+        OperatorFactory operatorFactory = compileFilterProject(filterExpression, TRUE_LITERAL, false);
         Type expressionType = Type.fromRaw(operatorFactory.getTupleInfos().get(0).getType());
         results.add(executeFilter(operatorFactory, session));
 
+        // execute as standalone columnar operator
+        results.add(executeFilter(compileFilterProject(filterExpression, TRUE_LITERAL, true), session));
+
         if (executeWithNoInputColumns) {
             // execute as standalone operator
-            operatorFactory = compileFilterWithNoInputColumns(filterExpression);
+            operatorFactory = compileFilterWithNoInputColumns(filterExpression, false);
+            results.add(executeFilterWithNoInputColumns(operatorFactory, session));
+
+            // execute as standalone columnar operator
+            operatorFactory = compileFilterWithNoInputColumns(filterExpression, true);
             results.add(executeFilterWithNoInputColumns(operatorFactory, session));
         }
 
@@ -314,10 +329,14 @@ public final class FunctionAssertions
         results.add(interpretedValue);
 
         // execute over normal operator
-        SourceOperatorFactory scanProjectOperatorFactory = compileScanFilterProject(filterExpression, TRUE_LITERAL);
+        SourceOperatorFactory scanProjectOperatorFactory = compileScanFilterProject(filterExpression, TRUE_LITERAL, false);
         boolean scanOperatorValue = executeFilter(scanProjectOperatorFactory, createNormalSplit(), session);
         results.add(scanOperatorValue);
 
+        // execute over normal columnar operator
+        boolean columnarScanOperatorValue = executeFilter(compileScanFilterProject(filterExpression, TRUE_LITERAL, true), createNormalSplit(), session);
+        results.add(columnarScanOperatorValue);
+
         // execute over record set
         boolean recordValue = executeFilter(scanProjectOperatorFactory, createRecordSetSplit(), session);
         results.add(recordValue);
@@ -438,12 +457,12 @@ public final class FunctionAssertions
         return operatorFactory.createOperator(createDriverContext(session));
     }
 
-    private OperatorFactory compileFilterWithNoInputColumns(Expression filter)
+    private OperatorFactory compileFilterWithNoInputColumns(Expression filter, boolean columnar)
     {
         filter = ExpressionTreeRewriter.rewriteWith(new SymbolToInputRewriter(ImmutableMap.<Symbol, Input>of()), filter);
 
         try {
-            return compiler.compileFilterAndProjectOperator(0, filter, ImmutableList.<Expression>of(), ImmutableMap.<Input, Type>of(), ImmutableList.<Type>of());
+            return compiler.compileFilterAndProjectOperator(0, filter, ImmutableList.<Expression>of(), ImmutableMap.<Input, Type>of(), ImmutableList.<Type>of(), columnar);
         }
         catch (Throwable e) {
             if (e instanceof UncheckedExecutionException) {
@@ -453,7 +472,7 @@ public final class FunctionAssertions
         }
     }
 
-    private OperatorFactory compileFilterProject(Expression filter, Expression projection)
+    private OperatorFactory compileFilterProject(Expression filter, Expression projection, boolean columnar)
     {
         Type projectionType = getExpressionType(projection);
 
@@ -461,7 +480,7 @@ public final class FunctionAssertions
         projection = ExpressionTreeRewriter.rewriteWith(new SymbolToInputRewriter(INPUT_MAPPING), projection);
 
         try {
-            return compiler.compileFilterAndProjectOperator(0, filter, ImmutableList.of(projection), INPUT_TYPES, ImmutableList.of(projectionType));
+            return compiler.compileFilterAndProjectOperator(0, filter, ImmutableList.of(projection), INPUT_TYPES, ImmutableList.of(projectionType), columnar);
         }
         catch (Throwable e) {
             if (e instanceof UncheckedExecutionException) {
@@ -471,7 +490,7 @@ public final class FunctionAssertions
         }
     }
 
-    private SourceOperatorFactory compileScanFilterProject(Expression filter, Expression projection)
+    private SourceOperatorFactory compileScanFilterProject(Expression filter, Expression projection, boolean columnar)
     {
         Type projectionType = getExpressionType(projection);
 
@@ -487,7 +506,8 @@ public final class FunctionAssertions
                     filter,
                     ImmutableList.of(projection),
                     INPUT_TYPES,
-                    ImmutableList.of(projectionType));
+                    ImmutableList.of(projectionType),
+                    columnar);
         }
         catch (Throwable e) {
             if (e instanceof UncheckedExecutionException) {
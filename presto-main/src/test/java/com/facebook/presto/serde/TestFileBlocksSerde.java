@@ -16,6 +16,9 @@ package com.facebook.presto.serde;
 import com.facebook.presto.block.BlockAssertions;
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.block.uncompressed.UncompressedBlock;
+import com.facebook.presto.spi.Domain;
+import com.facebook.presto.spi.Range;
+import com.facebook.presto.spi.SortedRangeSet;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.OutputSupplier;
 import io.airlift.slice.DynamicSliceOutput;
@@ -26,8 +29,12 @@ import java.util.List;
 
 import static com.facebook.presto.serde.BlocksFileReader.readBlocks;
 import static com.facebook.presto.serde.BlocksFileWriter.writeBlocks;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
 import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 public class TestFileBlocksSerde
 {
@@ -82,6 +89,48 @@ public class TestFileBlocksSerde
         assertEquals(stats.getRowCount(), 12);
         assertEquals(stats.getRunsCount(), 12);
         assertEquals(stats.getUniqueCount(), 4);
+
+        // min and max are not recorded for varchar
+        List<BlocksFileZone> zones = actualBlocks.getZones();
+        assertEquals(zones.size(), 1);
+        assertEquals(zones.get(0).getRowCount(), 12);
+        assertEquals(zones.get(0).getNullCount(), 0);
+        assertNull(zones.get(0).getMin());
+        assertNull(zones.get(0).getMax());
+    }
+
+    @Test
+    public void testZones()
+    {
+        BlockBuilder blockBuilder = new BlockBuilder(SINGLE_LONG).appendNull();
+        for (int i = 1; i < 40_000; i++) {
+            blockBuilder.append(i);
+        }
+
+        DynamicSliceOutputSupplier sliceOutput = new DynamicSliceOutputSupplier(1024);
+        writeBlocks(BlocksFileEncoding.RAW, sliceOutput, blockBuilder.build());
+        List<BlocksFileZone> zones = readBlocks(sliceOutput.getLastSlice()).getZones();
+
+        assertEquals(zones.size(), 3);
+        assertZone(zones.get(0), 16384, 1, 1L, 16383L);
+        assertZone(zones.get(1), 16384, 0, 16384L, 32767L);
+        assertZone(zones.get(2), 7232, 0, 32768L, 39999L);
+
+        BlocksFileZone zone = zones.get(1);
+        assertTrue(zone.mayMatch(Domain.singleValue(20_000L)));
+        assertTrue(zone.mayMatch(Domain.create(SortedRangeSet.of(Range.greaterThan(32000L)), false)));
+        assertFalse(zone.mayMatch(Domain.singleValue(10L)));
+        assertFalse(zone.mayMatch(Domain.create(SortedRangeSet.of(Range.greaterThan(32767L)), false)));
+        assertFalse(zone.mayMatch(Domain.onlyNull(Long.class)));
+        assertTrue(zones.get(0).mayMatch(Domain.onlyNull(Long.class)));
+    }
+
+    private static void assertZone(BlocksFileZone zone, int rowCount, int nullCount, Comparable<?> min, Comparable<?> max)
+    {
+        assertEquals(zone.getRowCount(), rowCount);
+        assertEquals(zone.getNullCount(), nullCount);
+        assertEquals(zone.getMin(), min);
+        assertEquals(zone.getMax(), max);
     }
 
     private static class DynamicSliceOutputSupplier
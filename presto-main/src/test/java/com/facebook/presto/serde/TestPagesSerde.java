@@ -14,18 +14,32 @@
 package com.facebook.presto.serde;
 
 import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.dictionary.Dictionary;
+import com.facebook.presto.block.dictionary.DictionaryEncodedBlock;
+import com.facebook.presto.block.rle.RunLengthEncodedBlock;
 import com.facebook.presto.block.uncompressed.UncompressedBlock;
 import com.facebook.presto.operator.Page;
+import com.facebook.presto.serde.PagesSerde.SnappyPagesReader;
+import com.google.common.collect.ImmutableList;
 import io.airlift.slice.DynamicSliceOutput;
 import org.testng.annotations.Test;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
 import static com.facebook.presto.serde.PagesSerde.readPages;
+import static com.facebook.presto.serde.PagesSerde.readSnappyPages;
 import static com.facebook.presto.serde.PagesSerde.writePages;
+import static com.facebook.presto.serde.PagesSerde.writeSnappyPages;
 import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
+import static com.facebook.presto.tuple.Tuples.createTuple;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 public class TestPagesSerde
 {
@@ -48,4 +62,74 @@ public class TestPagesSerde
         assertPageEquals(pageIterator.next(), expectedPage);
         assertFalse(pageIterator.hasNext());
     }
+
+    @Test
+    public void testMixedEncodingsRoundTrip()
+    {
+        // pages from different shards of a native table may use different encodings
+        // and dictionaries for the same channel
+        Dictionary firstDictionary = new Dictionary(SINGLE_VARBINARY,
+                createTuple("alice").getTupleSlice(),
+                createTuple("bob").getTupleSlice());
+        Dictionary secondDictionary = new Dictionary(SINGLE_VARBINARY,
+                createTuple("charlie").getTupleSlice(),
+                createTuple("dave").getTupleSlice());
+
+        List<Page> expectedPages = ImmutableList.of(
+                new Page(createStringsBlock("alice", "bob"), createLongsBlock(1, 2)),
+                new Page(new RunLengthEncodedBlock(createTuple("bob"), 2), createLongsBlock(3, 4)),
+                new Page(new DictionaryEncodedBlock(firstDictionary, createLongsBlock(1, 0)), new RunLengthEncodedBlock(createTuple(5L), 2)),
+                new Page(new DictionaryEncodedBlock(secondDictionary, createLongsBlock(0, 1)), new RunLengthEncodedBlock(createTuple(6L), 2)),
+                new Page(new DictionaryEncodedBlock(secondDictionary, createLongsBlock(1, 1)), createLongsBlock(7, 8)),
+                new Page(createStringsBlock("dave", "alice"), createLongsBlock(9, 10)));
+
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        writePages(sliceOutput, expectedPages);
+        Iterator<Page> pageIterator = readPages(sliceOutput.slice().getInput());
+        for (Page expectedPage : expectedPages) {
+            assertPageEquals(pageIterator.next(), expectedPage);
+        }
+        assertFalse(pageIterator.hasNext());
+    }
+
+    @Test
+    public void testSnappyRoundTrip()
+    {
+        BlockBuilder blockBuilder = new BlockBuilder(SINGLE_VARBINARY);
+        for (int i = 0; i < 1000; i++) {
+            blockBuilder.append("alice");
+        }
+        UncompressedBlock expectedBlock = blockBuilder.build();
+        Page expectedPage = new Page(expectedBlock, expectedBlock);
+
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        writeSnappyPages(sliceOutput, ImmutableList.of(expectedPage, expectedPage));
+        SnappyPagesReader pageIterator = readSnappyPages(sliceOutput.slice().getInput());
+        assertPageEquals(pageIterator.next(), expectedPage);
+        assertPageEquals(pageIterator.next(), expectedPage);
+        assertFalse(pageIterator.hasNext());
+
+        // repeated values shrink
+        assertTrue(pageIterator.getCompressedBytes() < pageIterator.getUncompressedBytes());
+    }
+
+    @Test
+    public void testSnappyIncompressiblePage()
+    {
+        byte[] randomBytes = new byte[4096];
+        new Random(42).nextBytes(randomBytes);
+        UncompressedBlock expectedBlock = new BlockBuilder(SINGLE_VARBINARY)
+                .append(randomBytes)
+                .build();
+        Page expectedPage = new Page(expectedBlock);
+
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        writeSnappyPages(sliceOutput, ImmutableList.of(expectedPage));
+        SnappyPagesReader pageIterator = readSnappyPages(sliceOutput.slice().getInput());
+        assertPageEquals(pageIterator.next(), expectedPage);
+        assertFalse(pageIterator.hasNext());
+
+        // random data does not shrink, so the page is sent uncompressed
+        assertEquals(pageIterator.getCompressedBytes(), pageIterator.getUncompressedBytes());
+    }
 }
@@ -28,7 +28,8 @@ public class TestAnalyzerConfig
     public void testDefaults()
     {
         assertRecordedDefaults(ConfigAssertions.recordDefaults(AnalyzerConfig.class)
-                .setExperimentalSyntaxEnabled(false));
+                .setExperimentalSyntaxEnabled(false)
+                .setDistributedJoinsEnabled(false));
     }
 
     @Test
@@ -36,10 +37,12 @@ public class TestAnalyzerConfig
     {
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("analyzer.experimental-syntax-enabled", "true")
+                .put("analyzer.distributed-joins-enabled", "true")
                 .build();
 
         AnalyzerConfig expected = new AnalyzerConfig()
-                .setExperimentalSyntaxEnabled(true);
+                .setExperimentalSyntaxEnabled(true)
+                .setDistributedJoinsEnabled(true);
 
         assertFullMapping(properties, expected);
     }
@@ -1007,6 +1007,20 @@ public class TestExpressionCompiler
         Futures.allAsList(futures).get();
     }
 
+    @Test
+    public void testCommonSubexpressions()
+            throws Exception
+    {
+        assertExecute("(bound_long + 1) * (bound_long + 1)", 1235L * 1235L);
+        assertExecute("if(bound_long > 0, bound_long + 1, 0) + (bound_long + 1)", 2470L);
+        assertExecute("length(lower(bound_string)) + length(lower(bound_string))", 10L);
+        assertExecute("concat(lower(bound_string), upper(lower(bound_string)))", "helloHELLO");
+        assertExecute("concat(bound_null_string, 'a') is null or concat(bound_null_string, 'a') = 'a'", true);
+        assertExecute("concat(bound_null_string, 'a') = concat(bound_null_string, 'a')", null);
+
+        Futures.allAsList(futures).get();
+    }
+
     @Test
     public void testCoalesce()
             throws Exception
@@ -28,6 +28,7 @@ import com.facebook.presto.connector.system.SystemSplitManager;
 import com.facebook.presto.connector.system.SystemTablesManager;
 import com.facebook.presto.connector.system.SystemTablesMetadata;
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskManagerConfig;
 import com.facebook.presto.metadata.HandleResolver;
 import com.facebook.presto.metadata.InMemoryNodeManager;
 import com.facebook.presto.metadata.LocalStorageManager;
@@ -43,6 +44,7 @@ import com.facebook.presto.operator.Operator;
 import com.facebook.presto.operator.OperatorContext;
 import com.facebook.presto.operator.OperatorFactory;
 import com.facebook.presto.operator.OutputFactory;
+import com.facebook.presto.operator.PipelineContext;
 import com.facebook.presto.operator.RecordSinkManager;
 import com.facebook.presto.operator.TaskContext;
 import com.facebook.presto.spi.ColumnHandle;
@@ -272,6 +274,11 @@ public class LocalQueryRunner
     }
 
     public List<Driver> createDrivers(@Language("SQL") String sql, OutputFactory outputFactory, TaskContext taskContext)
+    {
+        return createDrivers(sql, outputFactory, taskContext, new TaskManagerConfig());
+    }
+
+    public List<Driver> createDrivers(@Language("SQL") String sql, OutputFactory outputFactory, TaskContext taskContext, TaskManagerConfig taskManagerConfig)
     {
         Statement statement = SqlParser.createStatement(sql);
 
@@ -305,7 +312,8 @@ public class LocalQueryRunner
                 storageManager,
                 recordSinkManager,
                 null,
-                compiler);
+                compiler,
+                taskManagerConfig);
 
         // plan query
         LocalExecutionPlan localExecutionPlan = executionPlanner.plan(session,
@@ -345,11 +353,13 @@ public class LocalQueryRunner
         List<Driver> drivers = new ArrayList<>();
         Map<PlanNodeId, Driver> driversBySource = new HashMap<>();
         for (DriverFactory driverFactory : localExecutionPlan.getDriverFactories()) {
-            DriverContext driverContext = taskContext.addPipelineContext(driverFactory.isInputDriver(), driverFactory.isOutputDriver()).addDriverContext();
-            Driver driver = driverFactory.createDriver(driverContext);
-            drivers.add(driver);
-            for (PlanNodeId sourceId : driver.getSourceIds()) {
-                driversBySource.put(sourceId, driver);
+            PipelineContext pipelineContext = taskContext.addPipelineContext(driverFactory.isInputDriver(), driverFactory.isOutputDriver());
+            for (int i = 0; i < driverFactory.getDriverInstances(); i++) {
+                Driver driver = driverFactory.createDriver(pipelineContext.addDriverContext());
+                drivers.add(driver);
+                for (PlanNodeId sourceId : driver.getSourceIds()) {
+                    driversBySource.put(sourceId, driver);
+                }
             }
             driverFactory.close();
         }
@@ -29,6 +29,7 @@ import com.facebook.presto.execution.TaskInfo;
 import com.facebook.presto.execution.TaskState;
 import com.facebook.presto.operator.TaskContext;
 import com.facebook.presto.operator.TaskStats;
+import com.facebook.presto.server.SnappyJsonResponseHandler.JsonResponse;
 import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.Split;
 import com.facebook.presto.sql.analyzer.Session;
@@ -38,6 +39,7 @@ import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.util.SetThreadName;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
@@ -51,7 +53,6 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.RateLimiter;
 import io.airlift.http.client.AsyncHttpClient;
-import io.airlift.http.client.FullJsonResponseHandler.JsonResponse;
 import io.airlift.http.client.HttpStatus;
 import io.airlift.http.client.Request;
 import io.airlift.http.client.StatusResponseHandler.StatusResponse;
@@ -81,17 +82,19 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_SNAPPY_JSON_TYPE;
+import static com.facebook.presto.server.SnappyJsonResponseHandler.createSnappyJsonResponseHandler;
 import static com.facebook.presto.spi.StandardErrorCode.TOO_MANY_REQUESTS_FAILED;
 import static com.facebook.presto.util.Failures.toFailure;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.transform;
-import static io.airlift.http.client.FullJsonResponseHandler.createFullJsonResponseHandler;
 import static io.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.http.client.JsonBodyGenerator.jsonBodyGenerator;
 import static io.airlift.http.client.Request.Builder.prepareDelete;
 import static io.airlift.http.client.Request.Builder.prepareGet;
 import static io.airlift.http.client.Request.Builder.preparePost;
+import static io.airlift.http.client.StaticBodyGenerator.createStaticBodyGenerator;
 import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
 import static java.lang.String.format;
 
@@ -129,8 +132,9 @@ public class HttpRemoteTask
 
     private final AsyncHttpClient httpClient;
     private final Executor executor;
-    private final JsonCodec<TaskInfo> taskInfoCodec;
-    private final JsonCodec<TaskUpdateRequest> taskUpdateRequestCodec;
+    private final SnappyJsonCodec<TaskInfo> taskInfoCodec;
+    private final SnappyJsonCodec<TaskUpdateRequest> taskUpdateRequestCodec;
+    private final boolean compressionEnabled;
     private final List<TupleInfo> tupleInfos;
 
     private final RateLimiter errorRequestRateLimiter = RateLimiter.create(0.1);
@@ -140,6 +144,7 @@ public class HttpRemoteTask
     private final Queue<Throwable> errorsSinceLastSuccess = new ConcurrentLinkedQueue<>();
 
     private final AtomicBoolean needsUpdate = new AtomicBoolean(true);
+    private final AtomicBoolean needsPlan = new AtomicBoolean(true);
 
     public HttpRemoteTask(Session session,
             TaskId taskId,
@@ -153,7 +158,8 @@ public class HttpRemoteTask
             int maxConsecutiveErrorCount,
             Duration minErrorDuration,
             JsonCodec<TaskInfo> taskInfoCodec,
-            JsonCodec<TaskUpdateRequest> taskUpdateRequestCodec)
+            JsonCodec<TaskUpdateRequest> taskUpdateRequestCodec,
+            boolean compressionEnabled)
     {
         checkNotNull(session, "session is null");
         checkNotNull(taskId, "taskId is null");
@@ -174,8 +180,9 @@ public class HttpRemoteTask
             this.outputBuffers.set(outputBuffers);
             this.httpClient = httpClient;
             this.executor = executor;
-            this.taskInfoCodec = taskInfoCodec;
-            this.taskUpdateRequestCodec = taskUpdateRequestCodec;
+            this.taskInfoCodec = new SnappyJsonCodec<>(taskInfoCodec);
+            this.taskUpdateRequestCodec = new SnappyJsonCodec<>(taskUpdateRequestCodec);
+            this.compressionEnabled = compressionEnabled;
             this.tupleInfos = planFragment.getTupleInfos();
             this.maxConsecutiveErrorCount = maxConsecutiveErrorCount;
             this.minErrorDuration = minErrorDuration;
@@ -361,22 +368,37 @@ public class HttpRemoteTask
         }
 
         List<TaskSource> sources = getSources();
+
+        // the fragment is only needed until the worker has created the task
+        Optional<PlanFragment> fragment = Optional.absent();
+        if (needsPlan.get()) {
+            fragment = Optional.of(planFragment);
+        }
+
         TaskUpdateRequest updateRequest = new TaskUpdateRequest(session,
-                planFragment,
+                fragment,
                 sources,
                 outputBuffers.get());
 
-        Request request = preparePost()
-                .setUri(uriBuilderFrom(taskInfo.get().getSelf()).build())
-                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.JSON_UTF_8.toString())
-                .setBodyGenerator(jsonBodyGenerator(taskUpdateRequestCodec, updateRequest))
-                .build();
+        Request.Builder requestBuilder = preparePost()
+                .setUri(uriBuilderFrom(taskInfo.get().getSelf()).build());
+        if (compressionEnabled) {
+            requestBuilder.setHeader(HttpHeaders.CONTENT_TYPE, PRESTO_SNAPPY_JSON_TYPE.toString())
+                    .setHeader(HttpHeaders.ACCEPT, PRESTO_SNAPPY_JSON_TYPE.toString())
+                    .setBodyGenerator(createStaticBodyGenerator(taskUpdateRequestCodec.toSnappyJson(updateRequest)));
+        }
+        else {
+            requestBuilder.setHeader(HttpHeaders.CONTENT_TYPE, MediaType.JSON_UTF_8.toString())
+                    .setHeader(HttpHeaders.ACCEPT, MediaType.JSON_UTF_8.toString())
+                    .setBodyGenerator(jsonBodyGenerator(taskUpdateRequestCodec.getJsonCodec(), updateRequest));
+        }
+        Request request = requestBuilder.build();
 
-        ListenableFuture<JsonResponse<TaskInfo>> future = httpClient.executeAsync(request, createFullJsonResponseHandler(taskInfoCodec));
+        ListenableFuture<JsonResponse<TaskInfo>> future = httpClient.executeAsync(request, createSnappyJsonResponseHandler(taskInfoCodec));
         currentRequest = future;
         currentRequestStartNanos = System.nanoTime();
 
-        Futures.addCallback(future, new SimpleHttpResponseHandler<>(new UpdateResponseHandler(sources), request.getUri()), executor);
+        Futures.addCallback(future, new SimpleHttpResponseHandler<>(new UpdateResponseHandler(sources, fragment.isPresent()), request.getUri()), executor);
 
         needsUpdate.set(false);
     }
@@ -552,10 +574,12 @@ public class HttpRemoteTask
             implements SimpleHttpResponseCallback<TaskInfo>
     {
         private final List<TaskSource> sources;
+        private final boolean containsPlan;
 
-        private UpdateResponseHandler(List<TaskSource> sources)
+        private UpdateResponseHandler(List<TaskSource> sources, boolean containsPlan)
         {
             this.sources = ImmutableList.copyOf(checkNotNull(sources, "sources is null"));
+            this.containsPlan = containsPlan;
         }
 
         @Override
@@ -563,6 +587,10 @@ public class HttpRemoteTask
         {
             try (SetThreadName setThreadName = new SetThreadName("UpdateResponseHandler-%s", taskId)) {
                 try {
+                    if (containsPlan) {
+                        // the worker has created the task, so later updates can omit the fragment
+                        needsPlan.set(false);
+                    }
                     requestSucceeded(value, sources);
                 }
                 finally {
@@ -648,11 +676,12 @@ public class HttpRemoteTask
                 Request request = prepareGet()
                         .setUri(taskInfo.getSelf())
                         .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.JSON_UTF_8.toString())
+                        .setHeader(HttpHeaders.ACCEPT, compressionEnabled ? PRESTO_SNAPPY_JSON_TYPE.toString() : MediaType.JSON_UTF_8.toString())
                         .setHeader(PrestoHeaders.PRESTO_CURRENT_STATE, taskInfo.getState().toString())
                         .setHeader(PrestoHeaders.PRESTO_MAX_WAIT, "200ms")
                         .build();
 
-                future = httpClient.executeAsync(request, createFullJsonResponseHandler(taskInfoCodec));
+                future = httpClient.executeAsync(request, createSnappyJsonResponseHandler(taskInfoCodec));
                 Futures.addCallback(future, new SimpleHttpResponseHandler<>(this, request.getUri()), executor);
             }
         }
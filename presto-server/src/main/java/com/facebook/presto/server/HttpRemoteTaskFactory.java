@@ -50,6 +50,7 @@ public class HttpRemoteTaskFactory
     private final JsonCodec<TaskUpdateRequest> taskUpdateRequestCodec;
     private final int maxConsecutiveErrorCount;
     private final Duration minErrorDuration;
+    private final boolean compressionEnabled;
     private final ExecutorService executor = newCachedThreadPool(daemonThreadsNamed("remote-task-callback-%d"));
     private final ThreadPoolExecutorMBean executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) executor);
 
@@ -66,6 +67,7 @@ public class HttpRemoteTaskFactory
         this.taskUpdateRequestCodec = taskUpdateRequestCodec;
         this.maxConsecutiveErrorCount = config.getRemoteTaskMaxConsecutiveErrorCount();
         this.minErrorDuration = config.getRemoteTaskMinErrorDuration();
+        this.compressionEnabled = config.isRemoteTaskCompressionEnabled();
     }
 
     @Managed
@@ -95,7 +97,8 @@ public class HttpRemoteTaskFactory
                 maxConsecutiveErrorCount,
                 minErrorDuration,
                 taskInfoCodec,
-                taskUpdateRequestCodec
+                taskUpdateRequestCodec,
+                compressionEnabled
         );
     }
 }
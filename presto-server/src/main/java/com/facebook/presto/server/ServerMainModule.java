@@ -140,6 +140,7 @@ public class ServerMainModule
 
         jsonCodecBinder(binder).bindJsonCodec(TaskInfo.class);
         binder.bind(PagesMapper.class).in(Scopes.SINGLETON);
+        binder.bind(SnappyJsonMapper.class).in(Scopes.SINGLETON);
 
         // exchange client
         binder.bind(new TypeLiteral<Supplier<ExchangeClient>>() {}).to(ExchangeClientFactory.class).in(Scopes.SINGLETON);
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import io.airlift.json.JsonCodec;
+import org.iq80.snappy.Snappy;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Arrays.copyOf;
+
+/**
+ * Encodes values as Snappy compressed JSON, the body format of the
+ * {@link com.facebook.presto.PrestoMediaTypes#PRESTO_SNAPPY_JSON} media type.
+ */
+public class SnappyJsonCodec<T>
+{
+    private final JsonCodec<T> jsonCodec;
+
+    public SnappyJsonCodec(JsonCodec<T> jsonCodec)
+    {
+        this.jsonCodec = checkNotNull(jsonCodec, "jsonCodec is null");
+    }
+
+    public JsonCodec<T> getJsonCodec()
+    {
+        return jsonCodec;
+    }
+
+    public byte[] toSnappyJson(T value)
+    {
+        return compress(jsonCodec.toJson(value).getBytes(UTF_8));
+    }
+
+    public T fromSnappyJson(byte[] bytes)
+    {
+        return jsonCodec.fromJson(new String(uncompress(bytes), UTF_8));
+    }
+
+    public static byte[] compress(byte[] bytes)
+    {
+        byte[] compressed = new byte[Snappy.maxCompressedLength(bytes.length)];
+        int compressedLength = Snappy.compress(bytes, 0, bytes.length, compressed, 0);
+        return copyOf(compressed, compressedLength);
+    }
+
+    public static byte[] uncompress(byte[] bytes)
+    {
+        byte[] uncompressed = new byte[Snappy.getUncompressedLength(bytes, 0)];
+        Snappy.uncompress(bytes, 0, bytes.length, uncompressed, 0);
+        return uncompressed;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_SNAPPY_JSON;
+import static com.facebook.presto.server.SnappyJsonCodec.compress;
+import static com.facebook.presto.server.SnappyJsonCodec.uncompress;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads and writes entities as Snappy compressed JSON. Task updates and task
+ * info use this format when the coordinator asks for it.
+ */
+@Provider
+@Consumes(PRESTO_SNAPPY_JSON)
+@Produces(PRESTO_SNAPPY_JSON)
+public class SnappyJsonMapper
+        implements MessageBodyReader<Object>, MessageBodyWriter<Object>
+{
+    private static final MediaType PRESTO_SNAPPY_JSON_TYPE = MediaType.valueOf(PRESTO_SNAPPY_JSON);
+
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public SnappyJsonMapper(ObjectMapper objectMapper)
+    {
+        this.objectMapper = checkNotNull(objectMapper, "objectMapper is null");
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+    {
+        return mediaType.isCompatible(PRESTO_SNAPPY_JSON_TYPE) && objectMapper.canDeserialize(objectMapper.constructType(genericType));
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type,
+            Type genericType,
+            Annotation[] annotations,
+            MediaType mediaType,
+            MultivaluedMap<String, String> httpHeaders,
+            InputStream input)
+            throws IOException, WebApplicationException
+    {
+        byte[] json = uncompress(ByteStreams.toByteArray(input));
+        return objectMapper.readValue(json, objectMapper.constructType(genericType));
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+    {
+        return mediaType.isCompatible(PRESTO_SNAPPY_JSON_TYPE) && objectMapper.canSerialize(type);
+    }
+
+    @Override
+    public long getSize(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+    {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object value,
+            Class<?> type,
+            Type genericType,
+            Annotation[] annotations,
+            MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders,
+            OutputStream output)
+            throws IOException, WebApplicationException
+    {
+        output.write(compress(objectMapper.writeValueAsBytes(value)));
+    }
+}
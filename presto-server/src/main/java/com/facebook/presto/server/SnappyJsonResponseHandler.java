@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.net.MediaType;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+
+import java.io.IOException;
+
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_SNAPPY_JSON_TYPE;
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static io.airlift.http.client.ResponseHandlerUtils.propagate;
+
+/**
+ * Response handler for JSON entities that may have been returned as plain JSON or as
+ * Snappy compressed JSON, depending on what was negotiated for the request.
+ */
+public class SnappyJsonResponseHandler<T>
+        implements ResponseHandler<SnappyJsonResponseHandler.JsonResponse<T>, RuntimeException>
+{
+    private static final MediaType MEDIA_TYPE_JSON = MediaType.create("application", "json");
+
+    public static <T> SnappyJsonResponseHandler<T> createSnappyJsonResponseHandler(SnappyJsonCodec<T> codec)
+    {
+        return new SnappyJsonResponseHandler<>(codec);
+    }
+
+    private final SnappyJsonCodec<T> codec;
+
+    private SnappyJsonResponseHandler(SnappyJsonCodec<T> codec)
+    {
+        this.codec = checkNotNull(codec, "codec is null");
+    }
+
+    @Override
+    public JsonResponse<T> handleException(Request request, Exception exception)
+    {
+        throw propagate(request, exception);
+    }
+
+    @Override
+    public JsonResponse<T> handle(Request request, Response response)
+    {
+        byte[] bytes;
+        try {
+            bytes = ByteStreams.toByteArray(response.getInputStream());
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Error reading response from server", e);
+        }
+
+        String contentType = response.getHeader(CONTENT_TYPE);
+        if (contentType == null) {
+            return new JsonResponse<>(response.getStatusCode(), response.getStatusMessage(), null, null);
+        }
+
+        MediaType mediaType = MediaType.parse(contentType);
+        try {
+            if (mediaType.is(PRESTO_SNAPPY_JSON_TYPE)) {
+                return new JsonResponse<>(response.getStatusCode(), response.getStatusMessage(), codec.fromSnappyJson(bytes), null);
+            }
+            if (mediaType.is(MEDIA_TYPE_JSON)) {
+                return new JsonResponse<>(response.getStatusCode(), response.getStatusMessage(), codec.getJsonCodec().fromJson(new String(bytes, UTF_8)), null);
+            }
+        }
+        catch (RuntimeException e) {
+            return new JsonResponse<>(response.getStatusCode(), response.getStatusMessage(), null, e);
+        }
+        return new JsonResponse<>(response.getStatusCode(), response.getStatusMessage(), null, null);
+    }
+
+    public static class JsonResponse<T>
+    {
+        private final int statusCode;
+        private final String statusMessage;
+        private final T value;
+        private final Exception exception;
+
+        public JsonResponse(int statusCode, String statusMessage, T value, Exception exception)
+        {
+            this.statusCode = statusCode;
+            this.statusMessage = statusMessage;
+            this.value = value;
+            this.exception = exception;
+        }
+
+        public int getStatusCode()
+        {
+            return statusCode;
+        }
+
+        public String getStatusMessage()
+        {
+            return statusMessage;
+        }
+
+        public boolean hasValue()
+        {
+            return value != null;
+        }
+
+        public T getValue()
+        {
+            return value;
+        }
+
+        public Exception getException()
+        {
+            return exception;
+        }
+    }
+}
@@ -45,6 +45,7 @@ import javax.ws.rs.core.UriInfo;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_SNAPPY_JSON;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CURRENT_STATE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_WAIT;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_NEXT_TOKEN;
@@ -80,24 +81,30 @@ public class TaskResource
 
     @POST
     @Path("{taskId}")
-    @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, PRESTO_SNAPPY_JSON})
+    @Produces({MediaType.APPLICATION_JSON, PRESTO_SNAPPY_JSON})
     public Response createOrUpdateTask(@PathParam("taskId") TaskId taskId, TaskUpdateRequest taskUpdateRequest, @Context UriInfo uriInfo)
     {
         checkNotNull(taskUpdateRequest, "taskUpdateRequest is null");
 
-        TaskInfo taskInfo = taskManager.updateTask(taskUpdateRequest.getSession(),
-                taskId,
-                taskUpdateRequest.getFragment(),
-                taskUpdateRequest.getSources(),
-                taskUpdateRequest.getOutputIds());
+        try {
+            TaskInfo taskInfo = taskManager.updateTask(taskUpdateRequest.getSession(),
+                    taskId,
+                    taskUpdateRequest.getFragment(),
+                    taskUpdateRequest.getSources(),
+                    taskUpdateRequest.getOutputIds());
 
-        return Response.ok().entity(taskInfo).build();
+            return Response.ok().entity(taskInfo).build();
+        }
+        catch (NoSuchElementException e) {
+            // the task is gone and the update can not recreate it
+            return Response.status(Status.GONE).build();
+        }
     }
 
     @GET
     @Path("{taskId}")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, PRESTO_SNAPPY_JSON})
     public Response getTaskInfo(@PathParam("taskId") TaskId taskId,
             @HeaderParam(PRESTO_CURRENT_STATE) TaskState currentState,
             @HeaderParam(PRESTO_MAX_WAIT) Duration maxWait,
@@ -139,7 +146,7 @@ public class TaskResource
 
     @GET
     @Path("{taskId}/results/{outputId}/{token}")
-    @Produces(PrestoMediaTypes.PRESTO_PAGES)
+    @Produces({PrestoMediaTypes.PRESTO_PAGES, PrestoMediaTypes.PRESTO_SNAPPY_PAGES})
     public Response getResults(@PathParam("taskId") TaskId taskId,
             @PathParam("outputId") String outputId,
             @PathParam("token") long token)
@@ -16,7 +16,9 @@ package com.facebook.presto.server.testing;
 import com.facebook.presto.connector.ConnectorManager;
 import com.facebook.presto.metadata.AllNodes;
 import com.facebook.presto.metadata.InternalNodeManager;
+import com.facebook.presto.metadata.LocalStorageManager;
 import com.facebook.presto.metadata.Metadata;
+import com.facebook.presto.metadata.ShardManager;
 import com.facebook.presto.server.PluginManager;
 import com.facebook.presto.server.ServerMainModule;
 import com.facebook.presto.spi.Plugin;
@@ -51,6 +53,7 @@ import java.util.Map;
 
 import static com.facebook.presto.server.testing.FileUtils.deleteRecursively;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 public class TestingPrestoServer
         implements Closeable
@@ -61,6 +64,8 @@ public class TestingPrestoServer
     private final ConnectorManager connectorManager;
     private final TestingHttpServer server;
     private final Metadata metadata;
+    private final ShardManager shardManager;
+    private final LocalStorageManager localStorageManager;
     private final InternalNodeManager nodeManager;
     private final ServiceSelectorManager serviceSelectorManager;
 
@@ -128,6 +133,8 @@ public class TestingPrestoServer
 
         server = injector.getInstance(TestingHttpServer.class);
         metadata = injector.getInstance(Metadata.class);
+        shardManager = coordinator ? injector.getInstance(ShardManager.class) : null;
+        localStorageManager = injector.getInstance(LocalStorageManager.class);
         nodeManager = injector.getInstance(InternalNodeManager.class);
         serviceSelectorManager = injector.getInstance(ServiceSelectorManager.class);
 
@@ -176,6 +183,17 @@ public class TestingPrestoServer
         return metadata;
     }
 
+    public ShardManager getShardManager()
+    {
+        checkState(shardManager != null, "shard manager is only available on the coordinator");
+        return shardManager;
+    }
+
+    public LocalStorageManager getLocalStorageManager()
+    {
+        return localStorageManager;
+    }
+
     public final AllNodes refreshNodes()
     {
         serviceSelectorManager.forceRefresh();
@@ -0,0 +1,171 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import com.facebook.presto.ScheduledSplit;
+import com.facebook.presto.TaskSource;
+import com.facebook.presto.connector.dual.DualHandleResolver;
+import com.facebook.presto.connector.dual.DualMetadata;
+import com.facebook.presto.metadata.HandleJsonModule;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.ConnectorHandleResolver;
+import com.facebook.presto.spi.SchemaTableName;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.split.RemoteSplit;
+import com.facebook.presto.sql.analyzer.Session;
+import com.facebook.presto.sql.analyzer.Type;
+import com.facebook.presto.sql.planner.PlanFragment;
+import com.facebook.presto.sql.planner.PlanFragment.OutputPartitioning;
+import com.facebook.presto.sql.planner.PlanFragment.PlanDistribution;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.plan.PlanFragmentId;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.facebook.presto.sql.planner.plan.TableScanNode;
+import com.facebook.presto.sql.planner.plan.TableScanNode.GeneratedPartitions;
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.google.inject.TypeLiteral;
+import io.airlift.json.JsonCodec;
+import io.airlift.json.JsonModule;
+
+import java.net.URI;
+
+import static com.facebook.presto.OutputBuffers.INITIAL_EMPTY_OUTPUT_BUFFERS;
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.inject.multibindings.MapBinder.newMapBinder;
+import static io.airlift.json.JsonCodecBinder.jsonCodecBinder;
+
+/**
+ * Measures how fast the coordinator can encode task updates with each protocol
+ * variant: JSON or Snappy compressed JSON, with or without the plan fragment.
+ */
+public final class TaskUpdateRequestBenchmark
+{
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int ITERATIONS = 10_000;
+    private static final Session SESSION = new Session("user", "test", "default", "default", "test", "test");
+
+    private TaskUpdateRequestBenchmark()
+    {
+    }
+
+    public static void main(String[] args)
+    {
+        Injector injector = Guice.createInjector(Stage.PRODUCTION,
+                new JsonModule(),
+                new HandleJsonModule(),
+                new Module()
+                {
+                    @Override
+                    public void configure(Binder binder)
+                    {
+                        newMapBinder(binder, String.class, ConnectorHandleResolver.class).addBinding("dual").to(DualHandleResolver.class).in(Scopes.SINGLETON);
+                        jsonCodecBinder(binder).bindJsonCodec(TaskUpdateRequest.class);
+                    }
+                });
+
+        final JsonCodec<TaskUpdateRequest> jsonCodec = injector.getInstance(Key.get(new TypeLiteral<JsonCodec<TaskUpdateRequest>>() {}));
+        final SnappyJsonCodec<TaskUpdateRequest> snappyJsonCodec = new SnappyJsonCodec<>(jsonCodec);
+
+        Function<TaskUpdateRequest, byte[]> json = new Function<TaskUpdateRequest, byte[]>()
+        {
+            @Override
+            public byte[] apply(TaskUpdateRequest request)
+            {
+                return jsonCodec.toJson(request).getBytes(UTF_8);
+            }
+        };
+        Function<TaskUpdateRequest, byte[]> snappyJson = new Function<TaskUpdateRequest, byte[]>()
+        {
+            @Override
+            public byte[] apply(TaskUpdateRequest request)
+            {
+                return snappyJsonCodec.toSnappyJson(request);
+            }
+        };
+
+        PlanFragment fragment = createFragment();
+        for (int splitsPerUpdate : new int[] {1, 10, 100, 1000}) {
+            ImmutableSet.Builder<ScheduledSplit> splits = ImmutableSet.builder();
+            for (int i = 0; i < splitsPerUpdate; i++) {
+                RemoteSplit split = new RemoteSplit(URI.create("http://worker-" + i + ":8080/v1/task/query.1.0/results/" + i), ImmutableList.of(TupleInfo.SINGLE_VARBINARY));
+                splits.add(new ScheduledSplit(i, split));
+            }
+            ImmutableList<TaskSource> sources = ImmutableList.of(new TaskSource(fragment.getPartitionedSource(), splits.build(), false));
+
+            TaskUpdateRequest full = new TaskUpdateRequest(SESSION, Optional.of(fragment), sources, INITIAL_EMPTY_OUTPUT_BUFFERS);
+            TaskUpdateRequest delta = new TaskUpdateRequest(SESSION, Optional.<PlanFragment>absent(), sources, INITIAL_EMPTY_OUTPUT_BUFFERS);
+
+            run("json_full", splitsPerUpdate, full, json);
+            run("json_delta", splitsPerUpdate, delta, json);
+            run("snappy_json_full", splitsPerUpdate, full, snappyJson);
+            run("snappy_json_delta", splitsPerUpdate, delta, snappyJson);
+        }
+    }
+
+    private static void run(String name, int splitsPerUpdate, TaskUpdateRequest request, Function<TaskUpdateRequest, byte[]> encoder)
+    {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            encoder.apply(request);
+        }
+
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bytes += encoder.apply(request).length;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        System.out.printf("%-20s splits/update=%-5d updates/s=%,10.0f bytes/update=%,10d%n",
+                name,
+                splitsPerUpdate,
+                ITERATIONS * 1.0e9 / elapsedNanos,
+                bytes / ITERATIONS);
+    }
+
+    private static PlanFragment createFragment()
+    {
+        DualMetadata dualMetadata = new DualMetadata();
+        TableHandle tableHandle = dualMetadata.getTableHandle(new SchemaTableName("default", DualMetadata.NAME));
+        ColumnHandle columnHandle = dualMetadata.getColumnHandle(tableHandle, DualMetadata.COLUMN_NAME);
+        Symbol symbol = new Symbol(DualMetadata.COLUMN_NAME);
+
+        PlanNodeId tableScanNodeId = new PlanNodeId("tableScan");
+        return new PlanFragment(
+                new PlanFragmentId("fragment"),
+                new TableScanNode(
+                        tableScanNodeId,
+                        tableHandle,
+                        ImmutableList.of(symbol),
+                        ImmutableMap.of(symbol, columnHandle),
+                        null,
+                        Optional.<GeneratedPartitions>absent()),
+                ImmutableMap.<Symbol, Type>of(symbol, Type.VARCHAR),
+                PlanDistribution.SOURCE,
+                tableScanNodeId,
+                OutputPartitioning.NONE,
+                ImmutableList.<Symbol>of());
+    }
+}
@@ -49,8 +49,11 @@ import org.testng.annotations.Test;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -61,6 +64,7 @@ import static com.facebook.presto.util.Types.checkType;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Iterables.transform;
 import static io.airlift.json.JsonCodec.jsonCodec;
+import static io.airlift.testing.Assertions.assertGreaterThan;
 import static io.airlift.testing.Assertions.assertLessThan;
 import static io.airlift.units.Duration.nanosSince;
 import static java.lang.String.format;
@@ -178,6 +182,48 @@ public class TestDistributedQueries
                 "SELECT 10");
     }
 
+    @Test
+    public void testEncodedShards()
+            throws Exception
+    {
+        // orders is spread over several shards, which are re-encoded independently:
+        // every shard of orderstatus gets its own dictionary, and comment is constant
+        // in the shards of the low order keys only, so the pages sent through the
+        // exchanges mix encodings and dictionaries
+        @Language("SQL") String query = "" +
+                "SELECT orderkey, orderstatus, CASE WHEN orderkey < 20000 THEN 'constant' ELSE comment END comment " +
+                "FROM orders";
+        try {
+            assertQuery("CREATE TABLE test_encoded AS " + query, "SELECT count(*) FROM orders");
+
+            TableHandle tableHandle = coordinator.getMetadata().getTableHandle(new QualifiedTableName(DEFAULT_CATALOG, DEFAULT_SCHEMA, "test_encoded")).get();
+            Collection<Entry<UUID, String>> shards = coordinator.getShardManager().getShardNodesByPartition(tableHandle).values();
+            assertGreaterThan(shards.size(), 1);
+            waitForShardEncoding(shards);
+
+            assertQuery("SELECT * FROM test_encoded", query);
+            assertQuery("SELECT orderstatus, count(*) FROM test_encoded GROUP BY orderstatus", "SELECT orderstatus, count(*) FROM orders GROUP BY orderstatus");
+            assertQuery("SELECT comment, orderkey FROM test_encoded ORDER BY comment, orderkey LIMIT 10", "SELECT comment, orderkey FROM (" + query + ") ORDER BY comment, orderkey LIMIT 10");
+        }
+        finally {
+            dropTable("test_encoded");
+        }
+    }
+
+    private void waitForShardEncoding(Iterable<Entry<UUID, String>> shards)
+            throws InterruptedException
+    {
+        long start = System.nanoTime();
+        for (Entry<UUID, String> shard : shards) {
+            for (TestingPrestoServer server : servers) {
+                while (server.getLocalStorageManager().isShardActive(shard.getKey())) {
+                    assertLessThan(nanosSince(start), new Duration(10, SECONDS));
+                    MILLISECONDS.sleep(10);
+                }
+            }
+        }
+    }
+
     private void assertCreateTable(String table, @Language("SQL") String query, @Language("SQL") String rowCountQuery)
             throws Exception
     {
@@ -192,11 +238,16 @@ public class TestDistributedQueries
             assertQuery("SELECT * FROM " + table, expectedQuery);
         }
         finally {
-            QualifiedTableName name = new QualifiedTableName(DEFAULT_CATALOG, DEFAULT_SCHEMA, table);
-            Optional<TableHandle> handle = coordinator.getMetadata().getTableHandle(name);
-            if (handle.isPresent()) {
-                coordinator.getMetadata().dropTable(handle.get());
-            }
+            dropTable(table);
+        }
+    }
+
+    private void dropTable(String table)
+    {
+        QualifiedTableName name = new QualifiedTableName(DEFAULT_CATALOG, DEFAULT_SCHEMA, table);
+        Optional<TableHandle> handle = coordinator.getMetadata().getTableHandle(name);
+        if (handle.isPresent()) {
+            coordinator.getMetadata().dropTable(handle.get());
         }
     }
 
@@ -415,14 +466,25 @@ public class TestDistributedQueries
         };
     }
 
-    private static TestingPrestoServer createTestingPrestoServer(URI discoveryUri, boolean coordinator)
+    /**
+     * Additional configuration for the coordinator, which does the planning.
+     */
+    protected Map<String, String> getCoordinatorProperties()
+    {
+        return ImmutableMap.of();
+    }
+
+    private TestingPrestoServer createTestingPrestoServer(URI discoveryUri, boolean coordinator)
             throws Exception
     {
-        Map<String, String> properties = ImmutableMap.<String, String>builder()
+        ImmutableMap.Builder<String, String> builder = ImmutableMap.<String, String>builder()
                 .put("query.client.timeout", "10m")
                 .put("exchange.http-client.read-timeout", "1h")
-                .put("datasources", "native,tpch,tpch_sampled")
-                .build();
+                .put("datasources", "native,tpch,tpch_sampled");
+        if (coordinator) {
+            builder.putAll(getCoordinatorProperties());
+        }
+        Map<String, String> properties = builder.build();
 
         TestingPrestoServer server = new TestingPrestoServer(coordinator, properties, ENVIRONMENT, discoveryUri);
         server.installPlugin(new TpchPlugin(), "tpch", "tpch");
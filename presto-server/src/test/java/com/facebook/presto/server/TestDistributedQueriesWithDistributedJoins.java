@@ -0,0 +1,31 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * Runs the distributed query suite with joins hash partitioned on both sides instead of broadcast.
+ */
+public class TestDistributedQueriesWithDistributedJoins
+        extends TestDistributedQueries
+{
+    @Override
+    protected Map<String, String> getCoordinatorProperties()
+    {
+        return ImmutableMap.of("analyzer.distributed-joins-enabled", "true");
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The values of one column of a {@link ColumnarPage}.  The arrays are not
+ * copied, so they must not be modified after the vector is created.
+ * String values are stored as the concatenation of their UTF-8 bytes, where
+ * the value at position {@code i} starts at {@code offsets[i]} and ends at
+ * {@code offsets[i + 1]}.
+ */
+public final class ColumnVector
+{
+    private final ColumnType type;
+    private final int positionCount;
+    private final boolean[] nulls;
+    private final boolean[] booleans;
+    private final long[] longs;
+    private final double[] doubles;
+    private final byte[] bytes;
+    private final int[] offsets;
+
+    private ColumnVector(ColumnType type, int positionCount, boolean[] nulls, boolean[] booleans, long[] longs, double[] doubles, byte[] bytes, int[] offsets)
+    {
+        if (positionCount < 0) {
+            throw new IllegalArgumentException("positionCount is negative");
+        }
+        if (nulls != null && nulls.length < positionCount) {
+            throw new IllegalArgumentException("nulls is smaller than positionCount");
+        }
+
+        this.type = requireNonNull(type, "type is null");
+        this.positionCount = positionCount;
+        this.nulls = nulls;
+        this.booleans = booleans;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.bytes = bytes;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param nulls null flags for each position, or null if no position is null
+     */
+    public static ColumnVector booleanVector(int positionCount, boolean[] nulls, boolean[] values)
+    {
+        checkLength(requireNonNull(values, "values is null").length, positionCount);
+        return new ColumnVector(ColumnType.BOOLEAN, positionCount, nulls, values, null, null, null, null);
+    }
+
+    /**
+     * @param nulls null flags for each position, or null if no position is null
+     */
+    public static ColumnVector longVector(int positionCount, boolean[] nulls, long[] values)
+    {
+        checkLength(requireNonNull(values, "values is null").length, positionCount);
+        return new ColumnVector(ColumnType.LONG, positionCount, nulls, null, values, null, null, null);
+    }
+
+    /**
+     * @param nulls null flags for each position, or null if no position is null
+     */
+    public static ColumnVector doubleVector(int positionCount, boolean[] nulls, double[] values)
+    {
+        checkLength(requireNonNull(values, "values is null").length, positionCount);
+        return new ColumnVector(ColumnType.DOUBLE, positionCount, nulls, null, null, values, null, null);
+    }
+
+    /**
+     * @param nulls null flags for each position, or null if no position is null
+     * @param offsets the start offset of each value in {@code bytes}, followed by the end offset of the last value
+     */
+    public static ColumnVector stringVector(int positionCount, boolean[] nulls, byte[] bytes, int[] offsets)
+    {
+        requireNonNull(bytes, "bytes is null");
+        checkLength(requireNonNull(offsets, "offsets is null").length, positionCount + 1);
+        if (offsets[positionCount] > bytes.length) {
+            throw new IllegalArgumentException("offsets are beyond the end of bytes");
+        }
+        return new ColumnVector(ColumnType.STRING, positionCount, nulls, null, null, null, bytes, offsets);
+    }
+
+    private static void checkLength(int length, int expectedLength)
+    {
+        if (length < expectedLength) {
+            throw new IllegalArgumentException("array is smaller than " + expectedLength);
+        }
+    }
+
+    public ColumnType getType()
+    {
+        return type;
+    }
+
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    public boolean mayHaveNull()
+    {
+        return nulls != null;
+    }
+
+    public boolean isNull(int position)
+    {
+        return nulls != null && nulls[position];
+    }
+
+    public boolean getBoolean(int position)
+    {
+        checkType(ColumnType.BOOLEAN);
+        return booleans[position];
+    }
+
+    public long getLong(int position)
+    {
+        checkType(ColumnType.LONG);
+        return longs[position];
+    }
+
+    public double getDouble(int position)
+    {
+        checkType(ColumnType.DOUBLE);
+        return doubles[position];
+    }
+
+    public byte[] getString(int position)
+    {
+        checkType(ColumnType.STRING);
+        return Arrays.copyOfRange(bytes, offsets[position], offsets[position + 1]);
+    }
+
+    /**
+     * Returns the concatenated bytes of the string values without copying them.
+     */
+    public byte[] getStringBytes()
+    {
+        checkType(ColumnType.STRING);
+        return bytes;
+    }
+
+    public int getStringOffset(int position)
+    {
+        checkType(ColumnType.STRING);
+        return offsets[position];
+    }
+
+    public int getStringLength(int position)
+    {
+        checkType(ColumnType.STRING);
+        return offsets[position + 1] - offsets[position];
+    }
+
+    private void checkType(ColumnType expected)
+    {
+        if (type != expected) {
+            throw new IllegalStateException("Expected " + expected + " column, but is " + type);
+        }
+    }
+}
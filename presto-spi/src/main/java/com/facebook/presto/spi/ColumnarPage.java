@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+public final class ColumnarPage
+{
+    private final int positionCount;
+    private final List<ColumnVector> columns;
+
+    public ColumnarPage(int positionCount, List<ColumnVector> columns)
+    {
+        if (positionCount < 0) {
+            throw new IllegalArgumentException("positionCount is negative");
+        }
+        requireNonNull(columns, "columns is null");
+        for (ColumnVector column : columns) {
+            if (column.getPositionCount() != positionCount) {
+                throw new IllegalArgumentException("column position count does not match page position count");
+            }
+        }
+
+        this.positionCount = positionCount;
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+    }
+
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    public int getColumnCount()
+    {
+        return columns.size();
+    }
+
+    public ColumnVector getColumn(int column)
+    {
+        return columns.get(column);
+    }
+
+    public List<ColumnVector> getColumns()
+    {
+        return columns;
+    }
+}
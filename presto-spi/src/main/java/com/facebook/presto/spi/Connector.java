@@ -22,4 +22,12 @@ public interface Connector
     ConnectorSplitManager getSplitManager();
     ConnectorRecordSetProvider getRecordSetProvider();
     ConnectorRecordSinkProvider getRecordSinkProvider();
+
+    /**
+     * Returns the provider of columnar pages for the data of this connector,
+     * which is used instead of the record set provider if it is present.
+     *
+     * @throws UnsupportedOperationException if the connector only provides record sets
+     */
+    ConnectorPageSourceProvider getPageSourceProvider();
 }
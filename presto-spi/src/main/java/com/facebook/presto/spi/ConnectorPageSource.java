@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+import java.io.Closeable;
+import java.util.List;
+
+public interface ConnectorPageSource
+        extends Closeable
+{
+    List<ColumnType> getColumnTypes();
+
+    long getTotalBytes();
+
+    long getCompletedBytes();
+
+    /**
+     * Returns true if all pages have been returned.
+     */
+    boolean isFinished();
+
+    /**
+     * Returns the next page, or null if no page is available yet.
+     */
+    ColumnarPage getNextPage();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,31 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+import java.util.List;
+
+/**
+ * Optional alternative to {@link ConnectorRecordSetProvider} for connectors
+ * that can produce data a column at a time.
+ */
+public interface ConnectorPageSourceProvider
+{
+    boolean canHandle(Split split);
+
+    /**
+     * Returns null if the split can not be read as pages, in which case it is
+     * read through the record set provider of the connector.
+     */
+    ConnectorPageSource createPageSource(Split split, List<? extends ColumnHandle> columns);
+}
@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+/**
+ * A record cursor that can pass string values to a sink without allocating
+ * a new array for every value.
+ */
+public interface StringRecordCursor
+        extends RecordCursor
+{
+    /**
+     * Appends the string value of the field at the current position to the sink.
+     * The field must not be null.
+     */
+    void appendString(int field, StringSink sink);
+}
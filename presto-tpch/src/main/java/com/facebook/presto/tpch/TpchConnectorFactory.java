@@ -18,6 +18,7 @@ import com.facebook.presto.spi.ConnectorFactory;
 import com.facebook.presto.spi.ConnectorHandleResolver;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputHandleResolver;
+import com.facebook.presto.spi.ConnectorPageSourceProvider;
 import com.facebook.presto.spi.ConnectorRecordSetProvider;
 import com.facebook.presto.spi.ConnectorRecordSinkProvider;
 import com.facebook.presto.spi.ConnectorSplitManager;
@@ -87,6 +88,12 @@ public class TpchConnectorFactory
                 throw new UnsupportedOperationException();
             }
 
+            @Override
+            public ConnectorPageSourceProvider getPageSourceProvider()
+            {
+                return new TpchPageSourceProvider(connectorId);
+            }
+
             @Override
             public ConnectorOutputHandleResolver getOutputHandleResolver()
             {
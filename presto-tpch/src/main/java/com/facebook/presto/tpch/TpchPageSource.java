@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.tpch;
+
+import com.facebook.presto.spi.ColumnType;
+import com.facebook.presto.spi.ColumnVector;
+import com.facebook.presto.spi.ColumnarPage;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import io.airlift.tpch.TpchColumn;
+import io.airlift.tpch.TpchEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.facebook.presto.tpch.TpchRecordSet.columnTypeGetter;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Iterables.transform;
+
+/**
+ * Generates the rows of a page and then produces each column of the
+ * page in a single pass over the rows.
+ */
+public class TpchPageSource<E extends TpchEntity>
+        implements ConnectorPageSource
+{
+    private static final int ROWS_PER_PAGE = 1024;
+
+    private final Iterator<E> rows;
+    private final List<TpchColumn<E>> columns;
+    private final List<ColumnType> columnTypes;
+    private final List<E> pageRows = new ArrayList<>(ROWS_PER_PAGE);
+    private boolean closed;
+
+    public TpchPageSource(Iterator<E> rows, List<TpchColumn<E>> columns)
+    {
+        this.rows = checkNotNull(rows, "rows is null");
+        this.columns = ImmutableList.copyOf(checkNotNull(columns, "columns is null"));
+        this.columnTypes = ImmutableList.copyOf(transform(columns, columnTypeGetter()));
+    }
+
+    @Override
+    public List<ColumnType> getColumnTypes()
+    {
+        return columnTypes;
+    }
+
+    @Override
+    public long getTotalBytes()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getCompletedBytes()
+    {
+        return 0;
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return closed || !rows.hasNext();
+    }
+
+    @Override
+    public ColumnarPage getNextPage()
+    {
+        if (isFinished()) {
+            return null;
+        }
+
+        pageRows.clear();
+        while (pageRows.size() < ROWS_PER_PAGE && rows.hasNext()) {
+            pageRows.add(rows.next());
+        }
+
+        int positionCount = pageRows.size();
+        ImmutableList.Builder<ColumnVector> vectors = ImmutableList.builder();
+        for (int column = 0; column < columns.size(); column++) {
+            vectors.add(createVector(columns.get(column), columnTypes.get(column), positionCount));
+        }
+        return new ColumnarPage(positionCount, vectors.build());
+    }
+
+    private ColumnVector createVector(TpchColumn<E> column, ColumnType type, int positionCount)
+    {
+        switch (type) {
+            case LONG:
+                long[] longs = new long[positionCount];
+                for (int position = 0; position < positionCount; position++) {
+                    longs[position] = column.getLong(pageRows.get(position));
+                }
+                return ColumnVector.longVector(positionCount, null, longs);
+            case DOUBLE:
+                double[] doubles = new double[positionCount];
+                for (int position = 0; position < positionCount; position++) {
+                    doubles[position] = column.getDouble(pageRows.get(position));
+                }
+                return ColumnVector.doubleVector(positionCount, null, doubles);
+            case STRING:
+                byte[] bytes = new byte[positionCount * 16];
+                int[] offsets = new int[positionCount + 1];
+                for (int position = 0; position < positionCount; position++) {
+                    byte[] value = column.getString(pageRows.get(position)).getBytes(Charsets.UTF_8);
+                    int offset = offsets[position];
+                    if (offset + value.length > bytes.length) {
+                        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, offset + value.length));
+                    }
+                    System.arraycopy(value, 0, bytes, offset, value.length);
+                    offsets[position + 1] = offset + value.length;
+                }
+                return ColumnVector.stringVector(positionCount, null, bytes, offsets);
+            default:
+                throw new UnsupportedOperationException("Unsupported column type: " + type);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        pageRows.clear();
+        closed = true;
+    }
+}
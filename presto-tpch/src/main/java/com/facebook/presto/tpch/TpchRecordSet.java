@@ -16,6 +16,8 @@ package com.facebook.presto.tpch;
 import com.facebook.presto.spi.ColumnType;
 import com.facebook.presto.spi.RecordCursor;
 import com.facebook.presto.spi.RecordSet;
+import com.facebook.presto.spi.StringRecordCursor;
+import com.facebook.presto.spi.StringSink;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
@@ -75,10 +77,11 @@ public class TpchRecordSet<E extends TpchEntity>
     }
 
     public class TpchRecordCursor<E extends TpchEntity>
-            implements RecordCursor
+            implements StringRecordCursor
     {
         private final Iterator<E> rows;
         private final List<TpchColumn<E>> columns;
+        private byte[] stringBuffer = new byte[64];
         private E row;
         private boolean closed;
 
@@ -146,6 +149,29 @@ public class TpchRecordSet<E extends TpchEntity>
             return getTpchColumn(field).getString(row).getBytes(Charsets.UTF_8);
         }
 
+        @Override
+        public void appendString(int field, StringSink sink)
+        {
+            checkState(row != null, "No current row");
+            String value = getTpchColumn(field).getString(row);
+
+            // generated values are ASCII, so they can be encoded into a reused buffer
+            int length = value.length();
+            if (stringBuffer.length < length) {
+                stringBuffer = new byte[Math.max(length, stringBuffer.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    byte[] bytes = value.getBytes(Charsets.UTF_8);
+                    sink.appendString(bytes, 0, bytes.length);
+                    return;
+                }
+                stringBuffer[i] = (byte) c;
+            }
+            sink.appendString(stringBuffer, 0, length);
+        }
+
         @Override
         public boolean isNull(int field)
         {